@@ -0,0 +1,77 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.joinpoint.management;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exposes the join point statistics and the advice samplers as an MBean of the Java 5 platform MBean server.
+ * <p/>
+ * Registered by JoinPointStatistics when the first join point class gathering statistics or sampling an advice is
+ * initialized.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public class JoinPointStatisticsView implements JoinPointStatisticsViewMBean {
+
+    /**
+     * The name the MBean is registered under
+     */
+    public static final String OBJECT_NAME = "org.codehaus.aspectwerkz:type=JoinPointStatistics";
+
+    /**
+     * Registers the MBean, unless already registered.
+     *
+     * @throws Exception
+     */
+    public static synchronized void register() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(new JoinPointStatisticsView(), name);
+        }
+    }
+
+    public boolean isEnabled() {
+        return JoinPointStatistics.isEnabled();
+    }
+
+    public String[] getJoinPointClassNames() {
+        return JoinPointStatistics.getJoinPointClassNames();
+    }
+
+    public String getCsvSnapshot() {
+        return JoinPointStatistics.getCsvSnapshot(null, null);
+    }
+
+    public String getJsonSnapshot() {
+        return JoinPointStatistics.getJsonSnapshot(null, null);
+    }
+
+    public String getCsvSnapshot(final String joinPointClassName, final String pointcut) {
+        return JoinPointStatistics.getCsvSnapshot(joinPointClassName, pointcut);
+    }
+
+    public String getJsonSnapshot(final String joinPointClassName, final String pointcut) {
+        return JoinPointStatistics.getJsonSnapshot(joinPointClassName, pointcut);
+    }
+
+    public void reset() {
+        JoinPointStatistics.resetAll();
+    }
+
+    public String getSamplingCsvSnapshot() {
+        return AdviceSampler.getCsvSnapshot();
+    }
+
+    public void setSamplingRate(final String aspectQualifiedName, final String adviceName, final int rate) {
+        AdviceSampler.setRate(aspectQualifiedName, adviceName, rate);
+    }
+}
@@ -0,0 +1,52 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.joinpoint.management;
+
+/**
+ * Management interface of the join point statistics.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public interface JoinPointStatisticsViewMBean {
+
+    boolean isEnabled();
+
+    String[] getJoinPointClassNames();
+
+    String getCsvSnapshot();
+
+    String getJsonSnapshot();
+
+    /**
+     * @param joinPointClassName the join point class name or null for any
+     * @param pointcut           the pointcut or null for any
+     * @return the CSV snapshot of the selected join points
+     */
+    String getCsvSnapshot(String joinPointClassName, String pointcut);
+
+    /**
+     * @param joinPointClassName the join point class name or null for any
+     * @param pointcut           the pointcut or null for any
+     * @return the JSON snapshot of the selected join points
+     */
+    String getJsonSnapshot(String joinPointClassName, String pointcut);
+
+    void reset();
+
+    /**
+     * @return the CSV snapshot of the advice samplers
+     */
+    String getSamplingCsvSnapshot();
+
+    /**
+     * @param aspectQualifiedName the aspect qualified name
+     * @param adviceName          the advice name or null for all the sampled advices of the aspect
+     * @param rate                the new sampling rate
+     */
+    void setSamplingRate(String aspectQualifiedName, String adviceName, int rate);
+}
@@ -0,0 +1,21 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.transform;
+
+/**
+ * The System.nanoTime() based clock of the weaver metrics and of the join point statistics, used when running on
+ * Java 5.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public class NanoTimeClock extends WeaverMetrics.Clock {
+
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+}
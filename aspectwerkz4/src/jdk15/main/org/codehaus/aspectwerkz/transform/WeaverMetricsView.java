@@ -0,0 +1,80 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.transform;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exposes the weaver metrics as an MBean of the Java 5 platform MBean server.
+ * <p/>
+ * Registered by WeaverMetrics when <code>-Daspectwerkz.transform.metrics=yes</code> is set.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public class WeaverMetricsView implements WeaverMetricsViewMBean {
+
+    /**
+     * The name the MBean is registered under
+     */
+    public static final String OBJECT_NAME = "org.codehaus.aspectwerkz:type=WeaverMetrics";
+
+    /**
+     * Registers the MBean, unless already registered.
+     *
+     * @throws Exception
+     */
+    public static synchronized void register() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(new WeaverMetricsView(), name);
+        }
+    }
+
+    public long getWeavedClassCount() {
+        return WeaverMetrics.getWeavedClassCount();
+    }
+
+    public long getFilteredClassCount() {
+        return WeaverMetrics.getFilteredClassCount();
+    }
+
+    public long getFailedClassCount() {
+        return WeaverMetrics.getFailedClassCount();
+    }
+
+    public String[] getPhaseNames() {
+        return WeaverMetrics.getPhaseNames();
+    }
+
+    public long[] getPhaseTimes() {
+        return WeaverMetrics.getPhaseTimes();
+    }
+
+    public String[] getJoinPointCounts() {
+        return WeaverMetrics.getJoinPointCounts();
+    }
+
+    public String[] getSlowestClasses() {
+        return WeaverMetrics.getSlowestClasses();
+    }
+
+    public String[] getSlowestExpressions() {
+        return WeaverMetrics.getSlowestExpressions();
+    }
+
+    public String getReport() {
+        return WeaverMetrics.getReport();
+    }
+
+    public void reset() {
+        WeaverMetrics.reset();
+    }
+}
@@ -0,0 +1,36 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.transform;
+
+/**
+ * Management interface of the weaver metrics.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public interface WeaverMetricsViewMBean {
+
+    long getWeavedClassCount();
+
+    long getFilteredClassCount();
+
+    long getFailedClassCount();
+
+    String[] getPhaseNames();
+
+    long[] getPhaseTimes();
+
+    String[] getJoinPointCounts();
+
+    String[] getSlowestClasses();
+
+    String[] getSlowestExpressions();
+
+    String getReport();
+
+    void reset();
+}
@@ -7,16 +7,21 @@
  **************************************************************************************/
 package org.codehaus.aspectwerkz.aspect;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.WeakHashMap;
-import java.util.Map;
 
 import org.codehaus.aspectwerkz.exception.DefinitionException;
 import org.codehaus.aspectwerkz.exception.WrappedRuntimeException;
+import org.codehaus.aspectwerkz.util.WeakIdentityMap;
 import org.codehaus.aspectwerkz.DeploymentModel;
 
 /**
- * Abstract base class for the mixin factory implementations.
+ * Default mixin factory implementation.
+ * <p/>
+ * The perClass and perInstance mixins are kept in weak maps keyed by the identity of the target class or instance,
+ * whose lookups do not lock once the mixin exists. The mixins are created thru reflection, unless a subclass
+ * generated for the mixin class (see MixinFactoryCompiler) overrides the newMixin(..) methods with direct
+ * constructor calls.
  *
  * @author <a href="mailto:jboner@codehaus.org">Jonas Bonr </a>
  * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
@@ -25,11 +30,11 @@ public class DefaultMixinFactory extends AbstractMixinFactory {
 
     private static final Object[] EMPTY_OBJECT_ARRAY = new Object[0];
 
-    private Object m_perJVM = null;
+    private volatile Object m_perJVM = null;
 
-    private Map m_perClassMixins = new WeakHashMap();
+    private final WeakIdentityMap m_perClassMixins = new WeakIdentityMap();
 
-    private Map m_perInstanceMixins = new WeakHashMap();
+    private final WeakIdentityMap m_perInstanceMixins = new WeakIdentityMap();
 
     /**
      * Creates a new default mixin factory.
@@ -51,22 +56,15 @@ public class DefaultMixinFactory extends AbstractMixinFactory {
             return m_perJVM;
         }
         synchronized (this) {
-            final Object mixin;
-            if (m_deploymentModel == DeploymentModel.PER_JVM) {
-                try {
-                    mixin = m_defaultConstructor.newInstance(EMPTY_OBJECT_ARRAY);
-                } catch (InvocationTargetException e) {
-                    throw new WrappedRuntimeException(e.getTargetException());
-                } catch (Exception e) {
-                    throw new WrappedRuntimeException(e);
+            if (m_perJVM == null) {
+                if (m_deploymentModel != DeploymentModel.PER_JVM) {
+                    throw new DefinitionException(
+                            "Mixins.mixinOf() is can not be invoked for mixin deployed using as " +
+                            m_deploymentModel
+                    );
                 }
-            } else {
-                throw new DefinitionException(
-                        "Mixins.mixinOf() is can not be invoked for mixin deployed using as " +
-                        m_deploymentModel
-                );
+                m_perJVM = newMixin();
             }
-            m_perJVM = mixin;
         }
         return m_perJVM;
     }
@@ -78,38 +76,18 @@ public class DefaultMixinFactory extends AbstractMixinFactory {
      * @return the mixin instance
      */
     public Object mixinOf(final Class klass) {
-        if (m_perClassMixins.containsKey(klass)) {
-            return m_perClassMixins.get(klass);
+        final Object mixin = m_perClassMixins.get(klass);
+        if (mixin != null) {
+            return mixin;
         }
-        synchronized (m_perClassMixins) {
-            if (!m_perClassMixins.containsKey(klass)) {
-                final Object mixin;
-                if (m_deploymentModel == DeploymentModel.PER_CLASS) {
-                    try {
-                        if (m_perClassConstructor != null) {
-                            mixin = m_perClassConstructor.newInstance(new Object[]{klass});
-                        } else if (m_defaultConstructor != null) {
-                            mixin = m_defaultConstructor.newInstance(new Object[]{});
-                        } else {
-                            throw new DefinitionException(
-                                    "no valid constructor found for mixin [" + m_mixinClass.getName() + "]"
-                            );
-                        }
-                    } catch (InvocationTargetException e) {
-                        throw new WrappedRuntimeException(e.getTargetException());
-                    } catch (Exception e) {
-                        throw new WrappedRuntimeException(e);
-                    }
-                } else {
-                    throw new DefinitionException(
-                            "Mixins.mixinOf(Class) is can not be invoked for mixin deployed using as " +
-                            m_deploymentModel
-                    );
-                }
-                m_perClassMixins.put(klass, mixin);
-            }
-            return m_perClassMixins.get(klass);
+        if (m_deploymentModel != DeploymentModel.PER_CLASS) {
+            throw new DefinitionException(
+                    "Mixins.mixinOf(Class) is can not be invoked for mixin deployed using as " +
+                    m_deploymentModel
+            );
         }
+        // concurrent threads may create a mixin each, only one of them is kept
+        return m_perClassMixins.putIfAbsent(klass, newMixin(klass));
     }
 
     /**
@@ -119,37 +97,67 @@ public class DefaultMixinFactory extends AbstractMixinFactory {
      * @return the mixin instance
      */
     public Object mixinOf(final Object instance) {
-        if (m_perInstanceMixins.containsKey(instance)) {
-            return m_perInstanceMixins.get(instance);
+        final Object mixin = m_perInstanceMixins.get(instance);
+        if (mixin != null) {
+            return mixin;
         }
-        synchronized (m_perInstanceMixins) {
-            if (!m_perInstanceMixins.containsKey(instance)) {
-                final Object mixin;
-                if (m_deploymentModel == DeploymentModel.PER_INSTANCE) {
-                    try {
-                        if (m_perInstanceConstructor != null) {
-                            mixin = m_perInstanceConstructor.newInstance(new Object[]{instance});
-                        } else if (m_defaultConstructor != null) {
-                            mixin = m_defaultConstructor.newInstance(new Object[]{});
-                        } else {
-                            throw new DefinitionException(
-                                    "no valid constructor found for mixin [" + m_mixinClass.getName() + "]"
-                            );
-                        }
-                    } catch (InvocationTargetException e) {
-                        throw new WrappedRuntimeException(e.getTargetException());
-                    } catch (Exception e) {
-                        throw new WrappedRuntimeException(e);
-                    }
-                } else {
-                    throw new DefinitionException(
-                            "Mixins.mixinOf(Object) is can not be invoked for mixin deployed using as " +
-                            m_deploymentModel
-                    );
-                }
-                m_perInstanceMixins.put(instance, mixin);
-            }
-            return m_perInstanceMixins.get(instance);
+        if (m_deploymentModel != DeploymentModel.PER_INSTANCE) {
+            throw new DefinitionException(
+                    "Mixins.mixinOf(Object) is can not be invoked for mixin deployed using as " +
+                    m_deploymentModel
+            );
+        }
+        // concurrent threads may create a mixin each, only one of them is kept
+        return m_perInstanceMixins.putIfAbsent(instance, newMixin(instance));
+    }
+
+    /**
+     * Instantiates a perJVM mixin.
+     *
+     * @return the new mixin instance
+     */
+    protected Object newMixin() {
+        return newInstance(m_defaultConstructor, EMPTY_OBJECT_ARRAY);
+    }
+
+    /**
+     * Instantiates a perClass mixin.
+     *
+     * @param klass
+     * @return the new mixin instance
+     */
+    protected Object newMixin(final Class klass) {
+        if (m_perClassConstructor != null) {
+            return newInstance(m_perClassConstructor, new Object[]{klass});
+        }
+        return newInstance(m_defaultConstructor, EMPTY_OBJECT_ARRAY);
+    }
+
+    /**
+     * Instantiates a perInstance mixin.
+     *
+     * @param instance
+     * @return the new mixin instance
+     */
+    protected Object newMixin(final Object instance) {
+        if (m_perInstanceConstructor != null) {
+            return newInstance(m_perInstanceConstructor, new Object[]{instance});
+        }
+        return newInstance(m_defaultConstructor, EMPTY_OBJECT_ARRAY);
+    }
+
+    private Object newInstance(final Constructor constructor, final Object[] args) {
+        if (constructor == null) {
+            throw new DefinitionException(
+                    "no valid constructor found for mixin [" + m_mixinClass.getName() + "]"
+            );
+        }
+        try {
+            return constructor.newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw new WrappedRuntimeException(e.getTargetException());
+        } catch (Exception e) {
+            throw new WrappedRuntimeException(e);
         }
     }
 }
\ No newline at end of file
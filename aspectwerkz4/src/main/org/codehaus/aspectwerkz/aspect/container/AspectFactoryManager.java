@@ -100,9 +100,14 @@ public class AspectFactoryManager {
                 throw new Error("Unimplemented " + deploymentModel);
             }
 
-            // define the entity
+            // define the entity, thru a lookup on the aspect class if possible
             Artifact artifact = compiler.compile();
-            AsmHelper.defineClass(loader, artifact.bytecode, artifact.className);
+            AsmHelper.defineClass(
+                    loader,
+                    artifact.bytecode,
+                    artifact.className,
+                    AsmHelper.forName(loader, aspectClassName.replace('/', '.'))
+            );
         }
     }
 
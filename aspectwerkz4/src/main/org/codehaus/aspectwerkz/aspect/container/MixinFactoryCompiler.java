@@ -0,0 +1,208 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.aspect.container;
+
+import org.codehaus.aspectwerkz.DeploymentModel;
+import org.codehaus.aspectwerkz.aspect.MixinFactory;
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
+import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+
+/**
+ * Create a factory class for a mixin, that extends the DefaultMixinFactory and instantiates the mixin thru
+ * "new XMixin(..)" instead of reflection.
+ * <p/>
+ * The factory is defined in the class loader of the mixin class, and is used by the Mixins registry for the mixins
+ * that do not declare a custom factory. Since the factory is never looked up by name, it is defined as a hidden
+ * class of the mixin class when the runtime supports it, so that it does not add a class name to the class loader.
+ * The factory references its mixin class, hence the registry keeps both of them loaded (see Mixins).
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public class MixinFactoryCompiler implements Opcodes, TransformationConstants {
+
+    private static final boolean DUMP_JIT_FACTORIES = AspectWerkzPreProcessor.DUMP_AFTER;
+
+    private static final String DEFAULT_MIXIN_FACTORY_CLASS_NAME = "org/codehaus/aspectwerkz/aspect/DefaultMixinFactory";
+    private static final String MIXIN_FACTORY_INIT_METHOD_SIGNATURE = "(Ljava/lang/Class;Lorg/codehaus/aspectwerkz/DeploymentModel;)V";
+    private static final String NEW_MIXIN_METHOD_NAME = "newMixin";
+
+    private final Class m_mixinClass;
+    private final String m_mixinClassName;
+    private final String m_mixinFactoryClassName;
+
+    private ClassWriter m_cw;
+
+    private MixinFactoryCompiler(final Class mixinClass) {
+        m_mixinClass = mixinClass;
+        m_mixinClassName = mixinClass.getName().replace('.', '/');
+        m_mixinFactoryClassName = getMixinFactoryClassName(mixinClass.getName());
+    }
+
+    /**
+     * The naming strategy for the mixin factories
+     *
+     * @param mixinClassName
+     * @return the mixin factory class name (with /)
+     */
+    public static String getMixinFactoryClassName(final String mixinClassName) {
+        return mixinClassName.replace('.', '/') + "$AWMixinFactory";
+    }
+
+    /**
+     * Returns a new instance of the generated factory of the given mixin, compiling it and attaching it to the class
+     * loader of the mixin if needed.
+     *
+     * @param mixinClass
+     * @param deploymentModel
+     * @return the mixin factory, or null if the mixin can not have a generated factory or if it failed to be
+     *         generated, in which case the failure is logged
+     */
+    public static MixinFactory newMixinFactory(final Class mixinClass, final DeploymentModel deploymentModel) {
+        final ClassLoader loader = mixinClass.getClassLoader();
+        if (loader == null || !Modifier.isPublic(mixinClass.getModifiers())) {
+            return null;
+        }
+        try {
+            final String factoryClassName = getMixinFactoryClassName(mixinClass.getName());
+            Class factoryClass = AsmHelper.forName(loader, factoryClassName.replace('/', '.'));
+            if (factoryClass == null) {
+                final MixinFactoryCompiler compiler = new MixinFactoryCompiler(mixinClass);
+                final Artifact artifact = compiler.compile();
+                if (artifact == null) {
+                    return null;
+                }
+                factoryClass = AsmHelper.defineHiddenClass(artifact.bytecode, mixinClass);
+                if (factoryClass == null) {
+                    factoryClass = AsmHelper.defineClass(loader, artifact.bytecode, artifact.className, mixinClass);
+                }
+            }
+            final Constructor constructor = factoryClass.getConstructor(
+                    new Class[]{Class.class, DeploymentModel.class}
+            );
+            return (MixinFactory) constructor.newInstance(new Object[]{mixinClass, deploymentModel});
+        } catch (Throwable t) {
+            System.err.println(
+                    "AspectWerkz - WARN - could not generate the mixin factory of " + mixinClass.getName() +
+                    ", using reflection instead: " + t.toString()
+            );
+            return null;
+        }
+    }
+
+    /**
+     * Compiles the factory.
+     *
+     * @return the factory artifact, or null if the mixin has no public constructor to call
+     */
+    private Artifact compile() {
+        final boolean hasDefaultConstructor = hasConstructor(new Class[0]);
+        final boolean hasPerClassConstructor = hasConstructor(new Class[]{Class.class});
+        final boolean hasPerInstanceConstructor = hasConstructor(new Class[]{Object.class});
+        if (!hasDefaultConstructor && !hasPerClassConstructor && !hasPerInstanceConstructor) {
+            return null;
+        }
+
+        m_cw = AsmHelper.newClassWriter(true);
+        m_cw.visit(
+                AsmHelper.JAVA_VERSION,
+                ACC_PUBLIC + ACC_SUPER + ACC_SYNTHETIC,
+                m_mixinFactoryClassName,
+                null,
+                DEFAULT_MIXIN_FACTORY_CLASS_NAME,
+                null
+        );
+
+        // ctor delegating to DefaultMixinFactory(Class, DeploymentModel)
+        MethodVisitor ctor = m_cw.visitMethod(
+                ACC_PUBLIC,
+                INIT_METHOD_NAME,
+                MIXIN_FACTORY_INIT_METHOD_SIGNATURE,
+                null,
+                null
+        );
+        ctor.visitVarInsn(ALOAD, 0);
+        ctor.visitVarInsn(ALOAD, 1);
+        ctor.visitVarInsn(ALOAD, 2);
+        ctor.visitMethodInsn(
+                INVOKESPECIAL, DEFAULT_MIXIN_FACTORY_CLASS_NAME, INIT_METHOD_NAME, MIXIN_FACTORY_INIT_METHOD_SIGNATURE
+        );
+        ctor.visitInsn(RETURN);
+        ctor.visitMaxs(0, 0);
+
+        // newMixin() for perJVM, newMixin(Class) for perClass and newMixin(Object) for perInstance
+        // fallback on the no-arg constructor as the DefaultMixinFactory does
+        if (hasDefaultConstructor) {
+            createNewMixin("()", NO_PARAM_RETURN_VOID_SIGNATURE);
+        }
+        if (hasPerClassConstructor) {
+            createNewMixin("(" + CLASS_CLASS_SIGNATURE + ")", "(" + CLASS_CLASS_SIGNATURE + ")V");
+        } else if (hasDefaultConstructor) {
+            createNewMixin("(" + CLASS_CLASS_SIGNATURE + ")", NO_PARAM_RETURN_VOID_SIGNATURE);
+        }
+        if (hasPerInstanceConstructor) {
+            createNewMixin("(" + OBJECT_CLASS_SIGNATURE + ")", "(" + OBJECT_CLASS_SIGNATURE + ")V");
+        } else if (hasDefaultConstructor) {
+            createNewMixin("(" + OBJECT_CLASS_SIGNATURE + ")", NO_PARAM_RETURN_VOID_SIGNATURE);
+        }
+
+        m_cw.visitEnd();
+
+        Artifact artifact = new Artifact(m_mixinFactoryClassName, m_cw.toByteArray());
+        if (DUMP_JIT_FACTORIES) {
+            if (AspectWerkzPreProcessor.DUMP_PATTERN.matches(artifact.className.replace('/', '.'))) {
+                try {
+                    AsmHelper.dumpClass(AspectWerkzPreProcessor.DUMP_DIR_AFTER, artifact.className, artifact.bytecode);
+                } catch (IOException e) {
+                    ;//TODO report a warning
+                }
+            }
+        }
+        return artifact;
+    }
+
+    /**
+     * Creates a newMixin(..) method that calls the given constructor of the mixin.
+     *
+     * @param parameters           the parameters of the newMixin(..) method, f.e. "(Ljava/lang/Class;)"
+     * @param constructorSignature the signature of the mixin constructor, that takes none or all the parameters
+     */
+    private void createNewMixin(final String parameters, final String constructorSignature) {
+        MethodVisitor cv = m_cw.visitMethod(
+                ACC_PROTECTED,
+                NEW_MIXIN_METHOD_NAME,
+                parameters + OBJECT_CLASS_SIGNATURE,
+                null,
+                null
+        );
+        cv.visitTypeInsn(NEW, m_mixinClassName);
+        cv.visitInsn(DUP);
+        if (!NO_PARAM_RETURN_VOID_SIGNATURE.equals(constructorSignature)) {
+            cv.visitVarInsn(ALOAD, 1);
+        }
+        cv.visitMethodInsn(INVOKESPECIAL, m_mixinClassName, INIT_METHOD_NAME, constructorSignature);
+        cv.visitInsn(ARETURN);
+        cv.visitMaxs(0, 0);
+    }
+
+    private boolean hasConstructor(final Class[] parameterTypes) {
+        try {
+            m_mixinClass.getConstructor(parameterTypes);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
@@ -9,6 +9,8 @@ package org.codehaus.aspectwerkz.aspect.management;
 
 import org.codehaus.aspectwerkz.aspect.DefaultMixinFactory;
 import org.codehaus.aspectwerkz.aspect.MixinFactory;
+import org.codehaus.aspectwerkz.aspect.container.MixinFactoryCompiler;
+import org.codehaus.aspectwerkz.util.WeakIdentityMap;
 import org.codehaus.aspectwerkz.util.ContextClassLoader;
 import org.codehaus.aspectwerkz.DeploymentModel;
 import org.codehaus.aspectwerkz.util.ContextClassLoader;
@@ -24,6 +26,9 @@ import java.lang.reflect.InvocationTargetException;
 
 /**
  * Manages the mixins, registry for the mixin factories (one factory per mixin type).
+ * <p/>
+ * The registry lookups do not lock once the factory of a mixin exists. The mixins that do not declare a custom
+ * factory get a factory generated for their class (see MixinFactoryCompiler).
  *
  * @author <a href="mailto:jboner@codehaus.org">Jonas Bonr </a>
  * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
@@ -36,9 +41,10 @@ public class Mixins {
     public static final String DEFAULT_MIXIN_FACTORY = DefaultMixinFactory.class.getName();
 
     /**
-     * Map with all the mixin factories mapped to the mixin class
+     * Map with all the mixin factories mapped to the mixin class. The factories reference their mixin class, so the
+     * entries are never collected and the registry keeps the mixin classes loaded.
      */
-    private static final Map MIXIN_FACTORIES = new WeakHashMap();
+    private static final WeakIdentityMap MIXIN_FACTORIES = new WeakIdentityMap();
 
     /**
      * Returns the mixin factory for the mixin with the given name.
@@ -48,17 +54,17 @@ public class Mixins {
      * @return the factory, put in cache based on mixin class as a key
      */
     public static MixinFactory getFactory(final Class mixinClass, final ClassLoader mixinCalledFromLoader) {
-        synchronized (MIXIN_FACTORIES) {
-            MixinFactory factory = (MixinFactory) MIXIN_FACTORIES.get(mixinClass);
-            if (factory == null) {
-                factory = createMixinFactory(mixinClass, mixinCalledFromLoader);
-                //FIXME by using a lookup by uuid/aspectNickName
-                // right now broken since we have 1 container per mixin CLASS while the definition
-                // does allow for some mix (several mixin, several container, same mixin class)
-                MIXIN_FACTORIES.put(mixinClass, factory);
-            }
-            return factory;
+        MixinFactory factory = (MixinFactory) MIXIN_FACTORIES.get(mixinClass);
+        if (factory == null) {
+            //FIXME by using a lookup by uuid/aspectNickName
+            // right now broken since we have 1 container per mixin CLASS while the definition
+            // does allow for some mix (several mixin, several container, same mixin class)
+            // concurrent threads may create a factory each, only one of them is kept
+            factory = (MixinFactory) MIXIN_FACTORIES.putIfAbsent(
+                    mixinClass, createMixinFactory(mixinClass, mixinCalledFromLoader)
+            );
         }
+        return factory;
     }
 
     /**
@@ -157,6 +163,14 @@ public class Mixins {
         final MixinDefinition mixinDefinition = getMixinDefinition(mixinClass, mixinCalledFromLoader);
 
         String factoryClassName = mixinDefinition.getFactoryClassName();
+        if (factoryClassName == null || factoryClassName.equals(DEFAULT_MIXIN_FACTORY)) {
+            final MixinFactory factory = MixinFactoryCompiler.newMixinFactory(
+                    mixinClass, mixinDefinition.getDeploymentModel()
+            );
+            if (factory != null) {
+                return factory;
+            }
+        }
         try {
             Class containerClass;
             if (factoryClassName == null) {
@@ -7,8 +7,6 @@
  **************************************************************************************/
 package org.codehaus.aspectwerkz.cflow;
 
-import java.util.Stack;
-
 /**
  * An abstraction for the JIT gen cflow aspects.
  * <p/>
@@ -18,39 +16,38 @@ import java.util.Stack;
  * The concrete cflow class will extends this one and implements two static methods.
  * See the sample nested class.
  * <p/>
+ * The cflow aspects keep their per thread state in the shared CflowState, at the index of the concrete cflow class.
+ * <p/>
  * Note: the Cflow implements a real aspectOf singleton scheme and is not visible to Aspects.aspectOf
  *
  * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
  */
 public abstract class AbstractCflowSystemAspect {
 
-    //TODO do we really need a stack ? I think that an int increment wrapped in a ThreadLocal
-    // will be ok. The stack might only be needed for perCflow deployments
-    public ThreadLocal m_cflowStackLocal = new ThreadLocal() {
-        protected Object initialValue() {
-            return new Stack();
-        }
-    };
+    /**
+     * the index of this cflow in the CflowState
+     */
+    private final int m_cflowIndex = CflowState.getIndex(getClass());
 
     /**
      * before advice when entering this cflow
      */
     public void enter() {
-        ((Stack)m_cflowStackLocal.get()).push(Boolean.TRUE);
+        CflowState.getState().enter(m_cflowIndex);
     }
 
     /**
      * after finally advice when exiting this cflow
      */
     public void exit() {
-        ((Stack)m_cflowStackLocal.get()).pop();
+        CflowState.getState().exit(m_cflowIndex);
     }
 
     /**
      * @return true if in the cflow
      */
     public boolean inCflow() {
-        return ((Stack)m_cflowStackLocal.get()).size() > 0;
+        return CflowState.getState().isInCflow(m_cflowIndex);
     }
 
     /**
@@ -62,6 +59,11 @@ public abstract class AbstractCflowSystemAspect {
      */
     private static class Cflow_sample extends AbstractCflowSystemAspect {
 
+        /**
+         * the index used by the JIT joinpoint to check the CflowState
+         */
+        public static final int INDEX = CflowState.getIndex(Cflow_sample.class);
+
         private static Cflow_sample INSTANCE = null;
 
         private Cflow_sample() {
@@ -137,7 +137,7 @@ public class CflowAspectExpressionVisitor implements ExpressionParserVisitor {
      * @return
      */
     public Object visit(ASTCflow node, Object data) {
-        int cflowID = node.hashCode();
+        int cflowID = CflowBinding.getCflowID(node, m_namespace, false);
         Node subNode = node.jjtGetChild(0);
         ExpressionInfo subExpression = new ExpressionInfo(subNode, m_namespace);
         subExpression.inheritPossibleArgumentFrom(m_expressionInfo);
@@ -153,7 +153,7 @@ public class CflowAspectExpressionVisitor implements ExpressionParserVisitor {
      * @return
      */
     public Object visit(ASTCflowBelow node, Object data) {
-        int cflowID = node.hashCode();
+        int cflowID = CflowBinding.getCflowID(node, m_namespace, true);
         Node subNode = node.jjtGetChild(0);
         ExpressionInfo subExpression = new ExpressionInfo(subNode, m_namespace);
         subExpression.inheritPossibleArgumentFrom(m_expressionInfo);
@@ -15,15 +15,24 @@ import org.codehaus.aspectwerkz.reflect.impl.java.JavaClassInfo;
 import org.codehaus.aspectwerkz.reflect.ClassInfo;
 import org.codehaus.aspectwerkz.reflect.MethodInfo;
 import org.codehaus.aspectwerkz.aspect.AdviceType;
+import org.codehaus.aspectwerkz.expression.ast.*;
+import org.codehaus.aspectwerkz.expression.regexp.TypePattern;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Iterator;
 
 /**
  * A Cflow binding represents an extracted cflow or cflowbelow subexpression
  * <p/>
  * For a given pointcut "pcA and cflowA or cflowbelowB", we will extract two bindings.
  * The m_cflowID must be unique on a per cflow sub expresion basis ie JVM wide.
+ * It is derived from the normalized sub expression (see getCflowID(..)) so that the same cflow sub expression
+ * used by several pointcuts is bound to one single cflow aspect.
  * <p/>
  * Note: CflowBinding hashcode depends on Cflow_ID (sub expr) + isCflowBelow only.
  *
@@ -56,6 +65,16 @@ public class CflowBinding {
         }
     }
 
+    /**
+     * the cflow ids, per normalized cflow sub expression
+     */
+    private final static Map s_cflowIDs = new HashMap();
+
+    /**
+     * the cflow ids in use
+     */
+    private final static Set s_usedCflowIDs = new HashSet();
+
     /**
      * cflow unique id
      */
@@ -165,6 +184,97 @@ public class CflowBinding {
         return aspectDef;
     }
 
+    /**
+     * Returns the cflow id of a cflow or cflowbelow node.
+     * <p/>
+     * The id is computed from the normalized sub expression, so that the same sub expression gets the same id
+     * wherever it is used, and thus one single cflow aspect. Pointcut references are normalized with their namespace.
+     * A cflowbelow is only shared within the namespace it is declared in, since its cflow aspect has to be
+     * registered after the aspect that uses it to have the right precedence.
+     *
+     * @param node         the cflow or cflowbelow node
+     * @param namespace    the namespace of the expression
+     * @param isCflowBelow
+     * @return the cflow id
+     */
+    public static int getCflowID(Node node, String namespace, boolean isCflowBelow) {
+        StringBuffer key = new StringBuffer();
+        if (isCflowBelow) {
+            key.append(namespace).append(':');
+        }
+        appendNormalizedNode(key, node, namespace);
+        String normalized = key.toString();
+        synchronized (s_cflowIDs) {
+            Integer cflowID = (Integer) s_cflowIDs.get(normalized);
+            if (cflowID == null) {
+                int id = normalized.hashCode() & 0x7fffffff;
+                while (s_usedCflowIDs.contains(new Integer(id))) {
+                    id = (id + 1) & 0x7fffffff;
+                }
+                cflowID = new Integer(id);
+                s_cflowIDs.put(normalized, cflowID);
+                s_usedCflowIDs.add(cflowID);
+            }
+            return cflowID.intValue();
+        }
+    }
+
+    /**
+     * Appends the normalized form of an expression node: its type and patterns, then its children.
+     *
+     * @param key
+     * @param node
+     * @param namespace
+     */
+    private static void appendNormalizedNode(StringBuffer key, Node node, String namespace) {
+        key.append(node.toString()).append('(');
+        if (node instanceof ASTMethodPattern) {
+            ASTMethodPattern pattern = (ASTMethodPattern) node;
+            for (Iterator it = pattern.getModifiers().iterator(); it.hasNext();) {
+                key.append(it.next()).append(' ');
+            }
+            appendTypePattern(key, pattern.getReturnTypePattern());
+            appendTypePattern(key, pattern.getDeclaringTypePattern());
+            key.append(pattern.getMethodNamePattern().getPattern()).append(' ');
+        } else if (node instanceof ASTConstructorPattern) {
+            appendTypePattern(key, ((ASTConstructorPattern) node).getDeclaringTypePattern());
+        } else if (node instanceof ASTFieldPattern) {
+            ASTFieldPattern pattern = (ASTFieldPattern) node;
+            appendTypePattern(key, pattern.getFieldTypePattern());
+            appendTypePattern(key, pattern.getDeclaringTypePattern());
+            key.append(pattern.getFieldNamePattern().getPattern()).append(' ');
+        } else if (node instanceof ASTClassPattern) {
+            appendTypePattern(key, ((ASTClassPattern) node).getTypePattern());
+        } else if (node instanceof ASTParameter) {
+            appendTypePattern(key, ((ASTParameter) node).getDeclaringClassPattern());
+        } else if (node instanceof ASTArgParameter) {
+            appendTypePattern(key, ((ASTArgParameter) node).getTypePattern());
+        } else if (node instanceof ASTAttribute) {
+            ASTAttribute attribute = (ASTAttribute) node;
+            key.append(attribute.isNot() ? "!" : "").append(attribute.getName()).append(' ');
+        } else if (node instanceof ASTModifier) {
+            ASTModifier modifier = (ASTModifier) node;
+            key.append(modifier.isNot() ? "!" : "").append(modifier.getModifier()).append(' ');
+        } else if (node instanceof ASTTarget) {
+            key.append(((ASTTarget) node).getIdentifier()).append(' ');
+        } else if (node instanceof ASTThis) {
+            key.append(((ASTThis) node).getIdentifier()).append(' ');
+        } else if (node instanceof ASTPointcutReference) {
+            key.append(((ASTPointcutReference) node).getName()).append('@').append(namespace).append(' ');
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            appendNormalizedNode(key, node.jjtGetChild(i), namespace);
+        }
+        key.append(')');
+    }
+
+    private static void appendTypePattern(StringBuffer key, TypePattern pattern) {
+        if (pattern != null) {
+            key.append(pattern.getPattern()).append(pattern.getSubtypePatternType());
+        }
+        key.append(' ');
+    }
+
     public boolean isCflowBelow() {
         return m_isCflowBelow;
     }
@@ -86,6 +86,30 @@ public class CflowCompiler implements Opcodes, TransformationConstants {
                 null
         );
 
+        // static INDEX field, the index of this cflow in the CflowState
+        m_cw.visitField(
+                ACC_PUBLIC + ACC_STATIC + ACC_FINAL,
+                CFLOW_INDEX_FIELD_NAME,
+                "I",
+                null,
+                null
+        );
+        MethodVisitor clinit = m_cw.visitMethod(
+                ACC_STATIC,
+                CLINIT_METHOD_NAME,
+                NO_PARAM_RETURN_VOID_SIGNATURE,
+                null,
+                EMPTY_STRING_ARRAY
+        );
+        clinit.visitLdcInsn(m_className.replace('/', '.'));
+        clinit.visitMethodInsn(INVOKESTATIC, CLASS_CLASS, FOR_NAME_METHOD_NAME, FOR_NAME_METHOD_SIGNATURE);
+        clinit.visitMethodInsn(
+                INVOKESTATIC, CFLOW_STATE_CLASS_NAME, GET_CFLOW_INDEX_METHOD_NAME, GET_CFLOW_INDEX_METHOD_SIGNATURE
+        );
+        clinit.visitFieldInsn(PUTSTATIC, m_className, CFLOW_INDEX_FIELD_NAME, "I");
+        clinit.visitInsn(RETURN);
+        clinit.visitMaxs(0, 0);
+
         // private ctor
         MethodVisitor ctor = m_cw.visitMethod(
                 ACC_PRIVATE,
@@ -175,7 +199,8 @@ public class CflowCompiler implements Opcodes, TransformationConstants {
         Class cflowAspectClass = AsmHelper.defineClass(
                 loader,
                 cflowAspect.bytecode,
-                getCflowAspectClassName(cflowID)
+                getCflowAspectClassName(cflowID),
+                AbstractCflowSystemAspect.class
         );
         return cflowAspectClass;
     }
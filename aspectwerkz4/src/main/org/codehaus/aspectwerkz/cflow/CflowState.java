@@ -0,0 +1,108 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.cflow;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The cflow state of a thread, shared by all the JIT gen cflow aspects.
+ * <p/>
+ * Each cflow aspect class is given an index the first time it is used, and the state holds one counter per index
+ * that the cflow aspect increments when entering its cflow and decrements when exiting it. The cflow aspect classes
+ * with the same name in different class loaders are different cflows and have different indexes. The indexes are not
+ * reused once a cflow aspect class has been unloaded. The join points fetch the
+ * state of the current thread once and use it for all the cflow runtime checks of their advices.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class CflowState {
+
+    private static final ThreadLocal s_state = new ThreadLocal() {
+        protected Object initialValue() {
+            return new CflowState();
+        }
+    };
+
+    /**
+     * The index of the cflow aspects, per cflow aspect class
+     */
+    private static final Map s_indexes = new WeakHashMap();
+
+    /**
+     * The next index given to a cflow aspect class
+     */
+    private static int s_nextIndex = 0;
+
+    private int[] m_counters;
+
+    private CflowState() {
+        synchronized (s_indexes) {
+            m_counters = new int[Math.max(8, s_nextIndex)];
+        }
+    }
+
+    /**
+     * Returns the cflow state of the current thread.
+     *
+     * @return the cflow state
+     */
+    public static CflowState getState() {
+        return (CflowState) s_state.get();
+    }
+
+    /**
+     * Returns the index of a cflow aspect class.
+     *
+     * @param cflowAspectClass
+     * @return the index
+     */
+    public static int getIndex(final Class cflowAspectClass) {
+        synchronized (s_indexes) {
+            Integer index = (Integer) s_indexes.get(cflowAspectClass);
+            if (index == null) {
+                index = new Integer(s_nextIndex++);
+                s_indexes.put(cflowAspectClass, index);
+            }
+            return index.intValue();
+        }
+    }
+
+    /**
+     * Enters the cflow of the given index.
+     *
+     * @param index
+     */
+    public void enter(final int index) {
+        if (index >= m_counters.length) {
+            int[] counters = new int[Math.max(index + 1, m_counters.length * 2)];
+            System.arraycopy(m_counters, 0, counters, 0, m_counters.length);
+            m_counters = counters;
+        }
+        m_counters[index]++;
+    }
+
+    /**
+     * Exits the cflow of the given index.
+     *
+     * @param index
+     */
+    public void exit(final int index) {
+        if (index < m_counters.length && m_counters[index] > 0) {
+            m_counters[index]--;
+        }
+    }
+
+    /**
+     * @param index
+     * @return true if in the cflow of the given index
+     */
+    public boolean isInCflow(final int index) {
+        return index < m_counters.length && m_counters[index] > 0;
+    }
+}
@@ -8,16 +8,20 @@
 package org.codehaus.aspectwerkz.compiler;
 
 import org.codehaus.aspectwerkz.definition.DefinitionLoader;
+import org.codehaus.aspectwerkz.definition.DefinitionSnapshot;
 import org.codehaus.aspectwerkz.definition.SystemDefinitionContainer;
+import org.codehaus.aspectwerkz.definition.XmlParser;
 import org.codehaus.aspectwerkz.hook.ClassPreProcessor;
 import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
 import org.codehaus.aspectwerkz.transform.inlining.EmittedJoinPoint;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointIndex;
 import org.codehaus.aspectwerkz.joinpoint.management.JoinPointManager;
 import org.codehaus.aspectwerkz.joinpoint.management.AdviceInfoContainer;
 import org.codehaus.aspectwerkz.util.ContextClassLoader;
 import org.codehaus.aspectwerkz.aspect.AdviceInfo;
 import org.codehaus.aspectwerkz.cflow.CflowBinding;
 import org.codehaus.aspectwerkz.cflow.CflowCompiler;
+import org.dom4j.DocumentException;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -33,10 +37,12 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.zip.CRC32;
@@ -50,7 +56,7 @@ import java.util.zip.ZipOutputStream;
  * <p/>
  * <pre>
  *     java [-Daspectwerkz.classloader.preprocessor={ClassPreProcessorImpl}] -cp [...]
- *     org.codehaus.aspectwerkz.compiler.AspectWerkzC [-verbose] [-haltOnError] [-verify] [-genjp] [-details] [-cp {additional cp i}]*  {target
+ *     org.codehaus.aspectwerkz.compiler.AspectWerkzC [-verbose] [-haltOnError] [-verify] [-genjp] [-aotjp] [-snapshot] [-details] [-cp {additional cp i}]*  {target
  *     1} .. {target n}
  *       {ClassPreProcessorImpl} : full qualified name of the ClassPreProcessor implementation (must be in classpath)
  *          defaults to org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor
@@ -80,6 +86,16 @@ import java.util.zip.ZipOutputStream;
  * <li>AspectWerkzC-preprocessor: full qualified classname of the preprocessor used</li>
  * <li>AspectWerkzC-comment: comments</li>
  * </ul>
+ * <p/>
+ * <h2>Ahead of time join points</h2>
+ * The <i>-aotjp </i> option implies <i>-genjp </i>. The weaved classes then do not load their join points when
+ * initialized, and the generated join points are listed in a META-INF/aspectwerkz/joinpoints.idx index written in the
+ * jar or at the root of the target directory, which is only read when a deployment needs to redefine them.
+ * <p/>
+ * <h2>Definition snapshots</h2>
+ * The <i>-snapshot </i> option writes a binary snapshot next to each META-INF/aop.xml and WEB-INF/aop.xml definition
+ * found in the targets (f.e. META-INF/aop.xml.snapshot), which is then read instead of parsing the XML as long as the
+ * XML is not changed.
  *
  * @author <a href="mailto:alex@gnilux.com">Alexandre Vasseur </a>
  */
@@ -89,6 +105,8 @@ public class AspectWerkzC {
     private static final String COMMAND_LINE_OPTION_VERBOSE = "-verbose";
     private static final String COMMAND_LINE_OPTION_DETAILS = "-details";
     private static final String COMMAND_LINE_OPTION_GENJP = "-genjp";
+    private static final String COMMAND_LINE_OPTION_AOTJP = "-aotjp";
+    private static final String COMMAND_LINE_OPTION_SNAPSHOT = "-snapshot";
     private static final String COMMAND_LINE_OPTION_HALT = "-haltOnError";
     private static final String COMMAND_LINE_OPTION_VERIFY = "-verify";
     private static final String COMMAND_LINE_OPTION_CLASSPATH = "-cp";
@@ -118,10 +136,16 @@ public class AspectWerkzC {
 
     private final static String BACKUP_DIR = "_aspectwerkzc";
 
+    private final static String WEB_INF_AOP_XML_FILE = "WEB-INF/aop.xml";
+
     private boolean verify = false;
 
     private boolean genJp = false;
 
+    private boolean aotJp = false;
+
+    private boolean snapshot = false;
+
     private boolean haltOnError = false;
 
     private String backupDir = BACKUP_DIR;
@@ -152,6 +176,11 @@ public class AspectWerkzC {
      */
     private Map successMap = new HashMap();
 
+    /**
+     * Maps the base directory of the compiled classes to the join points generated ahead of time
+     */
+    private Map directoryIndexes = new HashMap();
+
     private long timer;
 
     /**
@@ -181,6 +210,14 @@ public class AspectWerkzC {
         this.genJp = genpJp;
     }
 
+    public void setAotJp(boolean aotJp) {
+        this.aotJp = aotJp;
+    }
+
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
     public void setHaltOnError(boolean haltOnError) {
         this.haltOnError = haltOnError;
     }
@@ -284,6 +321,8 @@ public class AspectWerkzC {
                     doCompile(classes[i], packaging);
                 } else if (classes[i].getName().toLowerCase().endsWith(".class")) {
                     compileClass(classes[i], prefixPackage);
+                } else if (snapshot && isDefinition(sourceFile.getName() + '/' + classes[i].getName())) {
+                    compileDefinition(classes[i]);
                 } else if (isJarFile(classes[i])) {
                     //@todo: jar encountered in a dir - use case ??
                     compileJar(classes[i]);
@@ -337,9 +376,14 @@ public class AspectWerkzC {
             fos.close();
 
             // if AW and genjp
-            if (out.emittedJoinPoints != null && genJp) {
+            if (out.emittedJoinPoints != null && (genJp || aotJp)) {
+                Set generatedJoinPoints = new HashSet();
                 for (int i = 0; i < out.emittedJoinPoints.length; i++) {
                     EmittedJoinPoint emittedJoinPoint = out.emittedJoinPoints[i];
+                    // call sites can share the same join point class
+                    if (!generatedJoinPoints.add(emittedJoinPoint.getJoinPointClassName())) {
+                        continue;
+                    }
                     //TODO we assume same package here.. make more generic
                     String jpClassNoPackage = emittedJoinPoint.getJoinPointClassName();
                     if (jpClassNoPackage.indexOf('/')>0) {
@@ -352,6 +396,18 @@ public class AspectWerkzC {
                     jpFos.write(compiledJp.bytecode);
                     jpFos.close();
 
+                    if (aotJp) {
+                        String baseDirAbsolutePath = getBaseDir(file.getCanonicalPath(), className);
+                        List joinPoints = (List) directoryIndexes.get(baseDirAbsolutePath);
+                        if (joinPoints == null) {
+                            joinPoints = new ArrayList();
+                            directoryIndexes.put(baseDirAbsolutePath, joinPoints);
+                        }
+                        joinPoints.add(
+                                new JoinPointIndex.Entry(emittedJoinPoint, compiledJp.model.getAdviceInfoContainer())
+                        );
+                    }
+
                     // handle cflow if any
                     CflowCompiler.CompiledCflowAspect[] compiledCflowAspects = compileCflows(compiledJp);
                     if (compiledCflowAspects.length > 0) {
@@ -399,6 +455,40 @@ public class AspectWerkzC {
         }
     }
 
+    /**
+     * Writes the snapshot of the given XML definition file next to it.
+     */
+    public void compileDefinition(File file) throws CompileException {
+        File snapshotFile = new File(file.getAbsolutePath() + DefinitionSnapshot.SNAPSHOT_SUFFIX);
+        FileOutputStream fos = null;
+        try {
+            utility.log(" [snapshot] " + snapshotFile.getCanonicalPath());
+            byte[] xml = XmlParser.readDefinition(file.toURI().toURL());
+            fos = new FileOutputStream(snapshotFile);
+            DefinitionSnapshot.writeSnapshot(xml, fos);
+        } catch (IOException e) {
+            throw new CompileException("write " + snapshotFile.getAbsolutePath() + " failed", e);
+        } catch (DocumentException e) {
+            throw new CompileException("definition " + file.getAbsolutePath() + " has errors", e);
+        } finally {
+            try {
+                fos.close();
+            } catch (Throwable e) {
+                ;
+            }
+        }
+    }
+
+    /**
+     * Checks if the given path, relative to the root of a jar or directory, is an XML definition file.
+     *
+     * @param path
+     * @return true if META-INF/aop.xml or WEB-INF/aop.xml
+     */
+    private static boolean isDefinition(String path) {
+        return path.equals(SystemDefinitionContainer.AOP_META_INF_XML_FILE) || path.equals(WEB_INF_AOP_XML_FILE);
+    }
+
     /**
      * Compile all .class encountered in the .jar/.zip file. <p/>The target.jar is compiled in the
      * target.jar.aspectwerkzc and the target.jar.aspectwerkzc then overrides target.jar on success.
@@ -416,6 +506,9 @@ public class AspectWerkzC {
         try {
             zip = new ZipFile(file);
             zos = new ZipOutputStream(new FileOutputStream(workingFile));
+            Set generatedJoinPoints = new HashSet();
+            List indexedJoinPoints = new ArrayList();
+            List previousIndexedJoinPoints = new ArrayList();
             for (Enumeration e = zip.entries(); e.hasMoreElements();) {
                 ZipEntry ze = (ZipEntry) e.nextElement();
 
@@ -432,6 +525,18 @@ public class AspectWerkzC {
                 }
                 in.close();
 
+                // the join point index is written last
+                if (aotJp && ze.getName().equals(JoinPointIndex.INDEX_RESOURCE_NAME)) {
+                    JoinPointIndex.addJoinPoints(previousIndexedJoinPoints, new ByteArrayInputStream(bos.toByteArray()));
+                    continue;
+                }
+
+                // the definition snapshots are written again after their definition
+                if (snapshot && ze.getName().endsWith(DefinitionSnapshot.SNAPSHOT_SUFFIX)
+                    && isDefinition(ze.getName().substring(0, ze.getName().length() - DefinitionSnapshot.SNAPSHOT_SUFFIX.length()))) {
+                    continue;
+                }
+
                 // transform only .class file
                 AspectWerkzPreProcessor.Output out = null;
                 byte[] transformed = null;
@@ -477,11 +582,40 @@ public class AspectWerkzC {
                 zos.putNextEntry(transformedZe);
                 zos.write(transformed, 0, transformed.length);
 
+                // write the definition snapshot
+                if (snapshot && isDefinition(ze.getName())) {
+                    utility.log(" [compilejar] (snapshot) " + file.getName() + ":" + ze.getName());
+                    ByteArrayOutputStream snapshotBos = new ByteArrayOutputStream();
+                    try {
+                        DefinitionSnapshot.writeSnapshot(transformed, snapshotBos);
+                    } catch (DocumentException ex) {
+                        throw new CompileException("definition " + ze.getName() + " has errors", ex);
+                    }
+                    byte[] snapshotBytes = snapshotBos.toByteArray();
+                    ZipEntry snapshotZe = new ZipEntry(ze.getName() + DefinitionSnapshot.SNAPSHOT_SUFFIX);
+                    snapshotZe.setSize(snapshotBytes.length);
+                    CRC32 snapshotCrc = new CRC32();
+                    snapshotCrc.update(snapshotBytes);
+                    snapshotZe.setCrc(snapshotCrc.getValue());
+                    snapshotZe.setMethod(ZipEntry.DEFLATED);
+                    zos.putNextEntry(snapshotZe);
+                    zos.write(snapshotBytes, 0, snapshotBytes.length);
+                }
+
                 // if AW and genjp
-                if (genJp && out != null && out.emittedJoinPoints!=null) {
+                if ((genJp || aotJp) && out != null && out.emittedJoinPoints!=null) {
                     for (int i = 0; i < out.emittedJoinPoints.length; i++) {
                         EmittedJoinPoint emittedJoinPoint = out.emittedJoinPoints[i];
+                        // call sites can share the same join point class
+                        if (!generatedJoinPoints.add(emittedJoinPoint.getJoinPointClassName())) {
+                            continue;
+                        }
                         JoinPointManager.CompiledJoinPoint compiledJp = compileJoinPoint(emittedJoinPoint, compilationLoader);
+                        if (aotJp) {
+                            indexedJoinPoints.add(
+                                    new JoinPointIndex.Entry(emittedJoinPoint, compiledJp.model.getAdviceInfoContainer())
+                            );
+                        }
                         utility.log(" [compilejar] (genjp) " + file.getName() + ":" + emittedJoinPoint.getJoinPointClassName());
                         ZipEntry jpZe = new ZipEntry(emittedJoinPoint.getJoinPointClassName()+".class");
                         jpZe.setSize(compiledJp.bytecode.length);
@@ -510,6 +644,25 @@ public class AspectWerkzC {
                     }
                 }
             }
+
+            // write the join point index
+            if (aotJp) {
+                List joinPoints = mergeJoinPointIndex(indexedJoinPoints, previousIndexedJoinPoints);
+                if (!joinPoints.isEmpty()) {
+                    utility.log(" [compilejar] (aotjp) " + file.getName() + ":" + JoinPointIndex.INDEX_RESOURCE_NAME);
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    JoinPointIndex.writeJoinPoints(joinPoints, bos);
+                    byte[] index = bos.toByteArray();
+                    ZipEntry indexZe = new ZipEntry(JoinPointIndex.INDEX_RESOURCE_NAME);
+                    indexZe.setSize(index.length);
+                    CRC32 indexCrc = new CRC32();
+                    indexCrc.update(index);
+                    indexZe.setCrc(indexCrc.getValue());
+                    indexZe.setMethod(ZipEntry.DEFLATED);
+                    zos.putNextEntry(indexZe);
+                    zos.write(index, 0, index.length);
+                }
+            }
             zip.close();
             zos.close();
 
@@ -552,6 +705,7 @@ public class AspectWerkzC {
         backup(source, sourceIndex);
         try {
             doCompile(source, null);
+            writeDirectoryIndexes();
         } catch (CompileException e) {
             utility.log(" [aspectwerkzc] compilation encountered an error");
             e.printStackTrace();
@@ -563,6 +717,72 @@ public class AspectWerkzC {
         return true;
     }
 
+    /**
+     * Writes the join point indexes of the classes compiled in directories, merged with the existing ones.
+     */
+    private void writeDirectoryIndexes() throws CompileException {
+        for (Iterator it = directoryIndexes.entrySet().iterator(); it.hasNext();) {
+            Map.Entry entry = (Map.Entry) it.next();
+            File indexFile = new File(
+                    (String) entry.getKey(),
+                    JoinPointIndex.INDEX_RESOURCE_NAME.replace('/', File.separatorChar)
+            );
+            InputStream in = null;
+            FileOutputStream fos = null;
+            try {
+                List previousJoinPoints = new ArrayList();
+                if (indexFile.exists()) {
+                    in = new FileInputStream(indexFile);
+                    JoinPointIndex.addJoinPoints(previousJoinPoints, in);
+                    in.close();
+                }
+                List joinPoints = mergeJoinPointIndex((List) entry.getValue(), previousJoinPoints);
+                (new File(indexFile.getParent())).mkdirs();
+                utility.log(" [aotjp] " + indexFile.getCanonicalPath());
+                fos = new FileOutputStream(indexFile);
+                JoinPointIndex.writeJoinPoints(joinPoints, fos);
+                fos.close();
+            } catch (IOException e) {
+                throw new CompileException("write " + indexFile.getAbsolutePath() + " failed", e);
+            } finally {
+                try {
+                    in.close();
+                } catch (Throwable e) {
+                    ;
+                }
+                try {
+                    fos.close();
+                } catch (Throwable e) {
+                    ;
+                }
+            }
+        }
+        directoryIndexes.clear();
+    }
+
+    /**
+     * Merges the join points generated by this compilation with the ones from a previous compilation,
+     * the former taking precedence.
+     *
+     * @param joinPoints
+     * @param previousJoinPoints
+     * @return the merged list of JoinPointIndex.Entry
+     */
+    private static List mergeJoinPointIndex(List joinPoints, List previousJoinPoints) {
+        Set joinPointClassNames = new HashSet();
+        List merged = new ArrayList(joinPoints);
+        for (Iterator it = joinPoints.iterator(); it.hasNext();) {
+            joinPointClassNames.add(((JoinPointIndex.Entry) it.next()).getJoinPoint().getJoinPointClassName());
+        }
+        for (Iterator it = previousJoinPoints.iterator(); it.hasNext();) {
+            JoinPointIndex.Entry joinPoint = (JoinPointIndex.Entry) it.next();
+            if (joinPointClassNames.add(joinPoint.getJoinPoint().getJoinPointClassName())) {
+                merged.add(joinPoint);
+            }
+        }
+        return merged;
+    }
+
     /**
      * Set up the compilation path by building a URLClassLoader with all targets in
      *
@@ -600,7 +820,7 @@ public class AspectWerkzC {
         System.out.println("Usage:");
         System.out
                 .println(
-                        "java -cp ... org.codehaus.aspectwerkz.compiler.AspectWerkzC [-verbose] [-haltOnError] [-verify]  <target 1> .. <target n>"
+                        "java -cp ... org.codehaus.aspectwerkz.compiler.AspectWerkzC [-verbose] [-haltOnError] [-verify] [-genjp] [-aotjp] [-snapshot]  <target 1> .. <target n>"
                 );
         System.out.println("  <target i> : exploded dir, jar, zip files to compile");
     }
@@ -625,6 +845,10 @@ public class AspectWerkzC {
                 compiler.setVerify(Boolean.TRUE.equals(param.getValue()));
             } else if (COMMAND_LINE_OPTION_GENJP.equals(param.getKey())) {
                 compiler.setGenJp(Boolean.TRUE.equals(param.getValue()));
+            } else if (COMMAND_LINE_OPTION_AOTJP.equals(param.getKey())) {
+                compiler.setAotJp(Boolean.TRUE.equals(param.getValue()));
+            } else if (COMMAND_LINE_OPTION_SNAPSHOT.equals(param.getKey())) {
+                compiler.setSnapshot(Boolean.TRUE.equals(param.getValue()));
             } else if (COMMAND_LINE_OPTION_DETAILS.equals(param.getKey())) {
                 compiler.setDetails(Boolean.TRUE.equals(param.getValue()));
             }
@@ -739,6 +963,10 @@ public class AspectWerkzC {
                 options.put(COMMAND_LINE_OPTION_VERBOSE, Boolean.TRUE);
             } else if (COMMAND_LINE_OPTION_GENJP.equals(args[i])) {
                 options.put(COMMAND_LINE_OPTION_GENJP, Boolean.TRUE);
+            } else if (COMMAND_LINE_OPTION_AOTJP.equals(args[i])) {
+                options.put(COMMAND_LINE_OPTION_AOTJP, Boolean.TRUE);
+            } else if (COMMAND_LINE_OPTION_SNAPSHOT.equals(args[i])) {
+                options.put(COMMAND_LINE_OPTION_SNAPSHOT, Boolean.TRUE);
             } else if (COMMAND_LINE_OPTION_DETAILS.equals(args[i])) {
                 options.put(COMMAND_LINE_OPTION_DETAILS, Boolean.TRUE);
             } else if (COMMAND_LINE_OPTION_HALT.equals(args[i])) {
@@ -808,7 +1036,9 @@ public class AspectWerkzC {
      */
     private AspectWerkzPreProcessor.Output preProcess(ClassPreProcessor preProcessor, String className, byte[] bytecode, ClassLoader compilationLoader) {
         if (isAspectWerkzPreProcessor) {
-            return ((AspectWerkzPreProcessor)preProcessor).preProcessWithOutput(className, bytecode, compilationLoader);
+            return ((AspectWerkzPreProcessor)preProcessor).preProcessWithOutput(
+                    className, bytecode, compilationLoader, aotJp
+            );
         } else {
             byte[] newBytes = preProcessor.preProcess(className, bytecode, compilationLoader);
             AspectWerkzPreProcessor.Output out = new AspectWerkzPreProcessor.Output();
@@ -859,7 +1089,7 @@ public class AspectWerkzC {
      */
     private CflowCompiler.CompiledCflowAspect[] compileCflows(JoinPointManager.CompiledJoinPoint jp) {
         List allCflowBindings = new ArrayList();
-        AdviceInfoContainer adviceInfoContainer = jp.compilationInfo.getInitialModel().getAdviceInfoContainer();
+        AdviceInfoContainer adviceInfoContainer = jp.model.getAdviceInfoContainer();
 
         AdviceInfo[] advices = adviceInfoContainer.getAllAdviceInfos();
         for (int i = 0; i < advices.length; i++) {
@@ -24,6 +24,8 @@ import org.codehaus.aspectwerkz.transform.inlining.AspectModelManager;
  * <li>verbose: [optional] flag marking the weaver verbosity [true / false]</li>
  * <li>details: [optional] flag marking the weaver verbosity on matching [true / false, requires verbose=true]</li>
  * <li>genjp: [optional] flag marking the need to keep the generated jp classes [true / false]</li>
+ * <li>aotjp: [optional] flag marking the generated jp classes as linked ahead of time, implies genjp [true / false]</li>
+ * <li>snapshot: [optional] flag marking the need to write a binary snapshot of the aop.xml definitions [true / false]</li>
  * <li>taskverbose: [optional] flag marking the task verbose [true / false]</li>
  * <li>definition: [optional] path to aspect definition xml file (optional, can be found on the path as META-INF/aop.xml - even several)</li>
  * <li>aspectmodels: [optional] models FQN list separated by ":" (see AspectModelManager)</li>
@@ -65,6 +67,8 @@ public class AspectWerkzCTask extends Task {
     private boolean m_verbose;
     private boolean m_details;
     private boolean m_genjp;
+    private boolean m_aotjp;
+    private boolean m_snapshot;
     private boolean m_taskVerbose = false;
     private String m_aspectModels;
     private File m_backupdir;
@@ -107,6 +111,22 @@ public class AspectWerkzCTask extends Task {
         m_genjp = genjp;
     }
 
+    /**
+     * aotjp=..
+     * @param aotjp
+     */
+    public void setAotjp(boolean aotjp) {
+        m_aotjp = aotjp;
+    }
+
+    /**
+     * snapshot=..
+     * @param snapshot
+     */
+    public void setSnapshot(boolean snapshot) {
+        m_snapshot = snapshot;
+    }
+
     /**
      * compilerverbose=..
      * @param verbose
@@ -206,6 +226,8 @@ public class AspectWerkzCTask extends Task {
             compiler.setHaltOnError(true);
             compiler.setVerbose(m_taskVerbose);
             compiler.setGenJp(m_genjp);
+            compiler.setAotJp(m_aotjp);
+            compiler.setSnapshot(m_snapshot);
             compiler.setVerify(false);
 
             if (m_definitionFile != null) {
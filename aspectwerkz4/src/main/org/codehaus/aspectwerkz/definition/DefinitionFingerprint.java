@@ -0,0 +1,211 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.definition;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+import org.codehaus.aspectwerkz.exception.WrappedRuntimeException;
+import org.codehaus.aspectwerkz.expression.ExpressionInfo;
+import org.codehaus.aspectwerkz.expression.ExpressionNamespace;
+import org.codehaus.aspectwerkz.reflect.MethodInfo;
+
+/**
+ * Fingerprint of the definitions visible from a class loader, written in the classes by the weaver (see
+ * WovenClassAttribute) so that a class weaved with the same definitions, f.e. by the offline compiler, is not weaved
+ * again when it is loaded.
+ * <p/>
+ * The fingerprint is a digest of the content of the definitions (include, exclude and prepare packages, global
+ * pointcuts, aspects with their parameters, pointcuts and advices, mixins, interface introductions and deployment
+ * scopes), that does not depend on the class loaders: the virtual definitions are named after their class loader,
+ * hence their name is left out and two identical ones count once.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class DefinitionFingerprint {
+
+    private static final String DIGEST_ALGORITHM = "MD5";
+
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * The last fingerprint computed per class loader
+     */
+    private static final Map s_fingerprints = new WeakHashMap();
+
+    private final Set m_definitions;
+
+    private final int m_definitionsVersion;
+
+    private final byte[] m_fingerprint;
+
+    private DefinitionFingerprint(final Set definitions, final int definitionsVersion, final byte[] fingerprint) {
+        m_definitions = definitions;
+        m_definitionsVersion = definitionsVersion;
+        m_fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns the fingerprint of the definitions visible from the given class loader. It is computed again only when
+     * the definitions have changed since the last call.
+     *
+     * @param loader
+     * @return the fingerprint
+     */
+    public static byte[] getFingerprintFor(final ClassLoader loader) {
+        final int definitionsVersion = SystemDefinitionContainer.getDefinitionsVersion();
+        final Set definitions = SystemDefinitionContainer.getDefinitionsFor(loader);
+        synchronized (s_fingerprints) {
+            final DefinitionFingerprint fingerprint = (DefinitionFingerprint) s_fingerprints.get(loader);
+            if (fingerprint != null
+                && fingerprint.m_definitions == definitions
+                && fingerprint.m_definitionsVersion == definitionsVersion) {
+                return fingerprint.m_fingerprint;
+            }
+        }
+        final byte[] fingerprint = getFingerprint(definitions);
+        synchronized (s_fingerprints) {
+            s_fingerprints.put(loader, new DefinitionFingerprint(definitions, definitionsVersion, fingerprint));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Computes the fingerprint of the given definitions.
+     *
+     * @param definitions a set of SystemDefinition
+     * @return the fingerprint
+     */
+    public static byte[] getFingerprint(final Set definitions) {
+        // sorted, and identical virtual definitions count once
+        final Set descriptions = new TreeSet();
+        for (Iterator it = definitions.iterator(); it.hasNext();) {
+            descriptions.add(describe((SystemDefinition) it.next()));
+        }
+        try {
+            final MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            for (Iterator it = descriptions.iterator(); it.hasNext();) {
+                digest.update(((String) it.next()).getBytes(ENCODING));
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new WrappedRuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new WrappedRuntimeException(e);
+        }
+    }
+
+    private static String describe(final SystemDefinition definition) {
+        final StringBuffer buf = new StringBuffer();
+        final String uuid = definition.getUuid();
+        if (uuid.startsWith(SystemDefinitionContainer.VIRTUAL_SYSTEM_ID_PREFIX)) {
+            buf.append("system:\n");
+        } else {
+            buf.append("system:").append(uuid).append('\n');
+            // the global pointcuts
+            buf.append("pointcuts:");
+            buf.append(new TreeMap(ExpressionNamespace.getNamespace(uuid).getExpressionInfos())).append('\n');
+        }
+        buf.append("include:").append(new TreeSet(definition.getIncludePackages())).append('\n');
+        buf.append("exclude:").append(new TreeSet(definition.getExcludePackages())).append('\n');
+        buf.append("prepare:").append(new TreeSet(definition.getPreparePackages())).append('\n');
+
+        final Map aspects = new TreeMap();
+        for (Iterator it = definition.getAspectDefinitions().iterator(); it.hasNext();) {
+            final AspectDefinition aspectDef = (AspectDefinition) it.next();
+            aspects.put(aspectDef.getName(), describe(aspectDef));
+        }
+        buf.append(aspects.values());
+
+        final Set mixins = new TreeSet();
+        for (Iterator it = definition.getMixinDefinitions().iterator(); it.hasNext();) {
+            final MixinDefinition mixinDef = (MixinDefinition) it.next();
+            final StringBuffer mixin = new StringBuffer("mixin:");
+            mixin.append(mixinDef.getMixinImpl().getName()).append(',');
+            mixin.append(mixinDef.getDeploymentModel()).append(',');
+            mixin.append(mixinDef.isTransient()).append(',');
+            mixin.append(mixinDef.getFactoryClassName()).append(',');
+            mixin.append(new TreeMap(mixinDef.getParameters())).append(',');
+            appendExpressions(mixin, mixinDef.getExpressionInfos());
+            mixins.add(mixin.toString());
+        }
+        buf.append(mixins);
+
+        final Set deploymentScopes = new TreeSet();
+        for (Iterator it = definition.getDeploymentScopes().iterator(); it.hasNext();) {
+            final DeploymentScope deploymentScope = (DeploymentScope) it.next();
+            deploymentScopes.add(deploymentScope.getName() + '=' + deploymentScope.getExpression());
+        }
+        buf.append("scopes:").append(deploymentScopes).append('\n');
+        return buf.toString();
+    }
+
+    private static String describe(final AspectDefinition aspectDef) {
+        final StringBuffer buf = new StringBuffer("aspect:");
+        buf.append(aspectDef.getName()).append(',');
+        buf.append(aspectDef.getClassName()).append(',');
+        buf.append(aspectDef.getDeploymentModel()).append(',');
+        buf.append(aspectDef.getContainerClassName()).append(',');
+        buf.append(new TreeMap(aspectDef.getParameters())).append('\n');
+
+        final Set pointcuts = new TreeSet();
+        for (Iterator it = aspectDef.getPointcutDefinitions().iterator(); it.hasNext();) {
+            pointcuts.add(((PointcutDefinition) it.next()).getExpression());
+        }
+        buf.append("pointcuts:").append(pointcuts).append('\n');
+
+        final Set advices = new TreeSet();
+        for (Iterator it = aspectDef.getAdviceDefinitions().iterator(); it.hasNext();) {
+            final AdviceDefinition adviceDef = (AdviceDefinition) it.next();
+            advices.add(
+                    adviceDef.getType() + ":" + describe(adviceDef) + '=' + adviceDef.getExpressionInfo()
+                    + ',' + adviceDef.getSpecialArgumentType()
+            );
+        }
+        buf.append("advices:").append(advices).append('\n');
+
+        final Set introductions = new TreeSet();
+        for (Iterator it = aspectDef.getInterfaceIntroductionDefinitions().iterator(); it.hasNext();) {
+            final InterfaceIntroductionDefinition introDef = (InterfaceIntroductionDefinition) it.next();
+            final StringBuffer introduction = new StringBuffer("introduction:");
+            introduction.append(introDef.getName()).append(',');
+            introduction.append(new TreeSet(introDef.getInterfaceClassNames())).append(',');
+            appendExpressions(introduction, introDef.getExpressionInfos());
+            introductions.add(introduction.toString());
+        }
+        buf.append(introductions).append('\n');
+        return buf.toString();
+    }
+
+    /**
+     * The name of an advice holds the names of its parameters only when the aspect class has been read with its debug
+     * information, hence the advice method is described by its name and signature instead.
+     */
+    private static String describe(final AdviceDefinition adviceDef) {
+        final MethodInfo methodInfo = adviceDef.getMethodInfo();
+        if (methodInfo == null) {
+            return adviceDef.getName();
+        }
+        return methodInfo.getName() + methodInfo.getSignature();
+    }
+
+    private static void appendExpressions(final StringBuffer buf, final ExpressionInfo[] expressionInfos) {
+        final Set expressions = new TreeSet();
+        for (int i = 0; i < expressionInfos.length; i++) {
+            expressions.add(String.valueOf(expressionInfos[i]));
+        }
+        buf.append(expressions);
+    }
+}
@@ -0,0 +1,192 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.definition;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.codehaus.aspectwerkz.exception.WrappedRuntimeException;
+import org.dom4j.Attribute;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.DocumentFactory;
+import org.dom4j.Element;
+import org.dom4j.Node;
+
+/**
+ * Binary snapshot of an XML definition file, written by the offline compiler (see AspectWerkzC -snapshot) next to
+ * the definition file, f.e. META-INF/aop.xml.snapshot.
+ * <p/>
+ * The snapshot holds the element tree of the definition as parsed (DTD default attributes included) so that it can be
+ * turned back into a document with one read, without the XML parsing and the DTD resolution. It also holds the digest
+ * of the XML it was made from and is ignored if the XML has changed since.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class DefinitionSnapshot {
+
+    /**
+     * The suffix of the snapshot resource, appended to the definition resource name
+     */
+    public static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private static final int MAGIC = 0x41574453;
+
+    private static final int VERSION = 1;
+
+    private static final byte END = 0;
+
+    private static final byte ELEMENT = 1;
+
+    private static final byte TEXT = 2;
+
+    private static final String DIGEST_ALGORITHM = "MD5";
+
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Writes the snapshot of the given XML definition.
+     *
+     * @param xml the XML definition
+     * @param out
+     * @throws DocumentException if the XML has errors
+     * @throws IOException
+     */
+    public static void writeSnapshot(final byte[] xml, final OutputStream out) throws DocumentException, IOException {
+        final Document document = XmlParser.createDocument(new ByteArrayInputStream(xml));
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        final byte[] digest = digest(xml);
+        data.writeInt(digest.length);
+        data.write(digest);
+        writeElement(document.getRootElement(), data);
+        data.flush();
+    }
+
+    /**
+     * Reads the snapshot of the given XML definition, if any.
+     *
+     * @param url the URL of the XML definition
+     * @param xml the XML definition
+     * @return the document, or null if there is no snapshot or if it is stale or unreadable
+     */
+    public static Document readSnapshot(final URL url, final byte[] xml) {
+        final InputStream in;
+        try {
+            in = new URL(url.toExternalForm() + SNAPSHOT_SUFFIX).openStream();
+        } catch (IOException e) {
+            // no snapshot
+            return null;
+        }
+        try {
+            final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                return null;
+            }
+            final byte[] digest = new byte[data.readInt()];
+            data.readFully(digest);
+            if (!Arrays.equals(digest, digest(xml))) {
+                return null;
+            }
+            final DocumentFactory factory = DocumentFactory.getInstance();
+            final Document document = factory.createDocument();
+            if (data.readByte() != ELEMENT) {
+                return null;
+            }
+            document.setRootElement(readElement(factory, data));
+            return document;
+        } catch (IOException e) {
+            System.err.println("AspectWerkz - WARN - could not read definition snapshot for " + url + ": " + e.toString());
+            return null;
+        } finally {
+            try {
+                in.close();
+            } catch (Throwable t) {
+                ;
+            }
+        }
+    }
+
+    private static void writeElement(final Element element, final DataOutputStream data) throws IOException {
+        data.writeByte(ELEMENT);
+        writeString(element.getName(), data);
+        data.writeInt(element.attributeCount());
+        for (Iterator it = element.attributeIterator(); it.hasNext();) {
+            Attribute attribute = (Attribute) it.next();
+            writeString(attribute.getName(), data);
+            writeString(attribute.getValue(), data);
+        }
+        for (Iterator it = element.content().iterator(); it.hasNext();) {
+            Node node = (Node) it.next();
+            switch (node.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    writeElement((Element) node, data);
+                    break;
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                    data.writeByte(TEXT);
+                    writeString(node.getText(), data);
+                    break;
+                default:
+                    // comments and processing instructions are not part of the definition
+                    break;
+            }
+        }
+        data.writeByte(END);
+    }
+
+    private static Element readElement(final DocumentFactory factory, final DataInputStream data) throws IOException {
+        final Element element = factory.createElement(readString(data));
+        final int attributeCount = data.readInt();
+        for (int i = 0; i < attributeCount; i++) {
+            element.addAttribute(readString(data), readString(data));
+        }
+        byte kind;
+        while ((kind = data.readByte()) != END) {
+            if (kind == ELEMENT) {
+                element.add(readElement(factory, data));
+            } else if (kind == TEXT) {
+                element.addText(readString(data));
+            } else {
+                throw new IOException("corrupted definition snapshot");
+            }
+        }
+        return element;
+    }
+
+    private static void writeString(final String string, final DataOutputStream data) throws IOException {
+        final byte[] bytes = string.getBytes(ENCODING);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(final DataInputStream data) throws IOException {
+        final byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return new String(bytes, ENCODING);
+    }
+
+    private static byte[] digest(final byte[] xml) {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM).digest(xml);
+        } catch (NoSuchAlgorithmException e) {
+            throw new WrappedRuntimeException(e);
+        }
+    }
+}
@@ -74,7 +74,12 @@ public class SystemDefinitionContainer {
      */
     private static boolean s_disableSystemWideDefinition = false;
 
-    private static final String VIRTUAL_SYSTEM_ID_PREFIX = "virtual_";
+    static final String VIRTUAL_SYSTEM_ID_PREFIX = "virtual_";
+
+    /**
+     * The version of the definitions, incremented each time the definitions of a registered class loader change.
+     */
+    private static volatile int s_definitionsVersion = 0;
 
     /**
      * Register a new ClassLoader in the system and gather all its definition and parents definitions.
@@ -175,10 +180,31 @@ public class SystemDefinitionContainer {
             // update
             Set defs = (Set) s_classLoaderSystemDefinitions.get(loader);
             defs.addAll(definitions);
+            s_definitionsVersion++;
             dump(loader);
         }
     }
 
+    /**
+     * Signals that the definitions of a registered class loader have changed, f.e. when an aspect is deployed or
+     * undeployed at runtime.
+     */
+    public static void definitionsChanged() {
+        synchronized (s_classLoaderSystemDefinitions) {
+            s_definitionsVersion++;
+        }
+    }
+
+    /**
+     * Returns the version of the definitions, that changes each time the definitions of a registered class loader
+     * change. A class weaved with a version of the definitions must not be used once the version has changed.
+     *
+     * @return the version
+     */
+    public static int getDefinitionsVersion() {
+        return s_definitionsVersion;
+    }
+
     private static void flushHierarchicalSystemDefinitionsBelow(ClassLoader loader) {
         // lock already owned
         //synchronized (s_classLoaderSystemDefinitions) {
@@ -17,6 +17,8 @@ import org.dom4j.io.SAXReader;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -45,9 +47,9 @@ public class XmlParser {
     private final static String DTD_PUBLIC_ID_ALIAS = "-//AspectWerkz//DTD//EN";
 
     /**
-     * A handler to the DTD stream so that we are only using one file descriptor
+     * The DTD resource name. The DTD is opened for each parsing since the parser closes it.
      */
-    private final static InputStream DTD_STREAM = XmlParser.class.getResourceAsStream("/aspectwerkz2.dtd");
+    private final static String DTD_RESOURCE = "/aspectwerkz2.dtd";
 
     /**
      * The timestamp, holding the last time that the definition was parsed.
@@ -167,6 +169,9 @@ public class XmlParser {
 
     /**
      * Parses the XML definition file not using the cache.
+     * <p/>
+     * If the definition has an up to date snapshot (see DefinitionSnapshot), the document is read from the snapshot
+     * instead of being parsed.
      *
      * @param loader the current class loader
      * @param url    the URL to the definition file
@@ -174,7 +179,11 @@ public class XmlParser {
      */
     public static Set parseNoCache(final ClassLoader loader, final URL url) {
         try {
-            Document document = createDocument(url);
+            byte[] xml = readDefinition(url);
+            Document document = DefinitionSnapshot.readSnapshot(url, xml);
+            if (document == null) {
+                document = createDocument(new ByteArrayInputStream(xml));
+            }
             s_definitions = DocumentParser.parse(loader, document);
             return s_definitions;
         } catch (Exception e) {
@@ -234,18 +243,41 @@ public class XmlParser {
         }
     }
 
-//    /**
-//     * Creates a DOM document.
-//     *
-//     * @param stream the stream containing the XML
-//     * @return the DOM document
-//     * @throws DocumentException
-//     */
-//    public static Document createDocument(final InputStream stream) throws DocumentException {
-//        SAXReader reader = new SAXReader();
-//        setEntityResolver(reader);
-//        return reader.read(stream);
-//    }
+    /**
+     * Creates a DOM document.
+     *
+     * @param stream the stream containing the XML
+     * @return the DOM document
+     * @throws DocumentException
+     */
+    public static Document createDocument(final InputStream stream) throws DocumentException {
+        SAXReader reader = new SAXReader();
+        setEntityResolver(reader);
+        return reader.read(stream);
+    }
+
+    /**
+     * Reads the XML definition file.
+     *
+     * @param url the URL to the file containing the XML
+     * @return the XML bytes
+     * @throws IOException
+     */
+    public static byte[] readDefinition(final URL url) throws IOException {
+        InputStream in = null;
+        try {
+            in = url.openStream();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                bos.write(buffer, 0, length);
+            }
+            return bos.toByteArray();
+        } finally {
+            try {in.close();} catch (Throwable t) {;}
+        }
+    }
 
     /**
      * Creates a DOM document.
@@ -267,7 +299,7 @@ public class XmlParser {
         EntityResolver resolver = new EntityResolver() {
             public InputSource resolveEntity(String publicId, String systemId) {
                 if (publicId.equals(DTD_PUBLIC_ID) || publicId.equals(DTD_PUBLIC_ID_ALIAS)) {
-                    InputStream in = DTD_STREAM;
+                    InputStream in = XmlParser.class.getResourceAsStream(DTD_RESOURCE);
                     if (in == null) {
                         System.err.println("AspectWerkz - WARN - could not open DTD");
                         return new InputSource();
@@ -49,7 +49,6 @@ import org.codehaus.aspectwerkz.reflect.ClassInfoHelper;
 import org.codehaus.aspectwerkz.reflect.StaticInitializationInfo;
 import org.codehaus.aspectwerkz.util.Util;
 import org.codehaus.aspectwerkz.annotation.AnnotationInfo;
-import org.codehaus.backport175.reader.bytecode.AnnotationElement;
 
 import java.util.List;
 import java.util.Iterator;
@@ -291,6 +290,22 @@ public class AdvisedClassFilterExpressionVisitor extends ExpressionVisitor imple
         return null;// is that good enough ? For execution PC we would optimize some
     }
 
+    /**
+     * The member patterns are undetermined here, so that the result is less precise than the one of the full matching
+     * cached on the node, and is not cached.
+     */
+    public Object visit(ASTHasMethod node, Object data) {
+        return matchHasMethod(node, getWithinClassInfo((ExpressionContext) data));
+    }
+
+    /**
+     * The member patterns are undetermined here, so that the result is less precise than the one of the full matching
+     * cached on the node, and is not cached.
+     */
+    public Object visit(ASTHasField node, Object data) {
+        return matchHasField(node, getWithinClassInfo((ExpressionContext) data));
+    }
+
     public Object visit(ASTThis node, Object data) {
         ExpressionContext context = (ExpressionContext) data;
         if (context.hasWithinReflectionInfo()) {
@@ -395,14 +410,7 @@ public class AdvisedClassFilterExpressionVisitor extends ExpressionVisitor imple
 
     public Object visit(ASTAttribute node, Object data) {
         // called for class level annotation matching f.e. in a within context
-        boolean matchAnnotation = false;
-        AnnotationElement.Annotation[] annotations = (AnnotationElement.Annotation[]) data;
-        for (int i = 0; i < annotations.length; i++) {
-            AnnotationElement.Annotation annotation = annotations[i];
-            if (annotation.getInterfaceName().equals(node.getName())) {
-                matchAnnotation = true;
-            }
-        }
+        boolean matchAnnotation = hasAnnotation(node, data);
         if (node.isNot()) {
             return Util.booleanValueOf(!matchAnnotation);
         } else {
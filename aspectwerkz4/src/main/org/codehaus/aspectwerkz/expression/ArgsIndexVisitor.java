@@ -24,8 +24,6 @@ import org.codehaus.aspectwerkz.util.ContextClassLoader;
 
 import java.util.Iterator;
 
-import gnu.trove.TIntIntHashMap;
-import gnu.trove.TObjectIntHashMap;
 
 /**
  * A visitor to compute the args index of the target (matching) method/constructor which match the advice args. Note:
@@ -44,15 +42,22 @@ public class ArgsIndexVisitor extends ExpressionVisitor {
     private ClassLoader m_classLoader;
 
     /**
-     * Update the given context with its runtime information (this, target, args).
+     * The bindings computed by this visit.
+     */
+    private ExpressionBindings m_bindings = new ExpressionBindings();
+
+    /**
+     * Computes the runtime information (this, target, args) of the expression in the given context.
      * It should be called for each advice.
      *
      * @param expressionInfo
      * @param context
+     * @param loader
+     * @return the bindings
      */
-    public static void updateContextForRuntimeInformation(final ExpressionInfo expressionInfo,
-                                                          final ExpressionContext context,
-                                                          final ClassLoader loader) {
+    public static ExpressionBindings getBindings(final ExpressionInfo expressionInfo,
+                                                 final ExpressionContext context,
+                                                 final ClassLoader loader) {
         ArgsIndexVisitor visitor = new ArgsIndexVisitor(
                 expressionInfo, expressionInfo.toString(),
                 expressionInfo.getNamespace(),
@@ -60,6 +65,7 @@ public class ArgsIndexVisitor extends ExpressionVisitor {
                 loader
         );
         visitor.match(context);
+        return visitor.m_bindings;
     }
 
     private ArgsIndexVisitor(final ExpressionInfo expressionInfo,
@@ -86,18 +92,18 @@ public class ArgsIndexVisitor extends ExpressionVisitor {
                 m_classLoader
         );
 
-        // keep track of the state we already had
-        String targetSoFar = context.m_targetBoundedName;
-        String thisSoFar = context.m_thisBoundedName;
-        boolean targetWithRuntimeCheckSoFar = context.m_targetWithRuntimeCheck;
-        TObjectIntHashMap exprIndexToTargetIndexSoFar = (TObjectIntHashMap) context.m_exprIndexToTargetIndex.clone();
+        // the referenced visit has its own bindings, merged with the state we already had
+        String targetSoFar = m_bindings.m_targetBoundedName;
+        String thisSoFar = m_bindings.m_thisBoundedName;
+        boolean targetWithRuntimeCheckSoFar = m_bindings.m_targetWithRuntimeCheck;
+        ExpressionBindings bindingsSoFar = m_bindings;
 
-        context.resetRuntimeState();
         Boolean match = referenced.matchUndeterministic(context);
+        ExpressionBindings bindings = referenced.m_bindings;
 
         // merge the state
-        if (context.m_targetBoundedName == null) {
-            context.m_targetBoundedName = targetSoFar;
+        if (bindings.m_targetBoundedName == null) {
+            bindings.m_targetBoundedName = targetSoFar;
         } else if (targetSoFar != null) {
             if (node.jjtGetNumChildren() == 1) {
                 String referenceCallArg = ((ASTArgParameter) node.jjtGetChild(0)).getTypePattern().getPattern();
@@ -106,8 +112,8 @@ public class ArgsIndexVisitor extends ExpressionVisitor {
                 }
             }
         }
-        if (context.m_thisBoundedName == null) {
-            context.m_thisBoundedName = thisSoFar;
+        if (bindings.m_thisBoundedName == null) {
+            bindings.m_thisBoundedName = thisSoFar;
         } else if (thisSoFar != null) {
             if (node.jjtGetNumChildren() == 1) {
                 String referenceCallArg = ((ASTArgParameter) node.jjtGetChild(0)).getTypePattern().getPattern();
@@ -116,54 +122,54 @@ public class ArgsIndexVisitor extends ExpressionVisitor {
                 }
             }
         }
-        if (!context.m_targetWithRuntimeCheck) {
+        if (!bindings.m_targetWithRuntimeCheck) {
             // restore
-            context.m_targetWithRuntimeCheck = targetWithRuntimeCheckSoFar;
+            bindings.m_targetWithRuntimeCheck = targetWithRuntimeCheckSoFar;
         }
-        if (context.m_exprIndexToTargetIndex.isEmpty()) {
+        if (!bindings.hasArgBindings()) {
             // restore
-            context.m_exprIndexToTargetIndex = exprIndexToTargetIndexSoFar;
-        } else if (!exprIndexToTargetIndexSoFar.isEmpty()) {
+            bindings.m_exprIndexToTargetIndex = bindingsSoFar.m_exprIndexToTargetIndex;
+        } else if (bindingsSoFar.hasArgBindings()) {
             //should merge ?
             throw new UnsupportedOperationException("should not occur");
         }
 
 
         // update the this and target bounded name from this last visit as well as args
-        TObjectIntHashMap exprToTargetArgIndexes = new TObjectIntHashMap();
+        m_bindings = new ExpressionBindings();
+        m_bindings.m_targetWithRuntimeCheck = bindings.m_targetWithRuntimeCheck;
+        m_bindings.m_targetBoundedName = bindings.m_targetBoundedName;
+        m_bindings.m_thisBoundedName = bindings.m_thisBoundedName;
         for (int i = 0; i < node.jjtGetNumChildren(); i++) {
             String referenceCallArg = ((ASTArgParameter) node.jjtGetChild(i)).getTypePattern().getPattern();
             String referentArg = expressionInfo.getArgumentNameAtIndex(i);
-            if (referentArg.equals(context.m_targetBoundedName)) {
-                context.m_targetBoundedName = referenceCallArg;
+            if (referentArg.equals(bindings.m_targetBoundedName)) {
+                m_bindings.m_targetBoundedName = referenceCallArg;
                 assertIsInstanceOf(
                         expressionInfo.getArgumentType(referentArg),
                         m_expressionInfo.getArgumentType(referenceCallArg)
                 );
-            } else if (referentArg.equals(context.m_thisBoundedName)) {
-                context.m_thisBoundedName = referenceCallArg;
+            } else if (referentArg.equals(bindings.m_thisBoundedName)) {
+                m_bindings.m_thisBoundedName = referenceCallArg;
                 assertIsInstanceOf(
                         expressionInfo.getArgumentType(referentArg),
                         m_expressionInfo.getArgumentType(referenceCallArg)
                 );
             } else {
-                int adviceArgIndex = i;
-                if (context.m_exprIndexToTargetIndex.containsKey(referentArg)) {
-                    int targetArgIndex = context.m_exprIndexToTargetIndex.get(referentArg);
-                    exprToTargetArgIndexes.put(referenceCallArg, targetArgIndex);
+                if (bindings.hasTargetArgIndex(referentArg)) {
+                    m_bindings.setTargetArgIndex(referenceCallArg, bindings.getTargetArgIndex(referentArg));
                 }
 
             }
         }
         // merge with index found so far (inlined args() f.e.)
-        Object[] soFar = exprIndexToTargetIndexSoFar.keys();
+        Object[] soFar = bindingsSoFar.getBoundArgNames();
         for (int i = 0; i < soFar.length; i++) {
             String name = (String) soFar[i];
-            if (!exprToTargetArgIndexes.containsKey(name)) {
-                exprToTargetArgIndexes.put(name, exprIndexToTargetIndexSoFar.get(name));
+            if (!m_bindings.hasTargetArgIndex(name)) {
+                m_bindings.setTargetArgIndex(name, bindingsSoFar.getTargetArgIndex(name));
             }
         }
-        context.m_exprIndexToTargetIndex = exprToTargetArgIndexes;
         return match;
     }
 
@@ -185,40 +191,39 @@ public class ArgsIndexVisitor extends ExpressionVisitor {
                 m_classLoader
         );
 
-        // keep track of the state we already had
-        String targetSoFar = context.m_targetBoundedName;
-        String thisSoFar = context.m_thisBoundedName;
-        boolean targetWithRuntimeCheckSoFar = context.m_targetWithRuntimeCheck;
-        TObjectIntHashMap exprIndexToTargetIndexSoFar = (TObjectIntHashMap) context.m_exprIndexToTargetIndex.clone();
+        // the referenced visit has its own bindings, merged with the state we already had
+        ExpressionBindings bindingsSoFar = m_bindings;
 
-        context.resetRuntimeState();
         Boolean match = referenced.matchUndeterministic(context);
+        ExpressionBindings bindings = referenced.m_bindings;
 
         // TODO FIX ME merge the state
-        if (context.m_targetBoundedName == null) {
-            context.m_targetBoundedName = targetSoFar;
-        } else if (targetSoFar != null) {
+        if (bindings.m_targetBoundedName == null) {
+            bindings.m_targetBoundedName = bindingsSoFar.m_targetBoundedName;
+        } else if (bindingsSoFar.m_targetBoundedName != null) {
             // cflow target
         }
-        if (context.m_thisBoundedName == null) {
-            context.m_thisBoundedName = thisSoFar;
-        } else if (thisSoFar != null) {
+        if (bindings.m_thisBoundedName == null) {
+            bindings.m_thisBoundedName = bindingsSoFar.m_thisBoundedName;
+        } else if (bindingsSoFar.m_thisBoundedName != null) {
             // cflow this
         }
-        if (!context.m_targetWithRuntimeCheck) {
+        if (!bindings.m_targetWithRuntimeCheck) {
             // restore
-            context.m_targetWithRuntimeCheck = targetWithRuntimeCheckSoFar;
+            bindings.m_targetWithRuntimeCheck = bindingsSoFar.m_targetWithRuntimeCheck;
         }
-        if (context.m_exprIndexToTargetIndex.isEmpty()) {
+        if (!bindings.hasArgBindings()) {
             // restore
-            context.m_exprIndexToTargetIndex = exprIndexToTargetIndexSoFar;
-        } else if (!exprIndexToTargetIndexSoFar.isEmpty()) {
+            bindings.m_exprIndexToTargetIndex = bindingsSoFar.m_exprIndexToTargetIndex;
+        } else if (bindingsSoFar.hasArgBindings()) {
             //should merge ?
-            for (int i = 0; i < exprIndexToTargetIndexSoFar.keys().length; i++) {
-                Object o = exprIndexToTargetIndexSoFar.keys()[i];
-                context.m_exprIndexToTargetIndex.put(o, exprIndexToTargetIndexSoFar.get(o));
+            Object[] soFar = bindingsSoFar.getBoundArgNames();
+            for (int i = 0; i < soFar.length; i++) {
+                String name = (String) soFar[i];
+                bindings.setTargetArgIndex(name, bindingsSoFar.getTargetArgIndex(name));
             }
         }
+        m_bindings = bindings;
         return match;
     }
 
@@ -226,9 +231,11 @@ public class ArgsIndexVisitor extends ExpressionVisitor {
         return super.visit(node, data);
     }
 
-    public Object visit(ASTArgParameter node, Object data) {
+    protected Boolean matchArgParameter(final ASTArgParameter node,
+                                        final ExpressionContext ctx,
+                                        final int targetArgsIndex) {
         // do the visit
-        Boolean match = (Boolean) super.visit(node, data);
+        Boolean match = super.matchArgParameter(node, ctx, targetArgsIndex);
 
         // get the pointcut signature arg index of the arg we are visiting
         int pointcutArgIndex = -1;
@@ -238,10 +245,7 @@ public class ArgsIndexVisitor extends ExpressionVisitor {
 
         // if match and we are visiting a parameter binding (not a type matching)
         if (pointcutArgIndex >= 0 && Boolean.TRUE.equals(match)) {
-            ExpressionContext ctx = (ExpressionContext) data;
-            ctx.m_exprIndexToTargetIndex.put(
-                    m_expressionInfo.getArgumentNameAtIndex(pointcutArgIndex), ctx.getCurrentTargetArgsIndex()
-            );
+            m_bindings.setTargetArgIndex(m_expressionInfo.getArgumentNameAtIndex(pointcutArgIndex), targetArgsIndex);
         }
         return match;
     }
@@ -249,15 +253,14 @@ public class ArgsIndexVisitor extends ExpressionVisitor {
     public Object visit(ASTThis node, Object data) {
         // if the this(..) node identifier appears in the pointcut signature, we have a bounded type
         if (m_expressionInfo.getArgumentType(node.getIdentifier()) != null) {
-            ExpressionContext ctx = (ExpressionContext) data;
-            if (ctx.m_thisBoundedName == null) {
-                ctx.m_thisBoundedName = node.getIdentifier();
-            } else if (ctx.m_thisBoundedName != node.getIdentifier()) {
+            if (m_bindings.m_thisBoundedName == null) {
+                m_bindings.m_thisBoundedName = node.getIdentifier();
+            } else if (m_bindings.m_thisBoundedName != node.getIdentifier()) {
                 throw new DefinitionException(
                         "this(..) seems to be bounded to different bounded entities in \""
                         + m_expressionInfo.toString() + "\" in " +
                         m_expressionInfo.getNamespace()
-                        + " : found " + ctx.m_targetBoundedName + " and " +
+                        + " : found " + m_bindings.m_targetBoundedName + " and " +
                         node.getIdentifier()
                 );
             }
@@ -268,15 +271,14 @@ public class ArgsIndexVisitor extends ExpressionVisitor {
     public Object visit(ASTTarget node, Object data) {
         // if the target(..) node identifier appears in the pointcut signature, we have a bounded type
         if (m_expressionInfo.getArgumentType(node.getIdentifier()) != null) {
-            ExpressionContext ctx = (ExpressionContext) data;
-            if (ctx.m_targetBoundedName == null) {
-                ctx.m_targetBoundedName = node.getIdentifier();
-            } else if (ctx.m_targetBoundedName != node.getIdentifier()) {
+            if (m_bindings.m_targetBoundedName == null) {
+                m_bindings.m_targetBoundedName = node.getIdentifier();
+            } else if (m_bindings.m_targetBoundedName != node.getIdentifier()) {
                 throw new DefinitionException(
                         "target(..) seems to be bounded to different bounded entities in \""
                         + m_expressionInfo.toString() + "\" in " +
                         m_expressionInfo.getNamespace()
-                        + " : found " + ctx.m_targetBoundedName + " and " +
+                        + " : found " + m_bindings.m_targetBoundedName + " and " +
                         node.getIdentifier()
                 );
             }
@@ -284,7 +286,7 @@ public class ArgsIndexVisitor extends ExpressionVisitor {
         // keep track if the result was undetermined: we will need a runtime check
         Object match = super.visit(node, data);
         if (match == null) {
-            ((ExpressionContext) data).m_targetWithRuntimeCheck = true;
+            m_bindings.m_targetWithRuntimeCheck = true;
         }
         return match;
     }
@@ -0,0 +1,105 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.expression;
+
+import gnu.trove.TObjectIntHashMap;
+
+/**
+ * The this(..), target(..) and args(..) bindings of an expression in a matching context, computed by the
+ * ArgsIndexVisitor for an advice bound to a join point.
+ * <p/>
+ * The bindings are kept apart from the ExpressionContext, so that the context is immutable and can be shared by
+ * several matches and threads. The args(..) binding map is only allocated when an argument is bound.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public class ExpressionBindings {
+
+    /**
+     * Expression to advised target (method / ctor) argument index map, null until an argument is bound.
+     * It depends on the matching context and the pointcut signature, as well as args(..)
+     */
+    TObjectIntHashMap m_exprIndexToTargetIndex = null;
+
+    /**
+     * The variable name corresponding to the this(..) designator,
+     * or null if nothing is bound (this(<type>) or no this(..))
+     */
+    String m_thisBoundedName = null;
+
+    /**
+     * The variable name corresponding to the target(..) designator,
+     * or null if nothing is bound (target(<type>) or no target(..))
+     */
+    String m_targetBoundedName = null;
+
+    /**
+     * Set to true when we encounter a poincut using target(..) and when match cannot be done without a
+     * runtime check with instance of.
+     */
+    boolean m_targetWithRuntimeCheck = false;
+
+    public String getThisBoundedName() {
+        return m_thisBoundedName;
+    }
+
+    public String getTargetBoundedName() {
+        return m_targetBoundedName;
+    }
+
+    public boolean isTargetWithRuntimeCheck() {
+        return m_targetWithRuntimeCheck;
+    }
+
+    /**
+     * Checks if the given expression argument is bound to an argument of the advised target.
+     *
+     * @param name the expression argument name
+     * @return true if so
+     */
+    public boolean hasTargetArgIndex(final String name) {
+        return m_exprIndexToTargetIndex != null && m_exprIndexToTargetIndex.containsKey(name);
+    }
+
+    /**
+     * Returns the index of the advised target argument the given expression argument is bound to.
+     *
+     * @param name the expression argument name
+     * @return the index
+     */
+    public int getTargetArgIndex(final String name) {
+        return (m_exprIndexToTargetIndex != null) ? m_exprIndexToTargetIndex.get(name) : 0;
+    }
+
+    /**
+     * Binds an expression argument to an argument of the advised target.
+     *
+     * @param name  the expression argument name
+     * @param index the index of the advised target argument
+     */
+    void setTargetArgIndex(final String name, final int index) {
+        if (m_exprIndexToTargetIndex == null) {
+            m_exprIndexToTargetIndex = new TObjectIntHashMap();
+        }
+        m_exprIndexToTargetIndex.put(name, index);
+    }
+
+    /**
+     * @return true if at least one expression argument is bound to an argument of the advised target
+     */
+    boolean hasArgBindings() {
+        return m_exprIndexToTargetIndex != null && !m_exprIndexToTargetIndex.isEmpty();
+    }
+
+    /**
+     * @return the names of the bound expression arguments
+     */
+    Object[] getBoundArgNames() {
+        return (m_exprIndexToTargetIndex != null) ? m_exprIndexToTargetIndex.keys() : new Object[0];
+    }
+}
@@ -14,11 +14,11 @@ import org.codehaus.aspectwerkz.reflect.MethodInfo;
 import org.codehaus.aspectwerkz.reflect.ReflectionInfo;
 import org.codehaus.aspectwerkz.reflect.StaticInitializationInfo;
 
-import gnu.trove.TIntIntHashMap;
-import gnu.trove.TObjectIntHashMap;
-
 /**
  * The expression context for AST evaluation.
+ * <p/>
+ * The context is immutable, so that one context can be matched against many expressions, by several threads. The
+ * this(..), target(..) and args(..) bindings of an expression are computed apart, in an ExpressionBindings.
  *
  * @author <a href="mailto:jboner@codehaus.org">Jonas Bonr </a>
  * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
@@ -44,38 +44,6 @@ public class ExpressionContext {
 
     private final ReflectionInfo m_withinReflectionInfo;
 
-    private boolean m_inCflowSubAST = false;
-
-    private boolean m_cflowEvaluation = false;
-
-    private boolean m_hasBeenVisitingCflow = false;
-
-    private int m_currentTargetArgsIndex = 0;
-
-    /**
-     * Expression to advised target (method / ctor) argument index map.
-     * It depends on the matching context and the pointcut signature, as well as args(..)
-     */
-    public gnu.trove.TObjectIntHashMap m_exprIndexToTargetIndex = new TObjectIntHashMap();
-
-    /**
-     * The variable name corresponding to the this(..) designator,
-     * or null if nothing is bound (this(<type>) or no this(..))
-     */
-    public String m_thisBoundedName = null;
-
-    /**
-     * The variable name corresponding to the target(..) designator,
-     * or null if nothing is bound (target(<type>) or no target(..))
-     */
-    public String m_targetBoundedName = null;
-
-    /**
-     * Set to true when we encounter a poincut using target(..) and when match cannot be done without a
-     * runtime check with instance of.
-     */
-    public boolean m_targetWithRuntimeCheck = false;
-
     /**
      * Creates a new expression context.
      *
@@ -185,38 +153,6 @@ public class ExpressionContext {
         return m_reflectionInfoType != INFO_NOT_AVAILABLE;
     }
 
-    public void setInCflowSubAST(final boolean inCflowAST) {
-        m_inCflowSubAST = inCflowAST;
-    }
-
-    public boolean inCflowSubAST() {
-        return m_inCflowSubAST;
-    }
-
-    public void setHasBeenVisitingCflow(final boolean hasBeenVisitingCflow) {
-        m_hasBeenVisitingCflow = hasBeenVisitingCflow;
-    }
-
-    public boolean hasBeenVisitingCflow() {
-        return m_hasBeenVisitingCflow;
-    }
-
-    public boolean getCflowEvaluation() {
-        return m_cflowEvaluation;
-    }
-
-    public void setCflowEvaluation(boolean cflowEvaluation) {
-        m_cflowEvaluation = cflowEvaluation;
-    }
-
-    public int getCurrentTargetArgsIndex() {
-        return m_currentTargetArgsIndex;
-    }
-
-    public void setCurrentTargetArgsIndex(int argsIndex) {
-        this.m_currentTargetArgsIndex = argsIndex;
-    }
-
     public boolean equals(Object o) {
         if (this == o) {
             return true;
@@ -255,11 +191,4 @@ public class ExpressionContext {
     public PointcutType getPointcutType() {
         return m_pointcutType;
     }
-
-    public void resetRuntimeState() {
-        m_targetBoundedName = null;
-        m_thisBoundedName = null;
-        m_exprIndexToTargetIndex = new TObjectIntHashMap();
-        m_targetWithRuntimeCheck = false;
-    }
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ package org.codehaus.aspectwerkz.expression;
 
 import org.codehaus.aspectwerkz.exception.DefinitionException;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.WeakHashMap;
@@ -145,6 +146,15 @@ public final class ExpressionNamespace {
         return getExpressionInfo(name).getAdvisedClassFilterExpression();
     }
 
+    /**
+     * Returns the expressions of the namespace.
+     *
+     * @return a read only map of the [name:expression info] pairs
+     */
+    public Map getExpressionInfos() {
+        return Collections.unmodifiableMap(m_expressions);
+    }
+
     /**
      * Returns the name of the namespace.
      *
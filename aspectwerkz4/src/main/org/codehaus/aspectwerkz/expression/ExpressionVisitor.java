@@ -9,6 +9,7 @@ package org.codehaus.aspectwerkz.expression;
 
 import org.codehaus.aspectwerkz.annotation.AnnotationInfo;
 import org.codehaus.aspectwerkz.expression.regexp.TypePattern;
+import org.codehaus.aspectwerkz.reflect.AnnotationIndex;
 import org.codehaus.aspectwerkz.reflect.ClassInfo;
 import org.codehaus.aspectwerkz.reflect.ConstructorInfo;
 import org.codehaus.aspectwerkz.reflect.FieldInfo;
@@ -24,6 +25,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.codehaus.aspectwerkz.expression.ast.*;
+import org.codehaus.aspectwerkz.transform.WeaverMetrics;
 import org.codehaus.aspectwerkz.util.Util;
 import org.codehaus.backport175.reader.bytecode.AnnotationElement;
 
@@ -47,6 +49,11 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
      */
     protected ExpressionInfo m_expressionInfo;
 
+    /**
+     * The evaluation counter of the expression, when the weaver metrics are gathered
+     */
+    private final WeaverMetrics.ExpressionCounter m_metrics;
+
     /**
      * Creates a new expression.
      *
@@ -63,6 +70,7 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
         m_expression = expression;
         m_namespace = namespace;
         m_root = root;
+        m_metrics = WeaverMetrics.ENABLED ? WeaverMetrics.getExpressionCounter(expression) : null;
     }
 
     /**
@@ -74,6 +82,18 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
      * @return
      */
     public boolean match(final ExpressionContext context) {
+        if (m_metrics != null) {
+            final long start = WeaverMetrics.now();
+            try {
+                return doMatch(context);
+            } finally {
+                m_metrics.evaluated(WeaverMetrics.now() - start);
+            }
+        }
+        return doMatch(context);
+    }
+
+    private boolean doMatch(final ExpressionContext context) {
         Boolean match = ((Boolean) visit(m_root, context));
         // undeterministic is assumed to be "true" at this stage
         // since it won't be composed anymore with a NOT (unless
@@ -285,15 +305,46 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
 
 
     public Object visit(ASTHasMethod node, Object data) {
-        ExpressionContext context = (ExpressionContext) data;
+        ClassInfo classInfo = getWithinClassInfo((ExpressionContext) data);
+        Boolean match = node.getMatchCache().get(classInfo);
+        if (match == null) {
+            match = matchHasMethod(node, classInfo);
+            node.getMatchCache().put(classInfo, match);
+        }
+        return match;
+    }
+
+    public Object visit(ASTHasField node, Object data) {
+        ClassInfo classInfo = getWithinClassInfo((ExpressionContext) data);
+        Boolean match = node.getMatchCache().get(classInfo);
+        if (match == null) {
+            match = matchHasField(node, classInfo);
+            node.getMatchCache().put(classInfo, match);
+        }
+        return match;
+    }
 
+    /**
+     * Returns the class hasmethod(..) / hasfield(..) are matched against.
+     *
+     * @param context
+     * @return the class info
+     */
+    protected static ClassInfo getWithinClassInfo(final ExpressionContext context) {
         // we are matching on the CALLER info
         // for execution() pointcut, this is equals to CALLEE info
         ReflectionInfo info = context.getWithinReflectionInfo();
-        ClassInfo classInfo = info instanceof MemberInfo
-				? ((MemberInfo) info).getDeclaringType()
-				: (ClassInfo) info;
-        
+        return (info instanceof MemberInfo) ? ((MemberInfo) info).getDeclaringType() : (ClassInfo) info;
+    }
+
+    /**
+     * Matches hasmethod(..) against the given class, with the member pattern semantics of this visitor.
+     *
+     * @param node
+     * @param classInfo
+     * @return the match result
+     */
+    protected Boolean matchHasMethod(final ASTHasMethod node, final ClassInfo classInfo) {
         Node patternNode = node.jjtGetChild(node.jjtGetNumChildren() - 1);
         boolean hasPatternNode = !(patternNode instanceof ASTAttribute);
 
@@ -328,15 +379,14 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
         return Boolean.FALSE;
     }
 
-    public Object visit(ASTHasField node, Object data) {
-        ExpressionContext context = (ExpressionContext) data;
-
-        // we are matching on the CALLER info
-        // for execution() pointcut, this is equals to CALLEE info
-        ReflectionInfo info = context.getWithinReflectionInfo();
-        ClassInfo classInfo = (info instanceof MemberInfo) ?
-                              ((MemberInfo) info).getDeclaringType() : (ClassInfo) info;
-
+    /**
+     * Matches hasfield(..) against the given class, with the member pattern semantics of this visitor.
+     *
+     * @param node
+     * @param classInfo
+     * @return the match result
+     */
+    protected Boolean matchHasField(final ASTHasField node, final ClassInfo classInfo) {
         Node patternNode = node.jjtGetChild(node.jjtGetNumChildren() - 1);
         boolean hasPatternNode = !(patternNode instanceof ASTAttribute);
 
@@ -541,13 +591,12 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
                         matchCount = -1;
                         break;
                     }
-                    ctx.setCurrentTargetArgsIndex(ictx);
                     // do we have an eager wildcard in the middle ?
                     boolean isEager = ((ASTArgParameter) node.jjtGetChild(iexp + 1)).getTypePattern().isEagerWildCard();
                     if (isEager) {
                         // TODO - ignore for now, but not really supported - eager in the middle will match one
                     }
-                    if (Boolean.TRUE.equals((Boolean) node.jjtGetChild(iexp + 1).jjtAccept(this, ctx))) {
+                    if (Boolean.TRUE.equals(matchArgParameter((ASTArgParameter) node.jjtGetChild(iexp + 1), ctx, ictx))) {
                         matchCount += 1;
                         ictx++;
                     } else {
@@ -567,11 +616,11 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
                 if (contextParametersCount >= expressionParameterCount) {
                     // do a match from last to first, break when args() nodes are exhausted
                     for (int i = 0; (i < contextParametersCount) && (expressionParameterCount - i >= 0); i++) {
-                        ctx.setCurrentTargetArgsIndex(contextParametersCount - 1 - i);
                         if (Boolean.TRUE.equals(
-                                (Boolean) node.jjtGetChild(expressionParameterCount - i).jjtAccept(
-                                        this,
-                                        ctx
+                                matchArgParameter(
+                                        (ASTArgParameter) node.jjtGetChild(expressionParameterCount - i),
+                                        ctx,
+                                        contextParametersCount - 1 - i
                                 )
                         )) {
                             ;//go on with "next" arg
@@ -589,8 +638,7 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
                 if (contextParametersCount >= expressionParameterCount) {
                     // do a match from first to last, break when args() nodes are exhausted
                     for (int i = 0; (i < contextParametersCount) && (i < expressionParameterCount); i++) {
-                        ctx.setCurrentTargetArgsIndex(i);
-                        if (Boolean.TRUE.equals((Boolean) node.jjtGetChild(i).jjtAccept(this, ctx))) {
+                        if (Boolean.TRUE.equals(matchArgParameter((ASTArgParameter) node.jjtGetChild(i), ctx, i))) {
                             ;//go on with next arg
                         } else {
                             return Boolean.FALSE;
@@ -605,8 +653,7 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
                 // check that args length are equals
                 if (expressionParameterCount == contextParametersCount) {
                     for (int i = 0; i < node.jjtGetNumChildren(); i++) {
-                        ctx.setCurrentTargetArgsIndex(i);
-                        if (Boolean.TRUE.equals((Boolean) node.jjtGetChild(i).jjtAccept(this, ctx))) {
+                        if (Boolean.TRUE.equals(matchArgParameter((ASTArgParameter) node.jjtGetChild(i), ctx, i))) {
                             ;//go on with next arg
                         } else {
                             return Boolean.FALSE;
@@ -621,6 +668,20 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
     }
 
     public Object visit(ASTArgParameter node, Object data) {
+        return matchArgParameter(node, (ExpressionContext) data, 0);
+    }
+
+    /**
+     * Matches an args(..) parameter against the parameter of the context at the given index.
+     *
+     * @param node
+     * @param ctx
+     * @param targetArgsIndex the index of the parameter in the context
+     * @return the match result
+     */
+    protected Boolean matchArgParameter(final ASTArgParameter node,
+                                        final ExpressionContext ctx,
+                                        final int targetArgsIndex) {
         //TODO we are not doing any hierarchical test when the arg is bound
         // => args(e) and before(Exception e) will not mathch on catch(SubException e) ..
         // is that required ? how AJ syntax behaves ?
@@ -643,14 +704,12 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
             }
         }
         // grab parameter from context
-        ExpressionContext ctx = (ExpressionContext) data;
         ClassInfo argInfo = null;
         try {
             if (ctx.getReflectionInfo() instanceof MethodInfo) {
-                argInfo = ((MethodInfo) ctx.getReflectionInfo()).getParameterTypes()[ctx.getCurrentTargetArgsIndex()];
+                argInfo = ((MethodInfo) ctx.getReflectionInfo()).getParameterTypes()[targetArgsIndex];
             } else if (ctx.getReflectionInfo() instanceof ConstructorInfo) {
-                argInfo = ((ConstructorInfo) ctx.getReflectionInfo()).getParameterTypes()[ctx
-                        .getCurrentTargetArgsIndex()];
+                argInfo = ((ConstructorInfo) ctx.getReflectionInfo()).getParameterTypes()[targetArgsIndex];
             } else if (ctx.getReflectionInfo() instanceof FieldInfo) {
                 argInfo = ((FieldInfo) ctx.getReflectionInfo()).getType();
             } else if (ctx.getPointcutType().equals(PointcutType.HANDLER) && ctx.getReflectionInfo() instanceof ClassInfo) {
@@ -668,14 +727,7 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
     }
 
     public Object visit(ASTAttribute node, Object data) {
-        boolean matchAnnotation = false;
-        AnnotationElement.Annotation[] annotations = (AnnotationElement.Annotation[]) data;
-        for (int i = 0; i < annotations.length; i++) {
-            AnnotationElement.Annotation annotation = annotations[i];
-            if (annotation.getInterfaceName().equals(node.getName())) {
-                matchAnnotation = true;
-            }
-        }
+        boolean matchAnnotation = hasAnnotation(node, data);
 
         if (node.isNot()) {
             return Util.booleanValueOf(!matchAnnotation);
@@ -810,10 +862,14 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
     protected boolean visitAttributes(SimpleNode node, ReflectionInfo refInfo) {
         int nrChildren = node.jjtGetNumChildren();
         if (nrChildren != 0) {
+            Object annotations = null;
             for (int i = 0; i < nrChildren; i++) {
                 Node child = node.jjtGetChild(i);
                 if (child instanceof ASTAttribute) {
-                    if (Boolean.TRUE.equals(child.jjtAccept(this, refInfo.getAnnotations()))) {
+                    if (annotations == null) {
+                        annotations = getAnnotationData(refInfo);
+                    }
+                    if (Boolean.TRUE.equals(child.jjtAccept(this, annotations))) {
                         continue;
                     } else {
                         return false;
@@ -824,6 +880,39 @@ public class ExpressionVisitor implements ExpressionParserVisitor {
         return true;
     }
 
+    /**
+     * Returns the annotation bitmap of the given info if it has one (see AnnotationIndex), else its annotations.
+     *
+     * @param refInfo
+     * @return the data to visit the ASTAttribute nodes with
+     */
+    protected static Object getAnnotationData(ReflectionInfo refInfo) {
+        if (refInfo instanceof AnnotationIndex.Indexed) {
+            return ((AnnotationIndex.Indexed) refInfo).getAnnotationBits();
+        }
+        return refInfo.getAnnotations();
+    }
+
+    /**
+     * Checks if the annotation of the given node is in the annotation data given by getAnnotationData.
+     *
+     * @param node
+     * @param data the annotation bitmap or the annotations
+     * @return true if so
+     */
+    protected static boolean hasAnnotation(ASTAttribute node, Object data) {
+        if (data instanceof long[]) {
+            return AnnotationIndex.hasAnnotation((long[]) data, node.getAnnotationId());
+        }
+        AnnotationElement.Annotation[] annotations = (AnnotationElement.Annotation[]) data;
+        for (int i = 0; i < annotations.length; i++) {
+            if (annotations[i].getInterfaceName().equals(node.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     protected boolean visitModifiers(SimpleNode node, ReflectionInfo refInfo) {
         int nrChildren = node.jjtGetNumChildren();
         if (nrChildren != 0) {
@@ -0,0 +1,68 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.expression;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.codehaus.aspectwerkz.reflect.ClassInfo;
+
+/**
+ * Cache of the hasmethod(..) / hasfield(..) match results of one AST node, per ClassInfo, as computed by the full
+ * matching (the early class filtering gives a less precise answer that is not cached).
+ * <p/>
+ * A result is only returned for the very ClassInfo instance it was computed for. When the class shape changes, the
+ * ClassInfo is dropped from its repository (see AsmClassInfo.markDirty) and the new instance, although equal, misses
+ * the cache.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class StructuralMatchCache {
+
+    private final Map m_matches = new WeakHashMap();
+
+    /**
+     * Returns the cached match result for the given class.
+     *
+     * @param classInfo
+     * @return the match result or null if not cached
+     */
+    public synchronized Boolean get(final ClassInfo classInfo) {
+        Entry entry = (Entry) m_matches.get(classInfo);
+        if (entry != null && entry.classInfo.get() == classInfo) {
+            return entry.match;
+        }
+        return null;
+    }
+
+    /**
+     * Caches the match result for the given class.
+     *
+     * @param classInfo
+     * @param match
+     */
+    public synchronized void put(final ClassInfo classInfo, final Boolean match) {
+        // remove first so that the key is the given instance and not a stale equal one
+        m_matches.remove(classInfo);
+        m_matches.put(classInfo, new Entry(classInfo, match));
+    }
+
+    /**
+     * A cache entry, the class info is weakly referenced so that the entry does not prevent the key to be collected.
+     */
+    private static class Entry {
+        final WeakReference classInfo;
+        final Boolean match;
+
+        Entry(final ClassInfo classInfo, final Boolean match) {
+            this.classInfo = new WeakReference(classInfo);
+            this.match = match;
+        }
+    }
+}
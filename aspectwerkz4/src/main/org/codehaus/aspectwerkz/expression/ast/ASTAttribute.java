@@ -1,9 +1,13 @@
 /* Generated By:JJTree: Do not edit this line. ASTAttribute.java */
 package org.codehaus.aspectwerkz.expression.ast;
 
+import org.codehaus.aspectwerkz.reflect.AnnotationIndex;
+
 public class ASTAttribute extends SimpleNode {
     private String m_name;
 
+    private int m_annotationId = -1;
+
     private boolean m_not = false;
 
     public ASTAttribute(int id) {
@@ -27,6 +31,18 @@ public class ASTAttribute extends SimpleNode {
         return m_name;
     }
 
+    /**
+     * Returns the id of the annotation in the AnnotationIndex.
+     *
+     * @return the id
+     */
+    public int getAnnotationId() {
+        if (m_annotationId < 0) {
+            m_annotationId = AnnotationIndex.getId(m_name);
+        }
+        return m_annotationId;
+    }
+
     public void toggleNot() {
         m_not = !m_not;
     }
@@ -2,7 +2,12 @@
 
 package org.codehaus.aspectwerkz.expression.ast;
 
+import org.codehaus.aspectwerkz.expression.StructuralMatchCache;
+
 public class ASTHasField extends SimpleNode {
+
+    private final StructuralMatchCache m_matchCache = new StructuralMatchCache();
+
     public ASTHasField(int id) {
         super(id);
     }
@@ -18,4 +23,13 @@ public class ASTHasField extends SimpleNode {
     public Object jjtAccept(ExpressionParserVisitor visitor, Object data) {
         return visitor.visit(this, data);
     }
+
+    /**
+     * Returns the cache of the hasfield(..) match results of this node.
+     *
+     * @return the cache
+     */
+    public StructuralMatchCache getMatchCache() {
+        return m_matchCache;
+    }
 }
@@ -2,7 +2,12 @@
 
 package org.codehaus.aspectwerkz.expression.ast;
 
+import org.codehaus.aspectwerkz.expression.StructuralMatchCache;
+
 public class ASTHasMethod extends SimpleNode {
+
+    private final StructuralMatchCache m_matchCache = new StructuralMatchCache();
+
     public ASTHasMethod(int id) {
         super(id);
     }
@@ -18,4 +23,13 @@ public class ASTHasMethod extends SimpleNode {
     public Object jjtAccept(ExpressionParserVisitor visitor, Object data) {
         return visitor.visit(this, data);
     }
+
+    /**
+     * Returns the cache of the hasmethod(..) match results of this node.
+     *
+     * @return the cache
+     */
+    public StructuralMatchCache getMatchCache() {
+        return m_matchCache;
+    }
 }
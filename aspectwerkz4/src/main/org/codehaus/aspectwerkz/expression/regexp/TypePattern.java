@@ -11,6 +11,7 @@ import org.codehaus.aspectwerkz.expression.ExpressionException;
 import org.codehaus.aspectwerkz.expression.SubtypePatternType;
 import org.codehaus.aspectwerkz.proxy.ProxySubclassingStrategy;
 import org.codehaus.aspectwerkz.reflect.ClassInfo;
+import org.codehaus.aspectwerkz.reflect.TypeIndex;
 import org.codehaus.aspectwerkz.util.Strings;
 
 import java.io.ObjectInputStream;
@@ -22,6 +23,16 @@ import java.io.ObjectInputStream;
  */
 public class TypePattern extends Pattern {
 
+    /**
+     * The match state of a type id that has been matched against the pattern and did not match.
+     */
+    private static final int NOT_MATCHED = 1;
+
+    /**
+     * The match state of a type id that has been matched against the pattern and matched.
+     */
+    private static final int MATCHED = 3;
+
     /**
      * The fully qualified type name.
      */
@@ -37,6 +48,13 @@ public class TypePattern extends Pattern {
      */
     private SubtypePatternType m_subtypePatternType;
 
+    /**
+     * The match states of the type ids (see TypeIndex), 2 bits per id, for the subtype matching. The words are
+     * updated under the pattern lock and read without it, a state not seen yet only causing the type name to be
+     * matched again.
+     */
+    private transient volatile int[] m_typeIdStates = null;
+
     /**
      * Private constructor.
      *
@@ -106,7 +124,8 @@ public class TypePattern extends Pattern {
 
     /**
      * Tries to finds a parse at some superclass in the hierarchy. <p/>Only checks for a class parse to allow early
-     * filtering. <p/>Recursive.
+     * filtering. <p/>The class is matched first, then the supertype id set of the class (see TypeIndex) is walked
+     * against the match states of the pattern, so that each type name of a hierarchy is matched once per pattern.
      *
      * @param classInfo the class info
      * @return boolean
@@ -116,18 +135,52 @@ public class TypePattern extends Pattern {
             return false;
         }
 
-        // parse the class/super class
-        if (matches(classInfo.getName())) {
+        // parse the class itself without building its supertype ids
+        if (classInfo.getName() != null && matchTypeId(TypeIndex.getTypeId(classInfo))) {
             return true;
-        } else {
-            // parse the interfaces for the class
-            if (matchInterfaces(classInfo.getInterfaces(), classInfo)) {
+        }
+
+        // parse the super classes and interfaces
+        final int[] supertypeIds = TypeIndex.getSupertypeIds(classInfo);
+        for (int i = 0; i < supertypeIds.length; i++) {
+            if (matchTypeId(supertypeIds[i])) {
                 return true;
             }
+        }
+        return false;
+    }
 
-            // no parse; getClass the next superclass
-            return matchSuperClasses(classInfo.getSuperclass());
+    /**
+     * Matches the type name of a type id, using the match state of the id if already known.
+     *
+     * @param typeId the type id
+     * @return true if the type name matches
+     */
+    private boolean matchTypeId(final int typeId) {
+        final int word = typeId >>> 4;
+        final int shift = (typeId & 15) << 1;
+        final int[] states = m_typeIdStates;
+        if (states != null && word < states.length) {
+            final int state = (states[word] >>> shift) & MATCHED;
+            if (state != 0) {
+                return state == MATCHED;
+            }
+        }
+        final boolean matches = matches(TypeIndex.getName(typeId));
+        synchronized (this) {
+            int[] current = m_typeIdStates;
+            if (current == null || word >= current.length) {
+                final int[] grown = new int[Math.max(word + 1, (current == null) ? 16 : current.length * 2)];
+                if (current != null) {
+                    System.arraycopy(current, 0, grown, 0, current.length);
+                }
+                grown[word] |= (matches ? MATCHED : NOT_MATCHED) << shift;
+                m_typeIdStates = grown;
+            } else {
+                current[word] |= (matches ? MATCHED : NOT_MATCHED) << shift;
+            }
         }
+        return matches;
     }
 
     /**
@@ -41,4 +41,40 @@ public interface CodeRtti extends MemberRtti {
      * Sets the values of the parameters.
      */
     void setParameterValues(Object[] parameterValues);
+
+    /**
+     * Returns the value of a primitive parameter as an int, without boxing it.
+     *
+     * @param index the parameter index
+     * @return the value of the parameter
+     * @throws IllegalArgumentException if the parameter value can not be converted by a widening conversion
+     */
+    int getIntParameterValue(int index);
+
+    /**
+     * Returns the value of a primitive parameter as a long, without boxing it.
+     *
+     * @param index the parameter index
+     * @return the value of the parameter
+     * @throws IllegalArgumentException if the parameter value can not be converted by a widening conversion
+     */
+    long getLongParameterValue(int index);
+
+    /**
+     * Returns the value of a primitive parameter as a double, without boxing it.
+     *
+     * @param index the parameter index
+     * @return the value of the parameter
+     * @throws IllegalArgumentException if the parameter value can not be converted by a widening conversion
+     */
+    double getDoubleParameterValue(int index);
+
+    /**
+     * Returns the value of a primitive parameter as a boolean, without boxing it.
+     *
+     * @param index the parameter index
+     * @return the value of the parameter
+     * @throws IllegalArgumentException if the parameter value can not be converted by a widening conversion
+     */
+    boolean getBooleanParameterValue(int index);
 }
\ No newline at end of file
@@ -35,4 +35,36 @@ public interface FieldRtti extends MemberRtti {
      * @return the value of the field
      */
     Object getFieldValue();
+
+    /**
+     * Returns the value of the field as an int, without boxing it.
+     *
+     * @return the value of the field
+     * @throws IllegalArgumentException if the value of the field can not be converted by a widening conversion
+     */
+    int getIntFieldValue();
+
+    /**
+     * Returns the value of the field as a long, without boxing it.
+     *
+     * @return the value of the field
+     * @throws IllegalArgumentException if the value of the field can not be converted by a widening conversion
+     */
+    long getLongFieldValue();
+
+    /**
+     * Returns the value of the field as a double, without boxing it.
+     *
+     * @return the value of the field
+     * @throws IllegalArgumentException if the value of the field can not be converted by a widening conversion
+     */
+    double getDoubleFieldValue();
+
+    /**
+     * Returns the value of the field as a boolean, without boxing it.
+     *
+     * @return the value of the field
+     * @throws IllegalArgumentException if the value of the field can not be converted by a widening conversion
+     */
+    boolean getBooleanFieldValue();
 }
\ No newline at end of file
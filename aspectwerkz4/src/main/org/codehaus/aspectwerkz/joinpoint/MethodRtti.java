@@ -35,4 +35,36 @@ public interface MethodRtti extends CodeRtti {
      * @return the value of the return type
      */
     Object getReturnValue();
+
+    /**
+     * Returns the value of the return type as an int, without boxing it.
+     *
+     * @return the value of the return type
+     * @throws IllegalArgumentException if the value of the return type can not be converted by a widening conversion
+     */
+    int getIntReturnValue();
+
+    /**
+     * Returns the value of the return type as a long, without boxing it.
+     *
+     * @return the value of the return type
+     * @throws IllegalArgumentException if the value of the return type can not be converted by a widening conversion
+     */
+    long getLongReturnValue();
+
+    /**
+     * Returns the value of the return type as a double, without boxing it.
+     *
+     * @return the value of the return type
+     * @throws IllegalArgumentException if the value of the return type can not be converted by a widening conversion
+     */
+    double getDoubleReturnValue();
+
+    /**
+     * Returns the value of the return type as a boolean, without boxing it.
+     *
+     * @return the value of the return type
+     * @throws IllegalArgumentException if the value of the return type can not be converted by a widening conversion
+     */
+    boolean getBooleanReturnValue();
 }
\ No newline at end of file
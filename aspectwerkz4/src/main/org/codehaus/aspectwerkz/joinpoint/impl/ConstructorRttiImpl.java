@@ -29,6 +29,8 @@ public class ConstructorRttiImpl implements ConstructorRtti {
 
     private Object[] m_parameterValues = EMPTY_OBJECT_ARRAY;
 
+    private long[] m_primitiveParameterValues;
+
     /**
      * Creates a new constructor RTTI.
      *
@@ -138,6 +140,18 @@ public class ConstructorRttiImpl implements ConstructorRtti {
      */
     public void setParameterValues(final Object[] parameterValues) {
         m_parameterValues = parameterValues;
+        m_primitiveParameterValues = null;
+    }
+
+    /**
+     * Sets the values of the parameters, the primitive ones being kept unboxed until they are asked for as objects.
+     *
+     * @param parameterValues          the values of the parameters, null for the primitive ones
+     * @param primitiveParameterValues the bits of the primitive parameters, see PrimitiveValues
+     */
+    public void setParameterValues(final Object[] parameterValues, final long[] primitiveParameterValues) {
+        m_parameterValues = parameterValues;
+        m_primitiveParameterValues = primitiveParameterValues;
     }
 
     /**
@@ -146,9 +160,69 @@ public class ConstructorRttiImpl implements ConstructorRtti {
      * @return the values of the parameters
      */
     public Object[] getParameterValues() {
+        if (m_primitiveParameterValues != null) {
+            PrimitiveValues.box(m_signature.getParameterTypes(), m_parameterValues, m_primitiveParameterValues);
+            m_primitiveParameterValues = null;
+        }
         return m_parameterValues;
     }
 
+    /**
+     * Returns the value of a primitive parameter as an int, without boxing it.
+     *
+     * @param index the parameter index
+     * @return the value of the parameter
+     */
+    public int getIntParameterValue(final int index) {
+        final Class type = m_signature.getParameterType(index);
+        if (m_primitiveParameterValues == null || !type.isPrimitive()) {
+            return PrimitiveValues.getInt(m_parameterValues[index]);
+        }
+        return PrimitiveValues.getInt(type, m_primitiveParameterValues[index]);
+    }
+
+    /**
+     * Returns the value of a primitive parameter as a long, without boxing it.
+     *
+     * @param index the parameter index
+     * @return the value of the parameter
+     */
+    public long getLongParameterValue(final int index) {
+        final Class type = m_signature.getParameterType(index);
+        if (m_primitiveParameterValues == null || !type.isPrimitive()) {
+            return PrimitiveValues.getLong(m_parameterValues[index]);
+        }
+        return PrimitiveValues.getLong(type, m_primitiveParameterValues[index]);
+    }
+
+    /**
+     * Returns the value of a primitive parameter as a double, without boxing it.
+     *
+     * @param index the parameter index
+     * @return the value of the parameter
+     */
+    public double getDoubleParameterValue(final int index) {
+        final Class type = m_signature.getParameterType(index);
+        if (m_primitiveParameterValues == null || !type.isPrimitive()) {
+            return PrimitiveValues.getDouble(m_parameterValues[index]);
+        }
+        return PrimitiveValues.getDouble(type, m_primitiveParameterValues[index]);
+    }
+
+    /**
+     * Returns the value of a primitive parameter as a boolean, without boxing it.
+     *
+     * @param index the parameter index
+     * @return the value of the parameter
+     */
+    public boolean getBooleanParameterValue(final int index) {
+        final Class type = m_signature.getParameterType(index);
+        if (m_primitiveParameterValues == null || !type.isPrimitive()) {
+            return PrimitiveValues.getBoolean(m_parameterValues[index]);
+        }
+        return PrimitiveValues.getBoolean(type, m_primitiveParameterValues[index]);
+    }
+
     /**
      * Returns a string representation of the signature.
      *
@@ -24,6 +24,8 @@ public class ConstructorSignatureImpl implements ConstructorSignature {
 
     private final Constructor m_constructor;
 
+    private final Class[] m_parameterTypes;
+
     /**
      * @param declaringType
      * @param constructor
@@ -31,6 +33,17 @@ public class ConstructorSignatureImpl implements ConstructorSignature {
     public ConstructorSignatureImpl(final Class declaringType, final Constructor constructor) {
         m_declaringType = declaringType;
         m_constructor = constructor;
+        m_parameterTypes = m_constructor.getParameterTypes();
+    }
+
+    /**
+     * Returns the type of a parameter, without copying the parameter types.
+     *
+     * @param index
+     * @return the parameter type
+     */
+    Class getParameterType(final int index) {
+        return m_parameterTypes[index];
     }
 
     /**
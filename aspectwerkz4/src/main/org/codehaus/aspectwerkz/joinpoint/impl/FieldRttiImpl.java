@@ -27,6 +27,10 @@ public class FieldRttiImpl implements FieldRtti {
 
     private Object m_fieldValue;
 
+    private long m_primitiveFieldValue;
+
+    private boolean m_isPrimitiveFieldValue = false;
+
     /**
      * Creates a new field RTTI.
      *
@@ -124,6 +128,10 @@ public class FieldRttiImpl implements FieldRtti {
      * @return the value of the field
      */
     public Object getFieldValue() {
+        if (m_isPrimitiveFieldValue) {
+            m_fieldValue = PrimitiveValues.box(m_signature.getFieldType(), m_primitiveFieldValue);
+            m_isPrimitiveFieldValue = false;
+        }
         return m_fieldValue;
     }
 
@@ -134,6 +142,65 @@ public class FieldRttiImpl implements FieldRtti {
      */
     public void setFieldValue(final Object fieldValue) {
         m_fieldValue = fieldValue;
+        m_isPrimitiveFieldValue = false;
+    }
+
+    /**
+     * Sets the value of a primitive field, kept unboxed until it is asked for as an object.
+     *
+     * @param primitiveFieldValue the bits of the value of the field, see PrimitiveValues
+     */
+    public void setPrimitiveFieldValue(final long primitiveFieldValue) {
+        m_primitiveFieldValue = primitiveFieldValue;
+        m_isPrimitiveFieldValue = true;
+    }
+
+    /**
+     * Returns the value of the field as an int, without boxing it.
+     *
+     * @return the value of the field
+     */
+    public int getIntFieldValue() {
+        if (m_isPrimitiveFieldValue) {
+            return PrimitiveValues.getInt(m_signature.getFieldType(), m_primitiveFieldValue);
+        }
+        return PrimitiveValues.getInt(m_fieldValue);
+    }
+
+    /**
+     * Returns the value of the field as a long, without boxing it.
+     *
+     * @return the value of the field
+     */
+    public long getLongFieldValue() {
+        if (m_isPrimitiveFieldValue) {
+            return PrimitiveValues.getLong(m_signature.getFieldType(), m_primitiveFieldValue);
+        }
+        return PrimitiveValues.getLong(m_fieldValue);
+    }
+
+    /**
+     * Returns the value of the field as a double, without boxing it.
+     *
+     * @return the value of the field
+     */
+    public double getDoubleFieldValue() {
+        if (m_isPrimitiveFieldValue) {
+            return PrimitiveValues.getDouble(m_signature.getFieldType(), m_primitiveFieldValue);
+        }
+        return PrimitiveValues.getDouble(m_fieldValue);
+    }
+
+    /**
+     * Returns the value of the field as a boolean, without boxing it.
+     *
+     * @return the value of the field
+     */
+    public boolean getBooleanFieldValue() {
+        if (m_isPrimitiveFieldValue) {
+            return PrimitiveValues.getBoolean(m_signature.getFieldType(), m_primitiveFieldValue);
+        }
+        return PrimitiveValues.getBoolean(m_fieldValue);
     }
 
     /**
@@ -152,6 +219,6 @@ public class FieldRttiImpl implements FieldRtti {
      * @return
      */
     public Object[] getParameterValues() {
-        return new Object[]{m_fieldValue};
+        return new Object[]{getFieldValue()};
     }
 }
\ No newline at end of file
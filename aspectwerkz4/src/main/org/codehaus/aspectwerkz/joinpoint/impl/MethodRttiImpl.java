@@ -29,8 +29,14 @@ public class MethodRttiImpl implements MethodRtti {
 
     private Object[] m_parameterValues = EMPTY_OBJECT_ARRAY;
 
+    private long[] m_primitiveParameterValues;
+
     private Object m_returnValue;
 
+    private long m_primitiveReturnValue;
+
+    private boolean m_isPrimitiveReturnValue = false;
+
     /**
      * Creates a new method RTTI.
      *
@@ -138,6 +144,18 @@ public class MethodRttiImpl implements MethodRtti {
      */
     public void setParameterValues(final Object[] parameterValues) {
         m_parameterValues = parameterValues;
+        m_primitiveParameterValues = null;
+    }
+
+    /**
+     * Sets the values of the parameters, the primitive ones being kept unboxed until they are asked for as objects.
+     *
+     * @param parameterValues          the values of the parameters, null for the primitive ones
+     * @param primitiveParameterValues the bits of the primitive parameters, see PrimitiveValues
+     */
+    public void setParameterValues(final Object[] parameterValues, final long[] primitiveParameterValues) {
+        m_parameterValues = parameterValues;
+        m_primitiveParameterValues = primitiveParameterValues;
     }
 
     /**
@@ -146,9 +164,69 @@ public class MethodRttiImpl implements MethodRtti {
      * @return the values of the parameters
      */
     public Object[] getParameterValues() {
+        if (m_primitiveParameterValues != null) {
+            PrimitiveValues.box(m_signature.getParameterTypes(), m_parameterValues, m_primitiveParameterValues);
+            m_primitiveParameterValues = null;
+        }
         return m_parameterValues;
     }
 
+    /**
+     * Returns the value of a primitive parameter as an int, without boxing it.
+     *
+     * @param index the parameter index
+     * @return the value of the parameter
+     */
+    public int getIntParameterValue(final int index) {
+        final Class type = m_signature.getParameterType(index);
+        if (m_primitiveParameterValues == null || !type.isPrimitive()) {
+            return PrimitiveValues.getInt(m_parameterValues[index]);
+        }
+        return PrimitiveValues.getInt(type, m_primitiveParameterValues[index]);
+    }
+
+    /**
+     * Returns the value of a primitive parameter as a long, without boxing it.
+     *
+     * @param index the parameter index
+     * @return the value of the parameter
+     */
+    public long getLongParameterValue(final int index) {
+        final Class type = m_signature.getParameterType(index);
+        if (m_primitiveParameterValues == null || !type.isPrimitive()) {
+            return PrimitiveValues.getLong(m_parameterValues[index]);
+        }
+        return PrimitiveValues.getLong(type, m_primitiveParameterValues[index]);
+    }
+
+    /**
+     * Returns the value of a primitive parameter as a double, without boxing it.
+     *
+     * @param index the parameter index
+     * @return the value of the parameter
+     */
+    public double getDoubleParameterValue(final int index) {
+        final Class type = m_signature.getParameterType(index);
+        if (m_primitiveParameterValues == null || !type.isPrimitive()) {
+            return PrimitiveValues.getDouble(m_parameterValues[index]);
+        }
+        return PrimitiveValues.getDouble(type, m_primitiveParameterValues[index]);
+    }
+
+    /**
+     * Returns the value of a primitive parameter as a boolean, without boxing it.
+     *
+     * @param index the parameter index
+     * @return the value of the parameter
+     */
+    public boolean getBooleanParameterValue(final int index) {
+        final Class type = m_signature.getParameterType(index);
+        if (m_primitiveParameterValues == null || !type.isPrimitive()) {
+            return PrimitiveValues.getBoolean(m_parameterValues[index]);
+        }
+        return PrimitiveValues.getBoolean(type, m_primitiveParameterValues[index]);
+    }
+
     /**
      * Returns the return type.
      *
@@ -165,6 +243,17 @@ public class MethodRttiImpl implements MethodRtti {
      */
     public void setReturnValue(final Object returnValue) {
         m_returnValue = returnValue;
+        m_isPrimitiveReturnValue = false;
+    }
+
+    /**
+     * Sets the primitive return value, kept unboxed until it is asked for as an object.
+     *
+     * @param primitiveReturnValue the bits of the return value, see PrimitiveValues
+     */
+    public void setPrimitiveReturnValue(final long primitiveReturnValue) {
+        m_primitiveReturnValue = primitiveReturnValue;
+        m_isPrimitiveReturnValue = true;
     }
 
     /**
@@ -173,9 +262,61 @@ public class MethodRttiImpl implements MethodRtti {
      * @return the value of the return type
      */
     public Object getReturnValue() {
+        if (m_isPrimitiveReturnValue) {
+            m_returnValue = PrimitiveValues.box(m_signature.getReturnType(), m_primitiveReturnValue);
+            m_isPrimitiveReturnValue = false;
+        }
         return m_returnValue;
     }
 
+    /**
+     * Returns the value of the return type as an int, without boxing it.
+     *
+     * @return the value of the return type
+     */
+    public int getIntReturnValue() {
+        if (m_isPrimitiveReturnValue) {
+            return PrimitiveValues.getInt(m_signature.getReturnType(), m_primitiveReturnValue);
+        }
+        return PrimitiveValues.getInt(m_returnValue);
+    }
+
+    /**
+     * Returns the value of the return type as a long, without boxing it.
+     *
+     * @return the value of the return type
+     */
+    public long getLongReturnValue() {
+        if (m_isPrimitiveReturnValue) {
+            return PrimitiveValues.getLong(m_signature.getReturnType(), m_primitiveReturnValue);
+        }
+        return PrimitiveValues.getLong(m_returnValue);
+    }
+
+    /**
+     * Returns the value of the return type as a double, without boxing it.
+     *
+     * @return the value of the return type
+     */
+    public double getDoubleReturnValue() {
+        if (m_isPrimitiveReturnValue) {
+            return PrimitiveValues.getDouble(m_signature.getReturnType(), m_primitiveReturnValue);
+        }
+        return PrimitiveValues.getDouble(m_returnValue);
+    }
+
+    /**
+     * Returns the value of the return type as a boolean, without boxing it.
+     *
+     * @return the value of the return type
+     */
+    public boolean getBooleanReturnValue() {
+        if (m_isPrimitiveReturnValue) {
+            return PrimitiveValues.getBoolean(m_signature.getReturnType(), m_primitiveReturnValue);
+        }
+        return PrimitiveValues.getBoolean(m_returnValue);
+    }
+
     /**
      * Returns a string representation of the signature.
      *
@@ -24,6 +24,8 @@ public class MethodSignatureImpl implements MethodSignature {
 
     private final Method m_method;
 
+    private final Class[] m_parameterTypes;
+
     /**
      * @param declaringType
      * @param method
@@ -31,6 +33,17 @@ public class MethodSignatureImpl implements MethodSignature {
     public MethodSignatureImpl(final Class declaringType, final Method method) {
         m_declaringType = declaringType;
         m_method = method;
+        m_parameterTypes = m_method.getParameterTypes();
+    }
+
+    /**
+     * Returns the type of a parameter, without copying the parameter types.
+     *
+     * @param index
+     * @return the parameter type
+     */
+    Class getParameterType(final int index) {
+        return m_parameterTypes[index];
     }
 
     /**
@@ -0,0 +1,220 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.joinpoint.impl;
+
+/**
+ * Helps the RTTI implementations to keep primitive values unboxed.
+ * <p/>
+ * The join point classes pass primitive values to the RTTI as long bits: the integral types and boolean are widened
+ * to long, float and double are stored as their raw bits. The values are boxed only when the generic Object API of
+ * the RTTI is called. The typed accessors follow the widening rules of <code>java.lang.reflect.Field.getXxx</code>.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class PrimitiveValues {
+
+    private PrimitiveValues() {
+    }
+
+    /**
+     * Boxes the primitive value held in the given bits.
+     *
+     * @param type the primitive type
+     * @param bits
+     * @return the wrapper instance
+     */
+    public static Object box(final Class type, final long bits) {
+        if (type == int.class) {
+            return new Integer((int) bits);
+        } else if (type == long.class) {
+            return new Long(bits);
+        } else if (type == boolean.class) {
+            return (bits != 0) ? Boolean.TRUE : Boolean.FALSE;
+        } else if (type == double.class) {
+            return new Double(Double.longBitsToDouble(bits));
+        } else if (type == float.class) {
+            return new Float(Float.intBitsToFloat((int) bits));
+        } else if (type == short.class) {
+            return new Short((short) bits);
+        } else if (type == byte.class) {
+            return new Byte((byte) bits);
+        } else if (type == char.class) {
+            return new Character((char) bits);
+        }
+        throw new IllegalArgumentException("not a primitive type: " + type);
+    }
+
+    /**
+     * Boxes the primitive values held in the given bits into the values array, at the index of the primitive types.
+     *
+     * @param types
+     * @param values
+     * @param bits
+     */
+    public static void box(final Class[] types, final Object[] values, final long[] bits) {
+        for (int i = 0; i < types.length; i++) {
+            if (types[i].isPrimitive()) {
+                values[i] = box(types[i], bits[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the value held in the given bits as an int.
+     *
+     * @param type the primitive type
+     * @param bits
+     * @return the value
+     * @throws IllegalArgumentException if the type can not be widened to int
+     */
+    public static int getInt(final Class type, final long bits) {
+        if (type == int.class || type == short.class || type == byte.class || type == char.class) {
+            return (int) bits;
+        }
+        throw new IllegalArgumentException("can not convert " + type + " to int");
+    }
+
+    /**
+     * Returns the value held in the given bits as a long.
+     *
+     * @param type the primitive type
+     * @param bits
+     * @return the value
+     * @throws IllegalArgumentException if the type can not be widened to long
+     */
+    public static long getLong(final Class type, final long bits) {
+        if (type == long.class) {
+            return bits;
+        }
+        return getInt(type, bits);
+    }
+
+    /**
+     * Returns the value held in the given bits as a double.
+     *
+     * @param type the primitive type
+     * @param bits
+     * @return the value
+     * @throws IllegalArgumentException if the type can not be widened to double
+     */
+    public static double getDouble(final Class type, final long bits) {
+        if (type == double.class) {
+            return Double.longBitsToDouble(bits);
+        } else if (type == float.class) {
+            return Float.intBitsToFloat((int) bits);
+        }
+        return getLong(type, bits);
+    }
+
+    /**
+     * Returns the value held in the given bits as a boolean.
+     *
+     * @param type the primitive type
+     * @param bits
+     * @return the value
+     * @throws IllegalArgumentException if the type is not boolean
+     */
+    public static boolean getBoolean(final Class type, final long bits) {
+        if (type == boolean.class) {
+            return bits != 0;
+        }
+        throw new IllegalArgumentException("can not convert " + type + " to boolean");
+    }
+
+    /**
+     * Returns the value of the given wrapper as an int.
+     *
+     * @param wrapper
+     * @return the value
+     * @throws IllegalArgumentException if the wrapped type can not be widened to int
+     */
+    public static int getInt(final Object wrapper) {
+        return getInt(getPrimitiveType(wrapper), getBits(wrapper));
+    }
+
+    /**
+     * Returns the value of the given wrapper as a long.
+     *
+     * @param wrapper
+     * @return the value
+     * @throws IllegalArgumentException if the wrapped type can not be widened to long
+     */
+    public static long getLong(final Object wrapper) {
+        return getLong(getPrimitiveType(wrapper), getBits(wrapper));
+    }
+
+    /**
+     * Returns the value of the given wrapper as a double.
+     *
+     * @param wrapper
+     * @return the value
+     * @throws IllegalArgumentException if the wrapped type can not be widened to double
+     */
+    public static double getDouble(final Object wrapper) {
+        return getDouble(getPrimitiveType(wrapper), getBits(wrapper));
+    }
+
+    /**
+     * Returns the value of the given wrapper as a boolean.
+     *
+     * @param wrapper
+     * @return the value
+     * @throws IllegalArgumentException if the wrapper is not a Boolean
+     */
+    public static boolean getBoolean(final Object wrapper) {
+        return getBoolean(getPrimitiveType(wrapper), getBits(wrapper));
+    }
+
+    /**
+     * Returns the primitive type of a wrapper instance.
+     *
+     * @param wrapper
+     * @return the primitive type
+     * @throws IllegalArgumentException if the instance is not a wrapper
+     */
+    private static Class getPrimitiveType(final Object wrapper) {
+        if (wrapper instanceof Integer) {
+            return int.class;
+        } else if (wrapper instanceof Long) {
+            return long.class;
+        } else if (wrapper instanceof Boolean) {
+            return boolean.class;
+        } else if (wrapper instanceof Double) {
+            return double.class;
+        } else if (wrapper instanceof Float) {
+            return float.class;
+        } else if (wrapper instanceof Short) {
+            return short.class;
+        } else if (wrapper instanceof Byte) {
+            return byte.class;
+        } else if (wrapper instanceof Character) {
+            return char.class;
+        }
+        throw new IllegalArgumentException("not a primitive value: " + wrapper);
+    }
+
+    /**
+     * Returns the bits of a wrapper instance.
+     *
+     * @param wrapper
+     * @return the bits
+     */
+    private static long getBits(final Object wrapper) {
+        if (wrapper instanceof Boolean) {
+            return ((Boolean) wrapper).booleanValue() ? 1 : 0;
+        } else if (wrapper instanceof Character) {
+            return ((Character) wrapper).charValue();
+        } else if (wrapper instanceof Double) {
+            return Double.doubleToRawLongBits(((Double) wrapper).doubleValue());
+        } else if (wrapper instanceof Float) {
+            return Float.floatToRawIntBits(((Float) wrapper).floatValue());
+        } else {
+            return ((Number) wrapper).longValue();
+        }
+    }
+}
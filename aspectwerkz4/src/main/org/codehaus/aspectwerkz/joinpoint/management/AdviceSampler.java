@@ -0,0 +1,366 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.joinpoint.management;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.codehaus.aspectwerkz.util.StripedCounters;
+import org.codehaus.aspectwerkz.util.Strings;
+
+/**
+ * Samples the invocations of an advice, so that only one in N invocations of the join points run it.
+ * <p/>
+ * The advices listed in the <code>aspectwerkz.sampling.advices</code> aspect parameter (advice method names, comma
+ * separated, each one optionally followed by ":N", or "*" for all), and all the advices of the aspects that have the
+ * <code>aspectwerkz.sampling.rate</code> aspect parameter, are guarded by a sampler in the join point classes: the
+ * advice is skipped (and for an around advice the join point proceeds directly) when the sampler says so. The rate
+ * given after the advice name, else the one of the <code>aspectwerkz.sampling.rate</code> parameter, is the initial
+ * rate of the sampler: 1 runs the advice at each invocation, N runs it once every N invocations and 0 never runs it.
+ * <p/>
+ * The invoke method of a join point counts its invocation once per sampled aspect (see <code>nextInvocation()</code>)
+ * and all the advices of the aspect are sampled from this invocation number: an advice sampled at the rate N runs
+ * when the number is a multiple of N. The before, around and after advices of an aspect sampled at the same rate thus
+ * run for the same invocations.
+ * <p/>
+ * There is one sampler per class loader of the join point classes, aspect qualified name and advice name, shared by
+ * all the join points of the advice in that class loader. The rate can be changed at any time through
+ * <code>setRate(..)</code> (or <code>Deployer.setSamplingRate(..)</code>) and is taken into account at the next
+ * invocation, without redefining the join points. A join point compiled with a rate from the aspect definition that
+ * differs from the one the sampler was created with (f.e. after a redeployment of the aop.xml file) sets the rate of
+ * the sampler, the latest change winning. An advice that is not guarded can only be sampled after its aspect
+ * definition has been given one of the parameters and the join points have been redefined.
+ * <p/>
+ * The invocations are counted in counters striped by thread (see StripedCounters), neither synchronized nor thread
+ * local: the sampling and the counts are approximate when several threads share a stripe.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class AdviceSampler {
+
+    /**
+     * The aspect parameter that lists the sampled advices
+     */
+    public static final String SAMPLING_ADVICES_PARAMETER = "aspectwerkz.sampling.advices";
+
+    /**
+     * The aspect parameter for the rate of all the advices of the aspect
+     */
+    public static final String SAMPLING_RATE_PARAMETER = "aspectwerkz.sampling.rate";
+
+    private static final String CSV_HEADER = "aspectQualifiedName,adviceName,rate,invocations,sampled";
+
+    private static final int INVOCATIONS = 0;
+
+    private static final int SAMPLED = 1;
+
+    /**
+     * The samplers per aspect qualified name + '/' + advice name, per class loader
+     */
+    private static final Map s_samplers = new WeakHashMap();
+
+    /**
+     * The invocation counters shared by the samplers of an aspect, per aspect qualified name, per class loader
+     */
+    private static final Map s_aspectInvocations = new WeakHashMap();
+
+    /**
+     * The rates set at runtime per aspect qualified name (for all its advices) or per aspect qualified name + '/' +
+     * advice name, for the samplers created afterwards
+     */
+    private static final Map s_rates = new HashMap();
+
+    private final String m_aspectQualifiedName;
+
+    private final String m_adviceName;
+
+    private volatile int m_rate;
+
+    /**
+     * The rate from the aspect definition of the latest join point compiled with the advice
+     */
+    private int m_definedRate;
+
+    /**
+     * The invocations of the join points of the aspect, shared by the samplers of the aspect
+     */
+    private final StripedCounters m_aspectInvocations;
+
+    private final StripedCounters m_counters = new StripedCounters(2);
+
+    private AdviceSampler(final String aspectQualifiedName,
+                          final String adviceName,
+                          final int rate,
+                          final int definedRate,
+                          final StripedCounters aspectInvocations) {
+        m_aspectQualifiedName = aspectQualifiedName;
+        m_adviceName = adviceName;
+        m_rate = rate;
+        m_definedRate = definedRate;
+        m_aspectInvocations = aspectInvocations;
+    }
+
+    /**
+     * Returns the sampler of an advice, called by the static initializer of the join point classes. The sampler is
+     * created by the first call, with the rate set at runtime for the advice or its aspect if any, else with the
+     * given rate. If the sampler exists and the given rate is not the one of its latest call, it is the new rate of
+     * the sampler.
+     *
+     * @param aspectQualifiedName
+     * @param adviceName
+     * @param rate                the rate from the aspect definition
+     * @param loader              the class loader of the join point class
+     * @return the sampler
+     */
+    public static AdviceSampler getSampler(final String aspectQualifiedName,
+                                           final String adviceName,
+                                           final int rate,
+                                           final ClassLoader loader) {
+        final String key = aspectQualifiedName + '/' + adviceName;
+        final AdviceSampler sampler;
+        synchronized (s_samplers) {
+            Map samplers = (Map) s_samplers.get(loader);
+            if (samplers == null) {
+                samplers = new HashMap();
+                s_samplers.put(loader, samplers);
+            }
+            AdviceSampler existing = (AdviceSampler) samplers.get(key);
+            if (existing == null) {
+                Integer runtimeRate = (Integer) s_rates.get(key);
+                if (runtimeRate == null) {
+                    runtimeRate = (Integer) s_rates.get(aspectQualifiedName);
+                }
+                existing = new AdviceSampler(
+                        aspectQualifiedName,
+                        adviceName,
+                        (runtimeRate != null) ? runtimeRate.intValue() : rate,
+                        rate,
+                        getAspectInvocations(aspectQualifiedName, loader)
+                );
+                samplers.put(key, existing);
+            } else if (existing.m_definedRate != rate) {
+                existing.m_definedRate = rate;
+                existing.m_rate = rate;
+            }
+            sampler = existing;
+        }
+        JoinPointStatistics.registerMBeanOnce();
+        return sampler;
+    }
+
+    /**
+     * Returns the invocation counters of an aspect.
+     * Lock on s_samplers must be owned.
+     *
+     * @param aspectQualifiedName
+     * @param loader
+     * @return the counters
+     */
+    private static StripedCounters getAspectInvocations(final String aspectQualifiedName, final ClassLoader loader) {
+        Map aspectInvocations = (Map) s_aspectInvocations.get(loader);
+        if (aspectInvocations == null) {
+            aspectInvocations = new HashMap();
+            s_aspectInvocations.put(loader, aspectInvocations);
+        }
+        StripedCounters invocations = (StripedCounters) aspectInvocations.get(aspectQualifiedName);
+        if (invocations == null) {
+            invocations = new StripedCounters(1);
+            aspectInvocations.put(aspectQualifiedName, invocations);
+        }
+        return invocations;
+    }
+
+    /**
+     * Sets the rate of a sampled advice, or of all the sampled advices of an aspect, in all the class loaders. The
+     * rate is also used for the samplers of the advice or aspect that are created afterwards.
+     *
+     * @param aspectQualifiedName
+     * @param adviceName          the advice name, or null for all the advices of the aspect
+     * @param rate                1 to run the advice at each invocation, N to run it once every N invocations, 0 to
+     *                            never run it
+     */
+    public static void setRate(final String aspectQualifiedName, final String adviceName, final int rate) {
+        if (aspectQualifiedName == null) {
+            throw new IllegalArgumentException("aspect qualified name can not be null");
+        }
+        if (rate < 0) {
+            throw new IllegalArgumentException("sampling rate can not be negative: " + rate);
+        }
+        synchronized (s_samplers) {
+            if (adviceName == null) {
+                // the aspect rate overrides the rates previously set for its advices
+                for (Iterator it = s_rates.keySet().iterator(); it.hasNext();) {
+                    if (((String) it.next()).startsWith(aspectQualifiedName + '/')) {
+                        it.remove();
+                    }
+                }
+                s_rates.put(aspectQualifiedName, new Integer(rate));
+            } else {
+                s_rates.put(aspectQualifiedName + '/' + adviceName, new Integer(rate));
+            }
+            for (Iterator samplers = s_samplers.values().iterator(); samplers.hasNext();) {
+                for (Iterator it = ((Map) samplers.next()).values().iterator(); it.hasNext();) {
+                    AdviceSampler sampler = (AdviceSampler) it.next();
+                    if (sampler.m_aspectQualifiedName.equals(aspectQualifiedName)
+                        && (adviceName == null || sampler.m_adviceName.equals(adviceName))) {
+                        sampler.m_rate = rate;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the rate of an advice from the sampling parameters of its aspect definition.
+     *
+     * @param parameters the aspect parameters
+     * @param adviceName
+     * @return the rate, or -1 if the advice is not sampled
+     */
+    public static int getDefinedRate(final Map parameters, final String adviceName) {
+        int aspectRate = -1;
+        final String rate = (String) parameters.get(SAMPLING_RATE_PARAMETER);
+        if (rate != null) {
+            aspectRate = parseRate(rate, 1);
+        }
+        final String advices = (String) parameters.get(SAMPLING_ADVICES_PARAMETER);
+        if (advices != null) {
+            final String[] names = Strings.splitString(advices, ",");
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i].trim();
+                String adviceRate = null;
+                final int separator = name.indexOf(':');
+                if (separator >= 0) {
+                    adviceRate = name.substring(separator + 1);
+                    name = name.substring(0, separator).trim();
+                }
+                if (name.equals("*") || name.equals(adviceName)) {
+                    final int defaultRate = (aspectRate >= 0) ? aspectRate : 1;
+                    return (adviceRate != null) ? parseRate(adviceRate, defaultRate) : defaultRate;
+                }
+            }
+        }
+        return aspectRate;
+    }
+
+
+    private static int parseRate(final String rate, final int defaultRate) {
+        try {
+            final int intRate = Integer.parseInt(rate.trim());
+            if (intRate >= 0) {
+                return intRate;
+            }
+        } catch (NumberFormatException e) {
+            // use the default rate
+        }
+        return defaultRate;
+    }
+
+    /**
+     * Counts an invocation of the join points of the aspect, once per invocation of a join point whatever the number
+     * of sampled advices of the aspect it has.
+     *
+     * @return the invocation number, to sample the advices of the aspect with
+     */
+    public long nextInvocation() {
+        final StripedCounters invocations = m_aspectInvocations;
+        return invocations.increment(invocations.getStripe(), 0);
+    }
+
+    /**
+     * Counts an invocation of the advice join points and checks if the advice runs for it.
+     *
+     * @param invocation the invocation number returned by <code>nextInvocation()</code> for the join point
+     * @return true if the advice runs
+     */
+    public boolean isSampled(final long invocation) {
+        final StripedCounters counters = m_counters;
+        final int stripe = counters.getStripe();
+        counters.increment(stripe, INVOCATIONS);
+        final int rate = m_rate;
+        if (rate == 1 || (rate > 1 && invocation % rate == 0)) {
+            counters.increment(stripe, SAMPLED);
+            return true;
+        }
+        return false;
+    }
+
+    public String getAspectQualifiedName() {
+        return m_aspectQualifiedName;
+    }
+
+    public String getAdviceName() {
+        return m_adviceName;
+    }
+
+    public int getRate() {
+        return m_rate;
+    }
+
+    public long getInvocationCount() {
+        return m_counters.sum(INVOCATIONS);
+    }
+
+    /**
+     * Returns the number of invocations the advice was run for.
+     *
+     * @return the count
+     */
+    public long getSampledCount() {
+        return m_counters.sum(SAMPLED);
+    }
+
+    /**
+     * Returns the samplers of all the sampled advices, in all the class loaders.
+     *
+     * @return a list of AdviceSampler, sorted by aspect qualified name and advice name
+     */
+    public static List getSamplers() {
+        final List all = new ArrayList();
+        synchronized (s_samplers) {
+            for (Iterator it = s_samplers.values().iterator(); it.hasNext();) {
+                all.addAll(((Map) it.next()).values());
+            }
+        }
+        Collections.sort(
+                all, new Comparator() {
+                    public int compare(final Object o1, final Object o2) {
+                        final AdviceSampler sampler1 = (AdviceSampler) o1;
+                        final AdviceSampler sampler2 = (AdviceSampler) o2;
+                        final int order = sampler1.m_aspectQualifiedName.compareTo(sampler2.m_aspectQualifiedName);
+                        return (order != 0) ? order : sampler1.m_adviceName.compareTo(sampler2.m_adviceName);
+                    }
+                }
+        );
+        return all;
+    }
+
+    /**
+     * Returns a CSV snapshot of the samplers, one line per sampled advice and class loader after a header line.
+     *
+     * @return the snapshot
+     */
+    public static String getCsvSnapshot() {
+        final StringBuffer buf = new StringBuffer(CSV_HEADER).append('\n');
+        for (Iterator it = getSamplers().iterator(); it.hasNext();) {
+            AdviceSampler sampler = (AdviceSampler) it.next();
+            buf.append(sampler.m_aspectQualifiedName).append(',');
+            buf.append(sampler.m_adviceName).append(',');
+            buf.append(sampler.getRate()).append(',');
+            buf.append(sampler.getInvocationCount()).append(',');
+            buf.append(sampler.getSampledCount()).append('\n');
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,46 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.joinpoint.management;
+
+import java.lang.reflect.Method;
+
+/**
+ * An asynchronous advice of a join point class, held in a static field of the join point class (see
+ * AsyncAdviceDispatcher).
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class AsyncAdvice {
+
+    private final AsyncAdviceDispatcher m_dispatcher;
+
+    private final Method m_method;
+
+    AsyncAdvice(final AsyncAdviceDispatcher dispatcher, final Method method) {
+        m_dispatcher = dispatcher;
+        m_method = method;
+    }
+
+    /**
+     * Enqueues the advice invocation, called by the join point classes.
+     *
+     * @param aspect    the aspect instance
+     * @param arguments the advice arguments, owned by the dispatcher from now on
+     */
+    public void dispatch(final Object aspect, final Object[] arguments) {
+        m_dispatcher.dispatch(this, aspect, arguments);
+    }
+
+    public AsyncAdviceDispatcher getDispatcher() {
+        return m_dispatcher;
+    }
+
+    public Method getMethod() {
+        return m_method;
+    }
+}
@@ -0,0 +1,481 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.joinpoint.management;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
+import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
+import org.objectweb.asm.Type;
+
+/**
+ * Dispatches the asynchronous advices of an aspect to a worker thread.
+ * <p/>
+ * The before, after finally and after returning advices listed in the <code>aspectwerkz.async.advices</code> aspect
+ * parameter (advice method names, comma separated, or "*" for all) are not invoked by the join point classes: the join
+ * point copies the advice arguments in a new array and enqueues it, and the advice is invoked later on the dispatcher
+ * thread of the aspect. The copy is shallow: the bound objects themselves are not copied. Advices that take a
+ * JoinPoint or StaticJoinPoint can not be asynchronous, since the join point state does not outlive the invocation.
+ * <p/>
+ * Each aspect has its own bounded queue, configured by the aspect parameters:
+ * <ul>
+ * <li><code>aspectwerkz.async.queue.size</code> the capacity of the queue (1024 by default)</li>
+ * <li><code>aspectwerkz.async.batch.size</code> the max number of advices taken from the queue at once by the
+ * dispatcher thread (64 by default)</li>
+ * <li><code>aspectwerkz.async.policy</code> what to do when the queue is full: "block" waits for room in the queue
+ * (default), "drop" discards the advice and "caller" invokes the advice in the calling thread. An advice dispatched by
+ * the dispatcher thread itself never waits, it is invoked in place as with the "caller" policy.</li>
+ * </ul>
+ * The dispatcher counts the dispatched, executed, dropped, failed and caller invoked advices and the max depth of its
+ * queue. The advices that throw an exception are counted as failed and logged (see AspectWerkzPreProcessor.log).
+ * <p/>
+ * The dispatcher thread stops when the aspect is undeployed (see shutdown), when it is interrupted and when the class
+ * loader of the join point classes has been garbage collected: the queued advices are then dropped, and so are the
+ * advices dispatched afterwards by the join point classes that are still in use. The dispatcher thread does not
+ * inherit the context class loader of the thread that created it, which would keep the class loader of an application
+ * alive, and runs the advices with the class loader of AspectWerkz as its context class loader.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class AsyncAdviceDispatcher implements Runnable {
+
+    /**
+     * The aspect parameter that lists the asynchronous advices
+     */
+    public static final String ASYNC_ADVICES_PARAMETER = "aspectwerkz.async.advices";
+
+    /**
+     * The aspect parameter for the queue capacity
+     */
+    public static final String QUEUE_SIZE_PARAMETER = "aspectwerkz.async.queue.size";
+
+    /**
+     * The aspect parameter for the batch size
+     */
+    public static final String BATCH_SIZE_PARAMETER = "aspectwerkz.async.batch.size";
+
+    /**
+     * The aspect parameter for the full queue policy
+     */
+    public static final String POLICY_PARAMETER = "aspectwerkz.async.policy";
+
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    public static final String POLICY_BLOCK = "block";
+
+    public static final String POLICY_DROP = "drop";
+
+    public static final String POLICY_CALLER = "caller";
+
+    /**
+     * The time an idle dispatcher thread waits before checking if its class loader is still alive, in milliseconds
+     */
+    private static final long IDLE_TIMEOUT = 10000L;
+
+    /**
+     * The dispatchers per aspect qualified name, per class loader
+     */
+    private static final Map s_dispatchers = new WeakHashMap();
+
+    private final String m_aspectQualifiedName;
+
+    private final String m_policy;
+
+    private final int m_batchSize;
+
+    private final AsyncAdvice[] m_advices;
+
+    private final Object[] m_aspects;
+
+    private final Object[][] m_arguments;
+
+    /**
+     * The class loader of the join point classes, or null for the bootstrap class loader
+     */
+    private final WeakReference m_loader;
+
+    private final Thread m_thread;
+
+    private boolean m_isShutdown = false;
+
+    private int m_head = 0;
+
+    private int m_count = 0;
+
+    private boolean m_isDispatching = false;
+
+    private long m_dispatched = 0;
+
+    private long m_executed = 0;
+
+    private long m_dropped = 0;
+
+    private long m_failed = 0;
+
+    private long m_callerInvoked = 0;
+
+    private int m_maxDepth = 0;
+
+    private AsyncAdviceDispatcher(final String aspectQualifiedName,
+                                  final int queueSize,
+                                  final int batchSize,
+                                  final String policy,
+                                  final ClassLoader loader) {
+        m_aspectQualifiedName = aspectQualifiedName;
+        m_policy = policy;
+        m_batchSize = Math.max(1, Math.min(batchSize, queueSize));
+        m_advices = new AsyncAdvice[queueSize];
+        m_aspects = new Object[queueSize];
+        m_arguments = new Object[queueSize][];
+        m_loader = (loader != null) ? new WeakReference(loader) : null;
+        m_thread = new Thread(this, "AspectWerkz async advices of " + aspectQualifiedName);
+        m_thread.setDaemon(true);
+        m_thread.setContextClassLoader(AsyncAdviceDispatcher.class.getClassLoader());
+        m_thread.start();
+    }
+
+    /**
+     * Returns an asynchronous advice, called by the static initializer of the join point classes. The dispatcher of
+     * the aspect is created by the first call, with the given queue settings.
+     *
+     * @param aspectQualifiedName
+     * @param aspectClassName
+     * @param adviceMethodName
+     * @param adviceMethodDesc
+     * @param queueSize
+     * @param batchSize
+     * @param policy
+     * @param loader              the class loader of the join point class
+     * @return the asynchronous advice
+     */
+    public static AsyncAdvice getAsyncAdvice(final String aspectQualifiedName,
+                                             final String aspectClassName,
+                                             final String adviceMethodName,
+                                             final String adviceMethodDesc,
+                                             final int queueSize,
+                                             final int batchSize,
+                                             final String policy,
+                                             final ClassLoader loader) {
+        final AsyncAdviceDispatcher dispatcher;
+        synchronized (s_dispatchers) {
+            Map dispatchers = (Map) s_dispatchers.get(loader);
+            if (dispatchers == null) {
+                dispatchers = new HashMap();
+                s_dispatchers.put(loader, dispatchers);
+            }
+            AsyncAdviceDispatcher existing = (AsyncAdviceDispatcher) dispatchers.get(aspectQualifiedName);
+            if (existing == null) {
+                existing = new AsyncAdviceDispatcher(aspectQualifiedName, queueSize, batchSize, policy, loader);
+                dispatchers.put(aspectQualifiedName, existing);
+            }
+            dispatcher = existing;
+        }
+        final Class aspectClass = AsmHelper.forName(loader, aspectClassName);
+        if (aspectClass == null) {
+            throw new RuntimeException("could not load aspect class " + aspectClassName);
+        }
+        final Method[] methods = aspectClass.getMethods();
+        for (int i = 0; i < methods.length; i++) {
+            if (methods[i].getName().equals(adviceMethodName) &&
+                Type.getMethodDescriptor(methods[i]).equals(adviceMethodDesc)) {
+                // the aspect class itself may not be public
+                methods[i].setAccessible(true);
+                return new AsyncAdvice(dispatcher, methods[i]);
+            }
+        }
+        throw new RuntimeException(
+                "could not find asynchronous advice " + aspectClassName + '.' + adviceMethodName + adviceMethodDesc
+        );
+    }
+
+    /**
+     * Returns the dispatchers of all the aspects.
+     *
+     * @return a list of AsyncAdviceDispatcher
+     */
+    public static List getDispatchers() {
+        final List all = new ArrayList();
+        synchronized (s_dispatchers) {
+            for (Iterator it = s_dispatchers.values().iterator(); it.hasNext();) {
+                all.addAll(((Map) it.next()).values());
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Stops the dispatchers of an aspect, in all the class loaders, f.e. when the aspect is undeployed. The join point
+     * classes compiled afterwards get a new dispatcher.
+     *
+     * @param aspectQualifiedName
+     */
+    public static void shutdown(final String aspectQualifiedName) {
+        final List stopped = new ArrayList();
+        synchronized (s_dispatchers) {
+            for (Iterator it = s_dispatchers.values().iterator(); it.hasNext();) {
+                final Object dispatcher = ((Map) it.next()).remove(aspectQualifiedName);
+                if (dispatcher != null) {
+                    stopped.add(dispatcher);
+                }
+            }
+        }
+        for (Iterator it = stopped.iterator(); it.hasNext();) {
+            ((AsyncAdviceDispatcher) it.next()).shutdown();
+        }
+    }
+
+    /**
+     * Stops the dispatcher thread. The queued advices and the advices dispatched afterwards are dropped.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (m_isShutdown) {
+                return;
+            }
+            m_isShutdown = true;
+            drop();
+        }
+        m_thread.interrupt();
+    }
+
+    public synchronized boolean isShutdown() {
+        return m_isShutdown;
+    }
+
+    /**
+     * Enqueues an advice invocation, or handles it according to the policy when the queue is full.
+     *
+     * @param advice
+     * @param aspect
+     * @param arguments
+     */
+    void dispatch(final AsyncAdvice advice, final Object aspect, final Object[] arguments) {
+        synchronized (this) {
+            while (m_count == m_advices.length && !m_isShutdown) {
+                if (POLICY_DROP.equals(m_policy)) {
+                    m_dropped++;
+                    return;
+                } else if (POLICY_CALLER.equals(m_policy) || Thread.currentThread() == m_thread) {
+                    // the dispatcher thread would wait for itself
+                    m_callerInvoked++;
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    m_dropped++;
+                    return;
+                }
+            }
+            if (m_isShutdown) {
+                m_dropped++;
+                return;
+            }
+            if (m_count < m_advices.length) {
+                final int tail = (m_head + m_count) % m_advices.length;
+                m_advices[tail] = advice;
+                m_aspects[tail] = aspect;
+                m_arguments[tail] = arguments;
+                m_count++;
+                m_dispatched++;
+                if (m_count > m_maxDepth) {
+                    m_maxDepth = m_count;
+                }
+                if (m_count == 1) {
+                    notifyAll();
+                }
+                return;
+            }
+        }
+        // caller policy with a full queue
+        invoke(advice.getMethod(), aspect, arguments);
+    }
+
+    /**
+     * Invokes the queued advices, by batch, until the dispatcher is shut down.
+     */
+    public void run() {
+        final AsyncAdvice[] advices = new AsyncAdvice[m_batchSize];
+        final Object[] aspects = new Object[m_batchSize];
+        final Object[][] arguments = new Object[m_batchSize][];
+        while (true) {
+            int size;
+            synchronized (this) {
+                m_isDispatching = false;
+                while (m_count == 0 && !m_isShutdown) {
+                    if (m_loader != null && m_loader.get() == null) {
+                        // the join point classes have been unloaded
+                        m_isShutdown = true;
+                        break;
+                    }
+                    notifyAll();
+                    try {
+                        wait(IDLE_TIMEOUT);
+                    } catch (InterruptedException e) {
+                        m_isShutdown = true;
+                        break;
+                    }
+                }
+                if (m_isShutdown) {
+                    drop();
+                    notifyAll();
+                    return;
+                }
+                size = Math.min(m_count, m_batchSize);
+                for (int i = 0; i < size; i++) {
+                    advices[i] = m_advices[m_head];
+                    aspects[i] = m_aspects[m_head];
+                    arguments[i] = m_arguments[m_head];
+                    m_advices[m_head] = null;
+                    m_aspects[m_head] = null;
+                    m_arguments[m_head] = null;
+                    m_head = (m_head + 1) % m_advices.length;
+                }
+                m_count -= size;
+                m_isDispatching = true;
+                notifyAll();
+            }
+            for (int i = 0; i < size; i++) {
+                invoke(advices[i].getMethod(), aspects[i], arguments[i]);
+                advices[i] = null;
+                aspects[i] = null;
+                arguments[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Waits until all the queued advices have been invoked.
+     *
+     * @param timeout the max time to wait in milliseconds
+     * @return true if the queue is empty
+     */
+    public synchronized boolean flush(final long timeout) {
+        final long end = System.currentTimeMillis() + timeout;
+        while (m_count > 0 || m_isDispatching) {
+            final long remaining = end - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getAspectQualifiedName() {
+        return m_aspectQualifiedName;
+    }
+
+    public String getPolicy() {
+        return m_policy;
+    }
+
+    public int getQueueSize() {
+        return m_advices.length;
+    }
+
+    public synchronized int getQueueDepth() {
+        return m_count;
+    }
+
+    public synchronized int getMaxQueueDepth() {
+        return m_maxDepth;
+    }
+
+    public synchronized long getDispatchedCount() {
+        return m_dispatched;
+    }
+
+    public synchronized long getExecutedCount() {
+        return m_executed;
+    }
+
+    public synchronized long getDroppedCount() {
+        return m_dropped;
+    }
+
+    public synchronized long getFailedCount() {
+        return m_failed;
+    }
+
+    public synchronized long getCallerInvokedCount() {
+        return m_callerInvoked;
+    }
+
+    public synchronized String toString() {
+        return "AsyncAdviceDispatcher[" + m_aspectQualifiedName +
+               ", policy=" + m_policy +
+               ", queue=" + m_count + '/' + m_advices.length +
+               ", maxDepth=" + m_maxDepth +
+               ", dispatched=" + m_dispatched +
+               ", executed=" + m_executed +
+               ", dropped=" + m_dropped +
+               ", failed=" + m_failed +
+               ", callerInvoked=" + m_callerInvoked + ']';
+    }
+
+    /**
+     * Drops the queued advices.
+     */
+    private void drop() {
+        while (m_count > 0) {
+            m_advices[m_head] = null;
+            m_aspects[m_head] = null;
+            m_arguments[m_head] = null;
+            m_head = (m_head + 1) % m_advices.length;
+            m_count--;
+            m_dropped++;
+        }
+    }
+
+    /**
+     * Invokes an advice and counts it.
+     *
+     * @param method
+     * @param aspect
+     * @param arguments
+     */
+    private void invoke(final Method method, final Object aspect, final Object[] arguments) {
+        Throwable failure = null;
+        try {
+            method.invoke(aspect, arguments);
+        } catch (InvocationTargetException e) {
+            failure = e.getTargetException();
+        } catch (Throwable t) {
+            failure = t;
+        }
+        synchronized (this) {
+            m_executed++;
+            if (failure != null) {
+                m_failed++;
+            }
+        }
+        if (failure != null) {
+            AspectWerkzPreProcessor.log(
+                    "AspectWerkz - WARN - asynchronous advice " + method.getDeclaringClass().getName() + '.' +
+                    method.getName() + " of aspect " + m_aspectQualifiedName + " failed: " + failure
+            );
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.joinpoint.management;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.codehaus.aspectwerkz.aspect.AdviceInfo;
+import org.codehaus.aspectwerkz.transform.inlining.EmittedJoinPoint;
+
+/**
+ * Index of the joinpoint classes generated ahead of time by the offline compiler (see AspectWerkzC -aotjp).
+ * <p/>
+ * The index is a META-INF/aspectwerkz/joinpoints.idx resource stored next to the weaved classes (in the jar or the
+ * directory root), with one line per joinpoint class holding the emitted joinpoint fields separated by a tab,
+ * followed by the number of advices the joinpoint class has been compiled with and, for each of them, the aspect
+ * qualified name, the advice name and the expression it was bound with.
+ * Since the weaved classes do not register those joinpoints when they are initialized, the index is what
+ * allows the JoinPointManager to rebuild their compilation info when a deployment needs to redefine them.
+ * <p/>
+ * Indexes written before the advices were listed only hold the emitted joinpoint fields.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class JoinPointIndex {
+
+    /**
+     * The name of the index resource
+     */
+    public static final String INDEX_RESOURCE_NAME = "META-INF/aspectwerkz/joinpoints.idx";
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final char SEPARATOR = '\t';
+
+    private static final char ESCAPE = '\\';
+
+    private static final int JOIN_POINT_FIELD_COUNT = 11;
+
+    private static final int ADVICE_FIELD_COUNT = 3;
+
+    /**
+     * Reads all the index resources visible from the given loader.
+     *
+     * @param loader
+     * @return a list of Entry
+     * @throws IOException
+     */
+    public static List readJoinPoints(final ClassLoader loader) throws IOException {
+        final List joinPoints = new ArrayList();
+        final Enumeration indexes = loader.getResources(INDEX_RESOURCE_NAME);
+        while (indexes.hasMoreElements()) {
+            InputStream in = ((URL) indexes.nextElement()).openStream();
+            try {
+                addJoinPoints(joinPoints, in);
+            } finally {
+                in.close();
+            }
+        }
+        return joinPoints;
+    }
+
+    /**
+     * Reads an index and adds the joinpoints it lists to the given list, unless a joinpoint with the same class name
+     * is already there.
+     *
+     * @param joinPoints list of Entry
+     * @param in
+     * @throws IOException
+     */
+    public static void addJoinPoints(final List joinPoints, final InputStream in) throws IOException {
+        final Set joinPointClassNames = new HashSet();
+        for (Iterator it = joinPoints.iterator(); it.hasNext();) {
+            joinPointClassNames.add(((Entry) it.next()).getJoinPoint().getJoinPointClassName());
+        }
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, ENCODING));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.length() == 0 || line.charAt(0) == '#') {
+                continue;
+            }
+            Entry entry = fromIndexEntry(line);
+            if (joinPointClassNames.add(entry.getJoinPoint().getJoinPointClassName())) {
+                joinPoints.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Writes the given joinpoints as an index.
+     *
+     * @param joinPoints list of Entry
+     * @param out
+     * @throws IOException
+     */
+    public static void writeJoinPoints(final List joinPoints, final OutputStream out) throws IOException {
+        final Writer writer = new OutputStreamWriter(out, ENCODING);
+        for (Iterator it = joinPoints.iterator(); it.hasNext();) {
+            writer.write(toIndexEntry((Entry) it.next()));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Returns the index line for the given joinpoint.
+     *
+     * @param entry
+     * @return the index line, without line terminator
+     */
+    public static String toIndexEntry(final Entry entry) {
+        final EmittedJoinPoint joinPoint = entry.getJoinPoint();
+        final StringBuffer buf = new StringBuffer();
+        buf.append(joinPoint.getJoinPointType()).append(SEPARATOR);
+        append(buf, joinPoint.getCallerClassName()).append(SEPARATOR);
+        append(buf, joinPoint.getCallerMethodName()).append(SEPARATOR);
+        append(buf, joinPoint.getCallerMethodDesc()).append(SEPARATOR);
+        buf.append(joinPoint.getCallerMethodModifiers()).append(SEPARATOR);
+        append(buf, joinPoint.getCalleeClassName()).append(SEPARATOR);
+        append(buf, joinPoint.getCalleeMemberName()).append(SEPARATOR);
+        append(buf, joinPoint.getCalleeMemberDesc()).append(SEPARATOR);
+        buf.append(joinPoint.getCalleeMemberModifiers()).append(SEPARATOR);
+        buf.append(joinPoint.getJoinPointHash()).append(SEPARATOR);
+        append(buf, joinPoint.getJoinPointClassName());
+        if (entry.hasAdvices()) {
+            buf.append(SEPARATOR).append(entry.getAdviceCount());
+            for (int i = 0; i < entry.getAdviceCount(); i++) {
+                buf.append(SEPARATOR);
+                append(buf, entry.getAspectQualifiedName(i)).append(SEPARATOR);
+                append(buf, entry.getAdviceName(i)).append(SEPARATOR);
+                append(buf, entry.getExpression(i));
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Parses an index line.
+     *
+     * @param line
+     * @return the entry, whose joinpoint has no line number information
+     */
+    public static Entry fromIndexEntry(final String line) {
+        final List fields = new ArrayList();
+        final StringBuffer field = new StringBuffer();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == SEPARATOR) {
+                fields.add(field.length() == 0 ? null : field.toString());
+                field.setLength(0);
+            } else if (c == ESCAPE && i + 1 < line.length()) {
+                c = line.charAt(++i);
+                field.append(c == 't' ? '\t' : c == 'n' ? '\n' : c == 'r' ? '\r' : c);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.length() == 0 ? null : field.toString());
+        if (fields.size() < JOIN_POINT_FIELD_COUNT) {
+            throw new IllegalArgumentException("malformed joinpoint index entry: " + line);
+        }
+        try {
+            final EmittedJoinPoint joinPoint = new EmittedJoinPoint(
+                    Integer.parseInt((String) fields.get(0)),
+                    (String) fields.get(1),
+                    (String) fields.get(2),
+                    (String) fields.get(3),
+                    Integer.parseInt((String) fields.get(4)),
+                    (String) fields.get(5),
+                    (String) fields.get(6),
+                    (String) fields.get(7),
+                    Integer.parseInt((String) fields.get(8)),
+                    Integer.parseInt((String) fields.get(9)),
+                    (String) fields.get(10),
+                    EmittedJoinPoint.NO_LINE_NUMBER
+            );
+            if (fields.size() == JOIN_POINT_FIELD_COUNT) {
+                return new Entry(joinPoint, null, null, null);
+            }
+            final int adviceCount = Integer.parseInt((String) fields.get(JOIN_POINT_FIELD_COUNT));
+            if (fields.size() != JOIN_POINT_FIELD_COUNT + 1 + adviceCount * ADVICE_FIELD_COUNT) {
+                throw new IllegalArgumentException("malformed joinpoint index entry: " + line);
+            }
+            final String[] aspectQualifiedNames = new String[adviceCount];
+            final String[] adviceNames = new String[adviceCount];
+            final String[] expressions = new String[adviceCount];
+            for (int i = 0; i < adviceCount; i++) {
+                int index = JOIN_POINT_FIELD_COUNT + 1 + i * ADVICE_FIELD_COUNT;
+                aspectQualifiedNames[i] = (String) fields.get(index);
+                adviceNames[i] = (String) fields.get(index + 1);
+                expressions[i] = (String) fields.get(index + 2);
+            }
+            return new Entry(joinPoint, aspectQualifiedNames, adviceNames, expressions);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("malformed joinpoint index entry: " + line);
+        }
+    }
+
+    private static StringBuffer append(final StringBuffer buf, final String field) {
+        if (field != null) {
+            for (int i = 0; i < field.length(); i++) {
+                char c = field.charAt(i);
+                switch (c) {
+                    case '\t':
+                        buf.append(ESCAPE).append('t');
+                        break;
+                    case '\n':
+                        buf.append(ESCAPE).append('n');
+                        break;
+                    case '\r':
+                        buf.append(ESCAPE).append('r');
+                        break;
+                    case ESCAPE:
+                        buf.append(ESCAPE).append(ESCAPE);
+                        break;
+                    default:
+                        buf.append(c);
+                }
+            }
+        }
+        return buf;
+    }
+
+    /**
+     * An indexed joinpoint, with the advices its joinpoint class has been compiled with.
+     */
+    public static final class Entry {
+        private final EmittedJoinPoint m_joinPoint;
+        private final String[] m_aspectQualifiedNames;
+        private final String[] m_adviceNames;
+        private final String[] m_expressions;
+
+        /**
+         * Creates the entry of a joinpoint compiled with the given advices.
+         *
+         * @param joinPoint
+         * @param adviceInfoContainer the advices of the joinpoint compilation model
+         */
+        public Entry(final EmittedJoinPoint joinPoint, final AdviceInfoContainer adviceInfoContainer) {
+            m_joinPoint = joinPoint;
+            final AdviceInfo[] adviceInfos = adviceInfoContainer.getAllAdviceInfos();
+            m_aspectQualifiedNames = new String[adviceInfos.length];
+            m_adviceNames = new String[adviceInfos.length];
+            m_expressions = new String[adviceInfos.length];
+            for (int i = 0; i < adviceInfos.length; i++) {
+                m_aspectQualifiedNames[i] = adviceInfos[i].getAspectQualifiedName();
+                m_adviceNames[i] = adviceInfos[i].getName();
+                m_expressions[i] = adviceInfos[i].getExpressionInfo().toString();
+            }
+        }
+
+        private Entry(final EmittedJoinPoint joinPoint,
+                      final String[] aspectQualifiedNames,
+                      final String[] adviceNames,
+                      final String[] expressions) {
+            m_joinPoint = joinPoint;
+            m_aspectQualifiedNames = aspectQualifiedNames;
+            m_adviceNames = adviceNames;
+            m_expressions = expressions;
+        }
+
+        public EmittedJoinPoint getJoinPoint() {
+            return m_joinPoint;
+        }
+
+        /**
+         * Returns false if the entry comes from an index that does not list the advices.
+         *
+         * @return true if the advices of the joinpoint are known
+         */
+        public boolean hasAdvices() {
+            return m_adviceNames != null;
+        }
+
+        public int getAdviceCount() {
+            return m_adviceNames.length;
+        }
+
+        public String getAspectQualifiedName(final int index) {
+            return m_aspectQualifiedNames[index];
+        }
+
+        public String getAdviceName(final int index) {
+            return m_adviceNames[index];
+        }
+
+        public String getExpression(final int index) {
+            return m_expressions[index];
+        }
+    }
+}
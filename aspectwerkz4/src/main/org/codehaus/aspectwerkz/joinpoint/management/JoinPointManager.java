@@ -7,8 +7,12 @@
  **************************************************************************************/
 package org.codehaus.aspectwerkz.joinpoint.management;
 
+import java.io.IOException;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -22,7 +26,10 @@ import org.codehaus.aspectwerkz.definition.AspectDefinition;
 import org.codehaus.aspectwerkz.definition.SystemDefinition;
 import org.codehaus.aspectwerkz.definition.SystemDefinitionContainer;
 import org.codehaus.aspectwerkz.definition.Virtual;
+import org.codehaus.aspectwerkz.exception.DefinitionException;
+import org.codehaus.aspectwerkz.exception.WrappedRuntimeException;
 import org.codehaus.aspectwerkz.expression.ArgsIndexVisitor;
+import org.codehaus.aspectwerkz.expression.ExpressionBindings;
 import org.codehaus.aspectwerkz.expression.ExpressionContext;
 import org.codehaus.aspectwerkz.expression.ExpressionInfo;
 import org.codehaus.aspectwerkz.expression.PointcutType;
@@ -39,7 +46,9 @@ import org.codehaus.aspectwerkz.reflect.MethodInfo;
 import org.codehaus.aspectwerkz.reflect.ReflectionInfo;
 import org.codehaus.aspectwerkz.reflect.impl.asm.AsmClassInfo;
 import org.codehaus.aspectwerkz.reflect.impl.java.JavaClassInfo;
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
 import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.transform.TransformationUtil;
 import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
 import org.codehaus.aspectwerkz.transform.inlining.AspectModelManager;
 import org.codehaus.aspectwerkz.transform.inlining.EmittedJoinPoint;
@@ -59,6 +68,146 @@ import org.objectweb.asm.Type;
  * @author <a href="mailto:the_mindstorm@evolva.ro">Alex Popescu</a>
  */
 public class JoinPointManager {
+
+    /**
+     * The joinpoint batch being gathered by the current thread, see beginLoadJoinPoints.
+     */
+    private static final ThreadLocal BATCH = new ThreadLocal();
+
+    /**
+     * The joinpoint batch load statistics, per caller class.
+     */
+    private static final Map LOAD_STATISTICS = new WeakHashMap();
+
+    /**
+     * The class loaders whose joinpoint indexes have been registered, see registerIndexedJoinPoints.
+     */
+    private static final Map INDEXED_LOADERS = new WeakHashMap();
+
+    /**
+     * The dormant joinpoints not yet activated, as a list of EmittedJoinPoint per caller class.
+     */
+    private static final Map DORMANT_JOIN_POINTS = new WeakHashMap();
+
+    /**
+     * Starts a batch for the joinpoints of the given class. The following loadJoinPoint calls for this class are
+     * gathered and their joinpoint classes are compiled and defined in one pass when endLoadJoinPoints is called.
+     * Those calls are added to the weaved class "clinit" block around the loadJoinPoint calls, abortLoadJoinPoints
+     * being called instead of endLoadJoinPoints if one of them fails.
+     *
+     * @param callerClass
+     */
+    public static void beginLoadJoinPoints(final Class callerClass) {
+        BATCH.set(new JoinPointBatch(callerClass, (JoinPointBatch) BATCH.get()));
+    }
+
+    /**
+     * Ends the batch for the joinpoints of the given class, and compiles and defines the gathered joinpoints.
+     * <p/>
+     * The caller class info and the advice definitions are looked up once for all the joinpoints of the batch.
+     *
+     * @param callerClass
+     * @throws IllegalStateException if the current batch of the thread is not the one of the given class
+     */
+    public static void endLoadJoinPoints(final Class callerClass) {
+        final JoinPointBatch batch = (JoinPointBatch) BATCH.get();
+        if (batch == null || batch.callerClass != callerClass) {
+            throw new IllegalStateException(
+                    "join point batch of " + callerClass.getName() + " ended while "
+                    + (batch == null ? "no batch" : "the batch of " + batch.callerClass.getName())
+                    + " is started"
+            );
+        }
+        BATCH.set(batch.previous);
+
+        final long start = System.currentTimeMillis();
+        final ClassLoader classLoader = callerClass.getClassLoader();
+        final ClassInfo callerClassInfo = JavaClassInfo.getClassInfo(callerClass);
+        final List adviceDefinitions = getAdviceDefinitions(classLoader);
+        final List compiledJoinPoints = new ArrayList(batch.joinPoints.size());
+        for (Iterator iterator = batch.joinPoints.iterator(); iterator.hasNext();) {
+            final EmittedJoinPoint jp = (EmittedJoinPoint) iterator.next();
+            final Class calleeClass = getCalleeClassToCompile(
+                    callerClass, jp.getCalleeClassName(), jp.getJoinPointClassName()
+            );
+            if (calleeClass == null) {
+                continue;
+            }
+            compiledJoinPoints.add(
+                    compileJoinPoint(
+                            jp.getJoinPointType(),
+                            callerClass,
+                            jp.getCallerMethodName(),
+                            jp.getCallerMethodDesc(),
+                            jp.getCallerMethodModifiers(),
+                            jp.getCalleeClassName(),
+                            jp.getCalleeMemberName(),
+                            jp.getCalleeMemberDesc(),
+                            jp.getCalleeMemberModifiers(),
+                            jp.getJoinPointHash(),
+                            jp.getJoinPointClassName(),
+                            calleeClass,
+                            callerClassInfo,
+                            adviceDefinitions,
+                            classLoader
+                    )
+            );
+        }
+
+        final long compiled = System.currentTimeMillis();
+        for (Iterator iterator = compiledJoinPoints.iterator(); iterator.hasNext();) {
+            final CompiledJoinPoint compiledJoinPoint = (CompiledJoinPoint) iterator.next();
+            Class jpClass = JoinPointFactory.attachToClassLoader(
+                    compiledJoinPoint.model.getJoinPointClassName(),
+                    classLoader,
+                    compiledJoinPoint.bytecode,
+                    callerClass
+            );
+            JoinPointFactory.addCompilationInfo(jpClass, compiledJoinPoint.compilationInfo);
+        }
+
+        final long defined = System.currentTimeMillis();
+        final LoadStatistics statistics = new LoadStatistics(
+                compiledJoinPoints.size(), compiled - start, defined - compiled
+        );
+        synchronized (LOAD_STATISTICS) {
+            LOAD_STATISTICS.put(callerClass, statistics);
+        }
+        AspectWerkzPreProcessor.log(
+                "AW::INFO - " + statistics.joinPointCount + " join points of " + callerClass.getName()
+                + " compiled in " + statistics.compilationTime + " ms and defined in "
+                + statistics.definitionTime + " ms"
+        );
+    }
+
+    /**
+     * Aborts the batch for the joinpoints of the given class, without compiling the gathered joinpoints. This call is
+     * added to the weaved class "clinit" block in the exception handler of the loadJoinPoint calls, hence it never
+     * throws so that the original failure is not hidden, and it does nothing if the batch of the class is not the
+     * current one.
+     *
+     * @param callerClass
+     */
+    public static void abortLoadJoinPoints(final Class callerClass) {
+        final JoinPointBatch batch = (JoinPointBatch) BATCH.get();
+        if (batch != null && batch.callerClass == callerClass) {
+            BATCH.set(batch.previous);
+        }
+    }
+
+    /**
+     * Returns the statistics of the last joinpoint batch of the given class, or of the joinpoints of the class linked
+     * lazily so far.
+     *
+     * @param callerClass
+     * @return the statistics or null if the joinpoints of the class were neither loaded in a batch nor linked
+     */
+    public static LoadStatistics getLoadStatistics(final Class callerClass) {
+        synchronized (LOAD_STATISTICS) {
+            return (LoadStatistics) LOAD_STATISTICS.get(callerClass);
+        }
+    }
+
     /**
      * Ensures that the specific joinPoint class for the given target class and joinPoint info is generated. This call
      * is added to the weaved class as a "clinit" block
@@ -86,6 +235,67 @@ public class JoinPointManager {
                                      final int calleeMemberModifiers,
                                      final int joinPointHash,
                                      final String joinPointClassName) {
+        final JoinPointBatch batch = (JoinPointBatch) BATCH.get();
+        if (batch != null && batch.callerClass == callerClass) {
+            // compiled and defined with the other joinpoints of the class, see endLoadJoinPoints
+            batch.add(
+                    new EmittedJoinPoint(
+                            joinPointType,
+                            callerClass.getName(),
+                            callerMethodName,
+                            callerMethodDesc,
+                            callerMethodModifiers,
+                            calleeClassName,
+                            calleeMemberName,
+                            calleeMemberDesc,
+                            calleeMemberModifiers,
+                            joinPointHash,
+                            joinPointClassName,
+                            EmittedJoinPoint.NO_LINE_NUMBER
+                    )
+            );
+            return;
+        }
+
+        final Class calleeClass = getCalleeClassToCompile(callerClass, calleeClassName, joinPointClassName);
+        if (calleeClass == null) {
+            return;
+        }
+
+        final ClassLoader classLoader = callerClass.getClassLoader();
+        final CompiledJoinPoint compiledJoinPoint = compileJoinPoint(
+                joinPointType,
+                callerClass,
+                callerMethodName,
+                callerMethodDesc,
+                callerMethodModifiers,
+                calleeClassName,
+                calleeMemberName,
+                calleeMemberDesc,
+                calleeMemberModifiers,
+                joinPointHash,
+                joinPointClassName,
+                calleeClass,
+                classLoader
+        );
+
+        Class jpClass = JoinPointFactory.attachToClassLoader(
+                joinPointClassName, classLoader, compiledJoinPoint.bytecode, callerClass
+        );
+        JoinPointFactory.addCompilationInfo(jpClass, compiledJoinPoint.compilationInfo);
+    }
+
+    /**
+     * Loads the callee class of a joinpoint, unless the joinpoint class is already loaded.
+     *
+     * @param callerClass
+     * @param calleeClassName
+     * @param joinPointClassName
+     * @return the callee class, or null if the joinpoint class does not need to be generated
+     */
+    private static Class getCalleeClassToCompile(final Class callerClass,
+                                                 final String calleeClassName,
+                                                 final String joinPointClassName) {
         Class calleeClass = null;
         try {
             if (calleeClassName != null) {
@@ -112,12 +322,154 @@ public class JoinPointManager {
             generateJoinPoint = true;
         }
         if (!generateJoinPoint) {
-            return;
+            return null;
         }
+        return calleeClass;
+    }
 
-        final CompiledJoinPoint compiledJoinPoint = compileJoinPoint(
+    /**
+     * Ensures that the specific joinPoint class for the given target class and joinPoint info is generated. This call
+     * is added to the weaved class in a synthetic method invoked right before the joinpoint when lazy join point
+     * linking is used (see AspectWerkzPreProcessor), so that it happens the first time the joinpoint is reached.
+     * <p/>
+     * Several threads can reach the same joinpoint concurrently, while the 'clinit' based loadJoinPoint is guarded by
+     * the JVM class initialization lock. The calls are serialized per joinpoint class name only, and the volatile
+     * "aw$linked$" flag of the weaved class is checked again and set under that lock so that the joinpoint class is
+     * compiled once. No global lock is held while the joinpoint class is compiled, defined and initialized, which
+     * could deadlock against the initialization of another weaved class linking its own joinpoints.
+     *
+     * @param joinPointType
+     * @param callerClass
+     * @param callerMethodName
+     * @param callerMethodDesc
+     * @param callerMethodModifiers
+     * @param calleeClassName
+     * @param calleeMemberName
+     * @param calleeMemberDesc
+     * @param calleeMemberModifiers
+     * @param joinPointHash
+     * @param joinPointClassName
+     */
+    public static void linkJoinPoint(final int joinPointType,
+                                     final Class callerClass,
+                                     final String callerMethodName,
+                                     final String callerMethodDesc,
+                                     final int callerMethodModifiers,
+                                     final String calleeClassName,
+                                     final String calleeMemberName,
+                                     final String calleeMemberDesc,
+                                     final int calleeMemberModifiers,
+                                     final int joinPointHash,
+                                     final String joinPointClassName) {
+        final Field linkedField;
+        try {
+            linkedField = callerClass.getDeclaredField(
+                    TransformationUtil.getJoinPointLinkedFieldName(joinPointClassName)
+            );
+            linkedField.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            throw new WrappedRuntimeException(e);
+        }
+        synchronized (joinPointClassName.intern()) {
+            try {
+                if (linkedField.getBoolean(null)) {
+                    // linked by a concurrent thread
+                    return;
+                }
+                final Class calleeClass = getCalleeClassToCompile(callerClass, calleeClassName, joinPointClassName);
+                if (calleeClass != null) {
+                    final long start = System.currentTimeMillis();
+                    final ClassLoader classLoader = callerClass.getClassLoader();
+                    final CompiledJoinPoint compiledJoinPoint = compileJoinPoint(
+                            joinPointType,
+                            callerClass,
+                            callerMethodName,
+                            callerMethodDesc,
+                            callerMethodModifiers,
+                            calleeClassName,
+                            calleeMemberName,
+                            calleeMemberDesc,
+                            calleeMemberModifiers,
+                            joinPointHash,
+                            joinPointClassName,
+                            calleeClass,
+                            classLoader
+                    );
+                    final long compiled = System.currentTimeMillis();
+                    Class jpClass = JoinPointFactory.attachToClassLoader(
+                            joinPointClassName, classLoader, compiledJoinPoint.bytecode, callerClass
+                    );
+                    JoinPointFactory.addCompilationInfo(jpClass, compiledJoinPoint.compilationInfo);
+                    addLinkStatistics(callerClass, compiled - start, System.currentTimeMillis() - compiled);
+                }
+                linkedField.setBoolean(null, true);
+            } catch (IllegalAccessException e) {
+                throw new WrappedRuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Adds a lazily linked joinpoint to the load statistics of its caller class.
+     *
+     * @param callerClass
+     * @param compilationTime
+     * @param definitionTime
+     */
+    private static void addLinkStatistics(final Class callerClass,
+                                          final long compilationTime,
+                                          final long definitionTime) {
+        synchronized (LOAD_STATISTICS) {
+            final LoadStatistics previous = (LoadStatistics) LOAD_STATISTICS.get(callerClass);
+            if (previous == null) {
+                LOAD_STATISTICS.put(callerClass, new LoadStatistics(1, compilationTime, definitionTime));
+            } else {
+                LOAD_STATISTICS.put(
+                        callerClass,
+                        new LoadStatistics(
+                                previous.joinPointCount + 1,
+                                previous.compilationTime + compilationTime,
+                                previous.definitionTime + definitionTime
+                        )
+                );
+            }
+        }
+    }
+
+    /**
+     * Registers a dormant joinpoint of the given class (see AspectWerkzPreProcessor). This call is added to the weaved
+     * class "clinit" block instead of loadJoinPoint. The joinpoint class is not compiled: the weaved code runs the
+     * original code until a deployment activates the joinpoint, see activateDormantJoinPoints.
+     * <p/>
+     * The class may be initialized well after it has been weaved: if the joinpoint is matched by an advice deployed in
+     * the meantime, it is activated right away instead of being registered.
+     *
+     * @param joinPointType
+     * @param callerClass
+     * @param callerMethodName
+     * @param callerMethodDesc
+     * @param callerMethodModifiers
+     * @param calleeClassName
+     * @param calleeMemberName
+     * @param calleeMemberDesc
+     * @param calleeMemberModifiers
+     * @param joinPointHash
+     * @param joinPointClassName
+     */
+    public static void registerDormantJoinPoint(final int joinPointType,
+                                                final Class callerClass,
+                                                final String callerMethodName,
+                                                final String callerMethodDesc,
+                                                final int callerMethodModifiers,
+                                                final String calleeClassName,
+                                                final String calleeMemberName,
+                                                final String calleeMemberDesc,
+                                                final int calleeMemberModifiers,
+                                                final int joinPointHash,
+                                                final String joinPointClassName) {
+        final EmittedJoinPoint jp = new EmittedJoinPoint(
                 joinPointType,
-                callerClass,
+                callerClass.getName().replace('.', '/'),
                 callerMethodName,
                 callerMethodDesc,
                 callerMethodModifiers,
@@ -127,14 +479,96 @@ public class JoinPointManager {
                 calleeMemberModifiers,
                 joinPointHash,
                 joinPointClassName,
-                calleeClass,
-                classLoader
+                EmittedJoinPoint.NO_LINE_NUMBER
         );
+        // matched under the lock, so that a deployment either is seen here or activates the registered joinpoint
+        synchronized (DORMANT_JOIN_POINTS) {
+            if (isAdvised(callerClass, jp)) {
+                activateDormantJoinPoint(callerClass, jp);
+                return;
+            }
+            List joinPoints = (List) DORMANT_JOIN_POINTS.get(callerClass);
+            if (joinPoints == null) {
+                joinPoints = new ArrayList();
+                DORMANT_JOIN_POINTS.put(callerClass, joinPoints);
+            }
+            joinPoints.add(jp);
+        }
+    }
 
-        Class jpClass = JoinPointFactory.attachToClassLoader(
-                joinPointClassName, classLoader, compiledJoinPoint.bytecode
-        );
-        JoinPointFactory.addCompilationInfo(jpClass, compiledJoinPoint.compilationInfo);
+    /**
+     * Activates the dormant joinpoints matched by the given expressions, called upon deployment once the definitions
+     * have been changed. The joinpoints are then linked and compiled with the new definitions the first time they are
+     * reached. Activated joinpoints are redefined like the other ones afterwards.
+     *
+     * @param expressions a set of ExpressionInfo
+     * @return the number of joinpoints activated
+     */
+    public static int activateDormantJoinPoints(final Set expressions) {
+        int activated = 0;
+        synchronized (DORMANT_JOIN_POINTS) {
+            for (Iterator classes = DORMANT_JOIN_POINTS.entrySet().iterator(); classes.hasNext();) {
+                final Map.Entry entry = (Map.Entry) classes.next();
+                final Class callerClass = (Class) entry.getKey();
+                final List joinPoints = (List) entry.getValue();
+                for (Iterator it = joinPoints.iterator(); it.hasNext();) {
+                    final EmittedJoinPoint jp = (EmittedJoinPoint) it.next();
+                    final ExpressionContext ctx = JoinPointFactory.getExpressionContext(
+                            jp, callerClass.getClassLoader()
+                    );
+                    for (Iterator expressionIt = expressions.iterator(); expressionIt.hasNext();) {
+                        final ExpressionInfo expression = (ExpressionInfo) expressionIt.next();
+                        if (expression.getExpression().match(ctx)) {
+                            activateDormantJoinPoint(callerClass, jp);
+                            it.remove();
+                            activated++;
+                            break;
+                        }
+                    }
+                }
+                if (joinPoints.isEmpty()) {
+                    classes.remove();
+                }
+            }
+        }
+        return activated;
+    }
+
+    /**
+     * Checks if a joinpoint is matched by the advices currently deployed for its caller class.
+     *
+     * @param callerClass
+     * @param jp
+     * @return true if so
+     */
+    private static boolean isAdvised(final Class callerClass, final EmittedJoinPoint jp) {
+        final ClassLoader loader = callerClass.getClassLoader();
+        final ExpressionContext ctx = JoinPointFactory.getExpressionContext(jp, loader);
+        for (Iterator it = getAdviceDefinitions(loader).iterator(); it.hasNext();) {
+            final ExpressionInfo expression = ((AdviceDefinition) it.next()).getExpressionInfo();
+            if (expression != null && expression.getExpression().match(ctx)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the "aw$active$" flag of a dormant joinpoint in its weaved class.
+     *
+     * @param callerClass
+     * @param jp
+     */
+    private static void activateDormantJoinPoint(final Class callerClass, final EmittedJoinPoint jp) {
+        try {
+            final Field activeField = callerClass.getDeclaredField(
+                    TransformationUtil.getJoinPointActiveFieldName(jp.getJoinPointClassName())
+            );
+            activeField.setAccessible(true);
+            activeField.setBoolean(null, true);
+        } catch (Exception e) {
+            throw new WrappedRuntimeException(e);
+        }
     }
 
     /**
@@ -170,9 +604,197 @@ public class JoinPointManager {
                                                       final String joinPointClassName,
                                                       final Class calleeClass,
                                                       final ClassLoader loader) {
+        return compileJoinPoint(
+                joinPointType,
+                callerClass,
+                callerMethodName,
+                callerMethodDesc,
+                callerMethodModifiers,
+                calleeClassName,
+                calleeMemberName,
+                calleeMemberDesc,
+                calleeMemberModifiers,
+                joinPointHash,
+                joinPointClassName,
+                calleeClass,
+                JavaClassInfo.getClassInfo(callerClass),
+                getAdviceDefinitions(loader),
+                loader
+        );
+    }
+
+    /**
+     * Compile a new joinpoint, using the given caller class info and advice definitions so that they can be shared
+     * by all the joinpoints of a caller class.
+     *
+     * @param joinPointType
+     * @param callerClass
+     * @param callerMethodName
+     * @param callerMethodDesc
+     * @param callerMethodModifiers
+     * @param calleeClassName
+     * @param calleeMemberName
+     * @param calleeMemberDesc
+     * @param calleeMemberModifiers
+     * @param joinPointHash
+     * @param joinPointClassName
+     * @param calleeClass
+     * @param callerClassInfo
+     * @param adviceDefinitions the advice definitions visible from the loader
+     * @param loader
+     * @return
+     */
+    private static CompiledJoinPoint compileJoinPoint(final int joinPointType,
+                                                       final Class callerClass,
+                                                       final String callerMethodName,
+                                                       final String callerMethodDesc,
+                                                       final int callerMethodModifiers,
+                                                       final String calleeClassName,
+                                                       final String calleeMemberName,
+                                                       final String calleeMemberDesc,
+                                                       final int calleeMemberModifiers,
+                                                       final int joinPointHash,
+                                                       final String joinPointClassName,
+                                                       final Class calleeClass,
+                                                       final ClassInfo callerClassInfo,
+                                                       final List adviceDefinitions,
+                                                       final ClassLoader loader) {
+        return new CompiledJoinPoint(
+                createCompilationModel(
+                        joinPointType,
+                        callerClass,
+                        callerMethodName,
+                        callerMethodDesc,
+                        callerMethodModifiers,
+                        calleeMemberName,
+                        calleeMemberDesc,
+                        calleeMemberModifiers,
+                        joinPointHash,
+                        joinPointClassName,
+                        calleeClass,
+                        callerClassInfo,
+                        adviceDefinitions,
+                        loader
+                )
+        );
+    }
+
+    /**
+     * Creates the compilation model of a joinpoint.
+     *
+     * @param joinPointType
+     * @param callerClass
+     * @param callerMethodName
+     * @param callerMethodDesc
+     * @param callerMethodModifiers
+     * @param calleeMemberName
+     * @param calleeMemberDesc
+     * @param calleeMemberModifiers
+     * @param joinPointHash
+     * @param joinPointClassName
+     * @param calleeClass
+     * @param callerClassInfo
+     * @param adviceDefinitions the advice definitions visible from the loader
+     * @param loader
+     * @return the compilation model
+     */
+    private static CompilationInfo.Model createCompilationModel(final int joinPointType,
+                                                                final Class callerClass,
+                                                                final String callerMethodName,
+                                                                final String callerMethodDesc,
+                                                                final int callerMethodModifiers,
+                                                                final String calleeMemberName,
+                                                                final String calleeMemberDesc,
+                                                                final int calleeMemberModifiers,
+                                                                final int joinPointHash,
+                                                                final String joinPointClassName,
+                                                                final Class calleeClass,
+                                                                final ClassInfo callerClassInfo,
+                                                                final List adviceDefinitions,
+                                                                final ClassLoader loader) {
+        final ExpressionContext ctx = createExpressionContext(
+                joinPointType,
+                JavaClassInfo.getClassInfo(calleeClass),
+                callerClassInfo,
+                callerMethodName,
+                callerMethodDesc,
+                joinPointHash
+        );
+        final AdviceInfoContainer adviceContainer = getAdviceInfoContainerForJoinPoint(
+                ctx, adviceDefinitions, null, loader
+        );
+        final EmittedJoinPoint emittedJoinPoint = new EmittedJoinPoint(
+                joinPointType,
+                callerClass.getName(),
+                callerMethodName,
+                callerMethodDesc,
+                callerMethodModifiers,
+                calleeClass.getName(),
+                calleeMemberName,
+                calleeMemberDesc,
+                calleeMemberModifiers,
+                joinPointHash,
+                joinPointClassName,
+                EmittedJoinPoint.NO_LINE_NUMBER
+        );
+        return new CompilationInfo.Model(emittedJoinPoint, adviceContainer, callerClassInfo);
+    }
 
-        ClassInfo calleeClassInfo = JavaClassInfo.getClassInfo(calleeClass);
+    /**
+     * Creates the compilation model of a joinpoint from the advices it has been compiled with, to redefine it. The
+     * advices are bound with the given expressions without being matched again, so that the model is the one the
+     * joinpoint class was compiled from even if the definitions have changed since.
+     *
+     * @param emittedJoinPoint  the emitted joinpoint
+     * @param adviceDefinitions the advice definitions, in the order of the advice infos of the joinpoint
+     * @param expressionInfos   the expression each advice was bound with
+     * @param loader            the class loader of the joinpoint
+     * @return the compilation model
+     */
+    public static CompilationInfo.Model createCompilationModel(final EmittedJoinPoint emittedJoinPoint,
+                                                               final AdviceDefinition[] adviceDefinitions,
+                                                               final ExpressionInfo[] expressionInfos,
+                                                               final ClassLoader loader) {
+        final Class callerClass;
+        final Class calleeClass;
+        try {
+            callerClass = Class.forName(emittedJoinPoint.getCallerClassName().replace('/', '.'), false, loader);
+            calleeClass = Class.forName(emittedJoinPoint.getCalleeClassName().replace('/', '.'), false, loader);
+        } catch (ClassNotFoundException e) {
+            throw new WrappedRuntimeException(e);
+        }
+        final ClassInfo callerClassInfo = JavaClassInfo.getClassInfo(callerClass);
+        final ExpressionContext ctx = createExpressionContext(
+                emittedJoinPoint.getJoinPointType(),
+                JavaClassInfo.getClassInfo(calleeClass),
+                callerClassInfo,
+                emittedJoinPoint.getCallerMethodName(),
+                emittedJoinPoint.getCallerMethodDesc(),
+                emittedJoinPoint.getJoinPointHash()
+        );
+        final AdviceInfoContainer adviceContainer = getAdviceInfoContainerForJoinPoint(
+                ctx, Arrays.asList(adviceDefinitions), Arrays.asList(expressionInfos), loader
+        );
+        return new CompilationInfo.Model(emittedJoinPoint, adviceContainer, callerClassInfo);
+    }
 
+    /**
+     * Creates the expression context of a joinpoint, from its callee and its caller.
+     *
+     * @param joinPointType
+     * @param calleeClassInfo
+     * @param callerClassInfo
+     * @param callerMethodName
+     * @param callerMethodDesc
+     * @param joinPointHash
+     * @return the expression context
+     */
+    private static ExpressionContext createExpressionContext(final int joinPointType,
+                                                             final ClassInfo calleeClassInfo,
+                                                             final ClassInfo callerClassInfo,
+                                                             final String callerMethodName,
+                                                             final String callerMethodDesc,
+                                                             final int joinPointHash) {
         // create the callee info
         final ReflectionInfo reflectionInfo;
         final PointcutType pointcutType;
@@ -214,7 +836,6 @@ public class JoinPointManager {
         }
 
         // create the caller info
-        final ClassInfo callerClassInfo = JavaClassInfo.getClassInfo(callerClass);
         final ReflectionInfo withinInfo;
         if (TransformationConstants.CLINIT_METHOD_NAME.equals(callerMethodName)) {
             withinInfo = callerClassInfo.staticInitializer();
@@ -225,30 +846,203 @@ public class JoinPointManager {
                     callerClassInfo.getMethod(AsmHelper.calculateMethodHash(callerMethodName, callerMethodDesc));
         }
 
-        // get the compilation model
-        final ExpressionContext ctx = new ExpressionContext(pointcutType, reflectionInfo, withinInfo);
-        final AdviceInfoContainer adviceContainer = getAdviceInfoContainerForJoinPoint(
-                ctx, loader
-        );
+        return new ExpressionContext(pointcutType, reflectionInfo, withinInfo);
+    }
+
+    /**
+     * Registers the compilation info of the joinpoints generated ahead of time by the offline compiler and listed
+     * in the joinpoint indexes visible from the given loader (see JoinPointIndex), so that they can be redefined
+     * like the joinpoints loaded at runtime. This is done once per class loader, the first time a deployment
+     * needs it.
+     * <p/>
+     * The compilation models are rebuilt from the advices listed in the index, that is the ones the joinpoint classes
+     * have been compiled with, looked up in the definitions by aspect qualified name and advice name. An indexed
+     * joinpoint whose advices can not be found anymore is not registered. Indexes that do not list the advices fall
+     * back to the definitions in use at that time. The joinpoint classes and their caller classes are loaded but
+     * not initialized.
+     *
+     * @param loader
+     */
+    public static void registerIndexedJoinPoints(final ClassLoader loader) {
+        if (loader == null || !AspectWerkzPreProcessor.REDEFINEJP) {
+            return;
+        }
+        synchronized (INDEXED_LOADERS) {
+            if (INDEXED_LOADERS.containsKey(loader)) {
+                return;
+            }
+            INDEXED_LOADERS.put(loader, Boolean.TRUE);
+        }
+
+        final List joinPoints;
+        try {
+            joinPoints = JoinPointIndex.readJoinPoints(loader);
+        } catch (IOException e) {
+            throw new WrappedRuntimeException(e);
+        }
+        final List adviceDefinitions = getAdviceDefinitions(loader);
+        for (Iterator it = joinPoints.iterator(); it.hasNext();) {
+            final JoinPointIndex.Entry entry = (JoinPointIndex.Entry) it.next();
+            final EmittedJoinPoint jp = entry.getJoinPoint();
+            final Class callerClass;
+            final Class joinPointClass;
+            final Class calleeClass;
+            try {
+                callerClass = Class.forName(jp.getCallerClassName().replace('/', '.'), false, loader);
+                final ClassLoader callerLoader = callerClass.getClassLoader();
+                joinPointClass = Class.forName(jp.getJoinPointClassName().replace('/', '.'), false, callerLoader);
+                if (JoinPointFactory.getCompilationInfo(joinPointClass) != null) {
+                    continue;
+                }
+                calleeClass = Class.forName(jp.getCalleeClassName().replace('/', '.'), false, callerLoader);
+            } catch (ClassNotFoundException e) {
+                // stale index entry
+                AspectWerkzPreProcessor.log(
+                        "AW::WARNING - joinpoint index entry not found [" + jp.getJoinPointClassName() + "]"
+                );
+                continue;
+            }
+
+            final ClassLoader callerLoader = callerClass.getClassLoader();
+            final List callerAdviceDefinitions = callerLoader == loader ?
+                                                 adviceDefinitions :
+                                                 getAdviceDefinitions(callerLoader);
+            if (entry.hasAdvices()) {
+                final CompilationInfo.Model model = createIndexedCompilationModel(
+                        entry, callerClass, calleeClass, callerAdviceDefinitions
+                );
+                if (model != null) {
+                    JoinPointFactory.addCompilationInfo(joinPointClass, new CompilationInfo(model));
+                }
+                continue;
+            }
+            final CompilationInfo.Model model = createCompilationModel(
+                    jp.getJoinPointType(),
+                    callerClass,
+                    jp.getCallerMethodName(),
+                    jp.getCallerMethodDesc(),
+                    jp.getCallerMethodModifiers(),
+                    jp.getCalleeMemberName(),
+                    jp.getCalleeMemberDesc(),
+                    jp.getCalleeMemberModifiers(),
+                    jp.getJoinPointHash(),
+                    jp.getJoinPointClassName(),
+                    calleeClass,
+                    JavaClassInfo.getClassInfo(callerClass),
+                    callerAdviceDefinitions,
+                    callerLoader
+            );
+            JoinPointFactory.addCompilationInfo(joinPointClass, new CompilationInfo(model));
+        }
+    }
+
+    /**
+     * Creates the compilation model of an indexed joinpoint from the advices it has been compiled with.
+     *
+     * @param entry             the index entry
+     * @param callerClass
+     * @param calleeClass
+     * @param adviceDefinitions the advice definitions visible from the caller class loader
+     * @return the compilation model, or null if one of the advices can not be found
+     */
+    private static CompilationInfo.Model createIndexedCompilationModel(final JoinPointIndex.Entry entry,
+                                                                       final Class callerClass,
+                                                                       final Class calleeClass,
+                                                                       final List adviceDefinitions) {
+        final EmittedJoinPoint jp = entry.getJoinPoint();
+        final AdviceDefinition[] boundAdviceDefinitions = new AdviceDefinition[entry.getAdviceCount()];
+        final ExpressionInfo[] expressionInfos = new ExpressionInfo[entry.getAdviceCount()];
+        for (int i = 0; i < entry.getAdviceCount(); i++) {
+            final String aspectQualifiedName = entry.getAspectQualifiedName(i);
+            final String adviceName = entry.getAdviceName(i);
+            AdviceDefinition adviceDefinition = null;
+            for (Iterator it = adviceDefinitions.iterator(); it.hasNext();) {
+                AdviceDefinition candidate = (AdviceDefinition) it.next();
+                if (candidate.getName().equals(adviceName)
+                    && candidate.getAspectDefinition().getQualifiedName().equals(aspectQualifiedName)) {
+                    adviceDefinition = candidate;
+                    break;
+                }
+            }
+            if (adviceDefinition == null || adviceDefinition.getExpressionInfo() == null) {
+                AspectWerkzPreProcessor.log(
+                        "AW::WARNING - advice [" + aspectQualifiedName + '/' + adviceName
+                        + "] of indexed joinpoint [" + jp.getJoinPointClassName() + "] not found"
+                );
+                return null;
+            }
+            ExpressionInfo expressionInfo = adviceDefinition.getExpressionInfo();
+            if (!expressionInfo.toString().equals(entry.getExpression(i))) {
+                // the definition has changed since the offline compilation
+                final ExpressionInfo compiledExpressionInfo;
+                try {
+                    compiledExpressionInfo = new ExpressionInfo(entry.getExpression(i), expressionInfo.getNamespace());
+                } catch (DefinitionException e) {
+                    AspectWerkzPreProcessor.log(
+                            "AW::WARNING - expression [" + entry.getExpression(i) + "] of indexed joinpoint ["
+                            + jp.getJoinPointClassName() + "] can not be parsed anymore: " + e.getMessage()
+                    );
+                    return null;
+                }
+                compiledExpressionInfo.inheritPossibleArgumentFrom(expressionInfo);
+                expressionInfo = compiledExpressionInfo;
+            }
+            boundAdviceDefinitions[i] = adviceDefinition;
+            expressionInfos[i] = expressionInfo;
+        }
         final EmittedJoinPoint emittedJoinPoint = new EmittedJoinPoint(
-                joinPointType,
+                jp.getJoinPointType(),
                 callerClass.getName(),
-                callerMethodName,
-                callerMethodDesc,
-                callerMethodModifiers,
+                jp.getCallerMethodName(),
+                jp.getCallerMethodDesc(),
+                jp.getCallerMethodModifiers(),
                 calleeClass.getName(),
-                calleeMemberName,
-                calleeMemberDesc,
-                calleeMemberModifiers,
-                joinPointHash,
-                joinPointClassName,
+                jp.getCalleeMemberName(),
+                jp.getCalleeMemberDesc(),
+                jp.getCalleeMemberModifiers(),
+                jp.getJoinPointHash(),
+                jp.getJoinPointClassName(),
                 EmittedJoinPoint.NO_LINE_NUMBER
         );
-        final CompilationInfo.Model compilationModel = new CompilationInfo.Model(
-                emittedJoinPoint, adviceContainer, callerClassInfo
+        return createCompilationModel(
+                emittedJoinPoint, boundAdviceDefinitions, expressionInfos, callerClass.getClassLoader()
         );
+    }
+
+    /**
+     * The joinpoints of a caller class gathered between beginLoadJoinPoints and endLoadJoinPoints.
+     */
+    private static class JoinPointBatch {
+        final Class callerClass;
+        final JoinPointBatch previous;
+        final List joinPoints = new ArrayList();
+        private final Set m_joinPointClassNames = new HashSet();
+
+        JoinPointBatch(final Class callerClass, final JoinPointBatch previous) {
+            this.callerClass = callerClass;
+            this.previous = previous;
+        }
+
+        void add(final EmittedJoinPoint jp) {
+            if (m_joinPointClassNames.add(jp.getJoinPointClassName())) {
+                joinPoints.add(jp);
+            }
+        }
+    }
+
+    /**
+     * Timing of the compilation and definition of the joinpoints of a caller class, in milliseconds.
+     */
+    public static class LoadStatistics {
+        public final int joinPointCount;
+        public final long compilationTime;
+        public final long definitionTime;
 
-        return new CompiledJoinPoint(compilationModel);
+        public LoadStatistics(final int joinPointCount, final long compilationTime, final long definitionTime) {
+            this.joinPointCount = joinPointCount;
+            this.compilationTime = compilationTime;
+            this.definitionTime = definitionTime;
+        }
     }
 
     /**
@@ -256,10 +1050,12 @@ public class JoinPointManager {
      */
     public static class CompiledJoinPoint {
         public byte[] bytecode;
+        public CompilationInfo.Model model;
         public CompilationInfo compilationInfo;
 
         public CompiledJoinPoint(CompilationInfo.Model model) {
             bytecode = JoinPointFactory.compileJoinPoint(model);
+            this.model = model;
             compilationInfo = new CompilationInfo(model);
         }
     }
@@ -273,14 +1069,19 @@ public class JoinPointManager {
      */
     public static AdviceInfoContainer getAdviceInfoContainerForJoinPoint(final ExpressionContext expressionContext,
                                                                          final ClassLoader loader) {
-        final List beforeAdvices = new ArrayList();
-        final List aroundAdvices = new ArrayList();
-        final List afterFinallyAdvices = new ArrayList();
-        final List afterReturningAdvices = new ArrayList();
-        final List afterThrowingAdvices = new ArrayList();
+        return getAdviceInfoContainerForJoinPoint(expressionContext, getAdviceDefinitions(loader), null, loader);
+    }
 
+    /**
+     * Returns the advice definitions visible from the given loader, in the definition order, skipping the Virtual
+     * aspect.
+     *
+     * @param loader
+     * @return a list of AdviceDefinition
+     */
+    private static List getAdviceDefinitions(final ClassLoader loader) {
+        final List adviceDefinitions = new ArrayList();
         final Set systemDefinitions = SystemDefinitionContainer.getDefinitionsFor(loader);
-
         for (Iterator iterator = systemDefinitions.iterator(); iterator.hasNext();) {
             SystemDefinition systemDefinition = (SystemDefinition) iterator.next();
             Collection aspects = systemDefinition.getAspectDefinitions();
@@ -289,62 +1090,86 @@ public class JoinPointManager {
                 if (aspectDefinition.getName().equals(Virtual.class.getName())) {
                     continue;
                 }
-
                 //TODO - do we care about non bounded pointcut ?
-                for (Iterator iterator2 = aspectDefinition.getAdviceDefinitions().iterator(); iterator2.hasNext();) {
-                    AdviceDefinition adviceDefinition = (AdviceDefinition) iterator2.next();
-                    final ExpressionInfo expressionInfo = adviceDefinition.getExpressionInfo();
-                    if (expressionInfo == null) {
-                        continue;
-                    }
-                    if (expressionInfo.getExpression().match(expressionContext)) {
-                        // compute the target method to advice method arguments map, and grab information about this
-                        // and target bindings
-                        expressionContext.resetRuntimeState();
-                        ArgsIndexVisitor.updateContextForRuntimeInformation(
-                                expressionInfo,
-                                expressionContext,
-                                loader
-                        );
-                        // Note that the expressionContext dynamic information updated here should only be used
-                        // in the scope of this code block, since at the next iteration, the data will be
-                        // updated for another advice binding
-                        // [hence see setMethodArgumentIndexes below]
-
-                        // create a lightweight representation of the bounded advices to pass to the compiler
-                        final MethodInfo adviceMethodInfo = adviceDefinition.getMethodInfo();
-                        final AdviceInfo adviceInfo = new AdviceInfo(
-                                aspectDefinition.getQualifiedName(),
-                                aspectDefinition.getClassName(),
-                                aspectDefinition.getDeploymentModel(),
-                                adviceMethodInfo.getName(),
-                                AsmHelper.getMethodDescriptor(adviceMethodInfo),
-                                AsmHelper.getArgumentTypes(adviceMethodInfo),
-                                adviceDefinition.getType(),
-                                adviceDefinition.getSpecialArgumentType(),
-                                adviceDefinition.getName(),
-                                expressionContext.m_targetWithRuntimeCheck,
-                                expressionInfo,
-                                expressionContext,
-                                adviceDefinition
-                        );
+                adviceDefinitions.addAll(aspectDefinition.getAdviceDefinitions());
+            }
+        }
+        return adviceDefinitions;
+    }
 
-                        setMethodArgumentIndexes(expressionInfo, expressionContext, adviceInfo, loader);
-
-                        if (AdviceType.BEFORE.equals(adviceDefinition.getType())) {
-                            beforeAdvices.add(adviceInfo);
-                        } else if (AdviceType.AROUND.equals(adviceDefinition.getType())) {
-                            aroundAdvices.add(adviceInfo);
-                        } else if (AdviceType.AFTER_FINALLY.equals(adviceDefinition.getType())) {
-                            afterFinallyAdvices.add(adviceInfo);
-                        } else if (AdviceType.AFTER_RETURNING.equals(adviceDefinition.getType())) {
-                            afterReturningAdvices.add(adviceInfo);
-                        } else if (AdviceType.AFTER_THROWING.equals(adviceDefinition.getType())) {
-                            afterThrowingAdvices.add(adviceInfo);
-                        } else if (AdviceType.AFTER.equals(adviceDefinition.getType())) {
-                            afterFinallyAdvices.add(adviceInfo);//special case for "after only"
-                        }
-                    }
+    /**
+     * Retrieves the advice info wrapped up in a struct, matching the given advice definitions only.
+     * <p/>
+     * When the expressions are given, the advice definitions are bound with them without being matched.
+     *
+     * @param expressionContext
+     * @param adviceDefinitions
+     * @param expressionInfos   the expression of each advice definition, or null to match their current expression
+     * @param loader
+     * @return the advice info
+     */
+    private static AdviceInfoContainer getAdviceInfoContainerForJoinPoint(final ExpressionContext expressionContext,
+                                                                          final List adviceDefinitions,
+                                                                          final List expressionInfos,
+                                                                          final ClassLoader loader) {
+        final List beforeAdvices = new ArrayList();
+        final List aroundAdvices = new ArrayList();
+        final List afterFinallyAdvices = new ArrayList();
+        final List afterReturningAdvices = new ArrayList();
+        final List afterThrowingAdvices = new ArrayList();
+
+        for (int i = 0; i < adviceDefinitions.size(); i++) {
+            AdviceDefinition adviceDefinition = (AdviceDefinition) adviceDefinitions.get(i);
+            AspectDefinition aspectDefinition = adviceDefinition.getAspectDefinition();
+            final ExpressionInfo expressionInfo = (expressionInfos == null) ?
+                                                  adviceDefinition.getExpressionInfo() :
+                                                  (ExpressionInfo) expressionInfos.get(i);
+            if (expressionInfo == null) {
+                continue;
+            }
+            if (expressionInfos != null || expressionInfo.getExpression().match(expressionContext)) {
+                // compute the target method to advice method arguments map, and grab information about this
+                // and target bindings
+                // The bindings are computed for this advice binding only, the expressionContext is left untouched
+                // [hence see setMethodArgumentIndexes below]
+                final ExpressionBindings bindings = ArgsIndexVisitor.getBindings(
+                        expressionInfo,
+                        expressionContext,
+                        loader
+                );
+
+                // create a lightweight representation of the bounded advices to pass to the compiler
+                final MethodInfo adviceMethodInfo = adviceDefinition.getMethodInfo();
+                final AdviceInfo adviceInfo = new AdviceInfo(
+                        aspectDefinition.getQualifiedName(),
+                        aspectDefinition.getClassName(),
+                        aspectDefinition.getDeploymentModel(),
+                        adviceMethodInfo.getName(),
+                        AsmHelper.getMethodDescriptor(adviceMethodInfo),
+                        AsmHelper.getArgumentTypes(adviceMethodInfo),
+                        adviceDefinition.getType(),
+                        adviceDefinition.getSpecialArgumentType(),
+                        adviceDefinition.getName(),
+                        bindings.isTargetWithRuntimeCheck(),
+                        expressionInfo,
+                        expressionContext,
+                        adviceDefinition
+                );
+
+                setMethodArgumentIndexes(expressionInfo, bindings, adviceInfo, loader);
+
+                if (AdviceType.BEFORE.equals(adviceDefinition.getType())) {
+                    beforeAdvices.add(adviceInfo);
+                } else if (AdviceType.AROUND.equals(adviceDefinition.getType())) {
+                    aroundAdvices.add(adviceInfo);
+                } else if (AdviceType.AFTER_FINALLY.equals(adviceDefinition.getType())) {
+                    afterFinallyAdvices.add(adviceInfo);
+                } else if (AdviceType.AFTER_RETURNING.equals(adviceDefinition.getType())) {
+                    afterReturningAdvices.add(adviceInfo);
+                } else if (AdviceType.AFTER_THROWING.equals(adviceDefinition.getType())) {
+                    afterThrowingAdvices.add(adviceInfo);
+                } else if (AdviceType.AFTER.equals(adviceDefinition.getType())) {
+                    afterFinallyAdvices.add(adviceInfo);//special case for "after only"
                 }
             }
         }
@@ -397,24 +1222,24 @@ public class JoinPointManager {
      * (see AdviceInfo), or to one of the advised member arguments (thru args(..) binding).
      *
      * @param expressionInfo
-     * @param ctx
+     * @param bindings
      * @param adviceInfo
      * @param loader
      */
     private static void setMethodArgumentIndexes(final ExpressionInfo expressionInfo,
-                                                 final ExpressionContext ctx,
+                                                 final ExpressionBindings bindings,
                                                  final AdviceInfo adviceInfo,
                                                  final ClassLoader loader) {
         // grab the parameters names
         String[] adviceArgNames = getParameterNames(adviceInfo.getName());
 
-        // map them from the ctx info
+        // map them from the bindings
         int[] adviceToTargetArgs = new int[adviceInfo.getMethodParameterTypes().length];
         for (int k = 0; k < adviceArgNames.length; k++) {
             String adviceArgName = adviceArgNames[k];
             int exprArgIndex = expressionInfo.getArgumentIndex(adviceArgName);
-            if (exprArgIndex >= 0 && ctx.m_exprIndexToTargetIndex.containsKey(adviceArgName)) {
-                adviceToTargetArgs[k] = ctx.m_exprIndexToTargetIndex.get(adviceArgName);
+            if (exprArgIndex >= 0 && bindings.hasTargetArgIndex(adviceArgName)) {
+                adviceToTargetArgs[k] = bindings.getTargetArgIndex(adviceArgName);
             } else {
                 // does not appears to be an argument of the advised target
                 // It can be StaticJP / JP / This binding / Target binding
@@ -423,9 +1248,9 @@ public class JoinPointManager {
                     adviceToTargetArgs[k] = AdviceInfo.JOINPOINT_ARG;
                 } else if (isStaticJoinPoint(type)) {
                     adviceToTargetArgs[k] = AdviceInfo.STATIC_JOINPOINT_ARG;
-                } else if (isTarget(adviceArgName, ctx)) {
+                } else if (isTarget(adviceArgName, bindings)) {
                     adviceToTargetArgs[k] = AdviceInfo.TARGET_ARG;
-                } else if (isThis(adviceArgName, ctx)) {
+                } else if (isThis(adviceArgName, bindings)) {
                     adviceToTargetArgs[k] = AdviceInfo.THIS_ARG;
                 } else if (isSpecialArgument(adviceArgName, expressionInfo)) {
                     adviceToTargetArgs[k] = AdviceInfo.SPECIAL_ARGUMENT;
@@ -511,12 +1336,12 @@ public class JoinPointManager {
         return Type.getType(StaticJoinPoint.class).getDescriptor().equals(type.getDescriptor());
     }
 
-    private static boolean isTarget(final String adviceArgName, final ExpressionContext ctx) {
-        return adviceArgName.equals(ctx.m_targetBoundedName);
+    private static boolean isTarget(final String adviceArgName, final ExpressionBindings bindings) {
+        return adviceArgName.equals(bindings.getTargetBoundedName());
     }
 
-    private static boolean isThis(final String adviceArgName, final ExpressionContext ctx) {
-        return adviceArgName.equals(ctx.m_thisBoundedName);
+    private static boolean isThis(final String adviceArgName, final ExpressionBindings bindings) {
+        return adviceArgName.equals(bindings.getThisBoundedName());
     }
 
     private static boolean isSpecialArgument(final String adviceArgName, final ExpressionInfo expressionInfo) {
@@ -0,0 +1,552 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.joinpoint.management;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+import org.codehaus.aspectwerkz.expression.ExpressionContext;
+import org.codehaus.aspectwerkz.expression.ExpressionInfo;
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
+import org.codehaus.aspectwerkz.transform.WeaverMetrics;
+import org.codehaus.aspectwerkz.util.ContextClassLoader;
+import org.codehaus.aspectwerkz.util.StripedCounters;
+
+/**
+ * Invocation statistics of a join point, gathered by the join point classes compiled while
+ * <code>-Daspectwerkz.transform.jpstats=true</code> is set, or matching a pointcut the statistics have been turned on
+ * for through <code>Deployer.setJoinPointStatistics(..)</code>.
+ * <p/>
+ * The join point class counts the invocations and the exceptions of its invoke method and measures the time spent in
+ * it (advice chain and join point). The times are aggregated in a fixed bucket histogram, bucket i counting the
+ * invocations that took less than 2^i microseconds (the last one counting all the others).
+ * <p/>
+ * The counters are striped by thread to limit the contention (see StripedCounters) and are not synchronized hence are
+ * approximate.
+ * <p/>
+ * The statistics are kept per class loader of the join point classes, which are weakly referenced, so that the
+ * statistics of an application do not keep it from being unloaded and do not mix with the ones of another
+ * application that has join point classes of the same name.
+ * <p/>
+ * The statistics can be queried by join point class name or by pointcut, as CSV or JSON, and through the
+ * <code>org.codehaus.aspectwerkz:type=JoinPointStatistics</code> MBean when running on Java 5 (see
+ * JoinPointStatisticsView).
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class JoinPointStatistics {
+
+    /**
+     * The number of buckets of the histograms
+     */
+    public static final int BUCKET_COUNT = 24;
+
+    private static final int INVOCATIONS = 0;
+
+    private static final int EXCEPTIONS = 1;
+
+    private static final int TIME = 2;
+
+    private static final int FIRST_BUCKET = 3;
+
+    private static final String CSV_HEADER;
+
+    private static final String MBEAN_CLASS_NAME = "org.codehaus.aspectwerkz.joinpoint.management.JoinPointStatisticsView";
+
+    /**
+     * The statistics per join point class name, per class loader
+     */
+    private static final Map s_statistics = new WeakHashMap();
+
+    /**
+     * The pointcuts the statistics have been turned on or off for, as PointcutSetting, in the order of the calls
+     */
+    private static final List s_pointcutSettings = new ArrayList();
+
+    private static boolean s_mbeanRegistered = false;
+
+    private final String m_joinPointClassName;
+
+    private final String[] m_pointcuts;
+
+    private final StripedCounters m_counters = new StripedCounters(FIRST_BUCKET + BUCKET_COUNT);
+
+    static {
+        final StringBuffer buf = new StringBuffer("joinPointClassName,pointcuts,invocations,exceptions,totalTimeNanos");
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buf.append(",bucket").append(i);
+        }
+        CSV_HEADER = buf.toString();
+    }
+
+    private JoinPointStatistics(final String joinPointClassName, final String[] pointcuts) {
+        m_joinPointClassName = joinPointClassName;
+        m_pointcuts = pointcuts;
+    }
+
+    /**
+     * Checks if the join point classes gather statistics unless a pointcut setting says otherwise, that is if
+     * <code>-Daspectwerkz.transform.jpstats=true</code> is set.
+     *
+     * @return true if so
+     */
+    public static boolean isEnabled() {
+        return AspectWerkzPreProcessor.JPSTATS;
+    }
+
+    /**
+     * Checks if the statistics have been turned on or off for some pointcuts.
+     *
+     * @return true if so
+     */
+    public static boolean hasPointcutSettings() {
+        synchronized (s_pointcutSettings) {
+            return !s_pointcutSettings.isEmpty();
+        }
+    }
+
+    /**
+     * Checks if the join point of the given context gathers statistics when compiled from now on. The last pointcut
+     * setting matching the join point wins, else the -Daspectwerkz.transform.jpstats option.
+     *
+     * @param context the expression context of the join point
+     * @return true if so
+     */
+    public static boolean isEnabled(final ExpressionContext context) {
+        boolean enabled = isEnabled();
+        synchronized (s_pointcutSettings) {
+            for (Iterator it = s_pointcutSettings.iterator(); it.hasNext();) {
+                PointcutSetting setting = (PointcutSetting) it.next();
+                if (setting.expression.getExpression().match(context)) {
+                    enabled = setting.enabled;
+                }
+            }
+        }
+        return enabled;
+    }
+
+    /**
+     * Turns the statistics on or off for the join points matching the given pointcut and compiled from now on. Use
+     * <code>Deployer.setJoinPointStatistics(..)</code> to recompile the existing ones.
+     *
+     * @param pointcut the pointcut, without pointcut references
+     * @param enabled
+     */
+    public static void setEnabled(final String pointcut, final boolean enabled) {
+        final ExpressionInfo expression = new ExpressionInfo(pointcut, JoinPointStatistics.class.getName());
+        synchronized (s_pointcutSettings) {
+            for (Iterator it = s_pointcutSettings.iterator(); it.hasNext();) {
+                if (((PointcutSetting) it.next()).pointcut.equals(pointcut)) {
+                    it.remove();
+                }
+            }
+            s_pointcutSettings.add(new PointcutSetting(pointcut, expression, enabled));
+        }
+    }
+
+    /**
+     * Removes all the pointcut settings, the join points compiled from now on follow the
+     * -Daspectwerkz.transform.jpstats option again.
+     */
+    public static void clearPointcutSettings() {
+        synchronized (s_pointcutSettings) {
+            s_pointcutSettings.clear();
+        }
+    }
+
+    /**
+     * Registers the statistics of a join point class, called by its static initializer.
+     *
+     * @param joinPointClassName
+     * @param pointcuts          the pointcuts of the advices of the join point
+     * @param loader             the class loader of the join point class
+     * @return the statistics
+     */
+    public static JoinPointStatistics register(final String joinPointClassName,
+                                               final String[] pointcuts,
+                                               final ClassLoader loader) {
+        final JoinPointStatistics statistics = new JoinPointStatistics(joinPointClassName.replace('/', '.'), pointcuts);
+        synchronized (s_statistics) {
+            Map statisticsByName = (Map) s_statistics.get(loader);
+            if (statisticsByName == null) {
+                statisticsByName = new HashMap();
+                s_statistics.put(loader, statisticsByName);
+            }
+            statisticsByName.put(statistics.m_joinPointClassName, statistics);
+        }
+        registerMBeanOnce();
+        return statistics;
+    }
+
+    /**
+     * Registers the MBean, that also exposes the advice samplers, unless already done.
+     */
+    static void registerMBeanOnce() {
+        synchronized (s_statistics) {
+            if (s_mbeanRegistered) {
+                return;
+            }
+            s_mbeanRegistered = true;
+        }
+        registerMBean();
+    }
+
+    /**
+     * Returns the current time, in nanoseconds.
+     *
+     * @return the time
+     */
+    public static long now() {
+        return WeaverMetrics.now();
+    }
+
+    /**
+     * Records an invocation that returned normally.
+     *
+     * @param start the time the invocation started at
+     */
+    public void exit(final long start) {
+        record(now() - start, false);
+    }
+
+    /**
+     * Records an invocation that threw an exception.
+     *
+     * @param start the time the invocation started at
+     */
+    public void exception(final long start) {
+        record(now() - start, true);
+    }
+
+    private void record(final long time, final boolean exception) {
+        final StripedCounters counters = m_counters;
+        final int stripe = counters.getStripe();
+        counters.increment(stripe, INVOCATIONS);
+        if (exception) {
+            counters.increment(stripe, EXCEPTIONS);
+        }
+        counters.add(stripe, TIME, time);
+        counters.increment(stripe, FIRST_BUCKET + getBucket(time));
+    }
+
+    /**
+     * Returns the histogram bucket of the given time.
+     *
+     * @param time in nanoseconds
+     * @return the bucket
+     */
+    public static int getBucket(final long time) {
+        long micros = time >> 10;
+        int bucket = 0;
+        while (micros > 0 && bucket < BUCKET_COUNT - 1) {
+            micros >>>= 1;
+            bucket++;
+        }
+        return bucket;
+    }
+
+    public String getJoinPointClassName() {
+        return m_joinPointClassName;
+    }
+
+    public String[] getPointcuts() {
+        return m_pointcuts;
+    }
+
+    public long getInvocationCount() {
+        return m_counters.sum(INVOCATIONS);
+    }
+
+    public long getExceptionCount() {
+        return m_counters.sum(EXCEPTIONS);
+    }
+
+    /**
+     * Returns the total time spent in the join point, in nanoseconds.
+     *
+     * @return the time
+     */
+    public long getTotalTime() {
+        return m_counters.sum(TIME);
+    }
+
+    /**
+     * Returns the histogram of the invocation times.
+     *
+     * @return the invocation count of each bucket
+     */
+    public long[] getHistogram() {
+        final long[] histogram = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            histogram[i] = m_counters.sum(FIRST_BUCKET + i);
+        }
+        return histogram;
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void reset() {
+        m_counters.reset();
+    }
+
+    private boolean hasPointcut(final String pointcut) {
+        for (int i = 0; i < m_pointcuts.length; i++) {
+            if (m_pointcuts[i].equals(pointcut)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the names of the join point classes that gather statistics, in all the class loaders.
+     *
+     * @return the join point class names, sorted
+     */
+    public static String[] getJoinPointClassNames() {
+        final TreeSet names = new TreeSet();
+        synchronized (s_statistics) {
+            for (Iterator it = s_statistics.values().iterator(); it.hasNext();) {
+                names.addAll(((Map) it.next()).keySet());
+            }
+        }
+        return (String[]) names.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the statistics of a join point class.
+     *
+     * @param joinPointClass
+     * @return the statistics or null if the join point class does not gather statistics
+     */
+    public static JoinPointStatistics getStatistics(final Class joinPointClass) {
+        synchronized (s_statistics) {
+            final Map statisticsByName = (Map) s_statistics.get(joinPointClass.getClassLoader());
+            return (statisticsByName == null)
+                   ? null
+                   : (JoinPointStatistics) statisticsByName.get(joinPointClass.getName());
+        }
+    }
+
+    /**
+     * Returns the statistics of a join point class given by its name, in any class loader.
+     *
+     * @param joinPointClassName
+     * @return the statistics or null if no join point class of that name gathers statistics
+     */
+    public static JoinPointStatistics getStatistics(final String joinPointClassName) {
+        synchronized (s_statistics) {
+            for (Iterator it = s_statistics.values().iterator(); it.hasNext();) {
+                JoinPointStatistics statistics = (JoinPointStatistics) ((Map) it.next()).get(joinPointClassName);
+                if (statistics != null) {
+                    return statistics;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the statistics of the join points selected by the given join point class name and pointcut, in all the
+     * class loaders.
+     *
+     * @param joinPointClassName the join point class name or null for any
+     * @param pointcut           the pointcut of one of the advices, as written in the definition, or null for any
+     * @return the statistics, sorted by join point class name
+     */
+    public static List getStatistics(final String joinPointClassName, final String pointcut) {
+        final List selected = new ArrayList();
+        synchronized (s_statistics) {
+            for (Iterator loaders = s_statistics.values().iterator(); loaders.hasNext();) {
+                for (Iterator it = ((Map) loaders.next()).values().iterator(); it.hasNext();) {
+                    JoinPointStatistics statistics = (JoinPointStatistics) it.next();
+                    if ((joinPointClassName == null || joinPointClassName.equals(statistics.m_joinPointClassName))
+                        && (pointcut == null || statistics.hasPointcut(pointcut))) {
+                        selected.add(statistics);
+                    }
+                }
+            }
+        }
+        Collections.sort(
+                selected, new Comparator() {
+                    public int compare(final Object o1, final Object o2) {
+                        return ((JoinPointStatistics) o1).m_joinPointClassName.compareTo(
+                                ((JoinPointStatistics) o2).m_joinPointClassName
+                        );
+                    }
+                }
+        );
+        return selected;
+    }
+
+    /**
+     * Resets the statistics of all the join points, in all the class loaders.
+     */
+    public static void resetAll() {
+        synchronized (s_statistics) {
+            for (Iterator loaders = s_statistics.values().iterator(); loaders.hasNext();) {
+                for (Iterator it = ((Map) loaders.next()).values().iterator(); it.hasNext();) {
+                    ((JoinPointStatistics) it.next()).reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a CSV snapshot of the statistics of the selected join points, one line per join point after a header
+     * line. The pointcuts are separated by '|'.
+     *
+     * @param joinPointClassName the join point class name or null for any
+     * @param pointcut           the pointcut or null for any
+     * @return the snapshot
+     */
+    public static String getCsvSnapshot(final String joinPointClassName, final String pointcut) {
+        final StringBuffer buf = new StringBuffer(CSV_HEADER).append('\n');
+        for (Iterator it = getStatistics(joinPointClassName, pointcut).iterator(); it.hasNext();) {
+            JoinPointStatistics statistics = (JoinPointStatistics) it.next();
+            appendCsv(buf, statistics.m_joinPointClassName).append(',');
+            final StringBuffer pointcuts = new StringBuffer();
+            for (int i = 0; i < statistics.m_pointcuts.length; i++) {
+                if (i > 0) {
+                    pointcuts.append('|');
+                }
+                pointcuts.append(statistics.m_pointcuts[i]);
+            }
+            appendCsv(buf, pointcuts.toString());
+            buf.append(',').append(statistics.getInvocationCount());
+            buf.append(',').append(statistics.getExceptionCount());
+            buf.append(',').append(statistics.getTotalTime());
+            final long[] histogram = statistics.getHistogram();
+            for (int i = 0; i < histogram.length; i++) {
+                buf.append(',').append(histogram[i]);
+            }
+            buf.append('\n');
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Returns a JSON snapshot of the statistics of the selected join points, as an array of objects.
+     *
+     * @param joinPointClassName the join point class name or null for any
+     * @param pointcut           the pointcut or null for any
+     * @return the snapshot
+     */
+    public static String getJsonSnapshot(final String joinPointClassName, final String pointcut) {
+        final StringBuffer buf = new StringBuffer("[");
+        for (Iterator it = getStatistics(joinPointClassName, pointcut).iterator(); it.hasNext();) {
+            JoinPointStatistics statistics = (JoinPointStatistics) it.next();
+            buf.append("\n{\"joinPointClassName\":");
+            appendJson(buf, statistics.m_joinPointClassName);
+            buf.append(",\"pointcuts\":[");
+            for (int i = 0; i < statistics.m_pointcuts.length; i++) {
+                if (i > 0) {
+                    buf.append(',');
+                }
+                appendJson(buf, statistics.m_pointcuts[i]);
+            }
+            buf.append("],\"invocations\":").append(statistics.getInvocationCount());
+            buf.append(",\"exceptions\":").append(statistics.getExceptionCount());
+            buf.append(",\"totalTimeNanos\":").append(statistics.getTotalTime());
+            buf.append(",\"histogram\":[");
+            final long[] histogram = statistics.getHistogram();
+            for (int i = 0; i < histogram.length; i++) {
+                if (i > 0) {
+                    buf.append(',');
+                }
+                buf.append(histogram[i]);
+            }
+            buf.append("]}");
+            if (it.hasNext()) {
+                buf.append(',');
+            }
+        }
+        return buf.append("\n]\n").toString();
+    }
+
+    private static StringBuffer appendCsv(final StringBuffer buf, final String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return buf.append(value);
+        }
+        buf.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                buf.append('"');
+            }
+            buf.append(c);
+        }
+        return buf.append('"');
+    }
+
+    private static void appendJson(final StringBuffer buf, final String value) {
+        buf.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    buf.append("\\\"");
+                    break;
+                case '\\':
+                    buf.append("\\\\");
+                    break;
+                case '\n':
+                    buf.append("\\n");
+                    break;
+                case '\r':
+                    buf.append("\\r");
+                    break;
+                case '\t':
+                    buf.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        String hex = Integer.toHexString(c);
+                        buf.append("\\u0000".substring(0, 6 - hex.length())).append(hex);
+                    } else {
+                        buf.append(c);
+                    }
+            }
+        }
+        buf.append('"');
+    }
+
+    /**
+     * Registers the MBean, only available on Java 5.
+     */
+    private static void registerMBean() {
+        try {
+            ContextClassLoader.forName(MBEAN_CLASS_NAME).getMethod("register", new Class[0]).invoke(null, new Object[0]);
+        } catch (Throwable t) {
+            AspectWerkzPreProcessor.log("AW::INFO - join point statistics MBean not registered: " + t.toString());
+        }
+    }
+
+    /**
+     * The statistics setting of a pointcut.
+     */
+    private static class PointcutSetting {
+        final String pointcut;
+        final ExpressionInfo expression;
+        final boolean enabled;
+
+        PointcutSetting(final String pointcut, final ExpressionInfo expression, final boolean enabled) {
+            this.pointcut = pointcut;
+            this.expression = expression;
+            this.enabled = enabled;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.joinpoint.management;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+
+import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.util.StripedCounters;
+
+/**
+ * Inline cache for the advice runtime checks of a join point, used by the generated join point class when
+ * <code>-Daspectwerkz.transform.inlinecache=true</code> is set.
+ * <p/>
+ * The runtime checks that only depend on the target class, that is the target(..) instanceof checks of the advices
+ * without cflow and of the aspects that are not perThis / perTarget, are evaluated once for all these advices by
+ * the join point class. The result is a bit mask with one bit per advice that tells whether the advice applies. It is
+ * memoized for the first two target classes seen (bimorphic cache); once both entries are used, the other target
+ * classes always go through the full check. The target classes are weakly referenced, so that the cache does not
+ * keep their class loader alive, and the entry of a collected target class can be reused.
+ * <p/>
+ * The this(..) and args(..) checks are resolved at weaving time, hence the target class is the whole key.
+ * <p/>
+ * The hit and miss counters are striped by thread (see StripedCounters) and not synchronized, hence are approximate.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class RuntimeCheckCache {
+
+    /**
+     * The max number of advices whose runtime check can be memoized, one bit each in a positive mask
+     */
+    public static final int MAX_ADVICES = 31;
+
+    /**
+     * Returned by lookup when the mask of the target is not cached
+     */
+    public static final int NOT_CACHED = -1;
+
+    private static final int HITS = 0;
+
+    private static final int MISSES = 1;
+
+    private volatile Entry m_first;
+
+    private volatile Entry m_second;
+
+    private final StripedCounters m_counters = new StripedCounters(2);
+
+    /**
+     * Returns the memoized mask of the advices that apply to the given target.
+     *
+     * @param target
+     * @return the mask or NOT_CACHED
+     */
+    public int lookup(final Object target) {
+        if (target != null) {
+            final Class targetClass = target.getClass();
+            // read each entry once since it can be set concurrently
+            Entry entry = m_first;
+            if (entry != null && entry.getTargetClass() == targetClass) {
+                m_counters.increment(m_counters.getStripe(), HITS);
+                return entry.mask;
+            }
+            entry = m_second;
+            if (entry != null && entry.getTargetClass() == targetClass) {
+                m_counters.increment(m_counters.getStripe(), HITS);
+                return entry.mask;
+            }
+        }
+        m_counters.increment(m_counters.getStripe(), MISSES);
+        return NOT_CACHED;
+    }
+
+    /**
+     * Memoizes the mask computed by the full check for the given target, if there is a free entry.
+     *
+     * @param target
+     * @param mask
+     */
+    public void update(final Object target, final int mask) {
+        if (target == null || (getTargetClass(m_first) != null && getTargetClass(m_second) != null)) {
+            return;
+        }
+        final Class targetClass = target.getClass();
+        synchronized (this) {
+            final Class first = getTargetClass(m_first);
+            final Class second = getTargetClass(m_second);
+            if (first == targetClass || second == targetClass) {
+                return;
+            }
+            if (first == null) {
+                m_first = new Entry(targetClass, mask);
+            } else if (second == null) {
+                m_second = new Entry(targetClass, mask);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of checks served by the cache.
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        return m_counters.sum(HITS);
+    }
+
+    /**
+     * Returns the number of checks that went through the full check.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return m_counters.sum(MISSES);
+    }
+
+    /**
+     * Returns the cache of the given join point class.
+     *
+     * @param joinPointClass
+     * @return the cache or null if the join point class does not use one
+     */
+    public static RuntimeCheckCache getCache(final Class joinPointClass) {
+        try {
+            Field field = joinPointClass.getDeclaredField(TransformationConstants.RUNTIME_CHECK_CACHE_FIELD_NAME);
+            field.setAccessible(true);
+            return (RuntimeCheckCache) field.get(null);
+        } catch (NoSuchFieldException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static Class getTargetClass(final Entry entry) {
+        return entry == null ? null : entry.getTargetClass();
+    }
+
+    /**
+     * A cache entry, immutable so that it can be safely read without synchronization.
+     */
+    private static class Entry {
+        final WeakReference targetClass;
+        final int mask;
+
+        Entry(final Class targetClass, final int mask) {
+            this.targetClass = new WeakReference(targetClass);
+            this.mask = mask;
+        }
+
+        /**
+         * @return the target class or null if it has been collected
+         */
+        Class getTargetClass() {
+            return (Class) targetClass.get();
+        }
+    }
+}
@@ -18,7 +18,7 @@ import org.codehaus.aspectwerkz.joinpoint.impl.EnclosingStaticJoinPointImpl;
 import org.codehaus.aspectwerkz.joinpoint.impl.FieldSignatureImpl;
 import org.codehaus.aspectwerkz.joinpoint.impl.MethodSignatureImpl;
 import org.codehaus.aspectwerkz.joinpoint.impl.StaticInitializerSignatureImpl;
-import org.codehaus.aspectwerkz.reflect.ReflectHelper;
+import org.codehaus.aspectwerkz.reflect.MemberIndex;
 import org.codehaus.aspectwerkz.reflect.impl.asm.AsmClassInfoRepository;
 import org.codehaus.aspectwerkz.transform.TransformationConstants;
 import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
@@ -26,8 +26,7 @@ import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
 /**
  * Factory class for the signature hierarchy.
  * The helper methods here are called by the JIT jp.
- *
- * TODO may be worth having a cache
+ * The reflective members are looked up by hash through the MemberIndex of the declaring class.
  *
  * @author <a href="mailto:jboner@codehaus.org">Jonas Bonr </a>
  * @author <a href="mailto:the_mindstorm@evolva.ro">Alex Popescu</a>
@@ -43,27 +42,11 @@ public final class SignatureFactory {
      */
     public static final MethodSignatureImpl newMethodSignature(final Class declaringClass, final int joinPointHash) {
         AsmClassInfoRepository.getRepository(declaringClass.getClassLoader()).removeClassInfo(declaringClass.getName().replace('.', '/'));
-        Method[] methods = declaringClass.getDeclaredMethods();
-        for (int i = 0; i < methods.length; i++) {
-            Method method = methods[i];
-            if (ReflectHelper.calculateHash(method) == joinPointHash) {
-                return new MethodSignatureImpl(declaringClass, method);
-            }
-        }
-        // lookup in the hierarchy
-        MethodSignatureImpl signature = null;
-        for (int i = 0; i < declaringClass.getInterfaces().length; i++) {
-            signature = newMethodSignature(declaringClass.getInterfaces()[i], joinPointHash);
-            if (signature != null) {
-                return signature;
-            }
-        }
-        if (declaringClass.getSuperclass() != null) {
-            signature = newMethodSignature(declaringClass.getSuperclass(), joinPointHash);
-        } else {
+        Method method = MemberIndex.getMemberIndex(declaringClass).getMethod(joinPointHash);
+        if (method == null) {
             return null;
         }
-        return signature;
+        return new MethodSignatureImpl(method.getDeclaringClass(), method);
     }
     
     /**
@@ -74,19 +57,11 @@ public final class SignatureFactory {
      * @return
      */
     public static final FieldSignatureImpl newFieldSignature(final Class declaringClass, final int joinPointHash) {
-        Field[] fields = declaringClass.getDeclaredFields();
-        for (int i = 0; i < fields.length; i++) {
-            Field field = fields[i];
-            if (ReflectHelper.calculateHash(field) == joinPointHash) {
-                return new FieldSignatureImpl(declaringClass, field);
-            }
-        }
-        // lookup in the hierarchy
-        if (declaringClass.getSuperclass() != null) {
-            return newFieldSignature(declaringClass.getSuperclass(), joinPointHash);
-        } else {
+        Field field = MemberIndex.getMemberIndex(declaringClass).getField(joinPointHash);
+        if (field == null) {
             return null;
         }
+        return new FieldSignatureImpl(field.getDeclaringClass(), field);
     }
 
     /**
@@ -98,19 +73,11 @@ public final class SignatureFactory {
      */
     public static final ConstructorSignatureImpl newConstructorSignature(final Class declaringClass,
                                                                          final int joinPointHash) {
-        Constructor constructor = null;
-        for (int i = 0; i < declaringClass.getDeclaredConstructors().length; i++) {
-            Constructor c = declaringClass.getDeclaredConstructors()[i];
-            if (ReflectHelper.calculateHash(c) == joinPointHash) {
-                return new ConstructorSignatureImpl(declaringClass, c);
-            }
-        }
-        // lookup in the hierarchy
-        if (declaringClass.getSuperclass() != null) {
-            return newConstructorSignature(declaringClass.getSuperclass(), joinPointHash);
-        } else {
+        Constructor constructor = MemberIndex.getMemberIndex(declaringClass).getConstructor(joinPointHash);
+        if (constructor == null) {
             return null;
         }
+        return new ConstructorSignatureImpl(constructor.getDeclaringClass(), constructor);
     }
 
     /**
@@ -12,6 +12,7 @@ import org.codehaus.aspectwerkz.transform.TransformationConstants;
 import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
 import org.codehaus.aspectwerkz.transform.inlining.AsmNullAdapter;
 import org.codehaus.aspectwerkz.transform.inlining.AsmCopyAdapter;
+import org.codehaus.aspectwerkz.transform.inlining.WovenClassAttribute;
 import org.objectweb.asm.*;
 
 import java.io.IOException;
@@ -231,11 +232,13 @@ public class ProxySubclassingCompiler implements TransformationConstants {
         }
 
         /**
-         * Visit the custom attribute (copy)
+         * Visit the custom attribute (copy), but the woven class one since the proxy is weaved on its own
          * @param attribute
          */
         public void visitAttribute(Attribute attribute) {
-            m_proxyCv.visitAttribute(attribute);
+            if (!WovenClassAttribute.NAME.equals(attribute.type)) {
+                m_proxyCv.visitAttribute(attribute);
+            }
         }
     }
 
@@ -0,0 +1,99 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.reflect;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codehaus.backport175.reader.bytecode.AnnotationElement;
+
+/**
+ * Annotation index used for annotation pointcut matching.
+ * <p/>
+ * Annotation type names are interned to small integer ids, and the annotations of a class or member are turned into
+ * a bitmap so that matching an annotation is a bit test instead of a scan of the annotation interface names.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class AnnotationIndex {
+
+    /**
+     * The bitmap of an element without annotations
+     */
+    public static final long[] NO_ANNOTATION_BITS = new long[0];
+
+    /**
+     * Maps the annotation type names to their id
+     */
+    private static final Map ANNOTATION_IDS = new HashMap();
+
+    /**
+     * Implemented by the reflection infos that keep their annotation bitmap.
+     */
+    public static interface Indexed {
+
+        /**
+         * Returns the bitmap of the annotations.
+         *
+         * @return the bitmap
+         */
+        long[] getAnnotationBits();
+    }
+
+    /**
+     * Returns the id of the given annotation type name.
+     *
+     * @param annotationName
+     * @return the id
+     */
+    public static int getId(final String annotationName) {
+        synchronized (ANNOTATION_IDS) {
+            Integer id = (Integer) ANNOTATION_IDS.get(annotationName);
+            if (id == null) {
+                id = new Integer(ANNOTATION_IDS.size());
+                ANNOTATION_IDS.put(annotationName, id);
+            }
+            return id.intValue();
+        }
+    }
+
+    /**
+     * Builds the bitmap of the given annotations.
+     *
+     * @param annotations
+     * @return the bitmap
+     */
+    public static long[] getBits(final AnnotationElement.Annotation[] annotations) {
+        if (annotations == null || annotations.length == 0) {
+            return NO_ANNOTATION_BITS;
+        }
+        final int[] ids = new int[annotations.length];
+        int maxId = 0;
+        for (int i = 0; i < annotations.length; i++) {
+            ids[i] = getId(annotations[i].getInterfaceName());
+            maxId = Math.max(maxId, ids[i]);
+        }
+        final long[] bits = new long[(maxId >>> 6) + 1];
+        for (int i = 0; i < ids.length; i++) {
+            bits[ids[i] >>> 6] |= 1L << (ids[i] & 63);
+        }
+        return bits;
+    }
+
+    /**
+     * Checks if the given bitmap holds the given annotation id.
+     *
+     * @param bits
+     * @param id
+     * @return true if so
+     */
+    public static boolean hasAnnotation(final long[] bits, final int id) {
+        final int word = id >>> 6;
+        return word < bits.length && (bits[word] & (1L << (id & 63))) != 0;
+    }
+}
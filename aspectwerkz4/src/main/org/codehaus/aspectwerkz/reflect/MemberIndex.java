@@ -0,0 +1,279 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.reflect;
+
+import gnu.trove.TIntObjectHashMap;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Index of the reflective members of a class, by member hash (see ReflectHelper.calculateHash).
+ * <p/>
+ * The declared members and their hash are computed once per class. The lookup by hash also finds the inherited
+ * members: methods are looked up in the interfaces and then in the superclass, fields and constructors in the
+ * superclass only, the first member found winning.
+ * <p/>
+ * The indexes are softly referenced from a weak map keyed by class, since an index references its class through its
+ * members.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class MemberIndex {
+
+    /**
+     * Map with the index (soft reference) mapped to their class
+     */
+    private static final Map s_indexes = new WeakHashMap();
+
+    private final Class m_class;
+
+    private final Method[] m_declaredMethods;
+
+    private final int[] m_declaredMethodHashes;
+
+    private final Constructor[] m_declaredConstructors;
+
+    private final int[] m_declaredConstructorHashes;
+
+    private final Field[] m_declaredFields;
+
+    private final int[] m_declaredFieldHashes;
+
+    /**
+     * Lazy, the methods including the inherited ones, by hash
+     */
+    private TIntObjectHashMap m_methods;
+
+    /**
+     * Lazy, the constructors including the inherited ones, by hash
+     */
+    private TIntObjectHashMap m_constructors;
+
+    /**
+     * Lazy, the fields including the inherited ones, by hash
+     */
+    private TIntObjectHashMap m_fields;
+
+    /**
+     * Creates a new index.
+     *
+     * @param klass
+     */
+    private MemberIndex(final Class klass) {
+        m_class = klass;
+        m_declaredMethods = klass.getDeclaredMethods();
+        m_declaredMethodHashes = new int[m_declaredMethods.length];
+        for (int i = 0; i < m_declaredMethods.length; i++) {
+            m_declaredMethodHashes[i] = ReflectHelper.calculateHash(m_declaredMethods[i]);
+        }
+        m_declaredConstructors = klass.getDeclaredConstructors();
+        m_declaredConstructorHashes = new int[m_declaredConstructors.length];
+        for (int i = 0; i < m_declaredConstructors.length; i++) {
+            m_declaredConstructorHashes[i] = ReflectHelper.calculateHash(m_declaredConstructors[i]);
+        }
+        m_declaredFields = klass.getDeclaredFields();
+        m_declaredFieldHashes = new int[m_declaredFields.length];
+        for (int i = 0; i < m_declaredFields.length; i++) {
+            m_declaredFieldHashes[i] = ReflectHelper.calculateHash(m_declaredFields[i]);
+        }
+    }
+
+    /**
+     * Returns the member index for the given class.
+     * <p/>
+     * The index is built outside of the lock, since it reflects on the class which can load other classes, and is
+     * published unless another thread has published one meanwhile.
+     *
+     * @param klass
+     * @return the index
+     */
+    public static MemberIndex getMemberIndex(final Class klass) {
+        MemberIndex index = getIndex(klass);
+        if (index != null) {
+            return index;
+        }
+        final MemberIndex newIndex = new MemberIndex(klass);
+        synchronized (s_indexes) {
+            index = getIndex(klass);
+            if (index == null) {
+                index = newIndex;
+                s_indexes.put(klass, new SoftReference(index));
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Returns the published index of the given class.
+     *
+     * @param klass
+     * @return the index or null if none
+     */
+    private static MemberIndex getIndex(final Class klass) {
+        synchronized (s_indexes) {
+            SoftReference indexRef = (SoftReference) s_indexes.get(klass);
+            return (indexRef == null) ? null : (MemberIndex) indexRef.get();
+        }
+    }
+
+    /**
+     * Returns the class.
+     *
+     * @return the class
+     */
+    public Class getIndexedClass() {
+        return m_class;
+    }
+
+    /**
+     * Returns the declared methods. The array must not be modified.
+     *
+     * @return the declared methods
+     */
+    public Method[] getDeclaredMethods() {
+        return m_declaredMethods;
+    }
+
+    /**
+     * Returns the hash of the declared methods, in the getDeclaredMethods order. The array must not be modified.
+     *
+     * @return the hashes
+     */
+    public int[] getDeclaredMethodHashes() {
+        return m_declaredMethodHashes;
+    }
+
+    /**
+     * Returns the declared constructors. The array must not be modified.
+     *
+     * @return the declared constructors
+     */
+    public Constructor[] getDeclaredConstructors() {
+        return m_declaredConstructors;
+    }
+
+    /**
+     * Returns the hash of the declared constructors, in the getDeclaredConstructors order. The array must not be
+     * modified.
+     *
+     * @return the hashes
+     */
+    public int[] getDeclaredConstructorHashes() {
+        return m_declaredConstructorHashes;
+    }
+
+    /**
+     * Returns the declared fields. The array must not be modified.
+     *
+     * @return the declared fields
+     */
+    public Field[] getDeclaredFields() {
+        return m_declaredFields;
+    }
+
+    /**
+     * Returns the hash of the declared fields, in the getDeclaredFields order. The array must not be modified.
+     *
+     * @return the hashes
+     */
+    public int[] getDeclaredFieldHashes() {
+        return m_declaredFieldHashes;
+    }
+
+    /**
+     * Returns the method with the given hash, declared or inherited.
+     *
+     * @param hash
+     * @return the method or null if not found
+     */
+    public Method getMethod(final int hash) {
+        return (Method) getMethods().get(hash);
+    }
+
+    /**
+     * Returns the constructor with the given hash, declared or inherited.
+     *
+     * @param hash
+     * @return the constructor or null if not found
+     */
+    public Constructor getConstructor(final int hash) {
+        return (Constructor) getConstructors().get(hash);
+    }
+
+    /**
+     * Returns the field with the given hash, declared or inherited.
+     *
+     * @param hash
+     * @return the field or null if not found
+     */
+    public Field getField(final int hash) {
+        return (Field) getFields().get(hash);
+    }
+
+    private synchronized TIntObjectHashMap getMethods() {
+        if (m_methods == null) {
+            TIntObjectHashMap methods = new TIntObjectHashMap();
+            putAll(methods, m_declaredMethodHashes, m_declaredMethods);
+            Class[] interfaces = m_class.getInterfaces();
+            for (int i = 0; i < interfaces.length; i++) {
+                putAll(methods, getMemberIndex(interfaces[i]).getMethods());
+            }
+            if (m_class.getSuperclass() != null) {
+                putAll(methods, getMemberIndex(m_class.getSuperclass()).getMethods());
+            }
+            m_methods = methods;
+        }
+        return m_methods;
+    }
+
+    private synchronized TIntObjectHashMap getConstructors() {
+        if (m_constructors == null) {
+            TIntObjectHashMap constructors = new TIntObjectHashMap();
+            putAll(constructors, m_declaredConstructorHashes, m_declaredConstructors);
+            if (m_class.getSuperclass() != null) {
+                putAll(constructors, getMemberIndex(m_class.getSuperclass()).getConstructors());
+            }
+            m_constructors = constructors;
+        }
+        return m_constructors;
+    }
+
+    private synchronized TIntObjectHashMap getFields() {
+        if (m_fields == null) {
+            TIntObjectHashMap fields = new TIntObjectHashMap();
+            putAll(fields, m_declaredFieldHashes, m_declaredFields);
+            if (m_class.getSuperclass() != null) {
+                putAll(fields, getMemberIndex(m_class.getSuperclass()).getFields());
+            }
+            m_fields = fields;
+        }
+        return m_fields;
+    }
+
+    private static void putAll(final TIntObjectHashMap map, final int[] hashes, final Object[] members) {
+        for (int i = 0; i < hashes.length; i++) {
+            if (!map.containsKey(hashes[i])) {
+                map.put(hashes[i], members[i]);
+            }
+        }
+    }
+
+    private static void putAll(final TIntObjectHashMap map, final TIntObjectHashMap members) {
+        int[] hashes = members.keys();
+        for (int i = 0; i < hashes.length; i++) {
+            if (!map.containsKey(hashes[i])) {
+                map.put(hashes[i], members.get(hashes[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.reflect;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Type index used for subtype (+) pattern matching.
+ * <p/>
+ * Type names are interned to small integer ids, and the class, its super classes and all their interfaces are turned
+ * into a sorted id set, so that matching a subtype pattern is a walk of the set against the ids the pattern is known
+ * to match instead of a recursive walk of the hierarchy matching each type name.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class TypeIndex {
+
+    /**
+     * The id set of a type without supertypes
+     */
+    public static final int[] NO_TYPE_IDS = new int[0];
+
+    /**
+     * Maps the type names to their id
+     */
+    private static final Map TYPE_IDS = new HashMap();
+
+    /**
+     * The type names, per id
+     */
+    private static String[] s_names = new String[256];
+
+    /**
+     * Implemented by the class infos that keep their supertype id set.
+     */
+    public static interface Indexed {
+
+        /**
+         * Returns the id of the type.
+         *
+         * @return the id
+         */
+        int getTypeId();
+
+        /**
+         * Returns the sorted ids of the type, its super classes and all their interfaces.
+         *
+         * @return the id set
+         */
+        int[] getSupertypeIds();
+    }
+
+    /**
+     * Returns the id of the given type name.
+     *
+     * @param typeName
+     * @return the id
+     */
+    public static int getId(final String typeName) {
+        synchronized (TYPE_IDS) {
+            Integer id = (Integer) TYPE_IDS.get(typeName);
+            if (id == null) {
+                id = new Integer(TYPE_IDS.size());
+                TYPE_IDS.put(typeName, id);
+                if (id.intValue() == s_names.length) {
+                    final String[] names = new String[s_names.length * 2];
+                    System.arraycopy(s_names, 0, names, 0, s_names.length);
+                    s_names = names;
+                }
+                s_names[id.intValue()] = typeName;
+            }
+            return id.intValue();
+        }
+    }
+
+    /**
+     * Returns the type name of the given id.
+     *
+     * @param id
+     * @return the type name
+     */
+    public static String getName(final int id) {
+        synchronized (TYPE_IDS) {
+            return s_names[id];
+        }
+    }
+
+    /**
+     * Returns the id of the type of the given class info, from the class info if it keeps it.
+     *
+     * @param classInfo
+     * @return the id
+     */
+    public static int getTypeId(final ClassInfo classInfo) {
+        if (classInfo instanceof Indexed) {
+            return ((Indexed) classInfo).getTypeId();
+        }
+        return getId(classInfo.getName());
+    }
+
+    /**
+     * Returns the supertype id set of the given class info, from the class info if it keeps it.
+     *
+     * @param classInfo
+     * @return the sorted id set
+     */
+    public static int[] getSupertypeIds(final ClassInfo classInfo) {
+        if (classInfo instanceof Indexed) {
+            return ((Indexed) classInfo).getSupertypeIds();
+        }
+        return buildSupertypeIds(classInfo);
+    }
+
+    /**
+     * Builds the supertype id set of the given class info, reusing the sets of its interfaces and super class.
+     *
+     * @param classInfo
+     * @return the sorted ids of the type, its super classes and all their interfaces
+     */
+    public static int[] buildSupertypeIds(final ClassInfo classInfo) {
+        int[] ids = NO_TYPE_IDS;
+        if (classInfo.getName() != null) {
+            ids = new int[]{getTypeId(classInfo)};
+        }
+        final ClassInfo[] interfaces = classInfo.getInterfaces();
+        for (int i = 0; i < interfaces.length; i++) {
+            if (interfaces[i] != null) {
+                ids = union(ids, getSupertypeIds(interfaces[i]));
+            }
+        }
+        final ClassInfo superclass = classInfo.getSuperclass();
+        if (superclass != null) {
+            ids = union(ids, getSupertypeIds(superclass));
+        }
+        return ids;
+    }
+
+    /**
+     * Merges two sorted id sets.
+     *
+     * @param ids1
+     * @param ids2
+     * @return the sorted union, one of the given sets if it holds the other one
+     */
+    private static int[] union(final int[] ids1, final int[] ids2) {
+        final int[] union = new int[ids1.length + ids2.length];
+        int i1 = 0;
+        int i2 = 0;
+        int length = 0;
+        while (i1 < ids1.length || i2 < ids2.length) {
+            if (i2 == ids2.length || (i1 < ids1.length && ids1[i1] < ids2[i2])) {
+                union[length++] = ids1[i1++];
+            } else if (i1 == ids1.length || ids2[i2] < ids1[i1]) {
+                union[length++] = ids2[i2++];
+            } else {
+                union[length++] = ids1[i1++];
+                i2++;
+            }
+        }
+        if (length == ids1.length) {
+            return ids1;
+        }
+        if (length == ids2.length) {
+            return ids2;
+        }
+        final int[] ids = new int[length];
+        System.arraycopy(union, 0, ids, 0, length);
+        return ids;
+    }
+}
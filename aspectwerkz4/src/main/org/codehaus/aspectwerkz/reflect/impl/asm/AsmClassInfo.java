@@ -10,12 +10,14 @@ package org.codehaus.aspectwerkz.reflect.impl.asm;
 import gnu.trove.TIntArrayList;
 import gnu.trove.TIntObjectHashMap;
 import org.codehaus.aspectwerkz.exception.WrappedRuntimeException;
+import org.codehaus.aspectwerkz.reflect.AnnotationIndex;
 import org.codehaus.aspectwerkz.reflect.ClassInfo;
 import org.codehaus.aspectwerkz.reflect.ConstructorInfo;
 import org.codehaus.aspectwerkz.reflect.FieldInfo;
 import org.codehaus.aspectwerkz.reflect.MethodInfo;
 import org.codehaus.aspectwerkz.reflect.StaticInitializationInfo;
 import org.codehaus.aspectwerkz.reflect.StaticInitializationInfoImpl;
+import org.codehaus.aspectwerkz.reflect.TypeIndex;
 import org.codehaus.aspectwerkz.reflect.impl.java.JavaClassInfo;
 import org.codehaus.aspectwerkz.transform.TransformationConstants;
 import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
@@ -44,7 +46,7 @@ import java.util.List;
  * @author <a href="mailto:jboner@codehaus.org">Jonas Bonr </a>
  * @author <a href="mailto:alex@gnilux.com">Alexandre Vasseur </a>
  */
-public class AsmClassInfo implements ClassInfo {
+public class AsmClassInfo implements ClassInfo, AnnotationIndex.Indexed, TypeIndex.Indexed {
 
     protected final static String[] EMPTY_STRING_ARRAY = new String[0];
 
@@ -149,6 +151,23 @@ public class AsmClassInfo implements ClassInfo {
      */
     private AnnotationReader m_annotationReader = null;
 
+    /**
+     * The annotation bitmap.
+     * Lazily built from the annotations.
+     */
+    private long[] m_annotationBits = null;
+
+    /**
+     * The type id, -1 until looked up.
+     */
+    private int m_typeId = -1;
+
+    /**
+     * The supertype id set.
+     * Lazily built from the super class and interfaces.
+     */
+    private int[] m_supertypeIds = null;
+
     /**
      * The component type name if array type. Can be an array itself.
      */
@@ -388,6 +407,42 @@ public class AsmClassInfo implements ClassInfo {
         return getAnnotationReader().getAnnotationElements();
     }
 
+    /**
+     * Returns the bitmap of the annotations, see AnnotationIndex.
+     *
+     * @return the bitmap
+     */
+    public long[] getAnnotationBits() {
+        if (m_annotationBits == null) {
+            m_annotationBits = AnnotationIndex.getBits(getAnnotations());
+        }
+        return m_annotationBits;
+    }
+
+    /**
+     * Returns the type id, see TypeIndex.
+     *
+     * @return the type id
+     */
+    public int getTypeId() {
+        if (m_typeId < 0) {
+            m_typeId = TypeIndex.getId(m_name);
+        }
+        return m_typeId;
+    }
+
+    /**
+     * Returns the supertype id set, see TypeIndex.
+     *
+     * @return the sorted ids of the class, its super classes and all their interfaces
+     */
+    public int[] getSupertypeIds() {
+        if (m_supertypeIds == null) {
+            m_supertypeIds = TypeIndex.buildSupertypeIds(this);
+        }
+        return m_supertypeIds;
+    }
+
     /**
      * Returns the name of the class.
      *
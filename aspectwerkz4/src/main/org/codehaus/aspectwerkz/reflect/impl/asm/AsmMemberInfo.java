@@ -7,6 +7,7 @@
  **************************************************************************************/
 package org.codehaus.aspectwerkz.reflect.impl.asm;
 
+import org.codehaus.aspectwerkz.reflect.AnnotationIndex;
 import org.codehaus.aspectwerkz.reflect.ClassInfo;
 import org.codehaus.aspectwerkz.reflect.MemberInfo;
 import org.codehaus.backport175.reader.Annotation;
@@ -21,7 +22,7 @@ import java.util.*;
  *
  * @author <a href="mailto:jboner@codehaus.org">Jonas Bonr </a>
  */
-public abstract class AsmMemberInfo implements MemberInfo {
+public abstract class AsmMemberInfo implements MemberInfo, AnnotationIndex.Indexed {
 
     /**
      * The member info.
@@ -48,6 +49,11 @@ public abstract class AsmMemberInfo implements MemberInfo {
      */
     protected final AsmClassInfoRepository m_classInfoRepository;
 
+    /**
+     * The annotation bitmap, lazily built.
+     */
+    private long[] m_annotationBits = null;
+
     /**
      * Creates a new member meta data instance.
      *
@@ -77,6 +83,18 @@ public abstract class AsmMemberInfo implements MemberInfo {
         return m_member.name;
     }
 
+    /**
+     * Returns the bitmap of the annotations, see AnnotationIndex.
+     *
+     * @return the bitmap
+     */
+    public long[] getAnnotationBits() {
+        if (m_annotationBits == null) {
+            m_annotationBits = AnnotationIndex.getBits(getAnnotations());
+        }
+        return m_annotationBits;
+    }
+
     /**
      * Returns the modifiers.
      *
@@ -11,10 +11,12 @@ import gnu.trove.TIntObjectHashMap;
 import org.codehaus.aspectwerkz.reflect.ClassInfo;
 import org.codehaus.aspectwerkz.reflect.ConstructorInfo;
 import org.codehaus.aspectwerkz.reflect.FieldInfo;
+import org.codehaus.aspectwerkz.reflect.MemberIndex;
 import org.codehaus.aspectwerkz.reflect.MethodInfo;
 import org.codehaus.aspectwerkz.reflect.ReflectHelper;
 import org.codehaus.aspectwerkz.reflect.StaticInitializationInfo;
 import org.codehaus.aspectwerkz.reflect.StaticInitializationInfoImpl;
+import org.codehaus.aspectwerkz.reflect.TypeIndex;
 import org.codehaus.aspectwerkz.reflect.impl.asm.AsmClassInfo;
 import org.codehaus.aspectwerkz.transform.TransformationConstants;
 import org.codehaus.backport175.reader.bytecode.AnnotationElement;
@@ -29,7 +31,7 @@ import java.lang.reflect.Method;
  *
  * @author <a href="mailto:jboner@codehaus.org">Jonas Bonr </a>
  */
-public class JavaClassInfo implements ClassInfo {
+public class JavaClassInfo implements ClassInfo, TypeIndex.Indexed {
     /**
      * The class.
      */
@@ -101,6 +103,16 @@ public class JavaClassInfo implements ClassInfo {
      */
     private StaticInitializationInfo m_staticInitializer = null;
 
+    /**
+     * The type id, -1 until looked up.
+     */
+    private int m_typeId = -1;
+
+    /**
+     * Lazy, the supertype id set
+     */
+    private int[] m_supertypeIds = null;
+
     /**
      * Creates a new class meta data instance.
      *
@@ -125,28 +137,32 @@ public class JavaClassInfo implements ClassInfo {
             m_interfaces = new ClassInfo[0];
         } else {
             m_name = klass.getName();
-            Method[] methods = m_class.getDeclaredMethods();
+            MemberIndex memberIndex = MemberIndex.getMemberIndex(m_class);
+            Method[] methods = memberIndex.getDeclaredMethods();
+            int[] methodHashes = memberIndex.getDeclaredMethodHashes();
             for (int i = 0; i < methods.length; i++) {
                 Method method = methods[i];
-                m_methods.put(ReflectHelper.calculateHash(method), new JavaMethodInfo(method, this));
+                m_methods.put(methodHashes[i], new JavaMethodInfo(method, this));
             }
-            Constructor[] constructors = m_class.getDeclaredConstructors();
+            Constructor[] constructors = memberIndex.getDeclaredConstructors();
+            int[] constructorHashes = memberIndex.getDeclaredConstructorHashes();
             for (int i = 0; i < constructors.length; i++) {
                 Constructor constructor = constructors[i];
                 m_constructors.put(
-                        ReflectHelper.calculateHash(constructor), new JavaConstructorInfo(
+                        constructorHashes[i], new JavaConstructorInfo(
                                 constructor,
                                 this
                         )
                 );
             }
-            Field[] fields = m_class.getDeclaredFields();
+            Field[] fields = memberIndex.getDeclaredFields();
+            int[] fieldHashes = memberIndex.getDeclaredFieldHashes();
             for (int i = 0; i < fields.length; i++) {
                 if (fields[i].getName().startsWith(TransformationConstants.ASPECTWERKZ_PREFIX)) {
                     continue;
                 }
                 Field field = fields[i];
-                m_fields.put(ReflectHelper.calculateHash(field), new JavaFieldInfo(field, this));
+                m_fields.put(fieldHashes[i], new JavaFieldInfo(field, this));
             }
         }
         m_classInfoRepository.addClassInfo(this);
@@ -356,6 +372,30 @@ public class JavaClassInfo implements ClassInfo {
         return m_interfaces;
     }
 
+    /**
+     * Returns the type id, see TypeIndex.
+     *
+     * @return the type id
+     */
+    public int getTypeId() {
+        if (m_typeId < 0) {
+            m_typeId = TypeIndex.getId(getName());
+        }
+        return m_typeId;
+    }
+
+    /**
+     * Returns the supertype id set, see TypeIndex.
+     *
+     * @return the sorted ids of the class, its super classes and all their interfaces
+     */
+    public int[] getSupertypeIds() {
+        if (m_supertypeIds == null) {
+            m_supertypeIds = TypeIndex.buildSupertypeIds(this);
+        }
+        return m_supertypeIds;
+    }
+
     /**
      * Returns the super class.
      *
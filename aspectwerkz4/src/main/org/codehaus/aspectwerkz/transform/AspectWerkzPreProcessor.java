@@ -8,6 +8,7 @@
 package org.codehaus.aspectwerkz.transform;
 
 import org.codehaus.aspectwerkz.util.Util;
+import org.codehaus.aspectwerkz.definition.DefinitionFingerprint;
 import org.codehaus.aspectwerkz.expression.SubtypePatternType;
 import org.codehaus.aspectwerkz.expression.regexp.Pattern;
 import org.codehaus.aspectwerkz.expression.regexp.TypePattern;
@@ -15,6 +16,9 @@ import org.codehaus.aspectwerkz.hook.ClassPreProcessor;
 import org.codehaus.aspectwerkz.transform.inlining.InliningWeavingStrategy;
 import org.codehaus.aspectwerkz.transform.inlining.EmittedJoinPoint;
 import org.codehaus.aspectwerkz.transform.inlining.ContextImpl;
+import org.codehaus.aspectwerkz.transform.inlining.WovenClassAttribute;
+
+import java.util.Arrays;
 
 /**
  * AspectWerkzPreProcessor is the entry point of the AspectWerkz layer 2. <p/>It implements the ClassPreProcessor
@@ -33,6 +37,56 @@ import org.codehaus.aspectwerkz.transform.inlining.ContextImpl;
  * <code>org.codehaus.aspectwerkz</code> and related classes (trove, dom4j etc.). This should only be used in offline
  * mode where weaving of those classes is needed. Setting this option in online mode will lead to
  * <code>ClassCircularityError</code>.</li>
+ * <li><code>-Daspectwerkz.transform.lazyjp=yes</code> (or true) turns on lazy join point linking: the join point
+ * classes are compiled and defined the first time each join point is reached instead of when the weaved class is
+ * initialized. The option is read at weaving time, hence it must be set when running the offline compiler for
+ * classes weaved offline.</li>
+ * <li><code>-Daspectwerkz.transform.sharedjp=yes</code> (or true) lets the call sites of a class that target the same
+ * member with the same advice chain share one join point class, instead of having one per caller method. Only done
+ * when no bounded advice can reach the enclosing static join point (no JoinPoint / StaticJoinPoint parameter) and
+ * the class is not Advisable. The option is read at weaving time.</li>
+ * <li><code>-Daspectwerkz.transform.aotjp=yes</code> (or true) weaves the classes as the offline compiler
+ * <code>-aotjp</code> option does for its compilation only (see preProcessWithOutput): the weaved classes do not
+ * load their join points when initialized since the join point classes are generated at compile time, and listed in
+ * a join point index that is only read when a deployment needs to redefine them. Lazy join point linking does not
+ * apply then.</li>
+ * <li><code>-Daspectwerkz.transform.inlinecache=yes</code> (or true) makes the join point classes memoize which
+ * of their advices apply to a target class, as a bit mask computed from the <code>target(..)</code> runtime checks,
+ * for the first two target classes seen (see RuntimeCheckCache). It is used when at least two advices of a join
+ * point need such checks. The option is read when the join point classes are compiled.</li>
+ * <li><code>-Daspectwerkz.transform.metrics=yes</code> (or true) gathers weave time metrics (time per weaving phase,
+ * weaved and filtered classes, join points per type, slowest classes and expressions), exposed through the
+ * <code>org.codehaus.aspectwerkz:type=WeaverMetrics</code> MBean on Java 5 and written periodically in the
+ * <code>-Daspectwerkz.transform.metrics.report=..</code> file if set (see WeaverMetrics).</li>
+ * <li><code>-Daspectwerkz.transform.jpstats=yes</code> (or true) makes the join point classes count their invocations
+ * and exceptions and gather a histogram of their invocation times (see JoinPointStatistics). The option is read when
+ * the join point classes are compiled, and can be overridden at runtime for the join points of a pointcut with
+ * <code>Deployer.setJoinPointStatistics(..)</code>.</li>
+ * <li><code>-Daspectwerkz.transform.relinkjp=yes</code> (or true) compiles relinkable join point classes: their
+ * invoke method first checks a static relink target, so that a deployment or undeployment only needs to switch the
+ * target to the newly compiled join point instead of redefining the join point class with HotSwap. The option is read
+ * when the join point classes are compiled.</li>
+ * <li><code>-Daspectwerkz.transform.inlineadvice=yes</code> (or true) inlines the body of the small before and after
+ * advices that do not use the join point into the join point classes, instead of invoking them (see AdviceInliner).
+ * The option is read when the join point classes are compiled.</li>
+ * <li><code>-Daspectwerkz.transform.dormantjp=yes</code> (or true) weaves the method execution and method call join
+ * points that are only matched by a deployment scope or a prepare package, but not by any advice, as dormant join
+ * points: the weaved code checks a static flag and runs the original code as long as it is not set, and no join point
+ * class is generated for them. The flag is set when a deployment with <code>Deployer.deploy(..)</code> matches the
+ * join point, which is then linked and compiled the first time it is reached. The option is read at weaving time and
+ * does not apply to classes weaved with <code>-aotjp</code> or made advisable.</li>
+ * <li><code>-Daspectwerkz.transform.preweave=..</code> records the classes weaved per class loader in the given
+ * profile file at shutdown, and on the next start weaves the recorded classes in background threads ahead of their
+ * loading (see WeavingProfile). A class weaved ahead is used only if its bytecode and the definitions are unchanged
+ * when it is loaded, else it is weaved as usual.</li>
+ * <li><code>-Daspectwerkz.transform.redefinejp=no</code> (or false) does not keep the compilation info of the join
+ * point classes. Deployments and undeployments then only apply to the join points compiled afterwards, the ones
+ * already compiled are not redefined. By default a compact record of each join point (its emitted join point and
+ * the advices it has been compiled with) is kept, from which its model is rebuilt when it is redefined.</li>
+ * <li><code>-Daspectwerkz.transform.skipwoven=no</code> (or false) weaves the classes again even when they have been
+ * weaved with the same definitions as the ones visible from their class loader, f.e. by the offline compiler. By
+ * default such classes, recognized from the fingerprint of the definitions the weaver writes in them (see
+ * WovenClassAttribute), are returned as is without being parsed.</li>
  * </ul>
  *
  * @author <a href="mailto:alex@gnilux.com">Alexandre Vasseur </a>
@@ -50,6 +104,28 @@ public class AspectWerkzPreProcessor implements ClassPreProcessor {
 
     private final static String AW_TRANSFORM_DUMP = "aspectwerkz.transform.dump";
 
+    private final static String AW_TRANSFORM_LAZYJP = "aspectwerkz.transform.lazyjp";
+
+    private final static String AW_TRANSFORM_SHAREDJP = "aspectwerkz.transform.sharedjp";
+
+    private final static String AW_TRANSFORM_AOTJP = "aspectwerkz.transform.aotjp";
+
+    private final static String AW_TRANSFORM_INLINECACHE = "aspectwerkz.transform.inlinecache";
+
+    private final static String AW_TRANSFORM_METRICS = "aspectwerkz.transform.metrics";
+
+    private final static String AW_TRANSFORM_JPSTATS = "aspectwerkz.transform.jpstats";
+
+    private final static String AW_TRANSFORM_RELINKJP = "aspectwerkz.transform.relinkjp";
+
+    private final static String AW_TRANSFORM_INLINEADVICE = "aspectwerkz.transform.inlineadvice";
+
+    private final static String AW_TRANSFORM_DORMANTJP = "aspectwerkz.transform.dormantjp";
+
+    private final static String AW_TRANSFORM_REDEFINEJP = "aspectwerkz.transform.redefinejp";
+
+    private final static String AW_TRANSFORM_SKIPWOVEN = "aspectwerkz.transform.skipwoven";
+
     public final static TypePattern DUMP_PATTERN;
 
     private final static boolean NOFILTER; // TODO: not used, remove?
@@ -68,6 +144,28 @@ public class AspectWerkzPreProcessor implements ClassPreProcessor {
 
     public final static boolean GENJP;
 
+    public final static boolean LAZYJP;
+
+    public final static boolean SHAREDJP;
+
+    public final static boolean AOTJP;
+
+    public final static boolean INLINECACHE;
+
+    public final static boolean METRICS;
+
+    public final static boolean JPSTATS;
+
+    public final static boolean RELINKJP;
+
+    public final static boolean INLINEADVICE;
+
+    public final static boolean DORMANTJP;
+
+    public final static boolean REDEFINEJP;
+
+    public final static boolean SKIPWOVEN;
+
     static {
         // define the tracing and dump options
         String verbose = System.getProperty(AW_TRANSFORM_VERBOSE, null);
@@ -76,6 +174,28 @@ public class AspectWerkzPreProcessor implements ClassPreProcessor {
         DETAILS = "yes".equalsIgnoreCase(details) || "true".equalsIgnoreCase(details);
         String genjp = System.getProperty(AW_TRANSFORM_GENJP, null);
         GENJP = "yes".equalsIgnoreCase(genjp) || "true".equalsIgnoreCase(genjp);
+        String lazyjp = System.getProperty(AW_TRANSFORM_LAZYJP, null);
+        LAZYJP = "yes".equalsIgnoreCase(lazyjp) || "true".equalsIgnoreCase(lazyjp);
+        String sharedjp = System.getProperty(AW_TRANSFORM_SHAREDJP, null);
+        SHAREDJP = "yes".equalsIgnoreCase(sharedjp) || "true".equalsIgnoreCase(sharedjp);
+        String aotjp = System.getProperty(AW_TRANSFORM_AOTJP, null);
+        AOTJP = "yes".equalsIgnoreCase(aotjp) || "true".equalsIgnoreCase(aotjp);
+        String inlinecache = System.getProperty(AW_TRANSFORM_INLINECACHE, null);
+        INLINECACHE = "yes".equalsIgnoreCase(inlinecache) || "true".equalsIgnoreCase(inlinecache);
+        String metrics = System.getProperty(AW_TRANSFORM_METRICS, null);
+        METRICS = "yes".equalsIgnoreCase(metrics) || "true".equalsIgnoreCase(metrics);
+        String jpstats = System.getProperty(AW_TRANSFORM_JPSTATS, null);
+        JPSTATS = "yes".equalsIgnoreCase(jpstats) || "true".equalsIgnoreCase(jpstats);
+        String relinkjp = System.getProperty(AW_TRANSFORM_RELINKJP, null);
+        RELINKJP = "yes".equalsIgnoreCase(relinkjp) || "true".equalsIgnoreCase(relinkjp);
+        String inlineadvice = System.getProperty(AW_TRANSFORM_INLINEADVICE, null);
+        INLINEADVICE = "yes".equalsIgnoreCase(inlineadvice) || "true".equalsIgnoreCase(inlineadvice);
+        String dormantjp = System.getProperty(AW_TRANSFORM_DORMANTJP, null);
+        DORMANTJP = "yes".equalsIgnoreCase(dormantjp) || "true".equalsIgnoreCase(dormantjp);
+        String redefinejp = System.getProperty(AW_TRANSFORM_REDEFINEJP, null);
+        REDEFINEJP = !("no".equalsIgnoreCase(redefinejp) || "false".equalsIgnoreCase(redefinejp));
+        String skipwoven = System.getProperty(AW_TRANSFORM_SKIPWOVEN, null);
+        SKIPWOVEN = !("no".equalsIgnoreCase(skipwoven) || "false".equalsIgnoreCase(skipwoven));
         String filter = System.getProperty(AW_TRANSFORM_FILTER, null);
         NOFILTER = "no".equalsIgnoreCase(filter) || "false".equalsIgnoreCase(filter);
         String dumpPattern = System.getProperty(AW_TRANSFORM_DUMP, null);
@@ -110,11 +230,17 @@ public class AspectWerkzPreProcessor implements ClassPreProcessor {
      */
     private WeavingStrategy m_weavingStrategy;
 
+    /**
+     * The weaving profile, null if not used.
+     */
+    private WeavingProfile m_weavingProfile;
+
     /**
      * Initializes the transformer stack.
      */
     public void initialize() {
         m_weavingStrategy = new InliningWeavingStrategy();
+        m_weavingProfile = WeavingProfile.newWeavingProfile(this);
         m_initialized = true;
     }
 
@@ -147,7 +273,26 @@ public class AspectWerkzPreProcessor implements ClassPreProcessor {
         }
 
         try {
+            if (SKIPWOVEN && isWovenWithCurrentDefinitions(bytecode, loader)) {
+                log("already weaved " + className);
+                if (m_weavingProfile != null) {
+                    m_weavingProfile.classWeaved(className, loader, false);
+                }
+                return bytecode;
+            }
+            if (m_weavingProfile != null) {
+                final byte[] preparedBytecode = m_weavingProfile.getPreparedBytecode(className, bytecode, loader);
+                if (preparedBytecode != null) {
+                    m_weavingProfile.classWeaved(className, loader, true);
+                    return preparedBytecode;
+                }
+            }
             Context context = _preProcess(className, bytecode, loader);
+            if (m_weavingProfile != null) {
+                m_weavingProfile.classWeaved(
+                        className, loader, context.getCurrentBytecode() != context.getInitialBytecode()
+                );
+            }
             return context.getCurrentBytecode();
         } catch (Exception e) {
             log("failed " + className);
@@ -156,6 +301,18 @@ public class AspectWerkzPreProcessor implements ClassPreProcessor {
         }
     }
 
+    /**
+     * Checks if the class has already been weaved with the definitions visible from its class loader.
+     *
+     * @param bytecode
+     * @param loader
+     * @return true if so
+     */
+    private static boolean isWovenWithCurrentDefinitions(final byte[] bytecode, final ClassLoader loader) {
+        final byte[] fingerprint = WovenClassAttribute.getFingerprint(bytecode);
+        return fingerprint != null && Arrays.equals(fingerprint, DefinitionFingerprint.getFingerprintFor(loader));
+    }
+
     /**
      * Weaving of the class
      *
@@ -165,7 +322,24 @@ public class AspectWerkzPreProcessor implements ClassPreProcessor {
      * @return the weaving context, where getCurrentBytecode is the resulting bytecode
      */
     public Context _preProcess(final String className, final byte[] bytecode, final ClassLoader loader) {
+        return _preProcess(className, bytecode, loader, AOTJP);
+    }
+
+    /**
+     * Weaving of the class
+     *
+     * @param className
+     * @param bytecode
+     * @param loader
+     * @param aheadOfTime true if the join points are generated ahead of time
+     * @return the weaving context, where getCurrentBytecode is the resulting bytecode
+     */
+    private Context _preProcess(final String className,
+                                final byte[] bytecode,
+                                final ClassLoader loader,
+                                final boolean aheadOfTime) {
         final Context context = m_weavingStrategy.newContext(className, bytecode, loader);
+        ((ContextImpl) context).setAheadOfTime(aheadOfTime);
 
         // dump before (not compliant with multiple CL weaving same class differently, since based
         // on class FQN className)
@@ -190,6 +364,23 @@ public class AspectWerkzPreProcessor implements ClassPreProcessor {
      * @return
      */
     public Output preProcessWithOutput(final String name, final byte[] bytecode, final ClassLoader loader) {
+        return preProcessWithOutput(name, bytecode, loader, AOTJP);
+    }
+
+    /**
+     * Weaving without filtering any class and returning a rich object with emitted joinpoints, the join points being
+     * generated ahead of time or not for this weaving only (see the offline compiler -aotjp option).
+     *
+     * @param name
+     * @param bytecode
+     * @param loader
+     * @param aheadOfTime true if the join points are generated ahead of time
+     * @return
+     */
+    public Output preProcessWithOutput(final String name,
+                                       final byte[] bytecode,
+                                       final ClassLoader loader,
+                                       final boolean aheadOfTime) {
         // needed for JRockit (as well as all in all TFs)
         final String className = name.replace('/', '.');
 
@@ -201,7 +392,7 @@ public class AspectWerkzPreProcessor implements ClassPreProcessor {
             return output;
         }
 
-        Context context = _preProcess(className, bytecode, loader);
+        Context context = _preProcess(className, bytecode, loader, aheadOfTime);
         Output output = new Output();
         output.bytecode = context.getCurrentBytecode();
         output.emittedJoinPoints =
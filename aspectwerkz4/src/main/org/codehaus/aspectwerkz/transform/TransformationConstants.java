@@ -38,10 +38,13 @@ public interface TransformationConstants extends Opcodes {
     public static final String SERIAL_VERSION_UID_FIELD_NAME = "serialVersionUID";
     public static final String TARGET_CLASS_FIELD_NAME = SYNTHETIC_MEMBER_PREFIX + "clazz";
     public static final String EMITTED_JOINPOINTS_FIELD_NAME = SYNTHETIC_MEMBER_PREFIX + "emittedJoinPoints";
+    public static final String LINKED_JOIN_POINT_FIELD_PREFIX = SYNTHETIC_MEMBER_PREFIX + "linked" + DELIMITER;
+    public static final String ACTIVE_JOIN_POINT_FIELD_PREFIX = SYNTHETIC_MEMBER_PREFIX + "active" + DELIMITER;
 
     // internal methods
     public static final String INIT_JOIN_POINTS_METHOD_NAME = WRAPPER_METHOD_PREFIX + "initJoinPoints";
     public static final String STATIC_INITIALIZATION_METHOD_NAME = WRAPPER_METHOD_PREFIX + "staticinitialization";
+    public static final String LINK_JOIN_POINT_METHOD_PREFIX = WRAPPER_METHOD_PREFIX + "link" + DELIMITER;
 
     // method and class names
     public static final String INIT_METHOD_NAME = "<init>";
@@ -51,8 +54,14 @@ public interface TransformationConstants extends Opcodes {
     public static final String CLASS_LOADER_CLASS_NAME = "java/lang/ClassLoader";
     public static final String DEFINE_CLASS_METHOD_NAME = "defineClass";
     public static final String INVOKE_METHOD_NAME = "invoke";
+    public static final String INVOKE_ADVICE_CHAIN_METHOD_NAME = WRAPPER_METHOD_PREFIX + "invoke";
     public static final String FOR_NAME_METHOD_NAME = "forName";
     public static final String LOAD_JOIN_POINT_METHOD_NAME = "loadJoinPoint";
+    public static final String LINK_JOIN_POINT_METHOD_NAME = "linkJoinPoint";
+    public static final String REGISTER_DORMANT_JOIN_POINT_METHOD_NAME = "registerDormantJoinPoint";
+    public static final String BEGIN_LOAD_JOIN_POINTS_METHOD_NAME = "beginLoadJoinPoints";
+    public static final String END_LOAD_JOIN_POINTS_METHOD_NAME = "endLoadJoinPoints";
+    public static final String ABORT_LOAD_JOIN_POINTS_METHOD_NAME = "abortLoadJoinPoints";
     public static final String MIXINS_CLASS_NAME = "org/codehaus/aspectwerkz/aspect/management/Mixins";
     public static final String MIXIN_OF_METHOD_NAME = "mixinOf";
     public static final String MIXIN_OF_METHOD_PER_JVM_SIGNATURE = "(Ljava/lang/String;Ljava/lang/ClassLoader;)Ljava/lang/Object;";
@@ -70,6 +79,7 @@ public interface TransformationConstants extends Opcodes {
     public static final String CHARACTER_CLASS_NAME = "java/lang/Character";
     public static final String OBJECT_CLASS_SIGNATURE = "Ljava/lang/Object;";
     public static final String OBJECT_CLASS_NAME = "java/lang/Object";
+    public static final String STRING_CLASS_NAME = "java/lang/String";
     public static final String CLASS_CLASS_SIGNATURE = "Ljava/lang/Class;";
     public static final String CLASS_CLASS = "java/lang/Class";
     public static final String THROWABLE_CLASS_NAME = "java/lang/Throwable";
@@ -101,6 +111,7 @@ public interface TransformationConstants extends Opcodes {
     public static final String ENCLOSING_SJP_FIELD_CLASS_SIGNATURE = "Lorg/codehaus/aspectwerkz/joinpoint/EnclosingStaticJoinPoint;";
     public static final String L = "L";
     public static final String I = "I";
+    public static final String J = "J";
     public static final String SEMICOLON = ";";
 
     public static final byte EMPTY_WRAPPER_ATTRIBUTE_VALUE_EMPTY = Byte.MIN_VALUE;
@@ -123,6 +134,14 @@ public interface TransformationConstants extends Opcodes {
     public static final String RETURN_VALUE_FIELD_NAME = "RETURN_VALUE";
     public static final String OPTIMIZED_JOIN_POINT_INSTANCE_FIELD_NAME = "OPTIMIZED_JOIN_POINT";
     public static final String ENCLOSING_SJP_FIELD_NAME = "ENCLOSINGSJP";
+    public static final String RUNTIME_CHECK_CACHE_FIELD_NAME = "RUNTIME_CHECK_CACHE";
+    public static final String STATISTICS_FIELD_NAME = "STATISTICS";
+    public static final String RELINK_TARGET_FIELD_NAME = "RELINK_TARGET";
+    public static final String RELINK_TARGET_INTERFACE_SUFFIX = "$RelinkTarget";
+    public static final String INVOKE_RELINKED_METHOD_NAME = "invokeRelinked";
+    public static final String ASYNC_ADVICE_FIELD_NAME = "ASYNC_ADVICE_";
+    public static final String ADVICE_SAMPLER_FIELD_NAME = "ADVICE_SAMPLER_";
+    public static final String SAMPLED_INVOCATION_FIELD_NAME = "SAMPLED_INVOCATION_";
 
     public static final String AROUND_INTERCEPTORS_FIELD_NAME = "AROUND_INTERCEPTORS";
     public static final String NR_OF_AROUND_INTERCEPTORS_FIELD_NAME = "NR_OF_AROUND_INTERCEPTORS";
@@ -139,6 +158,39 @@ public interface TransformationConstants extends Opcodes {
     
     public static final String JOIN_POINT_MANAGER_CLASS_NAME = "org/codehaus/aspectwerkz/joinpoint/management/JoinPointManager";
     public static final String LOAD_JOIN_POINT_METHOD_SIGNATURE = "(ILjava/lang/Class;Ljava/lang/String;Ljava/lang/String;ILjava/lang/String;Ljava/lang/String;Ljava/lang/String;IILjava/lang/String;)V";
+    public static final String LOAD_JOIN_POINTS_METHOD_SIGNATURE = "(Ljava/lang/Class;)V";
+    public static final String RUNTIME_CHECK_CACHE_CLASS_NAME = "org/codehaus/aspectwerkz/joinpoint/management/RuntimeCheckCache";
+    public static final String RUNTIME_CHECK_CACHE_CLASS_SIGNATURE = "Lorg/codehaus/aspectwerkz/joinpoint/management/RuntimeCheckCache;";
+    public static final String RUNTIME_CHECK_CACHE_LOOKUP_METHOD_NAME = "lookup";
+    public static final String RUNTIME_CHECK_CACHE_LOOKUP_METHOD_SIGNATURE = "(Ljava/lang/Object;)I";
+    public static final String RUNTIME_CHECK_CACHE_UPDATE_METHOD_NAME = "update";
+    public static final String RUNTIME_CHECK_CACHE_UPDATE_METHOD_SIGNATURE = "(Ljava/lang/Object;I)V";
+    public static final String RUNTIME_CHECK_MASK_METHOD_NAME = "aw$getRuntimeCheckMask";
+    public static final String RUNTIME_CHECK_MASK_METHOD_SIGNATURE = "(Ljava/lang/Object;)I";
+    public static final String STATISTICS_CLASS_NAME = "org/codehaus/aspectwerkz/joinpoint/management/JoinPointStatistics";
+    public static final String STATISTICS_CLASS_SIGNATURE = "Lorg/codehaus/aspectwerkz/joinpoint/management/JoinPointStatistics;";
+    public static final String STATISTICS_REGISTER_METHOD_NAME = "register";
+    public static final String STATISTICS_REGISTER_METHOD_SIGNATURE = "(Ljava/lang/String;[Ljava/lang/String;Ljava/lang/ClassLoader;)Lorg/codehaus/aspectwerkz/joinpoint/management/JoinPointStatistics;";
+    public static final String STATISTICS_NOW_METHOD_NAME = "now";
+    public static final String STATISTICS_NOW_METHOD_SIGNATURE = "()J";
+    public static final String STATISTICS_EXIT_METHOD_NAME = "exit";
+    public static final String STATISTICS_EXCEPTION_METHOD_NAME = "exception";
+    public static final String STATISTICS_RECORD_METHOD_SIGNATURE = "(J)V";
+    public static final String ASYNC_ADVICE_CLASS_NAME = "org/codehaus/aspectwerkz/joinpoint/management/AsyncAdvice";
+    public static final String ASYNC_ADVICE_CLASS_SIGNATURE = "Lorg/codehaus/aspectwerkz/joinpoint/management/AsyncAdvice;";
+    public static final String ASYNC_ADVICE_DISPATCH_METHOD_NAME = "dispatch";
+    public static final String ASYNC_ADVICE_DISPATCH_METHOD_SIGNATURE = "(Ljava/lang/Object;[Ljava/lang/Object;)V";
+    public static final String ASYNC_ADVICE_DISPATCHER_CLASS_NAME = "org/codehaus/aspectwerkz/joinpoint/management/AsyncAdviceDispatcher";
+    public static final String GET_ASYNC_ADVICE_METHOD_NAME = "getAsyncAdvice";
+    public static final String GET_ASYNC_ADVICE_METHOD_SIGNATURE = "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;IILjava/lang/String;Ljava/lang/ClassLoader;)Lorg/codehaus/aspectwerkz/joinpoint/management/AsyncAdvice;";
+    public static final String ADVICE_SAMPLER_CLASS_NAME = "org/codehaus/aspectwerkz/joinpoint/management/AdviceSampler";
+    public static final String ADVICE_SAMPLER_CLASS_SIGNATURE = "Lorg/codehaus/aspectwerkz/joinpoint/management/AdviceSampler;";
+    public static final String GET_ADVICE_SAMPLER_METHOD_NAME = "getSampler";
+    public static final String GET_ADVICE_SAMPLER_METHOD_SIGNATURE = "(Ljava/lang/String;Ljava/lang/String;ILjava/lang/ClassLoader;)Lorg/codehaus/aspectwerkz/joinpoint/management/AdviceSampler;";
+    public static final String NEXT_INVOCATION_METHOD_NAME = "nextInvocation";
+    public static final String NEXT_INVOCATION_METHOD_SIGNATURE = "()J";
+    public static final String IS_SAMPLED_METHOD_NAME = "isSampled";
+    public static final String IS_SAMPLED_METHOD_SIGNATURE = "(J)Z";
     public static final String FOR_NAME_METHOD_SIGNATURE = "(Ljava/lang/String;)Ljava/lang/Class;";
     public static final String METHOD_SIGNATURE_IMPL_CLASS_NAME = "org/codehaus/aspectwerkz/joinpoint/impl/MethodSignatureImpl";
     public static final String METHOD_SIGNATURE_IMPL_CLASS_SIGNATURE = "Lorg/codehaus/aspectwerkz/joinpoint/impl/MethodSignatureImpl;";
@@ -202,6 +254,14 @@ public interface TransformationConstants extends Opcodes {
     public static final String RUNTIME_EXCEPTION_INIT_METHOD_SIGNATURE = "(Ljava/lang/String;)V";
     public static final String IS_IN_CFLOW_METOD_NAME = "isInCflow";
     public static final String IS_IN_CFLOW_METOD_SIGNATURE = "()Z";
+    public static final String CFLOW_STATE_CLASS_NAME = "org/codehaus/aspectwerkz/cflow/CflowState";
+    public static final String CFLOW_STATE_CLASS_SIGNATURE = "Lorg/codehaus/aspectwerkz/cflow/CflowState;";
+    public static final String GET_CFLOW_STATE_METHOD_NAME = "getState";
+    public static final String GET_CFLOW_STATE_METHOD_SIGNATURE = "()Lorg/codehaus/aspectwerkz/cflow/CflowState;";
+    public static final String GET_CFLOW_INDEX_METHOD_NAME = "getIndex";
+    public static final String GET_CFLOW_INDEX_METHOD_SIGNATURE = "(Ljava/lang/Class;)I";
+    public static final String IS_IN_CFLOW_INDEX_METOD_SIGNATURE = "(I)Z";
+    public static final String CFLOW_INDEX_FIELD_NAME = "INDEX";
     public static final String STATIC_JOIN_POINT_CLASS_NAME = "org/codehaus/aspectwerkz/joinpoint/StaticJoinPoint";
     public static final String STATIC_JOIN_POINT_JAVA_CLASS_NAME = "org.codehaus.aspectwerkz.joinpoint.StaticJoinPoint";
     public static final String JOIN_POINT_CLASS_NAME = "org/codehaus/aspectwerkz/joinpoint/JoinPoint";
@@ -223,12 +283,20 @@ public interface TransformationConstants extends Opcodes {
     public static final String HANDLER_RTTI_IMPL_INIT_SIGNATURE = "(Lorg/codehaus/aspectwerkz/joinpoint/impl/CatchClauseSignatureImpl;Ljava/lang/Object;Ljava/lang/Object;)V";
     public static final String SET_PARAMETER_VALUES_METHOD_NAME = "setParameterValues";
     public static final String SET_PARAMETER_VALUES_METHOD_SIGNATURE = "([Ljava/lang/Object;)V";
+    public static final String SET_PRIMITIVE_PARAMETER_VALUES_METHOD_SIGNATURE = "([Ljava/lang/Object;[J)V";
     public static final String SET_PARAMETER_VALUE_METHOD_NAME = "setParameterValue";
     public static final String SET_PARAMETER_VALUE_METHOD_SIGNATURE = "(Ljava/lang/Object;)V";
     public static final String SET_FIELD_VALUE_METHOD_NAME = "setFieldValue";
     public static final String SET_FIELD_VALUE_METHOD_SIGNATURE = "(Ljava/lang/Object;)V";
     public static final String SET_RETURN_VALUE_METHOD_NAME = "setReturnValue";
     public static final String SET_RETURN_VALUE_METHOD_SIGNATURE = "(Ljava/lang/Object;)V";
+    public static final String SET_PRIMITIVE_FIELD_VALUE_METHOD_NAME = "setPrimitiveFieldValue";
+    public static final String SET_PRIMITIVE_RETURN_VALUE_METHOD_NAME = "setPrimitiveReturnValue";
+    public static final String SET_PRIMITIVE_VALUE_METHOD_SIGNATURE = "(J)V";
+    public static final String FLOAT_TO_RAW_INT_BITS_METHOD_NAME = "floatToRawIntBits";
+    public static final String FLOAT_TO_RAW_INT_BITS_METHOD_SIGNATURE = "(F)I";
+    public static final String DOUBLE_TO_RAW_LONG_BITS_METHOD_NAME = "doubleToRawLongBits";
+    public static final String DOUBLE_TO_RAW_LONG_BITS_METHOD_SIGNATURE = "(D)J";
     public static final String STATICINITIALIZATION_RTTI_IMPL_CLASS_NAME = "org/codehaus/aspectwerkz/joinpoint/impl/StaticInitializationRttiImpl";
     public static final String STATICINITIALIZATION_RTTI_IMPL_INIT_SIGNATURE = "(Lorg/codehaus/aspectwerkz/joinpoint/impl/StaticInitializerSignatureImpl;)V";
 
@@ -18,6 +18,11 @@ import org.codehaus.aspectwerkz.joinpoint.management.JoinPointType;
  */
 public final class TransformationUtil {
 
+    /**
+     * Follows the join point type in the name of the shared joinpoint classes.
+     */
+    private static final String SHARED_JOIN_POINT_MARKER = "_S";
+
     /**
      * Return the prefixed clinit method name
      * 
@@ -259,4 +264,99 @@ public final class TransformationUtil {
         return classNameBuf.toString().replace('-', '_').replace('.', '/');
     }
 
+    /**
+     * Computes the shared joinpoint classname : "caller/class_type_SadviceChainId_adviceChainHash_hash_suffix"
+     * The caller member is not part of the name so that all the call sites of the caller class that target the
+     * same member with the same advice chain use the same joinpoint class.
+     * <p/>
+     * The advice chain id is unique for the advice chain key within the weaving class loader, the hash of the key
+     * tells apart the advice chains that got the same id when the class was weaved again in another VM.
+     *
+     * @param thisClassName
+     * @param targetClassName
+     * @param joinPointType
+     * @param joinPointHash
+     * @param adviceChainId  the id of the advice chain bounded to the join point
+     * @param adviceChainKey the key of the advice chain bounded to the join point
+     * @return the JIT joinpoint classname
+     */
+    public static String getSharedJoinPointClassName(final String thisClassName,
+                                                     final String targetClassName,
+                                                     final int joinPointType,
+                                                     final int joinPointHash,
+                                                     final int adviceChainId,
+                                                     final String adviceChainKey) {
+        StringBuffer classNameBuf = new StringBuffer(thisClassName);
+        classNameBuf.append('_');
+        classNameBuf.append(joinPointType);
+        // 'S' cannot clash with the caller member hash used for the non shared joinpoints
+        classNameBuf.append(SHARED_JOIN_POINT_MARKER);
+        classNameBuf.append(adviceChainId);
+        classNameBuf.append('_');
+        classNameBuf.append(adviceChainKey.hashCode());
+        classNameBuf.append('_');
+        classNameBuf.append(joinPointHash);
+        classNameBuf.append('_').append(targetClassName.hashCode());
+        classNameBuf.append(TransformationConstants.JOIN_POINT_CLASS_SUFFIX);
+
+        //replace minus signs on m_joinPointHash
+        return classNameBuf.toString().replace('-', '_').replace('.', '/');
+    }
+
+    /**
+     * Checks if the joinpoint class is shared by several call sites of its caller class (see
+     * getSharedJoinPointClassName).
+     *
+     * @param joinPointClassName
+     * @param thisClassName
+     * @param joinPointType
+     * @return true if shared
+     */
+    public static boolean isSharedJoinPointClassName(final String joinPointClassName,
+                                                     final String thisClassName,
+                                                     final int joinPointType) {
+        final String prefix = thisClassName.replace('.', '/') + '_' + joinPointType + SHARED_JOIN_POINT_MARKER;
+        return joinPointClassName.replace('.', '/').startsWith(prefix);
+    }
+
+    /**
+     * Returns the name of the method added to the weaved class to lazily link the given joinpoint.
+     *
+     * @param joinPointClassName
+     * @return the link method name
+     */
+    public static String getJoinPointLinkMethodName(final String joinPointClassName) {
+        return TransformationConstants.LINK_JOIN_POINT_METHOD_PREFIX + getJoinPointSimpleName(joinPointClassName);
+    }
+
+    /**
+     * Returns the name of the static field that flags the given joinpoint as linked in the weaved class.
+     *
+     * @param joinPointClassName
+     * @return the linked flag field name
+     */
+    public static String getJoinPointLinkedFieldName(final String joinPointClassName) {
+        return TransformationConstants.LINKED_JOIN_POINT_FIELD_PREFIX + getJoinPointSimpleName(joinPointClassName);
+    }
+
+    /**
+     * Returns the name of the static field that flags the given dormant joinpoint as active in the weaved class.
+     *
+     * @param joinPointClassName
+     * @return the active flag field name
+     */
+    public static String getJoinPointActiveFieldName(final String joinPointClassName) {
+        return TransformationConstants.ACTIVE_JOIN_POINT_FIELD_PREFIX + getJoinPointSimpleName(joinPointClassName);
+    }
+
+    /**
+     * Returns the joinpoint classname without its package, which is unique within the caller class.
+     *
+     * @param joinPointClassName
+     * @return
+     */
+    private static String getJoinPointSimpleName(final String joinPointClassName) {
+        return joinPointClassName.substring(joinPointClassName.lastIndexOf('/') + 1);
+    }
+
 }
\ No newline at end of file
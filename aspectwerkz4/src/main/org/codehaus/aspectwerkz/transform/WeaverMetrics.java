@@ -0,0 +1,566 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.transform;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.codehaus.aspectwerkz.transform.inlining.ContextImpl;
+import org.codehaus.aspectwerkz.transform.inlining.EmittedJoinPoint;
+import org.codehaus.aspectwerkz.util.ContextClassLoader;
+import org.codehaus.aspectwerkz.util.StripedCounters;
+
+/**
+ * Weave time metrics, gathered when <code>-Daspectwerkz.transform.metrics=yes</code> is set.
+ * <p/>
+ * Gathers the weaving time of the classes split by phase, the number of weaved and filtered classes, the number of
+ * join points per type, and the slowest classes and pointcut expressions.
+ * <p/>
+ * The metrics are exposed through the <code>org.codehaus.aspectwerkz:type=WeaverMetrics</code> MBean when running on
+ * Java 5 (see WeaverMetricsView), and written every <code>-Daspectwerkz.transform.metrics.period=..</code> seconds
+ * (60 by default) and at shutdown in the <code>-Daspectwerkz.transform.metrics.report=..</code> file if set.
+ * <p/>
+ * The expression evaluations are counted without locking, in counters striped by thread (see ExpressionCounter),
+ * hence their count and time are approximate.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class WeaverMetrics {
+
+    /**
+     * True if the metrics are gathered
+     */
+    public static final boolean ENABLED = AspectWerkzPreProcessor.METRICS;
+
+    public static final int CLASS_INFO = 0;
+
+    public static final int EARLY_MATCH = 1;
+
+    public static final int LOOKAHEAD = 2;
+
+    public static final int PHASE_1 = 3;
+
+    public static final int PHASE_2 = 4;
+
+    public static final int PHASE_3 = 5;
+
+    public static final int JOIN_POINT_COMPILE = 6;
+
+    private static final String[] PHASE_NAMES = new String[]{
+        "class-info", "early-match", "lookahead", "phase-1", "phase-2", "phase-3", "joinpoint-compile"
+    };
+
+    /**
+     * The join point type names, indexed by JoinPointType int constants
+     */
+    private static final String[] JOIN_POINT_TYPE_NAMES = new String[]{
+        "unknown", "method-execution", "method-call", "constructor-execution", "constructor-call", "field-set",
+        "field-get", "handler", "staticinitialization"
+    };
+
+    /**
+     * The number of slowest classes and expressions kept
+     */
+    public static final int TOP_COUNT = 10;
+
+    private static final String AW_TRANSFORM_METRICS_REPORT = "aspectwerkz.transform.metrics.report";
+
+    private static final String AW_TRANSFORM_METRICS_PERIOD = "aspectwerkz.transform.metrics.period";
+
+    private static final String MBEAN_CLASS_NAME = "org.codehaus.aspectwerkz.transform.WeaverMetricsView";
+
+    private static final Object LOCK = new Object();
+
+    private static final String NANO_TIME_CLOCK_CLASS_NAME = "org.codehaus.aspectwerkz.transform.NanoTimeClock";
+
+    /**
+     * The clock, chosen once so that all the measures are made with the same one
+     */
+    private static final Clock s_clock = createClock();
+
+    private static long s_weavedClassCount = 0;
+
+    private static long s_filteredClassCount = 0;
+
+    private static long s_failedClassCount = 0;
+
+    private static final long[] s_phaseTimes = new long[PHASE_NAMES.length];
+
+    private static final long[] s_joinPointCounts = new long[JOIN_POINT_TYPE_NAMES.length];
+
+    /**
+     * Weaving time of the slowest classes, slowest first
+     */
+    private static final List s_slowestClasses = new ArrayList();
+
+    /**
+     * Maps the expressions to their ExpressionCounter
+     */
+    private static final Map s_expressionCounters = new HashMap();
+
+    /**
+     * Returns the current time of the clock, in nanoseconds.
+     *
+     * @return the time
+     */
+    public static long now() {
+        return s_clock.nanoTime();
+    }
+
+    /**
+     * Returns the System.nanoTime() based clock when running on Java 5, else the System.currentTimeMillis() based one.
+     *
+     * @return the clock
+     */
+    private static Clock createClock() {
+        try {
+            return (Clock) Class.forName(NANO_TIME_CLOCK_CLASS_NAME, true, WeaverMetrics.class.getClassLoader())
+                    .newInstance();
+        } catch (Throwable t) {
+            return new Clock();
+        }
+    }
+
+    /**
+     * Starts gathering the weaving time of a class.
+     *
+     * @param className
+     * @return the sample, to be ended
+     */
+    public static Sample startClass(final String className) {
+        return new Sample(className);
+    }
+
+    /**
+     * Records a join point compilation.
+     *
+     * @param time the compilation time in nanoseconds
+     */
+    public static void joinPointCompiled(final long time) {
+        synchronized (LOCK) {
+            s_phaseTimes[JOIN_POINT_COMPILE] += time;
+        }
+    }
+
+    /**
+     * Returns the counter of the evaluations of the given expression, to be kept by the evaluator.
+     *
+     * @param expression
+     * @return the counter
+     */
+    public static ExpressionCounter getExpressionCounter(final String expression) {
+        synchronized (LOCK) {
+            ExpressionCounter counter = (ExpressionCounter) s_expressionCounters.get(expression);
+            if (counter == null) {
+                counter = new ExpressionCounter();
+                s_expressionCounters.put(expression, counter);
+            }
+            return counter;
+        }
+    }
+
+    public static long getWeavedClassCount() {
+        synchronized (LOCK) {
+            return s_weavedClassCount;
+        }
+    }
+
+    public static long getFilteredClassCount() {
+        synchronized (LOCK) {
+            return s_filteredClassCount;
+        }
+    }
+
+    public static long getFailedClassCount() {
+        synchronized (LOCK) {
+            return s_failedClassCount;
+        }
+    }
+
+    /**
+     * Returns the phase names, in the getPhaseTimes order.
+     *
+     * @return the phase names
+     */
+    public static String[] getPhaseNames() {
+        return (String[]) PHASE_NAMES.clone();
+    }
+
+    /**
+     * Returns the total time spent in each phase, in nanoseconds.
+     *
+     * @return the phase times
+     */
+    public static long[] getPhaseTimes() {
+        synchronized (LOCK) {
+            return (long[]) s_phaseTimes.clone();
+        }
+    }
+
+    /**
+     * Returns the number of join points per type, as "type=count" strings.
+     *
+     * @return the join point counts
+     */
+    public static String[] getJoinPointCounts() {
+        final List counts = new ArrayList();
+        synchronized (LOCK) {
+            for (int i = 0; i < s_joinPointCounts.length; i++) {
+                if (s_joinPointCounts[i] > 0) {
+                    counts.add(JOIN_POINT_TYPE_NAMES[i] + '=' + s_joinPointCounts[i]);
+                }
+            }
+        }
+        return (String[]) counts.toArray(new String[counts.size()]);
+    }
+
+    /**
+     * Returns the slowest classes to weave, slowest first, as "class=time in ms" strings.
+     *
+     * @return the slowest classes
+     */
+    public static String[] getSlowestClasses() {
+        final List classes = new ArrayList();
+        synchronized (LOCK) {
+            for (Iterator it = s_slowestClasses.iterator(); it.hasNext();) {
+                ClassTime classTime = (ClassTime) it.next();
+                classes.add(classTime.className + '=' + toMillis(classTime.time));
+            }
+        }
+        return (String[]) classes.toArray(new String[classes.size()]);
+    }
+
+    /**
+     * Returns the slowest expressions, by total evaluation time and slowest first, as "expression=time in ms/count"
+     * strings.
+     *
+     * @return the slowest expressions
+     */
+    public static String[] getSlowestExpressions() {
+        final List entries;
+        synchronized (LOCK) {
+            entries = new ArrayList(s_expressionCounters.size());
+            for (Iterator it = s_expressionCounters.entrySet().iterator(); it.hasNext();) {
+                Map.Entry entry = (Map.Entry) it.next();
+                ExpressionCounter counter = (ExpressionCounter) entry.getValue();
+                if (counter.getCount() > 0) {
+                    entries.add(new Object[]{entry.getKey(), new long[]{counter.getCount(), counter.getTime()}});
+                }
+            }
+        }
+        Collections.sort(
+                entries, new Comparator() {
+                    public int compare(Object o1, Object o2) {
+                        long time1 = ((long[]) ((Object[]) o1)[1])[1];
+                        long time2 = ((long[]) ((Object[]) o2)[1])[1];
+                        return (time1 > time2) ? -1 : ((time1 == time2) ? 0 : 1);
+                    }
+                }
+        );
+        final int count = Math.min(TOP_COUNT, entries.size());
+        final String[] expressions = new String[count];
+        for (int i = 0; i < count; i++) {
+            Object[] entry = (Object[]) entries.get(i);
+            long[] countAndTime = (long[]) entry[1];
+            expressions[i] = entry[0] + "=" + toMillis(countAndTime[1]) + '/' + countAndTime[0];
+        }
+        return expressions;
+    }
+
+    /**
+     * Resets all the metrics.
+     */
+    public static void reset() {
+        synchronized (LOCK) {
+            s_weavedClassCount = 0;
+            s_filteredClassCount = 0;
+            s_failedClassCount = 0;
+            for (int i = 0; i < s_phaseTimes.length; i++) {
+                s_phaseTimes[i] = 0;
+            }
+            for (int i = 0; i < s_joinPointCounts.length; i++) {
+                s_joinPointCounts[i] = 0;
+            }
+            s_slowestClasses.clear();
+            // the counters are kept by the evaluators
+            for (Iterator it = s_expressionCounters.values().iterator(); it.hasNext();) {
+                ((ExpressionCounter) it.next()).reset();
+            }
+        }
+    }
+
+    /**
+     * Returns the metrics report.
+     *
+     * @return the report
+     */
+    public static String getReport() {
+        final StringBuffer buf = new StringBuffer();
+        buf.append("AspectWerkz weaver metrics - ").append(new Date()).append('\n');
+        buf.append("classes weaved: ").append(getWeavedClassCount());
+        buf.append(", filtered: ").append(getFilteredClassCount());
+        buf.append(", failed: ").append(getFailedClassCount()).append('\n');
+        buf.append("phase times (ms):\n");
+        final long[] phaseTimes = getPhaseTimes();
+        for (int i = 0; i < phaseTimes.length; i++) {
+            buf.append("    ").append(PHASE_NAMES[i]).append('=').append(toMillis(phaseTimes[i])).append('\n');
+        }
+        append(buf, "join points:", getJoinPointCounts());
+        append(buf, "slowest classes (ms):", getSlowestClasses());
+        append(buf, "slowest expressions (ms/evaluations):", getSlowestExpressions());
+        return buf.toString();
+    }
+
+    /**
+     * Writes the metrics report in the given file.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public static void writeReport(final File file) throws IOException {
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(getReport());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void append(final StringBuffer buf, final String title, final String[] lines) {
+        buf.append(title).append('\n');
+        for (int i = 0; i < lines.length; i++) {
+            buf.append("    ").append(lines[i]).append('\n');
+        }
+    }
+
+    private static String toMillis(final long nanos) {
+        final long micros = nanos / 1000;
+        final String fraction = String.valueOf(1000 + micros % 1000).substring(1);
+        return (micros / 1000) + "." + fraction;
+    }
+
+    private static void classWeaved(final Sample sample, final ContextImpl context) {
+        final long time = sample.m_last - sample.m_start;
+        synchronized (LOCK) {
+            for (int i = 0; i < PHASE_NAMES.length; i++) {
+                s_phaseTimes[i] += sample.m_phaseTimes[i];
+            }
+            if (sample.m_failed) {
+                // neither weaved nor part of the slowest classes
+                s_failedClassCount++;
+                return;
+            } else if (sample.m_filtered) {
+                s_filteredClassCount++;
+            } else {
+                s_weavedClassCount++;
+                for (Iterator it = context.getEmittedJoinPoints().iterator(); it.hasNext();) {
+                    int type = ((EmittedJoinPoint) it.next()).getJoinPointType();
+                    s_joinPointCounts[(type > 0 && type < s_joinPointCounts.length) ? type : 0]++;
+                }
+            }
+            // keep the slowest classes, slowest first
+            int index = s_slowestClasses.size();
+            while (index > 0 && ((ClassTime) s_slowestClasses.get(index - 1)).time < time) {
+                index--;
+            }
+            if (index < TOP_COUNT) {
+                s_slowestClasses.add(index, new ClassTime(sample.m_className, time));
+                if (s_slowestClasses.size() > TOP_COUNT) {
+                    s_slowestClasses.remove(TOP_COUNT);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers the MBean, only available on Java 5.
+     */
+    private static void registerMBean() {
+        try {
+            ContextClassLoader.forName(MBEAN_CLASS_NAME).getMethod("register", new Class[0]).invoke(null, new Object[0]);
+        } catch (Throwable t) {
+            AspectWerkzPreProcessor.log("AW::INFO - weaver metrics MBean not registered: " + t.toString());
+        }
+    }
+
+    /**
+     * Writes the report periodically and at shutdown, if a report file is set.
+     */
+    private static void startReporter() {
+        final String reportFileName = System.getProperty(AW_TRANSFORM_METRICS_REPORT, null);
+        if (reportFileName == null) {
+            return;
+        }
+        final File reportFile = new File(reportFileName);
+        final long period = Long.getLong(AW_TRANSFORM_METRICS_PERIOD, 60).longValue() * 1000;
+        final TimerTask reportTask = new TimerTask() {
+            public void run() {
+                try {
+                    writeReport(reportFile);
+                } catch (IOException e) {
+                    System.err.println(
+                            "AspectWerkz - WARN - could not write weaver metrics in " + reportFile + ": " + e.toString()
+                    );
+                }
+            }
+        };
+        new Timer(true).schedule(reportTask, period, period);
+        Runtime.getRuntime().addShutdownHook(
+                new Thread() {
+                    public void run() {
+                        reportTask.run();
+                    }
+                }
+        );
+    }
+
+    /**
+     * The weaving time of a class, split by phase.
+     */
+    public static final class Sample {
+
+        private final String m_className;
+
+        private final long m_start;
+
+        private long m_last;
+
+        private final long[] m_phaseTimes = new long[PHASE_NAMES.length];
+
+        private boolean m_filtered = false;
+
+        private boolean m_failed = false;
+
+        private Sample(final String className) {
+            m_className = className;
+            m_start = now();
+            m_last = m_start;
+        }
+
+        /**
+         * Ends a phase, the time since the end of the previous phase is accounted to it.
+         *
+         * @param phase
+         */
+        public void endPhase(final int phase) {
+            final long now = now();
+            m_phaseTimes[phase] += now - m_last;
+            m_last = now;
+        }
+
+        /**
+         * Marks the class as filtered out.
+         */
+        public void filtered() {
+            m_filtered = true;
+        }
+
+        /**
+         * Marks the weaving of the class as failed.
+         */
+        public void failed() {
+            m_failed = true;
+        }
+
+        /**
+         * Ends the weaving of the class.
+         *
+         * @param context
+         */
+        public void end(final Context context) {
+            classWeaved(this, (ContextImpl) context);
+        }
+    }
+
+    /**
+     * The clock used to measure the time, based on System.currentTimeMillis (see NanoTimeClock for Java 5).
+     */
+    public static class Clock {
+
+        /**
+         * Returns the current time in nanoseconds.
+         *
+         * @return the time
+         */
+        public long nanoTime() {
+            return System.currentTimeMillis() * 1000000L;
+        }
+    }
+
+    /**
+     * The evaluation count and time of an expression.
+     * <p/>
+     * The counters are striped by thread (see StripedCounters) and not synchronized, so that the evaluations do not
+     * contend on a lock.
+     */
+    public static final class ExpressionCounter {
+
+        private static final int COUNT = 0;
+
+        private static final int TIME = 1;
+
+        private final StripedCounters m_counters = new StripedCounters(2);
+
+        private ExpressionCounter() {
+        }
+
+        /**
+         * Records an evaluation.
+         *
+         * @param time the evaluation time in nanoseconds
+         */
+        public void evaluated(final long time) {
+            final StripedCounters counters = m_counters;
+            final int stripe = counters.getStripe();
+            counters.increment(stripe, COUNT);
+            counters.add(stripe, TIME, time);
+        }
+
+        public long getCount() {
+            return m_counters.sum(COUNT);
+        }
+
+        public long getTime() {
+            return m_counters.sum(TIME);
+        }
+
+        private void reset() {
+            m_counters.reset();
+        }
+    }
+
+    private static class ClassTime {
+        final String className;
+        final long time;
+
+        ClassTime(final String className, final long time) {
+            this.className = className;
+            this.time = time;
+        }
+    }
+
+    static {
+        if (ENABLED) {
+            registerMBean();
+            startReporter();
+        }
+    }
+}
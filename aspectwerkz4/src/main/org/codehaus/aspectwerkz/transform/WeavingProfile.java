@@ -0,0 +1,590 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.transform;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.codehaus.aspectwerkz.definition.SystemDefinitionContainer;
+
+/**
+ * Records the classes weaved per class loader in a profile file, and weaves the classes recorded by the previous run
+ * ahead of their loading, when <code>-Daspectwerkz.transform.preweave=..</code> is set to the profile file.
+ * <p/>
+ * The class loaders are identified in the profile by their class name and their rank among the class loaders of the
+ * same class, in the order they are first seen by the pre-processor. Once the pre-processor has weaved a first class
+ * of a class loader (so that its definitions are registered), the classes recorded for it are queued, and a pool of
+ * <code>-Daspectwerkz.transform.preweave.threads=..</code> daemon threads (2 by default) reads their bytecode from
+ * the class loader resources and weaves them.
+ * <p/>
+ * When the class is loaded, the weaved bytecode is used only if the bytecode given to the pre-processor is the one
+ * that was weaved and the definitions have not changed since. Else the class is weaved as usual. The profile is
+ * written at shutdown, with the classes weaved during the run in their weaving order.
+ * <p/>
+ * At most <code>-Daspectwerkz.transform.preweave.max=..</code> classes (1000 by default) are kept weaved ahead, the
+ * weaving threads waiting for some of them to be loaded before weaving more. A class weaved ahead that is not loaded
+ * within <code>-Daspectwerkz.transform.preweave.timeout=..</code> milliseconds (60000 by default) is discarded.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class WeavingProfile {
+
+    private static final String AW_TRANSFORM_PREWEAVE = "aspectwerkz.transform.preweave";
+
+    private static final String AW_TRANSFORM_PREWEAVE_THREADS = "aspectwerkz.transform.preweave.threads";
+
+    private static final String AW_TRANSFORM_PREWEAVE_MAX = "aspectwerkz.transform.preweave.max";
+
+    private static final String AW_TRANSFORM_PREWEAVE_TIMEOUT = "aspectwerkz.transform.preweave.timeout";
+
+    /**
+     * Marks a class queued for weaving in the prepared classes of a class loader
+     */
+    private static final Object QUEUED = new Object();
+
+    private final AspectWerkzPreProcessor m_preProcessor;
+
+    private final File m_file;
+
+    private final int m_threadCount;
+
+    private final int m_maxPreparedCount;
+
+    private final long m_timeout;
+
+    /**
+     * The class names recorded by the previous run, per class loader key
+     */
+    private final Map m_previousProfile;
+
+    /**
+     * The class loader profiles, per class loader
+     */
+    private final Map m_loaderProfiles = new WeakHashMap();
+
+    /**
+     * The classes weaved per class loader as WeavedClasses, in the creation order of the class loader profiles, kept
+     * once their class loader is collected
+     */
+    private final List m_orderedWeavedClasses = new ArrayList();
+
+    /**
+     * The classes weaved ahead and not loaded yet as PreparedClass, in their weaving order
+     */
+    private final LinkedList m_preparedClasses = new LinkedList();
+
+    /**
+     * The number of class loaders seen, per class loader class name
+     */
+    private final Map m_loaderCounts = new HashMap();
+
+    /**
+     * The classes queued for weaving, as Task
+     */
+    private final LinkedList m_queue = new LinkedList();
+
+    private int m_startedThreadCount = 0;
+
+    private WeavingProfile(final AspectWerkzPreProcessor preProcessor,
+                           final File file,
+                           final int threadCount,
+                           final int maxPreparedCount,
+                           final long timeout) {
+        m_preProcessor = preProcessor;
+        m_file = file;
+        m_threadCount = threadCount;
+        m_maxPreparedCount = maxPreparedCount;
+        m_timeout = timeout;
+        m_previousProfile = readProfile(file);
+    }
+
+    /**
+     * Creates the weaving profile of the pre-processor if <code>-Daspectwerkz.transform.preweave=..</code> is set,
+     * and registers a shutdown hook to write it.
+     *
+     * @param preProcessor
+     * @return the weaving profile, or null if not set
+     */
+    public static WeavingProfile newWeavingProfile(final AspectWerkzPreProcessor preProcessor) {
+        final String fileName = System.getProperty(AW_TRANSFORM_PREWEAVE, null);
+        if (fileName == null) {
+            return null;
+        }
+        final WeavingProfile profile = newWeavingProfile(
+                preProcessor,
+                new File(fileName),
+                Integer.getInteger(AW_TRANSFORM_PREWEAVE_THREADS, 2).intValue(),
+                Integer.getInteger(AW_TRANSFORM_PREWEAVE_MAX, 1000).intValue(),
+                Long.getLong(AW_TRANSFORM_PREWEAVE_TIMEOUT, 60000).longValue()
+        );
+        Runtime.getRuntime().addShutdownHook(
+                new Thread() {
+                    public void run() {
+                        try {
+                            profile.writeProfile();
+                        } catch (IOException e) {
+                            System.err.println(
+                                    "AspectWerkz - WARN - could not write weaving profile in " + profile.m_file
+                                    + ": " + e.toString()
+                            );
+                        }
+                    }
+                }
+        );
+        return profile;
+    }
+
+    /**
+     * Creates a weaving profile reading and writing the given file. No shutdown hook is registered.
+     *
+     * @param preProcessor
+     * @param file
+     * @param threadCount      the number of weaving threads
+     * @param maxPreparedCount the maximum number of classes kept weaved ahead
+     * @param timeout          the time in milliseconds a class weaved ahead is kept
+     * @return the weaving profile
+     */
+    public static WeavingProfile newWeavingProfile(final AspectWerkzPreProcessor preProcessor,
+                                                   final File file,
+                                                   final int threadCount,
+                                                   final int maxPreparedCount,
+                                                   final long timeout) {
+        return new WeavingProfile(
+                preProcessor, file, Math.max(1, threadCount), Math.max(1, maxPreparedCount), Math.max(0, timeout)
+        );
+    }
+
+    /**
+     * Returns the bytecode of the class if it has been weaved ahead of its loading from the same bytecode and
+     * with the current definitions. In any case the class is not weaved ahead anymore.
+     *
+     * @param className
+     * @param bytecode  the bytecode to weave
+     * @param loader
+     * @return the weaved bytecode, or null if the class must be weaved
+     */
+    public byte[] getPreparedBytecode(final String className, final byte[] bytecode, final ClassLoader loader) {
+        if (loader == null) {
+            return null;
+        }
+        final Object prepared;
+        synchronized (this) {
+            evictPreparedClasses(System.currentTimeMillis());
+            final LoaderProfile loaderProfile = getLoaderProfile(loader);
+            prepared = loaderProfile.m_preparedClasses.remove(className);
+            if (!(prepared instanceof PreparedClass)) {
+                return null;
+            }
+            m_preparedClasses.remove(prepared);
+            notifyAll();
+        }
+        final PreparedClass preparedClass = (PreparedClass) prepared;
+        if (preparedClass.m_definitionsVersion != SystemDefinitionContainer.getDefinitionsVersion()
+            || preparedClass.m_definitions.get() != SystemDefinitionContainer.getDefinitionsFor(loader)
+            || !Arrays.equals(preparedClass.m_initialBytecode, bytecode)) {
+            return null;
+        }
+        return preparedClass.m_weavedBytecode;
+    }
+
+    /**
+     * Records the class after it has been weaved by the pre-processor, and queues the classes recorded by the
+     * previous run for its class loader the first time.
+     *
+     * @param className
+     * @param loader
+     * @param weaved    true if the weaving has changed the class
+     */
+    public void classWeaved(final String className, final ClassLoader loader, final boolean weaved) {
+        if (loader == null) {
+            return;
+        }
+        synchronized (this) {
+            final LoaderProfile loaderProfile = getLoaderProfile(loader);
+            if (weaved) {
+                loaderProfile.m_weavedClasses.add(className);
+            }
+            if (loaderProfile.m_queued) {
+                return;
+            }
+            loaderProfile.m_queued = true;
+            final List classNames = (List) m_previousProfile.get(loaderProfile.m_weavedClasses.m_key);
+            if (classNames == null) {
+                return;
+            }
+            final WeakReference loaderRef = new WeakReference(loader);
+            for (Iterator it = classNames.iterator(); it.hasNext();) {
+                final String name = (String) it.next();
+                if (!name.equals(className)) {
+                    loaderProfile.m_preparedClasses.put(name, QUEUED);
+                    m_queue.add(new Task(name, loaderRef, loaderProfile));
+                }
+            }
+            startThreads();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Writes the profile file, with the classes weaved during this run.
+     *
+     * @throws IOException
+     */
+    public void writeProfile() throws IOException {
+        final StringBuffer buf = new StringBuffer();
+        buf.append("# AspectWerkz weaving profile - ").append(new Date()).append('\n');
+        synchronized (this) {
+            for (Iterator it = m_orderedWeavedClasses.iterator(); it.hasNext();) {
+                final WeavedClasses weavedClasses = (WeavedClasses) it.next();
+                for (Iterator names = weavedClasses.m_classNames.iterator(); names.hasNext();) {
+                    buf.append(weavedClasses.m_key).append(' ').append(names.next()).append('\n');
+                }
+            }
+        }
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(m_file), "UTF-8");
+        try {
+            writer.write(buf.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Returns the number of classes weaved ahead and not loaded yet.
+     *
+     * @return the number of prepared classes
+     */
+    public synchronized int getPreparedClassCount() {
+        return m_preparedClasses.size();
+    }
+
+    /**
+     * Returns the profile of the class loader, identified by its class name and rank.
+     * Lock must be owned.
+     *
+     * @param loader    not null
+     * @return the class loader profile
+     */
+    private LoaderProfile getLoaderProfile(final ClassLoader loader) {
+        LoaderProfile loaderProfile = (LoaderProfile) m_loaderProfiles.get(loader);
+        if (loaderProfile == null) {
+            final String loaderClassName = loader.getClass().getName();
+            final Integer count = (Integer) m_loaderCounts.get(loaderClassName);
+            final int rank = (count == null) ? 0 : count.intValue();
+            m_loaderCounts.put(loaderClassName, new Integer(rank + 1));
+            loaderProfile = new LoaderProfile(new WeavedClasses(loaderClassName + '#' + rank));
+            m_loaderProfiles.put(loader, loaderProfile);
+            m_orderedWeavedClasses.add(loaderProfile.m_weavedClasses);
+        }
+        return loaderProfile;
+    }
+
+    /**
+     * Starts the weaving threads if not started yet.
+     * Lock must be owned.
+     */
+    private void startThreads() {
+        while (m_startedThreadCount < m_threadCount) {
+            final Thread thread = new Thread("AspectWerkz pre-weaver " + m_startedThreadCount) {
+                public void run() {
+                    while (true) {
+                        final Task task;
+                        synchronized (WeavingProfile.this) {
+                            try {
+                                waitForTask();
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                            task = (Task) m_queue.removeFirst();
+                        }
+                        weave(task);
+                    }
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+            m_startedThreadCount++;
+        }
+    }
+
+    /**
+     * Waits until a class is queued and fewer than the maximum number of classes are kept weaved ahead, discarding
+     * the classes weaved ahead for too long in the meantime.
+     * Lock must be owned.
+     *
+     * @throws InterruptedException
+     */
+    private void waitForTask() throws InterruptedException {
+        while (true) {
+            final long now = System.currentTimeMillis();
+            evictPreparedClasses(now);
+            if (m_preparedClasses.isEmpty()) {
+                if (!m_queue.isEmpty()) {
+                    return;
+                }
+                wait();
+            } else {
+                if (!m_queue.isEmpty() && m_preparedClasses.size() < m_maxPreparedCount) {
+                    return;
+                }
+                final PreparedClass oldest = (PreparedClass) m_preparedClasses.getFirst();
+                wait(Math.max(1, oldest.m_preparedTime + m_timeout - now));
+            }
+        }
+    }
+
+    /**
+     * Discards the classes weaved ahead for too long, and the oldest ones above the maximum number.
+     * Lock must be owned.
+     *
+     * @param now the current time in milliseconds
+     */
+    private void evictPreparedClasses(final long now) {
+        while (!m_preparedClasses.isEmpty()) {
+            final PreparedClass oldest = (PreparedClass) m_preparedClasses.getFirst();
+            if (m_preparedClasses.size() <= m_maxPreparedCount && oldest.m_preparedTime + m_timeout > now) {
+                return;
+            }
+            m_preparedClasses.removeFirst();
+            oldest.m_loaderProfile.m_preparedClasses.remove(oldest.m_className);
+        }
+    }
+
+    /**
+     * Weaves a queued class, unless it has been loaded in the meantime.
+     *
+     * @param task
+     */
+    private void weave(final Task task) {
+        final ClassLoader loader = (ClassLoader) task.m_loader.get();
+        if (loader == null) {
+            return;
+        }
+        synchronized (this) {
+            if (task.m_loaderProfile.m_preparedClasses.get(task.m_className) != QUEUED) {
+                return;
+            }
+        }
+        PreparedClass preparedClass = null;
+        try {
+            final int definitionsVersion = SystemDefinitionContainer.getDefinitionsVersion();
+            final byte[] bytecode = readBytecode(task.m_className, loader);
+            if (bytecode != null) {
+                final Context context = m_preProcessor._preProcess(task.m_className, bytecode, loader);
+                preparedClass = new PreparedClass(
+                        task.m_className,
+                        task.m_loaderProfile,
+                        bytecode,
+                        context.getCurrentBytecode(),
+                        context.getDefinitions(),
+                        definitionsVersion
+                );
+            }
+        } catch (Throwable t) {
+            AspectWerkzPreProcessor.log("AW::INFO - could not weave ahead " + task.m_className + ": " + t.toString());
+        }
+        synchronized (this) {
+            if (task.m_loaderProfile.m_preparedClasses.get(task.m_className) == QUEUED) {
+                if (preparedClass != null) {
+                    preparedClass.m_preparedTime = System.currentTimeMillis();
+                    task.m_loaderProfile.m_preparedClasses.put(task.m_className, preparedClass);
+                    m_preparedClasses.add(preparedClass);
+                    evictPreparedClasses(preparedClass.m_preparedTime);
+                } else {
+                    task.m_loaderProfile.m_preparedClasses.remove(task.m_className);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the bytecode of a class from the class loader resources.
+     *
+     * @param className
+     * @param loader
+     * @return the bytecode, or null if not found
+     * @throws IOException
+     */
+    private static byte[] readBytecode(final String className, final ClassLoader loader) throws IOException {
+        final InputStream in = loader.getResourceAsStream(className.replace('.', '/') + ".class");
+        if (in == null) {
+            return null;
+        }
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the class names of the profile file, per class loader key.
+     *
+     * @param file
+     * @return the class names as List, per class loader key
+     */
+    private static Map readProfile(final File file) {
+        final Map profile = new HashMap();
+        if (!file.exists()) {
+            return profile;
+        }
+        try {
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), "UTF-8")
+            );
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final int separator = line.indexOf(' ');
+                    if (line.startsWith("#") || separator <= 0) {
+                        continue;
+                    }
+                    final String key = line.substring(0, separator);
+                    List classNames = (List) profile.get(key);
+                    if (classNames == null) {
+                        classNames = new ArrayList();
+                        profile.put(key, classNames);
+                    }
+                    classNames.add(line.substring(separator + 1).trim());
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            System.err.println(
+                    "AspectWerkz - WARN - could not read weaving profile in " + file + ": " + e.toString()
+            );
+        }
+        return profile;
+    }
+
+    /**
+     * The classes weaved and prepared for a class loader.
+     */
+    private static final class LoaderProfile {
+
+        private final WeavedClasses m_weavedClasses;
+
+        /**
+         * The classes weaved ahead of their loading as PreparedClass, or QUEUED, per class name
+         */
+        private final Map m_preparedClasses = new HashMap();
+
+        /**
+         * True once the classes of the previous run have been queued
+         */
+        private boolean m_queued = false;
+
+        private LoaderProfile(final WeavedClasses weavedClasses) {
+            m_weavedClasses = weavedClasses;
+        }
+    }
+
+    /**
+     * The classes weaved during this run for a class loader, in their weaving order.
+     */
+    private static final class WeavedClasses {
+
+        private final String m_key;
+
+        private final List m_classNames = new ArrayList();
+
+        private final Set m_classNameSet = new HashSet();
+
+        private WeavedClasses(final String key) {
+            m_key = key;
+        }
+
+        private void add(final String className) {
+            if (m_classNameSet.add(className)) {
+                m_classNames.add(className);
+            }
+        }
+    }
+
+    /**
+     * A class weaved ahead of its loading.
+     */
+    private static final class PreparedClass {
+
+        private final String m_className;
+
+        private final LoaderProfile m_loaderProfile;
+
+        private final byte[] m_initialBytecode;
+
+        private final byte[] m_weavedBytecode;
+
+        /**
+         * The definitions the class was weaved with, not kept once released by the definition container
+         */
+        private final WeakReference m_definitions;
+
+        private final int m_definitionsVersion;
+
+        private long m_preparedTime;
+
+        private PreparedClass(final String className,
+                              final LoaderProfile loaderProfile,
+                              final byte[] initialBytecode,
+                              final byte[] weavedBytecode,
+                              final Set definitions,
+                              final int definitionsVersion) {
+            m_className = className;
+            m_loaderProfile = loaderProfile;
+            m_initialBytecode = initialBytecode;
+            m_weavedBytecode = weavedBytecode;
+            m_definitions = new WeakReference(definitions);
+            m_definitionsVersion = definitionsVersion;
+        }
+    }
+
+    /**
+     * A class queued for weaving.
+     */
+    private static final class Task {
+
+        private final String m_className;
+
+        private final WeakReference m_loader;
+
+        private final LoaderProfile m_loaderProfile;
+
+        private Task(final String className, final WeakReference loader, final LoaderProfile loaderProfile) {
+            m_className = className;
+            m_loader = loader;
+            m_loaderProfile = loaderProfile;
+        }
+    }
+}
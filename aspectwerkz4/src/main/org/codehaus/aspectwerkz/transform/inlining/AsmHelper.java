@@ -8,6 +8,7 @@
 package org.codehaus.aspectwerkz.transform.inlining;
 
 import org.codehaus.aspectwerkz.util.ContextClassLoader;
+import org.codehaus.aspectwerkz.util.EnvironmentDetect;
 import org.codehaus.aspectwerkz.reflect.ClassInfo;
 import org.codehaus.aspectwerkz.reflect.MethodInfo;
 import org.codehaus.aspectwerkz.reflect.ConstructorInfo;
@@ -25,6 +26,7 @@ import org.objectweb.asm.ClassReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.InvocationTargetException;
@@ -54,6 +56,45 @@ public class AsmHelper implements TransformationConstants {
     private static Method CLASS_LOADER_DEFINE;
     private static final ProtectionDomain PROTECTION_DOMAIN;
 
+    /**
+     * The MethodHandles.Lookup backend (Java 9+), used to define the classes that have a host class in the same
+     * package and class loader, without reflective access to ClassLoader.defineClass
+     */
+    private static Object LOOKUP;
+    private static Method PRIVATE_LOOKUP_IN;
+    private static Method LOOKUP_DEFINE_CLASS;
+
+    /**
+     * The hidden class backend (Java 15+), for the classes that are never looked up by name
+     */
+    private static Method LOOKUP_DEFINE_HIDDEN_CLASS;
+    private static Method LOOKUP_LOOKUP_CLASS;
+    private static Object NO_CLASS_OPTIONS;
+
+    static {
+        if (EnvironmentDetect.detectLookupDefineClass()) {
+            try {
+                Class methodHandles = Class.forName("java.lang.invoke.MethodHandles");
+                Class lookup = Class.forName("java.lang.invoke.MethodHandles$Lookup");
+                PRIVATE_LOOKUP_IN = methodHandles.getMethod("privateLookupIn", new Class[]{Class.class, lookup});
+                LOOKUP_DEFINE_CLASS = lookup.getMethod("defineClass", new Class[]{byte[].class});
+                LOOKUP = methodHandles.getMethod("lookup", new Class[0]).invoke(null, new Object[0]);
+                if (EnvironmentDetect.detectHiddenClass()) {
+                    NO_CLASS_OPTIONS = Array.newInstance(
+                            Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption"), 0
+                    );
+                    LOOKUP_DEFINE_HIDDEN_CLASS = lookup.getMethod(
+                            "defineHiddenClass", new Class[]{byte[].class, boolean.class, NO_CLASS_OPTIONS.getClass()}
+                    );
+                    LOOKUP_LOOKUP_CLASS = lookup.getMethod("lookupClass", new Class[0]);
+                }
+            } catch (Throwable t) {
+                LOOKUP = null;
+                LOOKUP_DEFINE_HIDDEN_CLASS = null;
+            }
+        }
+    }
+
     static {
         PROTECTION_DOMAIN = (ProtectionDomain)AccessController.doPrivileged(new PrivilegedAction() {
             public Object run() {
@@ -72,7 +113,11 @@ public class AsmHelper implements TransformationConstants {
                     );
                     CLASS_LOADER_DEFINE.setAccessible(true);
                 } catch (Throwable t) {
-                    throw new Error(t.toString());
+                    // the Lookup backend can still define the classes that have a host class
+                    CLASS_LOADER_DEFINE = null;
+                    if (LOOKUP == null) {
+                        throw new Error(t.toString());
+                    }
                 }
                 return null;
             }
@@ -194,6 +239,11 @@ public class AsmHelper implements TransformationConstants {
             if (loader == null) {
                 loader = ContextClassLoader.getLoader();
             }
+            if (CLASS_LOADER_DEFINE == null) {
+                throw new Error(
+                        "ClassLoader.defineClass is not accessible and " + className + " has no host class to define it"
+                );
+            }
 
             // TODO: what if we don't have rights to set this method to
             // accessible on this specific CL? Load it in System CL?
@@ -221,6 +271,79 @@ public class AsmHelper implements TransformationConstants {
         }
     }
 
+    /**
+     * Adds a class to a class loader and loads it, thru a MethodHandles.Lookup on the given host class when the
+     * runtime supports it and the host class is in the same package and class loader. Falls back on
+     * defineClass(loader, bytes, name) otherwise.
+     *
+     * @param loader    the class loader (if null the context class loader will be used)
+     * @param bytes     the bytes for the class
+     * @param name      the name of the class
+     * @param hostClass a class of the same package and class loader, can be null
+     * @return the class
+     */
+    public static Class defineClass(ClassLoader loader, final byte[] bytes, final String name, final Class hostClass) {
+        if (loader == null) {
+            loader = ContextClassLoader.getLoader();
+        }
+        if (LOOKUP != null && hostClass != null && hostClass.getClassLoader() == loader
+            && getPackageName(name).equals(getPackageName(hostClass.getName()))) {
+            try {
+                return (Class) LOOKUP_DEFINE_CLASS.invoke(getLookup(hostClass), new Object[]{bytes});
+            } catch (InvocationTargetException e) {
+                // JIT failovering for Thread concurrency
+                if (e.getTargetException() instanceof LinkageError) {
+                    Class failoverClass = forName(loader, name.replace('/', '.'));
+                    if (failoverClass != null) {
+                        return failoverClass;
+                    }
+                }
+            } catch (Exception e) {
+                ;// not accessible from here, f.e. in a named module
+            }
+        }
+        return defineClass(loader, bytes, name);
+    }
+
+    /**
+     * Defines a hidden class, that can not be looked up by name and is unloaded independently from the class loader
+     * of its host class.
+     *
+     * @param bytes     the bytes for the class, which must be in the package of the host class
+     * @param hostClass the host class
+     * @return the class, or null if the runtime does not support hidden classes
+     */
+    public static Class defineHiddenClass(final byte[] bytes, final Class hostClass) {
+        if (LOOKUP_DEFINE_HIDDEN_CLASS == null) {
+            return null;
+        }
+        try {
+            Object hiddenLookup = LOOKUP_DEFINE_HIDDEN_CLASS.invoke(
+                    getLookup(hostClass), new Object[]{bytes, Boolean.TRUE, NO_CLASS_OPTIONS}
+            );
+            return (Class) LOOKUP_LOOKUP_CLASS.invoke(hiddenLookup, new Object[0]);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a lookup with private access on the given class.
+     *
+     * @param hostClass
+     * @return the MethodHandles.Lookup
+     * @throws Exception
+     */
+    private static Object getLookup(final Class hostClass) throws Exception {
+        return PRIVATE_LOOKUP_IN.invoke(null, new Object[]{hostClass, LOOKUP});
+    }
+
+    private static String getPackageName(final String className) {
+        String name = className.replace('/', '.');
+        int index = name.lastIndexOf('.');
+        return index < 0 ? "" : name.substring(0, index);
+    }
+
     /**
      * Tries to load a class if unsuccessful returns null.
      *
@@ -751,6 +874,42 @@ public class AsmHelper implements TransformationConstants {
         }
     }
 
+    /**
+     * Converts the primitive value on top of the stack to long bits, without boxing it.
+     * The integral types and boolean are widened to long, float and double are converted to their raw bits.
+     *
+     * @param cv
+     * @param type
+     */
+    public static void convertPrimitiveTypeToLongBits(final MethodVisitor cv, final Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+            case Type.CHAR:
+            case Type.BYTE:
+            case Type.SHORT:
+            case Type.INT:
+                cv.visitInsn(I2L);
+                break;
+            case Type.FLOAT:
+                cv.visitMethodInsn(
+                        INVOKESTATIC,
+                        FLOAT_CLASS_NAME,
+                        FLOAT_TO_RAW_INT_BITS_METHOD_NAME,
+                        FLOAT_TO_RAW_INT_BITS_METHOD_SIGNATURE
+                );
+                cv.visitInsn(I2L);
+                break;
+            case Type.DOUBLE:
+                cv.visitMethodInsn(
+                        INVOKESTATIC,
+                        DOUBLE_CLASS_NAME,
+                        DOUBLE_TO_RAW_LONG_BITS_METHOD_NAME,
+                        DOUBLE_TO_RAW_LONG_BITS_METHOD_SIGNATURE
+                );
+                break;
+        }
+    }
+
     /**
      * Handles the unwrapping of a type, unboxing of primitives and casting to the correct object type.
      * Takes care of null value replaced by default primitive value.
@@ -7,18 +7,31 @@
  **************************************************************************************/
 package org.codehaus.aspectwerkz.transform.inlining;
 
+import org.codehaus.aspectwerkz.definition.AdviceDefinition;
+import org.codehaus.aspectwerkz.definition.AspectDefinition;
+import org.codehaus.aspectwerkz.definition.SystemDefinition;
 import org.codehaus.aspectwerkz.definition.SystemDefinitionContainer;
+import org.codehaus.aspectwerkz.definition.Virtual;
+import org.codehaus.aspectwerkz.expression.ExpressionContext;
+import org.codehaus.aspectwerkz.expression.ExpressionInfo;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointType;
+import org.codehaus.aspectwerkz.reflect.ClassInfo;
 import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
 import org.codehaus.aspectwerkz.transform.Context;
+import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.transform.TransformationUtil;
 import org.objectweb.asm.Label;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.lang.reflect.Modifier;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import gnu.trove.TObjectIntHashMap;
 
@@ -29,6 +42,11 @@ import gnu.trove.TObjectIntHashMap;
  * @author <a href="mailto:alex@gnilux.com">Alexandre Vasseur </a>
  */
 public class ContextImpl implements Context {
+    /**
+     * The ids of the advice chains of the shared join points, per weaving class loader.
+     */
+    private static final Map s_adviceChainIds = new WeakHashMap();
+
     /**
      * The name of the class.
      */
@@ -59,6 +77,11 @@ public class ContextImpl implements Context {
      */
     private boolean m_madeAdvisable = false;
 
+    /**
+     * Marks the join points of the class as generated ahead of time, see AspectWerkzPreProcessor.
+     */
+    private boolean m_aheadOfTime = AspectWerkzPreProcessor.AOTJP;
+
     /**
      * Marks the context as read-only.
      */
@@ -187,6 +210,35 @@ public class ContextImpl implements Context {
         return m_madeAdvisable;
     }
 
+    /**
+     * Sets whether the join points of the class are generated ahead of time by the offline compiler, instead of the
+     * -Daspectwerkz.transform.aotjp default.
+     *
+     * @param aheadOfTime
+     */
+    public void setAheadOfTime(final boolean aheadOfTime) {
+        m_aheadOfTime = aheadOfTime;
+    }
+
+    /**
+     * Checks if the join points of the class are generated ahead of time.
+     *
+     * @return
+     */
+    public boolean isAheadOfTime() {
+        return m_aheadOfTime;
+    }
+
+    /**
+     * Checks if the join points of the class are linked lazily, which does not apply to the join points generated
+     * ahead of time.
+     *
+     * @return
+     */
+    public boolean isLinkedLazily() {
+        return AspectWerkzPreProcessor.LAZYJP && !m_aheadOfTime;
+    }
+
     /**
      * Marks the context as read-only.
      */
@@ -271,6 +323,188 @@ public class ContextImpl implements Context {
         return m_emittedJoinPoints;
     }
 
+    /**
+     * Returns the name of the join point class to use for the given call site.
+     * <p/>
+     * When join point sharing is turned on (see AspectWerkzPreProcessor), the call, get and set join points of the
+     * class that target the same member with the same advice chain from static callers, or from instance callers,
+     * share one join point class. This is only done when the shared class does not depend on the caller member, e.g.
+     * when no advice can reach the enclosing static join point and the class is not Advisable, else the regular per
+     * caller member join point class is used.
+     * <p/>
+     * The join points are not shared when they can be redefined (see -Daspectwerkz.transform.redefinejp), since a
+     * deployment would then redefine the shared class for all its call sites, even the ones out of its scope.
+     *
+     * @param ctx              the expression context of the join point
+     * @param callerClassInfo
+     * @param callerMethodName
+     * @param callerMethodDesc
+     * @param calleeClassName
+     * @param joinPointType
+     * @param joinPointHash
+     * @return the JIT joinpoint classname
+     */
+    public String getJoinPointClassName(final ExpressionContext ctx,
+                                        final ClassInfo callerClassInfo,
+                                        final String callerMethodName,
+                                        final String callerMethodDesc,
+                                        final String calleeClassName,
+                                        final int joinPointType,
+                                        final int joinPointHash) {
+        if (AspectWerkzPreProcessor.SHAREDJP
+            && !AspectWerkzPreProcessor.REDEFINEJP
+            && (joinPointType == JoinPointType.METHOD_CALL_INT
+                || joinPointType == JoinPointType.CONSTRUCTOR_CALL_INT
+                || joinPointType == JoinPointType.FIELD_GET_INT
+                || joinPointType == JoinPointType.FIELD_SET_INT)
+            && !m_madeAdvisable
+            && !isAdvisable(callerClassInfo)) {
+            String adviceChainKey = getShareableAdviceChainKey(ctx);
+            if (adviceChainKey != null) {
+                return TransformationUtil.getSharedJoinPointClassName(
+                        m_className, calleeClassName, joinPointType, joinPointHash,
+                        getAdviceChainId(adviceChainKey), adviceChainKey
+                );
+            }
+        }
+        return TransformationUtil.getJoinPointClassName(
+                m_className, callerMethodName, callerMethodDesc, calleeClassName, joinPointType, joinPointHash
+        );
+    }
+
+    /**
+     * Returns the id of the advice chain, unique for its key within the class loader.
+     *
+     * @param adviceChainKey
+     * @return the id
+     */
+    private int getAdviceChainId(final String adviceChainKey) {
+        synchronized (s_adviceChainIds) {
+            Map adviceChainIds = (Map) s_adviceChainIds.get(m_loader);
+            if (adviceChainIds == null) {
+                adviceChainIds = new HashMap();
+                s_adviceChainIds.put(m_loader, adviceChainIds);
+            }
+            Integer id = (Integer) adviceChainIds.get(adviceChainKey);
+            if (id == null) {
+                id = new Integer(adviceChainIds.size());
+                adviceChainIds.put(adviceChainKey, id);
+            }
+            return id.intValue();
+        }
+    }
+
+    /**
+     * Computes the key of the advice chain bounded to the join point, made of the qualified names of the matching
+     * advices in the definition order.
+     * <p/>
+     * The key tells apart the static callers, since the join point class compiled for a static caller skips the
+     * advices that need the caller instance (perInstance, perThis) and binds a null caller.
+     *
+     * @param ctx
+     * @return the key, or null if the advice chain does not allow to share the join point class
+     */
+    private String getShareableAdviceChainKey(final ExpressionContext ctx) {
+        final StringBuffer key = new StringBuffer();
+        if (ctx.hasWithinReflectionInfo() && Modifier.isStatic(ctx.getWithinReflectionInfo().getModifiers())) {
+            key.append("static;");
+        }
+        for (Iterator definitions = m_definitions.iterator(); definitions.hasNext();) {
+            SystemDefinition systemDefinition = (SystemDefinition) definitions.next();
+            for (Iterator aspects = systemDefinition.getAspectDefinitions().iterator(); aspects.hasNext();) {
+                AspectDefinition aspectDefinition = (AspectDefinition) aspects.next();
+                for (Iterator advices = aspectDefinition.getAdviceDefinitions().iterator(); advices.hasNext();) {
+                    AdviceDefinition adviceDefinition = (AdviceDefinition) advices.next();
+                    final ExpressionInfo expressionInfo = adviceDefinition.getExpressionInfo();
+                    if (expressionInfo == null || !expressionInfo.getExpression().match(ctx)) {
+                        continue;
+                    }
+                    // prepared join points can be redefined at deployment time for this caller member only,
+                    // and the other aspect models may need the full join point
+                    if (aspectDefinition.getName().equals(Virtual.class.getName())
+                        || !aspectDefinition.isAspectWerkzAspect()
+                        || isJoinPointAware(adviceDefinition)) {
+                        return null;
+                    }
+                    key.append(aspectDefinition.getQualifiedName());
+                    key.append('/');
+                    key.append(adviceDefinition.getName());
+                    key.append(';');
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Checks if the join point can be weaved as a dormant join point (see AspectWerkzPreProcessor), e.g. if it is
+     * only matched by the deployment scopes and prepare packages of the Virtual aspect. Runtime and cflow matches
+     * count as advised.
+     *
+     * @param ctx             the expression context of the join point
+     * @param callerClassInfo
+     * @return true if dormant
+     */
+    public boolean isDormant(final ExpressionContext ctx, final ClassInfo callerClassInfo) {
+        if (!AspectWerkzPreProcessor.DORMANTJP
+            || m_aheadOfTime
+            || m_madeAdvisable
+            || isAdvisable(callerClassInfo)) {
+            return false;
+        }
+        for (Iterator definitions = m_definitions.iterator(); definitions.hasNext();) {
+            SystemDefinition systemDefinition = (SystemDefinition) definitions.next();
+            for (Iterator aspects = systemDefinition.getAspectDefinitions().iterator(); aspects.hasNext();) {
+                AspectDefinition aspectDefinition = (AspectDefinition) aspects.next();
+                if (aspectDefinition.getName().equals(Virtual.class.getName())) {
+                    continue;
+                }
+                for (Iterator advices = aspectDefinition.getAdviceDefinitions().iterator(); advices.hasNext();) {
+                    AdviceDefinition adviceDefinition = (AdviceDefinition) advices.next();
+                    final ExpressionInfo expressionInfo = adviceDefinition.getExpressionInfo();
+                    if (expressionInfo != null && expressionInfo.getExpression().match(ctx)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the advice has a JoinPoint or StaticJoinPoint parameter, which gives access to the caller member.
+     *
+     * @param adviceDefinition
+     * @return true if so
+     */
+    private static boolean isJoinPointAware(final AdviceDefinition adviceDefinition) {
+        ClassInfo[] parameterTypes = adviceDefinition.getMethodInfo().getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            String parameterTypeName = parameterTypes[i].getName();
+            if (TransformationConstants.JOIN_POINT_JAVA_CLASS_NAME.equals(parameterTypeName)
+                || TransformationConstants.STATIC_JOIN_POINT_JAVA_CLASS_NAME.equals(parameterTypeName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the class implements Advisable, in which case the join point is bound to the caller member.
+     *
+     * @param classInfo
+     * @return true if so
+     */
+    private static boolean isAdvisable(final ClassInfo classInfo) {
+        ClassInfo[] interfaces = classInfo.getInterfaces();
+        for (int i = 0; i < interfaces.length; i++) {
+            if (TransformationConstants.ADVISABLE_CLASS_JAVA_NAME.equals(interfaces[i].getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void setSerialVerUid(long initialSerialVerUid) {
         m_serialVerUid = initialSerialVerUid;
     }
@@ -47,6 +47,11 @@ public final class EmittedJoinPoint {
      */
     private int lineNumber = 0;
 
+    /**
+     * True if the join point is weaved as a dormant join point, see ContextImpl.isDormant(..)
+     */
+    private boolean isDormant = false;
+
     /**
      * Creates a new instance.
      *
@@ -173,6 +178,14 @@ public final class EmittedJoinPoint {
         lineNumber = context.resolveLineNumberInfo(lineNumberLabel);
     }
 
+    public boolean isDormant() {
+        return isDormant;
+    }
+
+    public void setDormant(final boolean isDormant) {
+        this.isDormant = isDormant;
+    }
+
     public boolean equals(Object o) {
         if (this == o) {
             return true;
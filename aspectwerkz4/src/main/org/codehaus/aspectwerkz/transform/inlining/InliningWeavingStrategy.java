@@ -16,12 +16,14 @@ import java.util.List;
 import java.util.Set;
 
 import org.codehaus.aspectwerkz.definition.SystemDefinition;
+import org.codehaus.aspectwerkz.definition.SystemDefinitionContainer;
 import org.codehaus.aspectwerkz.exception.WrappedRuntimeException;
 import org.codehaus.aspectwerkz.expression.ExpressionContext;
 import org.codehaus.aspectwerkz.expression.PointcutType;
 import org.codehaus.aspectwerkz.reflect.ClassInfo;
 import org.codehaus.aspectwerkz.reflect.impl.asm.AsmClassInfo;
 import org.codehaus.aspectwerkz.transform.Context;
+import org.codehaus.aspectwerkz.transform.WeaverMetrics;
 import org.codehaus.aspectwerkz.transform.WeavingStrategy;
 import org.codehaus.aspectwerkz.transform.inlining.weaver.AddInterfaceVisitor;
 import org.codehaus.aspectwerkz.transform.inlining.weaver.AddMixinMethodsVisitor;
@@ -38,6 +40,8 @@ import org.codehaus.aspectwerkz.transform.inlining.weaver.MethodExecutionVisitor
 import org.codehaus.aspectwerkz.transform.inlining.weaver.StaticInitializationVisitor;
 import org.codehaus.aspectwerkz.transform.inlining.weaver.SerialVersionUidVisitor;
 import org.codehaus.aspectwerkz.transform.inlining.weaver.AddWrapperVisitor;
+import org.codehaus.aspectwerkz.transform.inlining.weaver.AddWovenClassAttributeVisitor;
+import org.objectweb.asm.Attribute;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
@@ -50,6 +54,12 @@ import org.objectweb.asm.ClassWriter;
  */
 public class InliningWeavingStrategy implements WeavingStrategy {
 
+    /**
+     * The custom attributes read in the weaved class, so that the woven class attribute of a previous weaving is
+     * kept until phase 3 replaces it (ASM does not write back the unknown ones)
+     */
+    private static final Attribute[] ATTRIBUTE_PROTOTYPES = new Attribute[]{new WovenClassAttribute()};
+
     /**
      * Performs the weaving of the target class.
      *
@@ -57,11 +67,15 @@ public class InliningWeavingStrategy implements WeavingStrategy {
      * @param context
      */
     public void transform(String className, final Context context) {
+        final WeaverMetrics.Sample sample = WeaverMetrics.ENABLED ? WeaverMetrics.startClass(className) : null;
         try {
             final byte[] bytecode = context.getInitialBytecode();
             final ClassLoader loader = context.getLoader();
 
             ClassInfo classInfo = AsmClassInfo.getClassInfo(className, bytecode, loader);
+            if (sample != null) {
+                sample.endPhase(WeaverMetrics.CLASS_INFO);
+            }
 
             // skip Java reflect proxies for which we cannot get the resource as a stream
             // which leads to warnings when using annotation matching
@@ -69,22 +83,20 @@ public class InliningWeavingStrategy implements WeavingStrategy {
             // to avoid to call getSuperClass everytime
             if (classInfo.getName().startsWith("$") && classInfo.getSuperclass().getName().equals("java.lang.reflect.Proxy")) {
                 context.setCurrentBytecode(context.getInitialBytecode());
+                if (sample != null) {
+                    sample.filtered();
+                }
                 return;
             }
 
-            //TODO:FIXME match on (within, null, classInfo) should be equivalent to those ones. 
             final Set definitions = context.getDefinitions();
-            final ExpressionContext[] ctxs = new ExpressionContext[]{
-                new ExpressionContext(PointcutType.EXECUTION, classInfo, classInfo),
-                new ExpressionContext(PointcutType.CALL, null, classInfo),
-                new ExpressionContext(PointcutType.GET, null, classInfo),
-                new ExpressionContext(PointcutType.SET, null, classInfo),
-                new ExpressionContext(PointcutType.HANDLER, null, classInfo),
-                new ExpressionContext(PointcutType.STATIC_INITIALIZATION, classInfo, classInfo),
-                new ExpressionContext(PointcutType.WITHIN, classInfo, classInfo)
-            };
+            final ExpressionContext[] ctxs = newClassFilterContexts(classInfo);
 
             if (classFilter(definitions, ctxs, classInfo)) {
+                if (sample != null) {
+                    sample.endPhase(WeaverMetrics.EARLY_MATCH);
+                    sample.filtered();
+                }
                 return;
             }
 
@@ -93,40 +105,31 @@ public class InliningWeavingStrategy implements WeavingStrategy {
             //AsmClassInfo.getClassInfo(bytecode, loader);
 
             // compute CALL + GET/SET early matching results to avoid registering useless visitors
+            // (the expression contexts are immutable and reused from the class filter)
             final boolean filterForCall = classFilterFor(
-                    definitions, new ExpressionContext[]{
-                        new ExpressionContext(PointcutType.CALL, null, classInfo),
-                        new ExpressionContext(PointcutType.WITHIN, classInfo, classInfo)
-                    }
+                    definitions, new ExpressionContext[]{ctxs[1], ctxs[6]}
             );//FIXME - within make match all
             final boolean filterForGetSet = classFilterFor(
-                    definitions, new ExpressionContext[]{
-                        new ExpressionContext(PointcutType.GET, null, classInfo),
-                        new ExpressionContext(PointcutType.SET, null, classInfo),
-                        new ExpressionContext(PointcutType.WITHIN, classInfo, classInfo)
-                    }
+                    definitions, new ExpressionContext[]{ctxs[2], ctxs[3], ctxs[6]}
             );//FIXME - within make match all
             final boolean filterForHandler = classFilterFor(
-                    definitions, new ExpressionContext[]{
-                        new ExpressionContext(PointcutType.HANDLER, null, classInfo),
-                        new ExpressionContext(PointcutType.WITHIN, classInfo, classInfo)
-                    }
+                    definitions, new ExpressionContext[]{ctxs[4], ctxs[6]}
             );//FIXME - within make match all
 
             // note: for staticinitialization we do an exact match right there
-            boolean filterForStaticinitialization = !classInfo.hasStaticInitializer()
-            	||  classFilterFor(definitions, new ExpressionContext[] {
-    					new ExpressionContext(PointcutType.STATIC_INITIALIZATION,
-    					                      classInfo.staticInitializer(),
-    					                      classInfo)
-    			  		}
-            		);
+            boolean filterForStaticinitialization = !classInfo.hasStaticInitializer();
             if (!filterForStaticinitialization) {
-                filterForStaticinitialization = !hasPointcut(definitions, new ExpressionContext(
+                final ExpressionContext staticInitializationCtx = new ExpressionContext(
                         PointcutType.STATIC_INITIALIZATION,
                         classInfo.staticInitializer(),
                         classInfo
-                ));
+                );
+                filterForStaticinitialization = classFilterFor(
+                        definitions, new ExpressionContext[]{staticInitializationCtx}
+                ) || !hasPointcut(definitions, staticInitializationCtx);
+            }
+            if (sample != null) {
+                sample.endPhase(WeaverMetrics.EARLY_MATCH);
             }
 
             // prepare ctor call jp
@@ -153,13 +156,16 @@ public class InliningWeavingStrategy implements WeavingStrategy {
                                 cw2, loader, classInfo, context, catchLabels
                         );
                 // we must visit exactly as we will do further on with debug info (that produces extra labels)
-                crLookahead2.accept(lookForCatches, null, false);
+                crLookahead2.accept(lookForCatches, ATTRIBUTE_PROTOTYPES, false);
             }
 
             // gather wrapper methods to support multi-weaving
             // skip annotations visit and debug info by using the lookahead read-only classreader
             Set addedMethods = new HashSet();
             crLookahead.accept(new AlreadyAddedMethodAdapter(addedMethods), true);
+            if (sample != null) {
+                sample.endPhase(WeaverMetrics.LOOKAHEAD);
+            }
 
             // -- Phase 1 -- type change
             final ClassWriter writerPhase1 = AsmHelper.newClassWriter(true);
@@ -167,11 +173,14 @@ public class InliningWeavingStrategy implements WeavingStrategy {
             ClassVisitor reversedChainPhase1 = writerPhase1;
             reversedChainPhase1 = new AddMixinMethodsVisitor(reversedChainPhase1, classInfo, context, addedMethods);
             reversedChainPhase1 = new AddInterfaceVisitor(reversedChainPhase1, classInfo, context);
-            readerPhase1.accept(reversedChainPhase1, null, false);
+            readerPhase1.accept(reversedChainPhase1, ATTRIBUTE_PROTOTYPES, false);
             final byte[] bytesPhase1 = writerPhase1.toByteArray();
 
             // update the class info
             classInfo = AsmClassInfo.newClassInfo(bytesPhase1, loader);
+            if (sample != null) {
+                sample.endPhase(WeaverMetrics.PHASE_1);
+            }
 
             // -- Phase 2 -- advices
             final ClassWriter writerPhase2 = AsmHelper.newClassWriter(true);
@@ -194,10 +203,13 @@ public class InliningWeavingStrategy implements WeavingStrategy {
                 reversedChainPhase2 = new FieldSetFieldGetVisitor(reversedChainPhase2, loader, classInfo, context);
             }
             reversedChainPhase2 = new LabelToLineNumberVisitor(reversedChainPhase2, context);
-            readerPhase2.accept(reversedChainPhase2, null, false);
+            readerPhase2.accept(reversedChainPhase2, ATTRIBUTE_PROTOTYPES, false);
             final byte[] bytesPhase2 = writerPhase2.toByteArray();
 
             context.setCurrentBytecode(bytesPhase2);
+            if (sample != null) {
+                sample.endPhase(WeaverMetrics.PHASE_2);
+            }
 
             // -- Phase 3 -- serialUID and JoinPoint initialization
             if (context.isAdvised()) {
@@ -207,11 +219,15 @@ public class InliningWeavingStrategy implements WeavingStrategy {
                 reversedChainPhase3 = new SerialVersionUidVisitor.Add(reversedChainPhase3, context, classInfo);
                 reversedChainPhase3 = new AddWrapperVisitor(reversedChainPhase3, context, addedMethods);
                 reversedChainPhase3 = new JoinPointInitVisitor(reversedChainPhase3, context);
-                readerPhase3.accept(reversedChainPhase3, null, false);
+                reversedChainPhase3 = new AddWovenClassAttributeVisitor(reversedChainPhase3, context);
+                readerPhase3.accept(reversedChainPhase3, ATTRIBUTE_PROTOTYPES, false);
                 final byte[] bytesPhase3 = writerPhase3.toByteArray();
 
                 context.setCurrentBytecode(bytesPhase3);
             }
+            if (sample != null) {
+                sample.endPhase(WeaverMetrics.PHASE_3);
+            }
 
             // TODO: INNER CLASS OR NOT?
             // loop over emitted jp and flag them as inner classes
@@ -241,8 +257,15 @@ public class InliningWeavingStrategy implements WeavingStrategy {
             //            }
 
         } catch (Throwable t) {
+            if (sample != null) {
+                sample.failed();
+            }
             t.printStackTrace();
             throw new WrappedRuntimeException(t);
+        } finally {
+            if (sample != null) {
+                sample.end(context);
+            }
         }
     }
 
@@ -258,6 +281,39 @@ public class InliningWeavingStrategy implements WeavingStrategy {
         return new ContextImpl(name, bytecode, loader);
     }
 
+    /**
+     * Checks if a class is eligible for transformation with the definitions visible from the given class loader, that
+     * is if its bytecode may be changed by the weaver.
+     *
+     * @param classInfo the class
+     * @param loader    the class loader of the class
+     * @return true if the class is not filtered out
+     */
+    public static boolean isWeavable(final ClassInfo classInfo, final ClassLoader loader) {
+        return !classFilter(
+                SystemDefinitionContainer.getDefinitionsFor(loader), newClassFilterContexts(classInfo), classInfo
+        );
+    }
+
+    /**
+     * Creates the expression contexts of the class filter.
+     *
+     * @param classInfo the class to filter
+     * @return the contexts
+     */
+    private static ExpressionContext[] newClassFilterContexts(final ClassInfo classInfo) {
+        //TODO:FIXME match on (within, null, classInfo) should be equivalent to those ones.
+        return new ExpressionContext[]{
+            new ExpressionContext(PointcutType.EXECUTION, classInfo, classInfo),
+            new ExpressionContext(PointcutType.CALL, null, classInfo),
+            new ExpressionContext(PointcutType.GET, null, classInfo),
+            new ExpressionContext(PointcutType.SET, null, classInfo),
+            new ExpressionContext(PointcutType.HANDLER, null, classInfo),
+            new ExpressionContext(PointcutType.STATIC_INITIALIZATION, classInfo, classInfo),
+            new ExpressionContext(PointcutType.WITHIN, classInfo, classInfo)
+        };
+    }
+
     /**
      * Filters out the classes that are not eligible for transformation.
      *
@@ -0,0 +1,246 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.transform.inlining;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ByteVector;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+
+/**
+ * Class attribute written by the weaver in the weaved classes. It holds the fingerprint of the definitions the class
+ * has been weaved with (see DefinitionFingerprint) and the names of the join point classes of the weaved join points.
+ * <p/>
+ * The pre-processor looks for the attribute with a scan of the class file structure only (no constant pool decoding
+ * nor class info), and does not weave the class again when the definitions visible from its class loader still have
+ * the same fingerprint, f.e. for the classes weaved by the offline compiler. When the definitions have changed the
+ * class is weaved as usual: the wrappers and join points already there are kept and only the new join points are
+ * weaved, and the attribute is replaced with one holding the new fingerprint and all the join points.
+ * <p/>
+ * Layout: u1 version, u1 fingerprint length, the fingerprint, u2 join point count, and for each join point the u2
+ * constant pool index of its join point class name.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public class WovenClassAttribute extends Attribute {
+
+    /**
+     * The name of the attribute
+     */
+    public static final String NAME = "org.codehaus.aspectwerkz.Woven";
+
+    private static final int VERSION = 1;
+
+    private static final byte[] NAME_BYTES = NAME.getBytes();
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private final byte[] m_fingerprint;
+
+    private final Set m_joinPointClassNames;
+
+    /**
+     * Creates the prototype attribute to give to the class reader.
+     */
+    public WovenClassAttribute() {
+        this(null, Collections.EMPTY_SET);
+    }
+
+    /**
+     * Creates a new attribute.
+     *
+     * @param fingerprint         the fingerprint of the definitions
+     * @param joinPointClassNames the join point class names
+     */
+    public WovenClassAttribute(final byte[] fingerprint, final Set joinPointClassNames) {
+        super(NAME);
+        m_fingerprint = fingerprint;
+        m_joinPointClassNames = new TreeSet(joinPointClassNames);
+    }
+
+    /**
+     * Returns the fingerprint of the definitions the class has been weaved with.
+     *
+     * @return the fingerprint, or null if the attribute has been written by another version
+     */
+    public byte[] getFingerprint() {
+        return m_fingerprint;
+    }
+
+    /**
+     * Returns the join point class names of the weaved join points.
+     *
+     * @return the join point class names, sorted
+     */
+    public Set getJoinPointClassNames() {
+        return Collections.unmodifiableSet(m_joinPointClassNames);
+    }
+
+    /**
+     * The attribute is known to the weaver, so that ASM writes it.
+     *
+     * @return false
+     */
+    public boolean isUnknown() {
+        return false;
+    }
+
+    protected Attribute read(final ClassReader cr,
+                             final int off,
+                             final int len,
+                             final char[] buf,
+                             final int codeOff,
+                             final Label[] labels) {
+        if (cr.readByte(off) != VERSION) {
+            return new WovenClassAttribute();
+        }
+        final byte[] fingerprint = new byte[cr.readByte(off + 1)];
+        System.arraycopy(cr.b, off + 2, fingerprint, 0, fingerprint.length);
+        int index = off + 2 + fingerprint.length;
+        final Set joinPointClassNames = new TreeSet();
+        for (int count = cr.readUnsignedShort(index); count > 0; count--) {
+            index += 2;
+            joinPointClassNames.add(cr.readUTF8(index, buf));
+        }
+        return new WovenClassAttribute(fingerprint, joinPointClassNames);
+    }
+
+    protected ByteVector write(final ClassWriter cw,
+                               final byte[] code,
+                               final int len,
+                               final int maxStack,
+                               final int maxLocals) {
+        final ByteVector bv = new ByteVector();
+        bv.putByte(VERSION);
+        bv.putByte(m_fingerprint.length);
+        bv.putByteArray(m_fingerprint, 0, m_fingerprint.length);
+        bv.putShort(m_joinPointClassNames.size());
+        for (Iterator it = m_joinPointClassNames.iterator(); it.hasNext();) {
+            bv.putShort(cw.newUTF8((String) it.next()));
+        }
+        return bv;
+    }
+
+    /**
+     * Returns the fingerprint of the definitions a class has been weaved with, from its bytecode. Only the structure
+     * of the class file is scanned to find the attribute.
+     *
+     * @param bytecode
+     * @return the fingerprint, or null if the class has not been weaved or has been weaved by another version
+     */
+    public static byte[] getFingerprint(final byte[] bytecode) {
+        try {
+            final int off = findAttribute(bytecode);
+            if (off < 0 || bytecode[off] != VERSION) {
+                return null;
+            }
+            final byte[] fingerprint = new byte[bytecode[off + 1] & 0xFF];
+            System.arraycopy(bytecode, off + 2, fingerprint, 0, fingerprint.length);
+            return fingerprint;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // not a class file we know of
+            return null;
+        }
+    }
+
+    /**
+     * Finds the attribute in the class attributes.
+     *
+     * @param b the bytecode
+     * @return the offset of the attribute content, or -1 if not found
+     */
+    private static int findAttribute(final byte[] b) {
+        if (readInt(b, 0) != MAGIC) {
+            return -1;
+        }
+        // the constant pool, where only the UTF8 items offsets are kept
+        final int itemCount = readUnsignedShort(b, 8);
+        final int[] utf8Offsets = new int[itemCount];
+        int off = 10;
+        for (int i = 1; i < itemCount; i++) {
+            switch (b[off]) {
+                case 1: // UTF8
+                    utf8Offsets[i] = off;
+                    off += 3 + readUnsignedShort(b, off + 1);
+                    break;
+                case 5: // LONG
+                case 6: // DOUBLE
+                    off += 9;
+                    i++;
+                    break;
+                case 3: // INT
+                case 4: // FLOAT
+                case 9: // FIELD
+                case 10: // METH
+                case 11: // IMETH
+                case 12: // NAME_TYPE
+                case 17: // DYNAMIC
+                case 18: // INVOKE_DYNAMIC
+                    off += 5;
+                    break;
+                case 15: // METHOD_HANDLE
+                    off += 4;
+                    break;
+                default: // CLASS, STR, METHOD_TYPE, MODULE, PACKAGE
+                    off += 3;
+            }
+        }
+        // access, this, super and interfaces
+        off += 6;
+        off += 2 + 2 * readUnsignedShort(b, off);
+        // fields then methods: access, name, desc and attributes
+        for (int k = 0; k < 2; k++) {
+            int count = readUnsignedShort(b, off);
+            off += 2;
+            for (; count > 0; count--) {
+                int attributeCount = readUnsignedShort(b, off + 6);
+                off += 8;
+                for (; attributeCount > 0; attributeCount--) {
+                    off += 6 + readInt(b, off + 2);
+                }
+            }
+        }
+        // class attributes
+        int count = readUnsignedShort(b, off);
+        off += 2;
+        for (; count > 0; count--) {
+            final int nameOff = utf8Offsets[readUnsignedShort(b, off)];
+            if (nameOff != 0 && isName(b, nameOff)) {
+                return off + 6;
+            }
+            off += 6 + readInt(b, off + 2);
+        }
+        return -1;
+    }
+
+    private static boolean isName(final byte[] b, final int utf8Off) {
+        if (readUnsignedShort(b, utf8Off + 1) != NAME_BYTES.length) {
+            return false;
+        }
+        for (int i = 0; i < NAME_BYTES.length; i++) {
+            if (b[utf8Off + 3 + i] != NAME_BYTES[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readUnsignedShort(final byte[] b, final int off) {
+        return ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+    }
+
+    private static int readInt(final byte[] b, final int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+}
@@ -9,20 +9,28 @@ package org.codehaus.aspectwerkz.transform.inlining.compiler;
 
 import org.codehaus.aspectwerkz.DeploymentModel;
 import org.codehaus.aspectwerkz.aspect.AdviceInfo;
+import org.codehaus.aspectwerkz.aspect.AdviceType;
 import org.codehaus.aspectwerkz.aspect.container.AspectFactoryManager;
 import org.codehaus.aspectwerkz.definition.AspectDefinition;
+import org.codehaus.aspectwerkz.expression.ExpressionInfo;
 import org.codehaus.aspectwerkz.joinpoint.management.AdviceInfoContainer;
+import org.codehaus.aspectwerkz.joinpoint.management.AdviceSampler;
+import org.codehaus.aspectwerkz.joinpoint.management.AsyncAdviceDispatcher;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointStatistics;
 import org.codehaus.aspectwerkz.joinpoint.management.JoinPointType;
+import org.codehaus.aspectwerkz.joinpoint.management.RuntimeCheckCache;
 import org.codehaus.aspectwerkz.reflect.ClassInfo;
 import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
 import org.codehaus.aspectwerkz.transform.JoinPointCompiler;
 import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.transform.WeaverMetrics;
 import org.codehaus.aspectwerkz.transform.inlining.AdviceMethodInfo;
 import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
 import org.codehaus.aspectwerkz.transform.inlining.AspectInfo;
 import org.codehaus.aspectwerkz.transform.inlining.AspectModelManager;
 import org.codehaus.aspectwerkz.transform.inlining.EmittedJoinPoint;
 import org.codehaus.aspectwerkz.transform.inlining.spi.AspectModel;
+import org.codehaus.aspectwerkz.util.Strings;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Label;
@@ -54,6 +62,15 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
 
     public static final boolean DUMP_JIT_CLASSES = AspectWerkzPreProcessor.DUMP_AFTER;
 
+    /**
+     * The registers of the invoke method, relative to the caller register: the join point instance, return value,
+     * exceptions and loop index come first, then the cflow state, the runtime check mask, the invocation numbers of
+     * the sampled aspects (two registers each) and the locals of the inlined and asynchronous advices
+     */
+    private static final int CFLOW_STATE_REGISTER = 6;
+    private static final int RUNTIME_CHECK_MASK_REGISTER = 7;
+    private static final int SAMPLED_INVOCATION_REGISTER = 8;
+
     protected final String m_callerClassName;
     protected final String m_calleeClassName;
     protected final String m_callerClassSignature;
@@ -92,6 +109,48 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
 
     private CompilerInput m_input;
 
+    /**
+     * True if the invoke method gathers the join point statistics
+     */
+    private boolean m_gathersStatistics = false;
+
+    /**
+     * The asynchronous advices dispatched by the invoke method, see AsyncAdviceDispatcher
+     */
+    private final List m_asyncAdviceMethodInfos = new ArrayList();
+
+    /**
+     * The sampled advices guarded by the invoke method, see AdviceSampler
+     */
+    private final List m_sampledAdviceMethodInfos = new ArrayList();
+
+    /**
+     * The qualified names of the aspects of the sampled advices, the index of an aspect being the one of its
+     * invocation number in the registers of the invoke method and in the fields of the join point
+     */
+    private final List m_sampledAspectQualifiedNames = new ArrayList();
+
+    /**
+     * The advices whose runtime check is memoized in the RuntimeCheckCache, the index of an advice being its bit in
+     * the mask, or null if the join point does not use the cache
+     */
+    private List m_runtimeCheckAdviceInfos;
+
+    /**
+     * The relink target interface of the join point, see -Daspectwerkz.transform.relinkjp
+     */
+    private final String m_relinkTargetInterfaceName;
+
+    /**
+     * True if the join point class is an initial join point class that can be relinked
+     */
+    private final boolean m_isRelinkable;
+
+    /**
+     * True if the join point class is a redefined join point class that initial ones can be relinked to
+     */
+    private final boolean m_isRelinkTarget;
+
     /**
      * Creates a new join point compiler instance.
      *
@@ -114,6 +173,11 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
         m_calleeMemberDesc = emittedJoinPoint.getCalleeMemberDesc();
         m_calleeMemberModifiers = emittedJoinPoint.getCalleeMemberModifiers();
 
+        m_relinkTargetInterfaceName = emittedJoinPoint.getJoinPointClassName() + RELINK_TARGET_INTERFACE_SUFFIX;
+        final boolean isRedefinition = !m_joinPointClassName.equals(emittedJoinPoint.getJoinPointClassName());
+        m_isRelinkable = AspectWerkzPreProcessor.RELINKJP && !isRedefinition;
+        m_isRelinkTarget = AspectWerkzPreProcessor.RELINKJP && isRedefinition;
+
         // NOTE: internal compiler class name format is ALWAYS using '/'
         m_callerClassName = emittedJoinPoint.getCallerClassName().replace('.', '/');
         m_calleeClassName = emittedJoinPoint.getCalleeClassName().replace('.', '/');
@@ -171,6 +235,9 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
         m_requiresThisOrTarget = requiresThisOrTarget();
         m_requiresJoinPoint = requiresJoinPoint();
         m_requiresProceedMethod = requiresProceedMethod();
+        if (AspectWerkzPreProcessor.INLINECACHE) {
+            m_runtimeCheckAdviceInfos = getRuntimeCheckAdviceInfos();
+        }
 
         m_cw = AsmHelper.newClassWriter(true);
     }
@@ -248,10 +315,30 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
 
         m_aspectInfos = (AspectInfo[]) aspectInfoByQualifiedName.values().toArray(new AspectInfo[aspectInfoByQualifiedName.size()]);
 
+        collectSampledAspects(m_beforeAdviceMethodInfos);
+        collectSampledAspects(m_aroundAdviceMethodInfos);
+        collectSampledAspects(m_afterReturningAdviceMethodInfos);
+        collectSampledAspects(m_afterFinallyAdviceMethodInfos);
+        collectSampledAspects(m_afterThrowingAdviceMethodInfos);
+
         //
 
     }
 
+    /**
+     * Collects the aspects of the sampled advices.
+     *
+     * @param adviceMethodInfos
+     */
+    private void collectSampledAspects(final AdviceMethodInfo[] adviceMethodInfos) {
+        for (int i = 0; i < adviceMethodInfos.length; i++) {
+            final String aspectQualifiedName = adviceMethodInfos[i].getAspectInfo().getAspectQualifiedName();
+            if (isSampled(adviceMethodInfos[i]) && !m_sampledAspectQualifiedNames.contains(aspectQualifiedName)) {
+                m_sampledAspectQualifiedNames.add(aspectQualifiedName);
+            }
+        }
+    }
+
     /**
      * Checks if the caller class implements the Advisable interface.
      *
@@ -422,18 +509,24 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
      * @return the generated, compiled and loaded join point class
      */
     public final byte[] compile() {
+        final long start = WeaverMetrics.ENABLED ? WeaverMetrics.now() : 0L;
         try {
             createClassHeader();
             createFieldsCommonToAllJoinPoints();
             createJoinPointSpecificFields();
             createMandatoryMethodInAspectModels();
             createStaticInitializer();
-            createClinit();
             createInit();
             createUtilityMethods();
+            if (m_runtimeCheckAdviceInfos != null) {
+                createRuntimeCheckMaskMethod();
+            }
             // not needed anymore - createCopyMethod();//TODO remove
             createGetSignatureMethod();
             createInvokeMethod();
+            if (m_isRelinkTarget) {
+                createInvokeRelinkedMethod();
+            }
             if (m_requiresProceedMethod) {
                 // prepare a new CompilerInput since jp index changes when in proceed()
                 createProceedMethod(m_input.getCopyForProceed());
@@ -441,6 +534,8 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
             if (m_requiresJoinPoint) {
                 createGetRttiMethod();
             }
+            // last since it depends on the advices found in the advice invocations
+            createClinit();
             m_cw.visitEnd();
 
             if (DUMP_JIT_CLASSES
@@ -463,6 +558,10 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
                 buf.append(e.toString());
             }
             throw new RuntimeException(buf.toString());
+        } finally {
+            if (WeaverMetrics.ENABLED) {
+                WeaverMetrics.joinPointCompiled(WeaverMetrics.now() - start);
+            }
         }
     }
 
@@ -552,10 +651,335 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
                 INVOKESTATIC, m_joinPointClassName,
                 STATIC_INITIALIZATION_METHOD_NAME, NO_PARAM_RETURN_VOID_SIGNATURE
         );
+        if (m_runtimeCheckAdviceInfos != null) {
+            createRuntimeCheckCache(cv);
+        }
+        if (m_gathersStatistics) {
+            createStatistics(cv);
+        }
+        if (!m_asyncAdviceMethodInfos.isEmpty()) {
+            createAsyncAdvices(cv);
+        }
+        if (!m_sampledAdviceMethodInfos.isEmpty()) {
+            createAdviceSamplers(cv);
+        }
         cv.visitInsn(RETURN);
         cv.visitMaxs(0, 0);
     }
 
+    /**
+     * Adds and initializes the static field for the runtime check cache.
+     *
+     * @param cv
+     */
+    private void createRuntimeCheckCache(final MethodVisitor cv) {
+        m_cw.visitField(
+                ACC_PRIVATE + ACC_STATIC + ACC_FINAL,
+                RUNTIME_CHECK_CACHE_FIELD_NAME,
+                RUNTIME_CHECK_CACHE_CLASS_SIGNATURE,
+                null,
+                null
+        );
+        cv.visitTypeInsn(NEW, RUNTIME_CHECK_CACHE_CLASS_NAME);
+        cv.visitInsn(DUP);
+        cv.visitMethodInsn(INVOKESPECIAL, RUNTIME_CHECK_CACHE_CLASS_NAME, INIT_METHOD_NAME, NO_PARAM_RETURN_VOID_SIGNATURE);
+        cv.visitFieldInsn(PUTSTATIC, m_joinPointClassName, RUNTIME_CHECK_CACHE_FIELD_NAME, RUNTIME_CHECK_CACHE_CLASS_SIGNATURE);
+    }
+
+    /**
+     * Creates the static method that returns the mask of the memoized advices that apply to the given target: it
+     * looks the target class up in the runtime check cache, and on a miss evaluates the runtime check of each advice
+     * and memoizes the resulting mask.
+     */
+    private void createRuntimeCheckMaskMethod() {
+        final MethodVisitor cv = m_cw.visitMethod(
+                ACC_PRIVATE + ACC_STATIC,
+                RUNTIME_CHECK_MASK_METHOD_NAME,
+                RUNTIME_CHECK_MASK_METHOD_SIGNATURE,
+                null,
+                null
+        );
+        final Label returnLabel = new Label();
+        cv.visitFieldInsn(GETSTATIC, m_joinPointClassName, RUNTIME_CHECK_CACHE_FIELD_NAME, RUNTIME_CHECK_CACHE_CLASS_SIGNATURE);
+        cv.visitVarInsn(ALOAD, 0);
+        cv.visitMethodInsn(
+                INVOKEVIRTUAL,
+                RUNTIME_CHECK_CACHE_CLASS_NAME,
+                RUNTIME_CHECK_CACHE_LOOKUP_METHOD_NAME,
+                RUNTIME_CHECK_CACHE_LOOKUP_METHOD_SIGNATURE
+        );
+        cv.visitVarInsn(ISTORE, 1);
+        cv.visitVarInsn(ILOAD, 1);
+        cv.visitJumpInsn(IFGE, returnLabel);
+
+        // full check, the target is the only parameter
+        final CompilerInput input = new CompilerInput();
+        input.joinPointClassName = m_joinPointClassName;
+        input.isOptimizedJoinPoint = true;
+        input.calleeIndex = 0;
+        cv.visitInsn(ICONST_0);
+        cv.visitVarInsn(ISTORE, 1);
+        for (int i = 0; i < m_runtimeCheckAdviceInfos.size(); i++) {
+            final AdviceInfo adviceInfo = (AdviceInfo) m_runtimeCheckAdviceInfos.get(i);
+            final Label notApplicableLabel = new Label();
+            new RuntimeCheckVisitor(
+                    cv,
+                    adviceInfo.getExpressionInfo(),
+                    input,
+                    RuntimeCheckVisitor.NULL_PER_OBJECT_TYPE,
+                    adviceInfo.getAspectQualifiedName()
+            ).pushCheckOnStack(adviceInfo);
+            cv.visitJumpInsn(IFEQ, notApplicableLabel);
+            cv.visitVarInsn(ILOAD, 1);
+            cv.visitLdcInsn(new Integer(1 << i));
+            cv.visitInsn(IOR);
+            cv.visitVarInsn(ISTORE, 1);
+            cv.visitLabel(notApplicableLabel);
+        }
+        cv.visitFieldInsn(GETSTATIC, m_joinPointClassName, RUNTIME_CHECK_CACHE_FIELD_NAME, RUNTIME_CHECK_CACHE_CLASS_SIGNATURE);
+        cv.visitVarInsn(ALOAD, 0);
+        cv.visitVarInsn(ILOAD, 1);
+        cv.visitMethodInsn(
+                INVOKEVIRTUAL,
+                RUNTIME_CHECK_CACHE_CLASS_NAME,
+                RUNTIME_CHECK_CACHE_UPDATE_METHOD_NAME,
+                RUNTIME_CHECK_CACHE_UPDATE_METHOD_SIGNATURE
+        );
+
+        cv.visitLabel(returnLabel);
+        cv.visitVarInsn(ILOAD, 1);
+        cv.visitInsn(IRETURN);
+        cv.visitMaxs(0, 0);
+    }
+
+    /**
+     * Checks if the invoke method needs the runtime check mask, that is if a before or after advice is memoized in the
+     * runtime check cache. The around advices are checked in the proceed method.
+     *
+     * @return true if the invoke method looks the target up in the runtime check cache
+     */
+    private boolean hasRuntimeCheckMask() {
+        if (m_runtimeCheckAdviceInfos == null) {
+            return false;
+        }
+        int aroundCount = 0;
+        for (int i = 0; i < m_aroundAdviceMethodInfos.length; i++) {
+            if (m_runtimeCheckAdviceInfos.contains(m_aroundAdviceMethodInfos[i].getAdviceInfo())) {
+                aroundCount++;
+            }
+        }
+        return m_runtimeCheckAdviceInfos.size() > aroundCount;
+    }
+
+    /**
+     * Returns the advices whose runtime check only depends on the target class, hence can be memoized in the
+     * runtime check cache: the target(..) checks of the advices that have no cflow and whose aspect is not perThis /
+     * perTarget. The cache is used when there are at least two of them, since a single instanceof is cheaper than
+     * the cache lookup. It is not used for constructor call join points, whose target only exists after the call.
+     *
+     * @return the advice infos, or null if the runtime check cache is not used
+     */
+    private List getRuntimeCheckAdviceInfos() {
+        if (m_joinPointType == JoinPointType.CONSTRUCTOR_CALL_INT) {
+            return null;
+        }
+        final List adviceInfos = new ArrayList();
+        final AdviceMethodInfo[][] adviceMethodInfos = new AdviceMethodInfo[][]{
+            m_beforeAdviceMethodInfos,
+            m_aroundAdviceMethodInfos,
+            m_afterFinallyAdviceMethodInfos,
+            m_afterReturningAdviceMethodInfos,
+            m_afterThrowingAdviceMethodInfos
+        };
+        for (int i = 0; i < adviceMethodInfos.length; i++) {
+            for (int j = 0; j < adviceMethodInfos[i].length; j++) {
+                final AdviceInfo adviceInfo = adviceMethodInfos[i][j].getAdviceInfo();
+                final DeploymentModel deploymentModel = adviceInfo.getAspectDeploymentModel();
+                if (adviceInfo.hasTargetWithRuntimeCheck()
+                    && !adviceInfo.getAdviceDefinition().hasCflowOrCflowBelow()
+                    && !DeploymentModel.PER_THIS.equals(deploymentModel)
+                    && !DeploymentModel.PER_TARGET.equals(deploymentModel)
+                    && adviceInfos.size() < RuntimeCheckCache.MAX_ADVICES) {
+                    adviceInfos.add(adviceInfo);
+                }
+            }
+        }
+        return adviceInfos.size() < 2 ? null : adviceInfos;
+    }
+
+    /**
+     * Adds and initializes the static field for the join point statistics.
+     *
+     * @param cv
+     */
+    private void createStatistics(final MethodVisitor cv) {
+        m_cw.visitField(
+                ACC_PRIVATE + ACC_STATIC + ACC_FINAL,
+                STATISTICS_FIELD_NAME,
+                STATISTICS_CLASS_SIGNATURE,
+                null,
+                null
+        );
+        final List pointcuts = getPointcuts();
+        cv.visitLdcInsn(m_joinPointClassName);
+        AsmHelper.loadIntegerConstant(cv, pointcuts.size());
+        cv.visitTypeInsn(ANEWARRAY, STRING_CLASS_NAME);
+        for (int i = 0; i < pointcuts.size(); i++) {
+            cv.visitInsn(DUP);
+            AsmHelper.loadIntegerConstant(cv, i);
+            cv.visitLdcInsn(pointcuts.get(i));
+            cv.visitInsn(AASTORE);
+        }
+        cv.visitFieldInsn(GETSTATIC, m_joinPointClassName, THIS_CLASS_FIELD_NAME_IN_JP, CLASS_CLASS_SIGNATURE);
+        cv.visitMethodInsn(INVOKEVIRTUAL, CLASS_CLASS, GETCLASSLOADER_METHOD_NAME, CLASS_CLASS_GETCLASSLOADER_METHOD_SIGNATURE);
+        cv.visitMethodInsn(
+                INVOKESTATIC,
+                STATISTICS_CLASS_NAME,
+                STATISTICS_REGISTER_METHOD_NAME,
+                STATISTICS_REGISTER_METHOD_SIGNATURE
+        );
+        cv.visitFieldInsn(PUTSTATIC, m_joinPointClassName, STATISTICS_FIELD_NAME, STATISTICS_CLASS_SIGNATURE);
+    }
+
+    /**
+     * Adds and initializes the static fields for the asynchronous advices.
+     *
+     * @param cv
+     */
+    private void createAsyncAdvices(final MethodVisitor cv) {
+        for (int i = 0; i < m_asyncAdviceMethodInfos.size(); i++) {
+            final AdviceMethodInfo adviceMethodInfo = (AdviceMethodInfo) m_asyncAdviceMethodInfos.get(i);
+            final AspectInfo aspectInfo = adviceMethodInfo.getAspectInfo();
+            final Map parameters = aspectInfo.getAspectDefinition().getParameters();
+            m_cw.visitField(
+                    ACC_PRIVATE + ACC_STATIC + ACC_FINAL,
+                    ASYNC_ADVICE_FIELD_NAME + i,
+                    ASYNC_ADVICE_CLASS_SIGNATURE,
+                    null,
+                    null
+            );
+            cv.visitLdcInsn(aspectInfo.getAspectQualifiedName());
+            cv.visitLdcInsn(aspectInfo.getAspectClassName().replace('/', '.'));
+            cv.visitLdcInsn(adviceMethodInfo.getAdviceInfo().getMethodName());
+            cv.visitLdcInsn(adviceMethodInfo.getAdviceInfo().getMethodSignature());
+            // not a byte constant
+            cv.visitLdcInsn(
+                    new Integer(
+                            getIntParameter(
+                                    parameters,
+                                    AsyncAdviceDispatcher.QUEUE_SIZE_PARAMETER,
+                                    AsyncAdviceDispatcher.DEFAULT_QUEUE_SIZE
+                            )
+                    )
+            );
+            cv.visitLdcInsn(
+                    new Integer(
+                            getIntParameter(
+                                    parameters,
+                                    AsyncAdviceDispatcher.BATCH_SIZE_PARAMETER,
+                                    AsyncAdviceDispatcher.DEFAULT_BATCH_SIZE
+                            )
+                    )
+            );
+            final String policy = (String) parameters.get(AsyncAdviceDispatcher.POLICY_PARAMETER);
+            cv.visitLdcInsn((policy != null) ? policy.trim() : AsyncAdviceDispatcher.POLICY_BLOCK);
+            cv.visitFieldInsn(GETSTATIC, m_joinPointClassName, THIS_CLASS_FIELD_NAME_IN_JP, CLASS_CLASS_SIGNATURE);
+            cv.visitMethodInsn(INVOKEVIRTUAL, CLASS_CLASS, GETCLASSLOADER_METHOD_NAME, CLASS_CLASS_GETCLASSLOADER_METHOD_SIGNATURE);
+            cv.visitMethodInsn(
+                    INVOKESTATIC,
+                    ASYNC_ADVICE_DISPATCHER_CLASS_NAME,
+                    GET_ASYNC_ADVICE_METHOD_NAME,
+                    GET_ASYNC_ADVICE_METHOD_SIGNATURE
+            );
+            cv.visitFieldInsn(PUTSTATIC, m_joinPointClassName, ASYNC_ADVICE_FIELD_NAME + i, ASYNC_ADVICE_CLASS_SIGNATURE);
+        }
+    }
+
+    /**
+     * Adds and initializes the static fields for the samplers of the sampled advices.
+     *
+     * @param cv
+     */
+    private void createAdviceSamplers(final MethodVisitor cv) {
+        for (int i = 0; i < m_sampledAdviceMethodInfos.size(); i++) {
+            final AdviceMethodInfo adviceMethodInfo = (AdviceMethodInfo) m_sampledAdviceMethodInfos.get(i);
+            final AspectInfo aspectInfo = adviceMethodInfo.getAspectInfo();
+            final String adviceName = adviceMethodInfo.getAdviceInfo().getMethodName();
+            m_cw.visitField(
+                    ACC_PRIVATE + ACC_STATIC + ACC_FINAL,
+                    ADVICE_SAMPLER_FIELD_NAME + i,
+                    ADVICE_SAMPLER_CLASS_SIGNATURE,
+                    null,
+                    null
+            );
+            cv.visitLdcInsn(aspectInfo.getAspectQualifiedName());
+            cv.visitLdcInsn(adviceName);
+            // not a byte constant
+            cv.visitLdcInsn(
+                    new Integer(
+                            AdviceSampler.getDefinedRate(aspectInfo.getAspectDefinition().getParameters(), adviceName)
+                    )
+            );
+            cv.visitFieldInsn(GETSTATIC, m_joinPointClassName, THIS_CLASS_FIELD_NAME_IN_JP, CLASS_CLASS_SIGNATURE);
+            cv.visitMethodInsn(INVOKEVIRTUAL, CLASS_CLASS, GETCLASSLOADER_METHOD_NAME, CLASS_CLASS_GETCLASSLOADER_METHOD_SIGNATURE);
+            cv.visitMethodInsn(
+                    INVOKESTATIC,
+                    ADVICE_SAMPLER_CLASS_NAME,
+                    GET_ADVICE_SAMPLER_METHOD_NAME,
+                    GET_ADVICE_SAMPLER_METHOD_SIGNATURE
+            );
+            cv.visitFieldInsn(PUTSTATIC, m_joinPointClassName, ADVICE_SAMPLER_FIELD_NAME + i, ADVICE_SAMPLER_CLASS_SIGNATURE);
+        }
+    }
+
+    /**
+     * Returns an int aspect parameter.
+     *
+     * @param parameters
+     * @param name
+     * @param defaultValue
+     * @return the value, or the default value if not set or invalid
+     */
+    private static int getIntParameter(final Map parameters, final String name, final int defaultValue) {
+        final String value = (String) parameters.get(name);
+        if (value != null) {
+            try {
+                final int intValue = Integer.parseInt(value.trim());
+                if (intValue > 0) {
+                    return intValue;
+                }
+            } catch (NumberFormatException e) {
+                // use the default value
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the distinct pointcuts of the advices of the join point.
+     *
+     * @return a list of String
+     */
+    private List getPointcuts() {
+        final AdviceMethodInfo[][] adviceMethodInfos = new AdviceMethodInfo[][]{
+            m_beforeAdviceMethodInfos,
+            m_aroundAdviceMethodInfos,
+            m_afterReturningAdviceMethodInfos,
+            m_afterThrowingAdviceMethodInfos,
+            m_afterFinallyAdviceMethodInfos
+        };
+        final List pointcuts = new ArrayList();
+        for (int i = 0; i < adviceMethodInfos.length; i++) {
+            for (int j = 0; j < adviceMethodInfos[i].length; j++) {
+                ExpressionInfo expressionInfo = adviceMethodInfos[i][j].getAdviceInfo().getExpressionInfo();
+                if (expressionInfo != null && !pointcuts.contains(expressionInfo.toString())) {
+                    pointcuts.add(expressionInfo.toString());
+                }
+            }
+        }
+        return pointcuts;
+    }
+
     /**
      * Creates the init method for the join point.
      */
@@ -618,6 +1042,10 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
             }
         }
 
+        if (m_isRelinkTarget) {
+            interfaces.add(m_relinkTargetInterfaceName);
+        }
+
         int i = 1;
         String[] interfaceArr = new String[interfaces.size() + 1];
         interfaceArr[0] = getJoinPointInterface();
@@ -810,22 +1238,59 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
 
         final String invokeDesc = buildInvokeMethodSignature();
 
+        // when gathering statistics the advice chain goes in a private method called by the measuring invoke method
+        m_gathersStatistics = gathersStatistics();
+        if (m_gathersStatistics) {
+            createStatisticsInvokeMethod(invokeDesc);
+        }
+
         // create the method
         MethodVisitor cv = m_cw.visitMethod(
-                ACC_PUBLIC + ACC_FINAL + ACC_STATIC,
-                INVOKE_METHOD_NAME,
+                m_gathersStatistics ? ACC_PRIVATE + ACC_STATIC : ACC_PUBLIC + ACC_FINAL + ACC_STATIC,
+                m_gathersStatistics ? INVOKE_ADVICE_CHAIN_METHOD_NAME : INVOKE_METHOD_NAME,
                 invokeDesc,
                 null,
                 new String[]{
                     THROWABLE_CLASS_NAME
                 }
         );
+        if (m_isRelinkable && !m_gathersStatistics) {
+            createRelinkTargetCheck(cv, invokeDesc);
+        }
 
         if (!m_input.isOptimizedJoinPoint) {
             // create a new JP and makes use of it
             createInvocationLocalJoinPointInstance(cv, m_input);
         }
 
+        // count the invocation once per sampled aspect, all the advices of the aspect are sampled from this count
+        if (!m_sampledAspectQualifiedNames.isEmpty()) {
+            m_input.sampledInvocationIndex = m_input.callerIndex + SAMPLED_INVOCATION_REGISTER;
+            createSampledInvocations(cv, m_input);
+        }
+
+        // fetch the cflow state once for the cflow runtime checks of all the before and after advices
+        if (hasCflowRuntimeCheck(m_beforeAdviceMethodInfos)
+            || hasCflowRuntimeCheck(m_afterFinallyAdviceMethodInfos)
+            || hasCflowRuntimeCheck(m_afterReturningAdviceMethodInfos)
+            || hasCflowRuntimeCheck(m_afterThrowingAdviceMethodInfos)) {
+            m_input.cflowStateIndex = m_input.callerIndex + CFLOW_STATE_REGISTER;
+            createCflowStateLocal(cv, m_input.cflowStateIndex);
+        }
+
+        // look the target up once in the runtime check cache for the before and after advices
+        if (hasRuntimeCheckMask()) {
+            m_input.runtimeCheckMaskIndex = m_input.callerIndex + RUNTIME_CHECK_MASK_REGISTER;
+            loadCallee(cv, m_input);
+            cv.visitMethodInsn(
+                    INVOKESTATIC,
+                    m_joinPointClassName,
+                    RUNTIME_CHECK_MASK_METHOD_NAME,
+                    RUNTIME_CHECK_MASK_METHOD_SIGNATURE
+            );
+            cv.visitVarInsn(ISTORE, m_input.runtimeCheckMaskIndex);
+        }
+
         //FIXME: see loadAspect and AssociationScopeTest_2_1456425365_738_9001546___AW_JoinPoint f.e.
         // there is redundant checks because
         // the system perObject aspect for a perX aspect will be called *AFTER* the initializeInstanceLevelAspects
@@ -855,10 +1320,234 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
 //            );
             createPartOfInvokeMethodWithAllAdviceTypes(cv, m_input);
         }
+        m_input.cflowStateIndex = INDEX_NOTAVAILABLE;
+        m_input.runtimeCheckMaskIndex = INDEX_NOTAVAILABLE;
+        m_input.sampledInvocationIndex = INDEX_NOTAVAILABLE;
 
         cv.visitMaxs(0, 0);
     }
 
+    /**
+     * Counts the invocation of the join point for each sampled aspect, in the registers from the sampled invocation
+     * index. The invocation number of an aspect with sampled around advices is also stored in the join point instance
+     * for the proceed method.
+     *
+     * @param cv
+     * @param input
+     */
+    private void createSampledInvocations(final MethodVisitor cv, final CompilerInput input) {
+        for (int i = 0; i < m_sampledAspectQualifiedNames.size(); i++) {
+            final String aspectQualifiedName = (String) m_sampledAspectQualifiedNames.get(i);
+            final int index = input.sampledInvocationIndex + 2 * i;
+            // any sampler of the aspect counts for all of them
+            AdviceMethodInfo samplerAdviceMethodInfo = null;
+            boolean hasSampledAroundAdvice = false;
+            for (int j = 0; j < m_aroundAdviceMethodInfos.length; j++) {
+                if (isSampled(m_aroundAdviceMethodInfos[j])
+                    && m_aroundAdviceMethodInfos[j].getAspectInfo().getAspectQualifiedName().equals(aspectQualifiedName)) {
+                    samplerAdviceMethodInfo = m_aroundAdviceMethodInfos[j];
+                    hasSampledAroundAdvice = true;
+                    break;
+                }
+            }
+            if (samplerAdviceMethodInfo == null) {
+                samplerAdviceMethodInfo = getSampledAdviceMethodInfo(aspectQualifiedName);
+            }
+            cv.visitFieldInsn(
+                    GETSTATIC,
+                    m_joinPointClassName,
+                    ADVICE_SAMPLER_FIELD_NAME + getSamplerIndex(samplerAdviceMethodInfo),
+                    ADVICE_SAMPLER_CLASS_SIGNATURE
+            );
+            cv.visitMethodInsn(
+                    INVOKEVIRTUAL,
+                    ADVICE_SAMPLER_CLASS_NAME,
+                    NEXT_INVOCATION_METHOD_NAME,
+                    NEXT_INVOCATION_METHOD_SIGNATURE
+            );
+            cv.visitVarInsn(LSTORE, index);
+            if (hasSampledAroundAdvice) {
+                m_cw.visitField(ACC_PRIVATE, SAMPLED_INVOCATION_FIELD_NAME + i, J, null, null);
+                cv.visitVarInsn(ALOAD, input.joinPointInstanceIndex);
+                cv.visitVarInsn(LLOAD, index);
+                cv.visitFieldInsn(PUTFIELD, m_joinPointClassName, SAMPLED_INVOCATION_FIELD_NAME + i, J);
+            }
+        }
+    }
+
+    /**
+     * Returns the first sampled before or after advice of an aspect.
+     *
+     * @param aspectQualifiedName
+     * @return the advice method info, or null if none
+     */
+    private AdviceMethodInfo getSampledAdviceMethodInfo(final String aspectQualifiedName) {
+        final AdviceMethodInfo[][] adviceMethodInfos = new AdviceMethodInfo[][]{
+            m_beforeAdviceMethodInfos,
+            m_afterReturningAdviceMethodInfos,
+            m_afterFinallyAdviceMethodInfos,
+            m_afterThrowingAdviceMethodInfos
+        };
+        for (int i = 0; i < adviceMethodInfos.length; i++) {
+            for (int j = 0; j < adviceMethodInfos[i].length; j++) {
+                if (isSampled(adviceMethodInfos[i][j])
+                    && adviceMethodInfos[i][j].getAspectInfo().getAspectQualifiedName().equals(aspectQualifiedName)) {
+                    return adviceMethodInfos[i][j];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the join point gathers statistics, given the -Daspectwerkz.transform.jpstats option and the pointcuts
+     * the statistics have been turned on or off for (see JoinPointStatistics).
+     *
+     * @return true if so
+     */
+    private boolean gathersStatistics() {
+        if (!JoinPointStatistics.hasPointcutSettings()) {
+            return JoinPointStatistics.isEnabled();
+        }
+        return JoinPointStatistics.isEnabled(
+                JoinPointFactory.getExpressionContext(
+                        m_model.getEmittedJoinPoint(), m_model.getThisClassInfo().getClassLoader()
+                )
+        );
+    }
+
+    /**
+     * Creates the 'invoke' method that gathers the join point statistics around the invocation of the advice chain.
+     *
+     * @param invokeDesc
+     */
+    private void createStatisticsInvokeMethod(final String invokeDesc) {
+        MethodVisitor cv = m_cw.visitMethod(
+                ACC_PUBLIC + ACC_FINAL + ACC_STATIC,
+                INVOKE_METHOD_NAME,
+                invokeDesc,
+                null,
+                new String[]{
+                    THROWABLE_CLASS_NAME
+                }
+        );
+        if (m_isRelinkable) {
+            createRelinkTargetCheck(cv, invokeDesc);
+        }
+        final Type[] argumentTypes = Type.getArgumentTypes(invokeDesc);
+        final int startIndex = AsmHelper.getRegisterDepth(argumentTypes);
+        cv.visitMethodInsn(INVOKESTATIC, STATISTICS_CLASS_NAME, STATISTICS_NOW_METHOD_NAME, STATISTICS_NOW_METHOD_SIGNATURE);
+        cv.visitVarInsn(LSTORE, startIndex);
+
+        final Label tryLabel = new Label();
+        final Label endTryLabel = new Label();
+        final Label handlerLabel = new Label();
+        cv.visitLabel(tryLabel);
+        AsmHelper.loadArgumentTypes(cv, argumentTypes, true);
+        cv.visitMethodInsn(INVOKESTATIC, m_joinPointClassName, INVOKE_ADVICE_CHAIN_METHOD_NAME, invokeDesc);
+        cv.visitLabel(endTryLabel);
+        cv.visitFieldInsn(GETSTATIC, m_joinPointClassName, STATISTICS_FIELD_NAME, STATISTICS_CLASS_SIGNATURE);
+        cv.visitVarInsn(LLOAD, startIndex);
+        cv.visitMethodInsn(
+                INVOKEVIRTUAL, STATISTICS_CLASS_NAME, STATISTICS_EXIT_METHOD_NAME, STATISTICS_RECORD_METHOD_SIGNATURE
+        );
+        AsmHelper.addReturnStatement(cv, Type.getReturnType(invokeDesc));
+
+        cv.visitLabel(handlerLabel);
+        cv.visitFieldInsn(GETSTATIC, m_joinPointClassName, STATISTICS_FIELD_NAME, STATISTICS_CLASS_SIGNATURE);
+        cv.visitVarInsn(LLOAD, startIndex);
+        cv.visitMethodInsn(
+                INVOKEVIRTUAL, STATISTICS_CLASS_NAME, STATISTICS_EXCEPTION_METHOD_NAME, STATISTICS_RECORD_METHOD_SIGNATURE
+        );
+        cv.visitInsn(ATHROW);
+        cv.visitTryCatchBlock(tryLabel, endTryLabel, handlerLabel, null);
+        cv.visitMaxs(0, 0);
+    }
+
+    /**
+     * Adds the relink target field and makes the 'invoke' method delegate to the relink target when there is one.
+     * <pre>
+     *      private static volatile Object RELINK_TARGET;
+     *      ...
+     *      if (RELINK_TARGET != null) {
+     *          return (([jp]$RelinkTarget) RELINK_TARGET).invokeRelinked(..);
+     *      }
+     * </pre>
+     * The field is typed as Object since the relink target interface is only defined when the join point is
+     * redefined, and reflection on the join point class resolves the types of its fields.
+     * The check only uses the stack so that it does not interfere with the local variables of the invoke method.
+     *
+     * @param cv
+     * @param invokeDesc
+     */
+    private void createRelinkTargetCheck(final MethodVisitor cv, final String invokeDesc) {
+        m_cw.visitField(
+                ACC_PRIVATE + ACC_STATIC + ACC_VOLATILE,
+                RELINK_TARGET_FIELD_NAME,
+                OBJECT_CLASS_SIGNATURE,
+                null,
+                null
+        );
+        final Label notRelinkedLabel = new Label();
+        cv.visitFieldInsn(GETSTATIC, m_joinPointClassName, RELINK_TARGET_FIELD_NAME, OBJECT_CLASS_SIGNATURE);
+        cv.visitInsn(DUP);
+        cv.visitJumpInsn(IFNULL, notRelinkedLabel);
+        cv.visitTypeInsn(CHECKCAST, m_relinkTargetInterfaceName);
+        AsmHelper.loadArgumentTypes(cv, Type.getArgumentTypes(invokeDesc), true);
+        cv.visitMethodInsn(INVOKEINTERFACE, m_relinkTargetInterfaceName, INVOKE_RELINKED_METHOD_NAME, invokeDesc);
+        AsmHelper.addReturnStatement(cv, Type.getReturnType(invokeDesc));
+        cv.visitLabel(notRelinkedLabel);
+        cv.visitInsn(POP);
+    }
+
+    /**
+     * Creates the 'invokeRelinked' method of the relink target interface, that delegates to the 'invoke' method.
+     */
+    private void createInvokeRelinkedMethod() {
+        final String invokeDesc = buildInvokeMethodSignature();
+        MethodVisitor cv = m_cw.visitMethod(
+                ACC_PUBLIC + ACC_FINAL,
+                INVOKE_RELINKED_METHOD_NAME,
+                invokeDesc,
+                null,
+                new String[]{
+                    THROWABLE_CLASS_NAME
+                }
+        );
+        AsmHelper.loadArgumentTypes(cv, Type.getArgumentTypes(invokeDesc), false);
+        cv.visitMethodInsn(INVOKESTATIC, m_joinPointClassName, INVOKE_METHOD_NAME, invokeDesc);
+        AsmHelper.addReturnStatement(cv, Type.getReturnType(invokeDesc));
+        cv.visitMaxs(0, 0);
+    }
+
+    /**
+     * Compiles the relink target interface of the join point, which holds the 'invokeRelinked' method.
+     *
+     * @return the interface bytecode
+     */
+    public byte[] compileRelinkTargetInterface() {
+        final ClassWriter cw = AsmHelper.newClassWriter(true);
+        cw.visit(
+                AsmHelper.JAVA_VERSION,
+                ACC_PUBLIC + ACC_ABSTRACT + ACC_INTERFACE,
+                m_relinkTargetInterfaceName,
+                null,
+                OBJECT_CLASS_NAME,
+                null
+        );
+        cw.visitMethod(
+                ACC_PUBLIC + ACC_ABSTRACT,
+                INVOKE_RELINKED_METHOD_NAME,
+                buildInvokeMethodSignature(),
+                null,
+                new String[]{
+                    THROWABLE_CLASS_NAME
+                }
+        ).visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
     /**
      * Initializes instance level aspects, retrieves them from the target instance through the
      * <code>HasInstanceLevelAspect</code> interfaces.
@@ -1180,6 +1869,13 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
 
         incrementStackFrameCounter(cv);
 
+        // fetch the cflow state once for the cflow runtime checks of the around advices, in the register
+        // after this, the return value and the exception
+        if (hasCflowRuntimeCheck(m_aroundAdviceMethodInfos)) {
+            input.cflowStateIndex = 3;
+            createCflowStateLocal(cv, input.cflowStateIndex);
+        }
+
         // set up the labels
         Label tryLabel = new Label();
         Label defaultCaseLabel = new Label();
@@ -1218,6 +1914,7 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
             // gather advice info
             AdviceMethodInfo adviceInfo = m_aroundAdviceMethodInfos[i];
 
+            Label endSamplingLabel = beginSampling(cv, input, adviceInfo);
             Label endInstanceOflabel = beginRuntimeCheck(cv, input, adviceInfo.getAdviceInfo());
 
             // get the aspect instance
@@ -1240,12 +1937,13 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
             );
             cv.visitVarInsn(ASTORE, 1);
 
-            // we need to handle the case when the advice was skipped due to runtime check
-            // that is : if (runtimeCheck) { ret = advice() } else { ret = proceed() }
-            if (endInstanceOflabel != null) {
+            // we need to handle the case when the advice was skipped due to runtime check or sampling
+            // that is : if (sampled && runtimeCheck) { ret = advice() } else { ret = proceed() }
+            if (endInstanceOflabel != null || endSamplingLabel != null) {
                 Label elseInstanceOfLabel = new Label();
                 cv.visitJumpInsn(GOTO, elseInstanceOfLabel);
                 endRuntimeCheck(cv, adviceInfo.getAdviceInfo(), endInstanceOflabel);
+                endSampling(cv, endSamplingLabel);
                 cv.visitVarInsn(ALOAD, 0);
                 cv.visitMethodInsn(INVOKESPECIAL, m_joinPointClassName, PROCEED_METHOD_NAME, PROCEED_METHOD_SIGNATURE);
                 cv.visitVarInsn(ASTORE, 1);
@@ -1342,7 +2040,8 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
                 continue;
             }
 
-            // runtime check for target() etc
+            // sampling guard and runtime check for target() etc
+            Label endSamplingLabel = beginSampling(cv, input, adviceMethodInfo);
             Label endInstanceOflabel = beginRuntimeCheck(cv, input, adviceMethodInfo.getAdviceInfo());
 
             //get the aspect instance
@@ -1355,15 +2054,11 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
             );
 
             // invoke the advice
-            cv.visitMethodInsn(
-                    INVOKEVIRTUAL,
-                    adviceMethodInfo.getAspectInfo().getAspectClassName(),
-                    adviceMethodInfo.getAdviceInfo().getMethodName(),
-                    adviceMethodInfo.getAdviceInfo().getMethodSignature()
-            );
+            createAdviceInvocation(cv, input, adviceMethodInfo);
 
-            // end label of runtime checks
+            // end label of runtime checks and sampling guard
             endRuntimeCheck(cv, adviceMethodInfo.getAdviceInfo(), endInstanceOflabel);
+            endSampling(cv, endSamplingLabel);
         }
 
         if (m_isThisAdvisable) {
@@ -1465,7 +2160,8 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
                 && input.calleeIndex < 0) {
             return;
         }
-        // runtime check for target() etc
+        // sampling guard and runtime check for target() etc
+        Label endSamplingLabel = beginSampling(cv, input, adviceMethodInfo);
         Label endInstanceOflabel = beginRuntimeCheck(cv, input, adviceMethodInfo.getAdviceInfo());
 
         // get the aspect instance
@@ -1476,15 +2172,134 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
                 cv, input, m_argumentTypes, adviceMethodInfo, specialArgIndex
         );
 
+        createAdviceInvocation(cv, input, adviceMethodInfo);
+
+        // end label of runtime checks and sampling guard
+        endRuntimeCheck(cv, adviceMethodInfo.getAdviceInfo(), endInstanceOflabel);
+        endSampling(cv, endSamplingLabel);
+    }
+
+    /**
+     * Invokes the before or after advice, or inlines its body if possible, with the aspect instance and the advice
+     * arguments on the stack.
+     *
+     * @param cv
+     * @param input
+     * @param adviceMethodInfo
+     */
+    private void createAdviceInvocation(final MethodVisitor cv,
+                                        final CompilerInput input,
+                                        final AdviceMethodInfo adviceMethodInfo) {
+        if (isAsync(adviceMethodInfo)) {
+            createAsyncAdviceDispatch(cv, input, adviceMethodInfo);
+        } else if (AdviceInliner.isInlinable(adviceMethodInfo)) {
+            AdviceInliner.inline(cv, adviceMethodInfo, getAdviceLocalsIndex(input));
+        } else {
+            cv.visitMethodInsn(
+                    INVOKEVIRTUAL,
+                    adviceMethodInfo.getAspectInfo().getAspectClassName(),
+                    adviceMethodInfo.getAdviceInfo().getMethodName(),
+                    adviceMethodInfo.getAdviceInfo().getMethodSignature()
+            );
+        }
+    }
+
+    /**
+     * Returns the first register that the inlined advice body and the asynchronous advice dispatch can use for the
+     * aspect instance and the advice arguments, after the registers of the invoke method.
+     *
+     * @param input
+     * @return the register index
+     */
+    private int getAdviceLocalsIndex(final CompilerInput input) {
+        return input.callerIndex + SAMPLED_INVOCATION_REGISTER + 2 * m_sampledAspectQualifiedNames.size();
+    }
+
+    /**
+     * Checks if the advice is an asynchronous advice, listed in the aspectwerkz.async.advices aspect parameter.
+     *
+     * @param adviceMethodInfo
+     * @return true if the advice is dispatched to the aspect async dispatcher
+     */
+    private static boolean isAsync(final AdviceMethodInfo adviceMethodInfo) {
+        final AdviceInfo adviceInfo = adviceMethodInfo.getAdviceInfo();
+        final String asyncAdvices = (String) adviceMethodInfo.getAspectInfo().getAspectDefinition().getParameters().get(
+                AsyncAdviceDispatcher.ASYNC_ADVICES_PARAMETER
+        );
+        if (asyncAdvices == null) {
+            return false;
+        }
+        final AdviceType type = adviceInfo.getType();
+        if (type != AdviceType.BEFORE && type != AdviceType.AFTER &&
+            type != AdviceType.AFTER_FINALLY && type != AdviceType.AFTER_RETURNING) {
+            return false;
+        }
+        final int[] argIndexes = adviceInfo.getMethodToArgIndexes();
+        for (int i = 0; i < argIndexes.length; i++) {
+            if (argIndexes[i] == AdviceInfo.JOINPOINT_ARG ||
+                argIndexes[i] == AdviceInfo.STATIC_JOINPOINT_ARG ||
+                argIndexes[i] == AdviceInfo.CUSTOM_JOIN_POINT_ARG) {
+                return false;
+            }
+        }
+        final String[] names = Strings.splitString(asyncAdvices, ",");
+        for (int i = 0; i < names.length; i++) {
+            final String name = names[i].trim();
+            if (name.equals("*") || name.equals(adviceInfo.getMethodName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Enqueues the asynchronous advice, with the aspect instance and the advice arguments on the stack: the arguments
+     * are stored in locals and copied in a new array.
+     *
+     * @param cv
+     * @param input
+     * @param adviceMethodInfo
+     */
+    private void createAsyncAdviceDispatch(final MethodVisitor cv,
+                                           final CompilerInput input,
+                                           final AdviceMethodInfo adviceMethodInfo) {
+        int index = m_asyncAdviceMethodInfos.indexOf(adviceMethodInfo);
+        if (index < 0) {
+            index = m_asyncAdviceMethodInfos.size();
+            m_asyncAdviceMethodInfos.add(adviceMethodInfo);
+        }
+
+        final int localIndex = getAdviceLocalsIndex(input);
+        final Type[] argumentTypes = Type.getArgumentTypes(adviceMethodInfo.getAdviceInfo().getMethodSignature());
+        final int[] argumentIndexes = new int[argumentTypes.length];
+        int argumentIndex = localIndex + 1;
+        for (int i = 0; i < argumentTypes.length; i++) {
+            argumentIndexes[i] = argumentIndex;
+            argumentIndex += argumentTypes[i].getSize();
+        }
+        for (int i = argumentTypes.length - 1; i >= 0; i--) {
+            AsmHelper.storeType(cv, argumentIndexes[i], argumentTypes[i]);
+        }
+        cv.visitVarInsn(ASTORE, localIndex);
+
+        cv.visitFieldInsn(GETSTATIC, m_joinPointClassName, ASYNC_ADVICE_FIELD_NAME + index, ASYNC_ADVICE_CLASS_SIGNATURE);
+        cv.visitVarInsn(ALOAD, localIndex);
+        AsmHelper.loadIntegerConstant(cv, argumentTypes.length);
+        cv.visitTypeInsn(ANEWARRAY, OBJECT_CLASS_NAME);
+        for (int i = 0; i < argumentTypes.length; i++) {
+            cv.visitInsn(DUP);
+            AsmHelper.loadIntegerConstant(cv, i);
+            AsmHelper.prepareWrappingOfPrimitiveType(cv, argumentTypes[i]);
+            AsmHelper.loadType(cv, argumentIndexes[i], argumentTypes[i]);
+            AsmHelper.wrapPrimitiveType(cv, argumentTypes[i]);
+            cv.visitInsn(AASTORE);
+        }
         cv.visitMethodInsn(
                 INVOKEVIRTUAL,
-                adviceMethodInfo.getAspectInfo().getAspectClassName(),
-                adviceMethodInfo.getAdviceInfo().getMethodName(),
-                adviceMethodInfo.getAdviceInfo().getMethodSignature()
+                ASYNC_ADVICE_CLASS_NAME,
+                ASYNC_ADVICE_DISPATCH_METHOD_NAME,
+                ASYNC_ADVICE_DISPATCH_METHOD_SIGNATURE
         );
-
-        // end label of runtime checks
-        endRuntimeCheck(cv, adviceMethodInfo.getAdviceInfo(), endInstanceOflabel);
     }
 
     /**
@@ -1577,6 +2392,37 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
         cv.visitFieldInsn(PUTFIELD, m_joinPointClassName, STACK_FRAME_COUNTER_FIELD_NAME, I);
     }
 
+    /**
+     * Checks if one of the advices has a cflow or cflowbelow runtime check.
+     *
+     * @param adviceMethodInfos
+     * @return true if one of the advices has a cflow runtime check
+     */
+    private static boolean hasCflowRuntimeCheck(final AdviceMethodInfo[] adviceMethodInfos) {
+        for (int i = 0; i < adviceMethodInfos.length; i++) {
+            if (adviceMethodInfos[i].getAdviceInfo().getAdviceDefinition().hasCflowOrCflowBelow()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores the cflow state of the current thread in a local variable.
+     *
+     * @param cv
+     * @param index
+     */
+    private static void createCflowStateLocal(final MethodVisitor cv, final int index) {
+        cv.visitMethodInsn(
+                INVOKESTATIC,
+                CFLOW_STATE_CLASS_NAME,
+                GET_CFLOW_STATE_METHOD_NAME,
+                GET_CFLOW_STATE_METHOD_SIGNATURE
+        );
+        cv.visitVarInsn(ASTORE, index);
+    }
+
     /**
      * Handles the incrementation of the stack frame.
      *
@@ -1616,6 +2462,81 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
         }
     }
 
+    /**
+     * Sets the argument values in the RTTI instance on top of the stack.
+     * <p/>
+     * Primitive arguments are passed unboxed as long bits, and are only boxed by the RTTI when its parameter values are
+     * asked for as objects.
+     *
+     * @param cv
+     * @param rttiClassName
+     */
+    protected final void createSetParameterValues(final MethodVisitor cv, final String rttiClassName) {
+        boolean hasPrimitiveArgument = false;
+        for (int i = 0; i < m_argumentTypes.length; i++) {
+            hasPrimitiveArgument |= AsmHelper.isPrimitive(m_argumentTypes[i]);
+        }
+        cv.visitInsn(DUP);
+        if (!hasPrimitiveArgument) {
+            createArgumentArrayAt(cv, 1);
+            cv.visitVarInsn(ALOAD, 1);
+            cv.visitMethodInsn(
+                    INVOKEVIRTUAL, rttiClassName, SET_PARAMETER_VALUES_METHOD_NAME,
+                    SET_PARAMETER_VALUES_METHOD_SIGNATURE
+            );
+            return;
+        }
+
+        // new Object[] with the references, new long[] with the primitives
+        AsmHelper.loadIntegerConstant(cv, m_argumentTypes.length);
+        cv.visitTypeInsn(ANEWARRAY, OBJECT_CLASS_NAME);
+        for (int i = 0; i < m_argumentTypes.length; i++) {
+            if (!AsmHelper.isPrimitive(m_argumentTypes[i])) {
+                cv.visitInsn(DUP);
+                AsmHelper.loadIntegerConstant(cv, i);
+                cv.visitVarInsn(ALOAD, 0);
+                cv.visitFieldInsn(
+                        GETFIELD, m_joinPointClassName, ARGUMENT_FIELD + i, m_argumentTypes[i].getDescriptor()
+                );
+                cv.visitInsn(AASTORE);
+            }
+        }
+        AsmHelper.loadIntegerConstant(cv, m_argumentTypes.length);
+        cv.visitIntInsn(NEWARRAY, T_LONG);
+        for (int i = 0; i < m_argumentTypes.length; i++) {
+            if (AsmHelper.isPrimitive(m_argumentTypes[i])) {
+                cv.visitInsn(DUP);
+                AsmHelper.loadIntegerConstant(cv, i);
+                cv.visitVarInsn(ALOAD, 0);
+                cv.visitFieldInsn(
+                        GETFIELD, m_joinPointClassName, ARGUMENT_FIELD + i, m_argumentTypes[i].getDescriptor()
+                );
+                AsmHelper.convertPrimitiveTypeToLongBits(cv, m_argumentTypes[i]);
+                cv.visitInsn(LASTORE);
+            }
+        }
+        cv.visitMethodInsn(
+                INVOKEVIRTUAL, rttiClassName, SET_PARAMETER_VALUES_METHOD_NAME,
+                SET_PRIMITIVE_PARAMETER_VALUES_METHOD_SIGNATURE
+        );
+    }
+
+    /**
+     * Sets the primitive value on top of the stack in the RTTI instance under it, as long bits.
+     *
+     * @param cv
+     * @param type
+     * @param rttiClassName
+     * @param setterName
+     */
+    protected final void createSetPrimitiveValue(final MethodVisitor cv,
+                                                 final Type type,
+                                                 final String rttiClassName,
+                                                 final String setterName) {
+        AsmHelper.convertPrimitiveTypeToLongBits(cv, type);
+        cv.visitMethodInsn(INVOKEVIRTUAL, rttiClassName, setterName, SET_PRIMITIVE_VALUE_METHOD_SIGNATURE);
+    }
+
     /**
      * Creates utility methods for the join point (getter, setters etc.).
      */
@@ -2042,6 +2963,27 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
             }
 
             endRuntimeCheckLabel = new Label();
+            final int runtimeCheckIndex = m_runtimeCheckAdviceInfos == null ?
+                                          -1 :
+                                          m_runtimeCheckAdviceInfos.indexOf(adviceInfo);
+            if (runtimeCheckIndex >= 0) {
+                // memoized in the runtime check cache
+                if (input.runtimeCheckMaskIndex != INDEX_NOTAVAILABLE) {
+                    cv.visitVarInsn(ILOAD, input.runtimeCheckMaskIndex);
+                } else {
+                    loadCallee(cv, input);
+                    cv.visitMethodInsn(
+                            INVOKESTATIC,
+                            m_joinPointClassName,
+                            RUNTIME_CHECK_MASK_METHOD_NAME,
+                            RUNTIME_CHECK_MASK_METHOD_SIGNATURE
+                    );
+                }
+                cv.visitLdcInsn(new Integer(1 << runtimeCheckIndex));
+                cv.visitInsn(IAND);
+                cv.visitJumpInsn(IFEQ, endRuntimeCheckLabel);
+                return endRuntimeCheckLabel;
+            }
             // create a specific visitor everytime
             RuntimeCheckVisitor runtimeCheckVisitor = new RuntimeCheckVisitor(
                     cv,
@@ -2056,6 +2998,81 @@ public abstract class AbstractJoinPointCompiler implements JoinPointCompiler, Tr
         return endRuntimeCheckLabel;
     }
 
+    /**
+     * Checks if an advice is sampled, see AdviceSampler.
+     *
+     * @param adviceMethodInfo
+     * @return true if so
+     */
+    private static boolean isSampled(final AdviceMethodInfo adviceMethodInfo) {
+        final Map parameters = adviceMethodInfo.getAspectInfo().getAspectDefinition().getParameters();
+        return AdviceSampler.getDefinedRate(parameters, adviceMethodInfo.getAdviceInfo().getMethodName()) >= 0;
+    }
+
+    /**
+     * Returns the index of the sampler field of a sampled advice.
+     *
+     * @param adviceMethodInfo
+     * @return the index
+     */
+    private int getSamplerIndex(final AdviceMethodInfo adviceMethodInfo) {
+        int index = m_sampledAdviceMethodInfos.indexOf(adviceMethodInfo);
+        if (index < 0) {
+            index = m_sampledAdviceMethodInfos.size();
+            m_sampledAdviceMethodInfos.add(adviceMethodInfo);
+        }
+        return index;
+    }
+
+    /**
+     * Handles the if case for the sampling guard of a sampled advice, see AdviceSampler. The advice is sampled from the
+     * invocation number of its aspect, counted once by the invoke method.
+     *
+     * @param cv
+     * @param input
+     * @param adviceMethodInfo
+     * @return the label for endIf or null if the advice is not sampled
+     */
+    private Label beginSampling(final MethodVisitor cv,
+                                final CompilerInput input,
+                                final AdviceMethodInfo adviceMethodInfo) {
+        if (!isSampled(adviceMethodInfo)) {
+            return null;
+        }
+        final int aspectIndex = m_sampledAspectQualifiedNames.indexOf(
+                adviceMethodInfo.getAspectInfo().getAspectQualifiedName()
+        );
+        final Label endSamplingLabel = new Label();
+        cv.visitFieldInsn(
+                GETSTATIC,
+                m_joinPointClassName,
+                ADVICE_SAMPLER_FIELD_NAME + getSamplerIndex(adviceMethodInfo),
+                ADVICE_SAMPLER_CLASS_SIGNATURE
+        );
+        if (input.sampledInvocationIndex != INDEX_NOTAVAILABLE) {
+            cv.visitVarInsn(LLOAD, input.sampledInvocationIndex + 2 * aspectIndex);
+        } else {
+            // in the proceed method, the invocation number is the one stored in the join point instance
+            cv.visitVarInsn(ALOAD, input.joinPointInstanceIndex);
+            cv.visitFieldInsn(GETFIELD, m_joinPointClassName, SAMPLED_INVOCATION_FIELD_NAME + aspectIndex, J);
+        }
+        cv.visitMethodInsn(INVOKEVIRTUAL, ADVICE_SAMPLER_CLASS_NAME, IS_SAMPLED_METHOD_NAME, IS_SAMPLED_METHOD_SIGNATURE);
+        cv.visitJumpInsn(IFEQ, endSamplingLabel);
+        return endSamplingLabel;
+    }
+
+    /**
+     * Ends the ifLabel of a sampling guard
+     *
+     * @param cv
+     * @param label if null, then do nothing (means the advice is not sampled)
+     */
+    private void endSampling(final MethodVisitor cv, final Label label) {
+        if (label != null) {
+            cv.visitLabel(label);
+        }
+    }
+
     /**
      * Ends the ifLabel of a runtime check
      *
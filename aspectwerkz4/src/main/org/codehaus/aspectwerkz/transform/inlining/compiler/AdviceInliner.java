@@ -0,0 +1,685 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.transform.inlining.compiler;
+
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.codehaus.aspectwerkz.aspect.AdviceInfo;
+import org.codehaus.aspectwerkz.aspect.AdviceType;
+import org.codehaus.aspectwerkz.definition.AspectDefinition;
+import org.codehaus.aspectwerkz.reflect.ClassInfo;
+import org.codehaus.aspectwerkz.reflect.ReflectionInfo;
+import org.codehaus.aspectwerkz.reflect.impl.asm.AsmClassInfo;
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
+import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.transform.inlining.AdviceMethodInfo;
+import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
+import org.codehaus.aspectwerkz.transform.inlining.InliningWeavingStrategy;
+import org.codehaus.aspectwerkz.transform.inlining.WovenClassAttribute;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.EmptyVisitor;
+
+/**
+ * Inlines the body of small before and after advice into the invoke method of the join point classes, instead of
+ * invoking the advice method, when <code>-Daspectwerkz.transform.inlineadvice=true</code> is set.
+ * <p/>
+ * An advice is inlined only if it is a before, after finally or after returning advice of an AspectWerkz aspect, does
+ * not take a JoinPoint or StaticJoinPoint argument and its method:
+ * <ul>
+ * <li>is a void, non static and non synchronized method, without try catch blocks nor subroutines</li>
+ * <li>has no more instructions than <code>-Daspectwerkz.transform.inlineadvice.maxsize</code> (32 by default)</li>
+ * <li>only refers to public classes and to their public members, since the body is copied in another class</li>
+ * <li>passes the verification of its stack heights and locals, since its class has not necessarily been verified by
+ * the JVM yet</li>
+ * </ul>
+ * The advice body is read from the class file resource of the aspect class, hence the aspect class must not be weaved:
+ * an aspect class that is eligible for weaving (see InliningWeavingStrategy.isWeavable) or that has been weaved
+ * offline is never inlined, so that the inlined body is the one that the class loader defines.
+ * <p/>
+ * Inlining can be disabled for an aspect with the <code>aspectwerkz.transform.inlineadvice</code> aspect parameter set
+ * to false.
+ * <p/>
+ * The inlined body uses the locals after the given local index: the aspect instance replaces "this" and the advice
+ * arguments are stored from the stack, so that the body works the same way as when the advice method is invoked.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public class AdviceInliner implements TransformationConstants {
+
+    /**
+     * The aspect parameter that disables the inlining of the aspect advice when set to false
+     */
+    public static final String INLINE_ADVICE_PARAMETER = "aspectwerkz.transform.inlineadvice";
+
+    /**
+     * The max number of instructions of an inlined advice
+     */
+    public static final int MAX_SIZE = Integer.getInteger("aspectwerkz.transform.inlineadvice.maxsize", 32).intValue();
+
+    /**
+     * Marks the advice that can not be inlined
+     */
+    private static final byte[] NOT_INLINABLE = new byte[0];
+
+    /**
+     * The bytecode of the inlinable advice aspect classes per advice, per aspect class loader
+     */
+    private static final Map s_advices = new WeakHashMap();
+
+    /**
+     * The stack height change of the instructions whose operands do not change it, per opcode
+     */
+    private static final int[] STACK_DELTAS;
+
+    static {
+        final String deltas = "EFFFFFFFFGGFFFGGFFFEEFGFGFEEEEEEEEEEEEEEEEEEEEDEDEDDDDDCDCDEEEEEEEEEEEEEEEEEEEEBABABBBBDCFFFGGGEDCDCDCDCDCDCDCDCDCDCEEEEDDDDDDDCDCDCEFEFDDEEFFDEDEEEBDDBBDDDDDDCCCCCCCCEFEDDDCDCDEEEEEEEEEEFEEEEEEDDEEDDEE";
+        STACK_DELTAS = new int[deltas.length()];
+        for (int i = 0; i < STACK_DELTAS.length; i++) {
+            STACK_DELTAS[i] = deltas.charAt(i) - 'E';
+        }
+    }
+
+    /**
+     * The successors of the instructions that only fall through
+     */
+    private static final Label[] NO_TARGETS = new Label[0];
+
+    /**
+     * Forgets the inlinable advices, since the definitions and thus the weaving of the aspect classes have changed.
+     */
+    public static void definitionsChanged() {
+        synchronized (s_advices) {
+            s_advices.clear();
+        }
+    }
+
+    /**
+     * Checks if the advice can be inlined.
+     *
+     * @param adviceMethodInfo
+     * @return true if the advice body can be inlined
+     */
+    public static boolean isInlinable(final AdviceMethodInfo adviceMethodInfo) {
+        if (!AspectWerkzPreProcessor.INLINEADVICE) {
+            return false;
+        }
+        final AspectDefinition aspectDefinition = adviceMethodInfo.getAspectInfo().getAspectDefinition();
+        if (!aspectDefinition.isAspectWerkzAspect() ||
+            "false".equalsIgnoreCase((String) aspectDefinition.getParameters().get(INLINE_ADVICE_PARAMETER))) {
+            return false;
+        }
+        final AdviceInfo adviceInfo = adviceMethodInfo.getAdviceInfo();
+        final AdviceType type = adviceInfo.getType();
+        if (type != AdviceType.BEFORE && type != AdviceType.AFTER &&
+            type != AdviceType.AFTER_FINALLY && type != AdviceType.AFTER_RETURNING) {
+            return false;
+        }
+        final int[] argIndexes = adviceInfo.getMethodToArgIndexes();
+        for (int i = 0; i < argIndexes.length; i++) {
+            if (argIndexes[i] == AdviceInfo.JOINPOINT_ARG ||
+                argIndexes[i] == AdviceInfo.STATIC_JOINPOINT_ARG ||
+                argIndexes[i] == AdviceInfo.CUSTOM_JOIN_POINT_ARG) {
+                return false;
+            }
+        }
+        return getAspectBytecode(adviceMethodInfo) != NOT_INLINABLE;
+    }
+
+    /**
+     * Inlines the advice body. The aspect instance and the advice arguments are expected on the stack, as for the
+     * invocation of the advice method.
+     *
+     * @param cv
+     * @param adviceMethodInfo an inlinable advice
+     * @param localIndex       the first local that the inlined body can use
+     */
+    public static void inline(final MethodVisitor cv, final AdviceMethodInfo adviceMethodInfo, final int localIndex) {
+        final AdviceInfo adviceInfo = adviceMethodInfo.getAdviceInfo();
+
+        // store the arguments and the aspect instance in the locals of the inlined body
+        final Type[] argumentTypes = Type.getArgumentTypes(adviceInfo.getMethodSignature());
+        final int[] argumentIndexes = new int[argumentTypes.length];
+        int index = localIndex + 1;
+        for (int i = 0; i < argumentTypes.length; i++) {
+            argumentIndexes[i] = index;
+            index += argumentTypes[i].getSize();
+        }
+        for (int i = argumentTypes.length - 1; i >= 0; i--) {
+            AsmHelper.storeType(cv, argumentIndexes[i], argumentTypes[i]);
+        }
+        cv.visitVarInsn(ASTORE, localIndex);
+
+        final Label endLabel = new Label();
+        final ClassReader cr = new ClassReader(getAspectBytecode(adviceMethodInfo));
+        cr.accept(
+                new InliningVisitor(
+                        cv, adviceInfo.getMethodName(), adviceInfo.getMethodSignature(), localIndex, endLabel
+                ), true
+        );
+        cv.visitLabel(endLabel);
+    }
+
+    /**
+     * Returns the bytecode of the advice aspect class if the advice can be inlined.
+     *
+     * @param adviceMethodInfo
+     * @return the bytecode or NOT_INLINABLE
+     */
+    private static byte[] getAspectBytecode(final AdviceMethodInfo adviceMethodInfo) {
+        final AdviceInfo adviceInfo = adviceMethodInfo.getAdviceInfo();
+        final ClassInfo aspectClassInfo = adviceMethodInfo.getAspectInfo().getAspectDefinition().getClassInfo();
+        final ClassLoader loader = aspectClassInfo.getClassLoader();
+        final String key = adviceInfo.getAspectClassName() + '.' +
+                           adviceInfo.getMethodName() + adviceInfo.getMethodSignature();
+        synchronized (s_advices) {
+            Map advices = (Map) s_advices.get(loader);
+            if (advices == null) {
+                advices = new HashMap();
+                s_advices.put(loader, advices);
+            }
+            byte[] bytecode = (byte[]) advices.get(key);
+            if (bytecode == null) {
+                bytecode = analyze(adviceInfo, aspectClassInfo, loader);
+                advices.put(key, bytecode);
+            }
+            return bytecode;
+        }
+    }
+
+    /**
+     * Reads the advice method and checks that it can be inlined.
+     *
+     * @param adviceInfo
+     * @param aspectClassInfo
+     * @param loader
+     * @return the bytecode of the aspect class or NOT_INLINABLE
+     */
+    private static byte[] analyze(final AdviceInfo adviceInfo,
+                                  final ClassInfo aspectClassInfo,
+                                  final ClassLoader loader) {
+        try {
+            if (InliningWeavingStrategy.isWeavable(aspectClassInfo, loader)) {
+                // the aspect class defined by the loader is not the one of the class file resource
+                return NOT_INLINABLE;
+            }
+            final String resourceName = adviceInfo.getAspectClassName().replace('.', '/') + ".class";
+            final InputStream in = (loader != null) ?
+                                   loader.getResourceAsStream(resourceName) :
+                                   ClassLoader.getSystemClassLoader().getResourceAsStream(resourceName);
+            if (in == null) {
+                return NOT_INLINABLE;
+            }
+            final ClassReader cr;
+            try {
+                cr = new ClassReader(in);
+            } finally {
+                in.close();
+            }
+            if (WovenClassAttribute.getFingerprint(cr.b) != null) {
+                // weaved offline
+                return NOT_INLINABLE;
+            }
+            return isInlinableMethod(
+                    cr.b,
+                    adviceInfo.getAspectClassName().replace('.', '/'),
+                    adviceInfo.getMethodName(),
+                    adviceInfo.getMethodSignature(),
+                    loader
+            ) ? cr.b : NOT_INLINABLE;
+        } catch (Throwable t) {
+            // the advice is invoked as usual
+            return NOT_INLINABLE;
+        }
+    }
+
+    /**
+     * Checks if the body of a method can be inlined: the method must follow the rules of the inlinable advice methods
+     * and pass the verification.
+     *
+     * @param bytecode   the bytecode of the class of the method
+     * @param className  the internal name of the class
+     * @param methodName
+     * @param methodDesc
+     * @param loader     the class loader of the class
+     * @return true if the method body can be inlined
+     */
+    public static boolean isInlinableMethod(final byte[] bytecode,
+                                            final String className,
+                                            final String methodName,
+                                            final String methodDesc,
+                                            final ClassLoader loader) {
+        final AnalyzingVisitor analyzer = new AnalyzingVisitor(className, methodName, methodDesc);
+        new ClassReader(bytecode).accept(analyzer, true);
+        return analyzer.isInlinable(loader);
+    }
+
+    /**
+     * Checks that a class is public.
+     *
+     * @param className
+     * @param loader
+     * @return true if public
+     */
+    private static boolean isPublicClass(final String className, final ClassLoader loader) {
+        final ClassInfo classInfo = AsmClassInfo.getClassInfo(className.replace('/', '.'), loader);
+        return classInfo != null && Modifier.isPublic(classInfo.getModifiers());
+    }
+
+    /**
+     * Checks that a type is a primitive type or public class, or an array of those.
+     *
+     * @param type
+     * @param loader
+     * @return true if accessible
+     */
+    private static boolean isPublicType(Type type, final ClassLoader loader) {
+        if (type.getSort() == Type.ARRAY) {
+            type = type.getElementType();
+        }
+        return type.getSort() != Type.OBJECT || isPublicClass(type.getInternalName(), loader);
+    }
+
+    /**
+     * Checks that a field, method or constructor reference is a public member of a public class.
+     *
+     * @param reference the member reference: isField, owner, name, desc
+     * @param loader
+     * @return true if accessible
+     */
+    private static boolean isPublicMember(final Object[] reference, final ClassLoader loader) {
+        final boolean isField = ((Boolean) reference[0]).booleanValue();
+        final String owner = (String) reference[1];
+        final String name = (String) reference[2];
+        final String desc = (String) reference[3];
+        if (owner.charAt(0) == '[' || !isPublicClass(owner, loader)) {
+            return false;
+        }
+        final ClassInfo classInfo = AsmClassInfo.getClassInfo(owner.replace('/', '.'), loader);
+        final ReflectionInfo member;
+        if (isField) {
+            member = classInfo.getField(AsmHelper.calculateFieldHash(name, desc));
+        } else if (INIT_METHOD_NAME.equals(name)) {
+            member = classInfo.getConstructor(AsmHelper.calculateConstructorHash(desc));
+        } else {
+            member = classInfo.getMethod(AsmHelper.calculateMethodHash(name, desc));
+        }
+        return member != null && Modifier.isPublic(member.getModifiers());
+    }
+
+    /**
+     * Checks the advice method, collects its type and member references and verifies its stack heights.
+     */
+    private static class AnalyzingVisitor extends EmptyVisitor {
+        private final String m_className;
+        private final String m_methodName;
+        private final String m_methodDesc;
+        private boolean m_isFound = false;
+        private boolean m_isInlinable = true;
+        private int m_size = 0;
+        private final List m_typeReferences = new ArrayList();
+        private final List m_memberReferences = new ArrayList();
+
+        /**
+         * The instructions in order, and the instruction index of the labels
+         */
+        private final List m_instructions = new ArrayList();
+        private final Map m_labelIndexes = new HashMap();
+
+        /**
+         * The locals used by the instructions, and the locals declared by the method
+         */
+        private int m_usedLocals = 0;
+        private int m_maxLocals = 0;
+
+        AnalyzingVisitor(final String className, final String methodName, final String methodDesc) {
+            m_className = className;
+            m_methodName = methodName;
+            m_methodDesc = methodDesc;
+        }
+
+        boolean isInlinable(final ClassLoader loader) {
+            if (!m_isFound || !m_isInlinable || m_size > MAX_SIZE || !isVerified()) {
+                return false;
+            }
+            for (Iterator it = m_typeReferences.iterator(); it.hasNext();) {
+                if (!isPublicType((Type) it.next(), loader)) {
+                    return false;
+                }
+            }
+            for (Iterator it = m_memberReferences.iterator(); it.hasNext();) {
+                if (!isPublicMember((Object[]) it.next(), loader)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Verifies that the body only uses the declared locals, that the stack height is never negative, is the same
+         * for all the paths reaching an instruction and is zero at the return instructions, which are turned into
+         * jumps once inlined. The body can not fall off its end.
+         *
+         * @return true if verified
+         */
+        private boolean isVerified() {
+            if (m_usedLocals > m_maxLocals || m_instructions.isEmpty()) {
+                return false;
+            }
+            final int[] heights = new int[m_instructions.size()];
+            Arrays.fill(heights, -1);
+            final List pending = new ArrayList();
+            pending.add(new int[]{0, 0});
+            while (!pending.isEmpty()) {
+                final int[] next = (int[]) pending.remove(pending.size() - 1);
+                final int index = next[0];
+                final int height = next[1];
+                if (index >= heights.length) {
+                    return false;
+                }
+                if (heights[index] >= 0) {
+                    if (heights[index] != height) {
+                        return false;
+                    }
+                    continue;
+                }
+                heights[index] = height;
+                final Instruction instruction = (Instruction) m_instructions.get(index);
+                if (instruction.opcode == RETURN && height != 0) {
+                    return false;
+                }
+                final int nextHeight = height + instruction.stackDelta;
+                if (nextHeight < 0) {
+                    return false;
+                }
+                for (int i = 0; i < instruction.targets.length; i++) {
+                    final Integer target = (Integer) m_labelIndexes.get(instruction.targets[i]);
+                    if (target == null) {
+                        return false;
+                    }
+                    pending.add(new int[]{target.intValue(), nextHeight});
+                }
+                if (instruction.fallsThrough) {
+                    pending.add(new int[]{index + 1, nextHeight});
+                }
+            }
+            return true;
+        }
+
+        private void add(final int opcode, final int stackDelta) {
+            add(opcode, stackDelta, NO_TARGETS, true);
+        }
+
+        private void add(final int opcode, final int stackDelta, final Label[] targets, final boolean fallsThrough) {
+            m_size++;
+            m_instructions.add(new Instruction(opcode, stackDelta, targets, fallsThrough));
+        }
+
+        private void useLocal(final int var, final int size) {
+            m_usedLocals = Math.max(m_usedLocals, var + size);
+        }
+
+        public void visit(final int version,
+                          final int access,
+                          final String name,
+                          final String signature,
+                          final String superName,
+                          final String[] interfaces) {
+            if (!m_className.equals(name)) {
+                m_isInlinable = false;
+            }
+        }
+
+        public MethodVisitor visitMethod(final int access,
+                                         final String name,
+                                         final String desc,
+                                         final String signature,
+                                         final String[] exceptions) {
+            if (!m_methodName.equals(name) || !m_methodDesc.equals(desc)) {
+                return new EmptyVisitor();
+            }
+            m_isFound = true;
+            if ((access & (ACC_STATIC | ACC_SYNCHRONIZED | ACC_ABSTRACT | ACC_NATIVE)) != 0 ||
+                Type.getReturnType(desc) != Type.VOID_TYPE) {
+                m_isInlinable = false;
+            }
+            return this;
+        }
+
+        public void visitInsn(final int opcode) {
+            if (opcode >= IRETURN && opcode <= ARETURN) {
+                m_isInlinable = false;
+            }
+            add(opcode, STACK_DELTAS[opcode], NO_TARGETS, opcode != RETURN && opcode != ATHROW);
+        }
+
+        public void visitIntInsn(final int opcode, final int operand) {
+            add(opcode, STACK_DELTAS[opcode]);
+        }
+
+        public void visitVarInsn(final int opcode, final int var) {
+            if (opcode == RET) {
+                m_isInlinable = false;
+            }
+            useLocal(var, (opcode == LLOAD || opcode == DLOAD || opcode == LSTORE || opcode == DSTORE) ? 2 : 1);
+            add(opcode, STACK_DELTAS[opcode]);
+        }
+
+        public void visitTypeInsn(final int opcode, final String desc) {
+            m_typeReferences.add(desc.charAt(0) == '[' ? Type.getType(desc) : Type.getType(L + desc + SEMICOLON));
+            add(opcode, STACK_DELTAS[opcode]);
+        }
+
+        public void visitFieldInsn(final int opcode, final String owner, final String name, final String desc) {
+            m_memberReferences.add(new Object[]{Boolean.TRUE, owner, name, desc});
+            final int size = Type.getType(desc).getSize();
+            final int stackDelta;
+            switch (opcode) {
+                case GETSTATIC:
+                    stackDelta = size;
+                    break;
+                case PUTSTATIC:
+                    stackDelta = -size;
+                    break;
+                case GETFIELD:
+                    stackDelta = size - 1;
+                    break;
+                default:
+                    stackDelta = -size - 1;
+            }
+            add(opcode, stackDelta);
+        }
+
+        public void visitMethodInsn(final int opcode, final String owner, final String name, final String desc) {
+            if (opcode == INVOKESPECIAL && !INIT_METHOD_NAME.equals(name)) {
+                // private or super method
+                m_isInlinable = false;
+            }
+            m_memberReferences.add(new Object[]{Boolean.FALSE, owner, name, desc});
+            final Type returnType = Type.getReturnType(desc);
+            int stackDelta = (returnType == Type.VOID_TYPE) ? 0 : returnType.getSize();
+            final Type[] argumentTypes = Type.getArgumentTypes(desc);
+            for (int i = 0; i < argumentTypes.length; i++) {
+                stackDelta -= argumentTypes[i].getSize();
+            }
+            if (opcode != INVOKESTATIC) {
+                stackDelta--;
+            }
+            add(opcode, stackDelta);
+        }
+
+        public void visitJumpInsn(final int opcode, final Label label) {
+            if (opcode == JSR) {
+                m_isInlinable = false;
+            }
+            add(opcode, STACK_DELTAS[opcode], new Label[]{label}, opcode != GOTO);
+        }
+
+        public void visitLabel(final Label label) {
+            m_labelIndexes.put(label, new Integer(m_instructions.size()));
+        }
+
+        public void visitLdcInsn(final Object cst) {
+            if (cst instanceof Type) {
+                m_typeReferences.add(cst);
+            }
+            add(LDC, (cst instanceof Long || cst instanceof Double) ? 2 : 1);
+        }
+
+        public void visitIincInsn(final int var, final int increment) {
+            useLocal(var, 1);
+            add(IINC, 0);
+        }
+
+        public void visitTableSwitchInsn(final int min, final int max, final Label dflt, final Label[] labels) {
+            add(TABLESWITCH, -1, switchTargets(dflt, labels), false);
+        }
+
+        public void visitLookupSwitchInsn(final Label dflt, final int[] keys, final Label[] labels) {
+            add(LOOKUPSWITCH, -1, switchTargets(dflt, labels), false);
+        }
+
+        public void visitMultiANewArrayInsn(final String desc, final int dims) {
+            m_typeReferences.add(Type.getType(desc));
+            add(MULTIANEWARRAY, 1 - dims);
+        }
+
+        public void visitTryCatchBlock(final Label start, final Label end, final Label handler, final String type) {
+            m_isInlinable = false;
+        }
+
+        public void visitMaxs(final int maxStack, final int maxLocals) {
+            m_maxLocals = maxLocals;
+        }
+
+        private static Label[] switchTargets(final Label dflt, final Label[] labels) {
+            final Label[] targets = new Label[labels.length + 1];
+            targets[0] = dflt;
+            System.arraycopy(labels, 0, targets, 1, labels.length);
+            return targets;
+        }
+    }
+
+    /**
+     * An instruction of the advice body, with its effect on the stack height and its successors.
+     */
+    private static class Instruction {
+        final int opcode;
+        final int stackDelta;
+        final Label[] targets;
+        final boolean fallsThrough;
+
+        Instruction(final int opcode, final int stackDelta, final Label[] targets, final boolean fallsThrough) {
+            this.opcode = opcode;
+            this.stackDelta = stackDelta;
+            this.targets = targets;
+            this.fallsThrough = fallsThrough;
+        }
+    }
+
+    /**
+     * Copies the advice method body in the given method, with its locals moved after the given local index and
+     * its return instructions turned into a jump to the end label.
+     */
+    private static class InliningVisitor extends EmptyVisitor {
+        private final MethodVisitor m_cv;
+        private final String m_methodName;
+        private final String m_methodDesc;
+        private final int m_localIndex;
+        private final Label m_endLabel;
+
+        InliningVisitor(final MethodVisitor cv,
+                        final String methodName,
+                        final String methodDesc,
+                        final int localIndex,
+                        final Label endLabel) {
+            m_cv = cv;
+            m_methodName = methodName;
+            m_methodDesc = methodDesc;
+            m_localIndex = localIndex;
+            m_endLabel = endLabel;
+        }
+
+        public MethodVisitor visitMethod(final int access,
+                                         final String name,
+                                         final String desc,
+                                         final String signature,
+                                         final String[] exceptions) {
+            if (!m_methodName.equals(name) || !m_methodDesc.equals(desc)) {
+                return new EmptyVisitor();
+            }
+            return this;
+        }
+
+        public void visitInsn(final int opcode) {
+            if (opcode == RETURN) {
+                m_cv.visitJumpInsn(GOTO, m_endLabel);
+            } else {
+                m_cv.visitInsn(opcode);
+            }
+        }
+
+        public void visitIntInsn(final int opcode, final int operand) {
+            m_cv.visitIntInsn(opcode, operand);
+        }
+
+        public void visitVarInsn(final int opcode, final int var) {
+            m_cv.visitVarInsn(opcode, m_localIndex + var);
+        }
+
+        public void visitTypeInsn(final int opcode, final String desc) {
+            m_cv.visitTypeInsn(opcode, desc);
+        }
+
+        public void visitFieldInsn(final int opcode, final String owner, final String name, final String desc) {
+            m_cv.visitFieldInsn(opcode, owner, name, desc);
+        }
+
+        public void visitMethodInsn(final int opcode, final String owner, final String name, final String desc) {
+            m_cv.visitMethodInsn(opcode, owner, name, desc);
+        }
+
+        public void visitJumpInsn(final int opcode, final Label label) {
+            m_cv.visitJumpInsn(opcode, label);
+        }
+
+        public void visitLabel(final Label label) {
+            m_cv.visitLabel(label);
+        }
+
+        public void visitLdcInsn(final Object cst) {
+            m_cv.visitLdcInsn(cst);
+        }
+
+        public void visitIincInsn(final int var, final int increment) {
+            m_cv.visitIincInsn(m_localIndex + var, increment);
+        }
+
+        public void visitTableSwitchInsn(final int min, final int max, final Label dflt, final Label[] labels) {
+            m_cv.visitTableSwitchInsn(min, max, dflt, labels);
+        }
+
+        public void visitLookupSwitchInsn(final Label dflt, final int[] keys, final Label[] labels) {
+            m_cv.visitLookupSwitchInsn(dflt, keys, labels);
+        }
+
+        public void visitMultiANewArrayInsn(final String desc, final int dims) {
+            m_cv.visitMultiANewArrayInsn(desc, dims);
+        }
+    }
+}
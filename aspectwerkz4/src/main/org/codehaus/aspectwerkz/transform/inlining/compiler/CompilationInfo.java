@@ -7,36 +7,75 @@
  **************************************************************************************/
 package org.codehaus.aspectwerkz.transform.inlining.compiler;
 
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.codehaus.aspectwerkz.aspect.AdviceInfo;
+import org.codehaus.aspectwerkz.definition.AdviceDefinition;
+import org.codehaus.aspectwerkz.expression.ExpressionInfo;
 import org.codehaus.aspectwerkz.joinpoint.management.AdviceInfoContainer;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointManager;
 import org.codehaus.aspectwerkz.util.Strings;
 import org.codehaus.aspectwerkz.transform.TransformationConstants;
 import org.codehaus.aspectwerkz.transform.inlining.EmittedJoinPoint;
 import org.codehaus.aspectwerkz.reflect.ClassInfo;
 
 /**
- * Info needed for the compilation of the join point, holds both the initial model and the latest redefined model.
+ * Info needed for the redefinition of the join point, holds the initial model and the latest redefined join point.
+ * <p/>
+ * Since it is kept for each join point class, only the emitted join point and the advices it has been compiled with
+ * are kept. The initial model, with its advice infos and class infos, is rebuilt from them when needed.
  *
  * @author <a href="mailto:jboner@codehaus.org">Jonas Bonr </a>
  */
 public final class CompilationInfo {
-    private final Model m_initialModel;
-    private Model m_redefinedModel;
+    private final EmittedJoinPoint m_emittedJoinPoint;
+    private final AdviceBindings m_adviceBindings;
+    private final WeakReference m_loader;
+    private WeakReference m_initialModel;
+    private String m_redefinedJoinPointClassName;
     private int m_redefinitionCounter = 0;
 
     public CompilationInfo(final Model initialModel) {
-        m_initialModel = initialModel;
+        m_emittedJoinPoint = initialModel.getEmittedJoinPoint();
+        m_adviceBindings = AdviceBindings.intern(initialModel.getAdviceInfoContainer());
+        m_loader = new WeakReference(initialModel.getThisClassInfo().getClassLoader());
+        m_initialModel = new WeakReference(initialModel);
+    }
+
+    public EmittedJoinPoint getEmittedJoinPoint() {
+        return m_emittedJoinPoint;
     }
 
-    public Model getInitialModel() {
-        return m_initialModel;
+    /**
+     * Returns the initial model, rebuilt from the emitted join point and its advices if not in use anymore.
+     *
+     * @return the initial model
+     */
+    public synchronized Model getInitialModel() {
+        Model initialModel = (Model) m_initialModel.get();
+        if (initialModel == null) {
+            initialModel = JoinPointManager.createCompilationModel(
+                    m_emittedJoinPoint,
+                    m_adviceBindings.m_adviceDefinitions,
+                    m_adviceBindings.m_expressionInfos,
+                    (ClassLoader) m_loader.get()
+            );
+            m_initialModel = new WeakReference(initialModel);
+        }
+        return initialModel;
     }
 
-    public Model getRedefinedModel() {
-        return m_redefinedModel;
+    /**
+     * @return the class name (with /) of the latest redefined join point, or null if not redefined
+     */
+    public String getRedefinedJoinPointClassName() {
+        return m_redefinedJoinPointClassName;
     }
 
     public void setRedefinedModel(final Model redefinedModel) {
-        m_redefinedModel = redefinedModel;
+        m_redefinedJoinPointClassName = redefinedModel.getJoinPointClassName();
     }
 
     public int getRedefinitionCounter() {
@@ -60,14 +99,12 @@ public final class CompilationInfo {
         if (m_redefinitionCounter != compilationInfo.m_redefinitionCounter) {
             return false;
         }
-        if (m_initialModel != null ?
-            !m_initialModel.equals(compilationInfo.m_initialModel) :
-            compilationInfo.m_initialModel != null) {
+        if (m_emittedJoinPoint != compilationInfo.m_emittedJoinPoint) {
             return false;
         }
-        if (m_redefinedModel != null ?
-            !m_redefinedModel.equals(compilationInfo.m_redefinedModel) :
-            compilationInfo.m_redefinedModel != null) {
+        if (m_redefinedJoinPointClassName != null ?
+            !m_redefinedJoinPointClassName.equals(compilationInfo.m_redefinedJoinPointClassName) :
+            compilationInfo.m_redefinedJoinPointClassName != null) {
             return false;
         }
 
@@ -76,12 +113,83 @@ public final class CompilationInfo {
 
     public int hashCode() {
         int result;
-        result = (m_initialModel != null ? m_initialModel.hashCode() : 0);
-        result = 29 * result + (m_redefinedModel != null ? m_redefinedModel.hashCode() : 0);
+        result = m_emittedJoinPoint.hashCode();
+        result = 29 * result + (m_redefinedJoinPointClassName != null ? m_redefinedJoinPointClassName.hashCode() : 0);
         result = 29 * result + m_redefinitionCounter;
         return result;
     }
 
+    /**
+     * The advices a join point has been compiled with: their definition and the expression they were bound with.
+     * The instances are interned so that the join points compiled with the same advices share the same one.
+     */
+    private static final class AdviceBindings {
+        private static final Map s_internedBindings = new WeakHashMap();
+
+        private final AdviceDefinition[] m_adviceDefinitions;
+        private final ExpressionInfo[] m_expressionInfos;
+        private final int m_hashCode;
+
+        private AdviceBindings(final AdviceInfo[] adviceInfos) {
+            m_adviceDefinitions = new AdviceDefinition[adviceInfos.length];
+            m_expressionInfos = new ExpressionInfo[adviceInfos.length];
+            int hashCode = 0;
+            for (int i = 0; i < adviceInfos.length; i++) {
+                m_adviceDefinitions[i] = adviceInfos[i].getAdviceDefinition();
+                m_expressionInfos[i] = adviceInfos[i].getExpressionInfo();
+                hashCode = 29 * hashCode + System.identityHashCode(m_adviceDefinitions[i]);
+                hashCode = 29 * hashCode + System.identityHashCode(m_expressionInfos[i]);
+            }
+            m_hashCode = hashCode;
+        }
+
+        /**
+         * Returns the interned advice bindings of the given advices.
+         *
+         * @param adviceInfoContainer
+         * @return the advice bindings
+         */
+        static AdviceBindings intern(final AdviceInfoContainer adviceInfoContainer) {
+            final AdviceBindings adviceBindings = new AdviceBindings(adviceInfoContainer.getAllAdviceInfos());
+            synchronized (s_internedBindings) {
+                final WeakReference interned = (WeakReference) s_internedBindings.get(adviceBindings);
+                if (interned != null) {
+                    final Object internedBindings = interned.get();
+                    if (internedBindings != null) {
+                        return (AdviceBindings) internedBindings;
+                    }
+                }
+                s_internedBindings.put(adviceBindings, new WeakReference(adviceBindings));
+                return adviceBindings;
+            }
+        }
+
+        public int hashCode() {
+            return m_hashCode;
+        }
+
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof AdviceBindings)) {
+                return false;
+            }
+            final AdviceBindings adviceBindings = (AdviceBindings) o;
+            if (m_hashCode != adviceBindings.m_hashCode
+                || m_adviceDefinitions.length != adviceBindings.m_adviceDefinitions.length) {
+                return false;
+            }
+            for (int i = 0; i < m_adviceDefinitions.length; i++) {
+                if (m_adviceDefinitions[i] != adviceBindings.m_adviceDefinitions[i]
+                    || m_expressionInfos[i] != adviceBindings.m_expressionInfos[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     /**
      * Represents the information needed to compile one joinpoint at a given time
      *
@@ -31,6 +31,23 @@ public class CompilerInput {
     public int calleeIndex = TransformationConstants.INDEX_NOTAVAILABLE;
     public String calleeClassSignature;
 
+    /**
+     * Index of the local variable that holds the CflowState of the current thread, used by the cflow runtime checks
+     */
+    public int cflowStateIndex = TransformationConstants.INDEX_NOTAVAILABLE;
+
+    /**
+     * Index of the local variable that holds the mask of the advices that apply to the target, computed once by the
+     * invoke method when it uses the RuntimeCheckCache
+     */
+    public int runtimeCheckMaskIndex = TransformationConstants.INDEX_NOTAVAILABLE;
+
+    /**
+     * Index of the first local variable that holds the invocation number of a sampled aspect, counted once by the
+     * invoke method for all the advices of the aspect (see AdviceSampler)
+     */
+    public int sampledInvocationIndex = TransformationConstants.INDEX_NOTAVAILABLE;
+
     /**
      * Returns a new instance that suits for proceed() ie where jp index is 0 etc.
      * @return
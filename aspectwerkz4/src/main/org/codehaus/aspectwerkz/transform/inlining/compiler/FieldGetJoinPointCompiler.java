@@ -195,21 +195,18 @@ public class FieldGetJoinPointCompiler extends AbstractJoinPointCompiler {
 
         // set the value
         cv.visitInsn(DUP);
+        cv.visitVarInsn(ALOAD, 0);
+        cv.visitFieldInsn(GETFIELD, m_joinPointClassName, RETURN_VALUE_FIELD_NAME, m_returnType.getDescriptor());
         if (AsmHelper.isPrimitive(m_returnType)) {
-            AsmHelper.prepareWrappingOfPrimitiveType(cv, m_returnType);
-            cv.visitVarInsn(ALOAD, 0);
-            cv.visitFieldInsn(GETFIELD, m_joinPointClassName, RETURN_VALUE_FIELD_NAME, m_returnType.getDescriptor());
-            AsmHelper.wrapPrimitiveType(cv, m_returnType);
+            createSetPrimitiveValue(cv, m_returnType, FIELD_RTTI_IMPL_CLASS_NAME, SET_PRIMITIVE_FIELD_VALUE_METHOD_NAME);
         } else {
-            cv.visitVarInsn(ALOAD, 0);
-            cv.visitFieldInsn(GETFIELD, m_joinPointClassName, RETURN_VALUE_FIELD_NAME, m_returnType.getDescriptor());
+            cv.visitMethodInsn(
+                    INVOKEVIRTUAL, 
+                    FIELD_RTTI_IMPL_CLASS_NAME, 
+                    SET_FIELD_VALUE_METHOD_NAME,
+                    SET_FIELD_VALUE_METHOD_SIGNATURE
+            );
         }
-        cv.visitMethodInsn(
-                INVOKEVIRTUAL, 
-                FIELD_RTTI_IMPL_CLASS_NAME, 
-                SET_FIELD_VALUE_METHOD_NAME,
-                SET_FIELD_VALUE_METHOD_SIGNATURE
-        );
 
         cv.visitInsn(ARETURN);
         cv.visitMaxs(0, 0);
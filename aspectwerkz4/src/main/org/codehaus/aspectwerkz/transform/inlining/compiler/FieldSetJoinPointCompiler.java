@@ -205,23 +205,21 @@ public class FieldSetJoinPointCompiler extends AbstractJoinPointCompiler {
                 INVOKESPECIAL, FIELD_RTTI_IMPL_CLASS_NAME, INIT_METHOD_NAME, FIELD_RTTI_IMPL_INIT_SIGNATURE
         );
 
-        // set the value
+        // set the value, which is the value being assigned
+        final Type fieldType = m_argumentTypes[0];
         cv.visitInsn(DUP);
-        if (AsmHelper.isPrimitive(m_returnType)) {
-            AsmHelper.prepareWrappingOfPrimitiveType(cv, m_returnType);
-            cv.visitVarInsn(ALOAD, 0);
-            cv.visitFieldInsn(GETFIELD, m_joinPointClassName, RETURN_VALUE_FIELD_NAME, m_returnType.getDescriptor());
-            AsmHelper.wrapPrimitiveType(cv, m_returnType);
+        cv.visitVarInsn(ALOAD, 0);
+        cv.visitFieldInsn(GETFIELD, m_joinPointClassName, ARGUMENT_FIELD + 0, fieldType.getDescriptor());
+        if (AsmHelper.isPrimitive(fieldType)) {
+            createSetPrimitiveValue(cv, fieldType, FIELD_RTTI_IMPL_CLASS_NAME, SET_PRIMITIVE_FIELD_VALUE_METHOD_NAME);
         } else {
-            cv.visitVarInsn(ALOAD, 0);
-            cv.visitFieldInsn(GETFIELD, m_joinPointClassName, RETURN_VALUE_FIELD_NAME, m_returnType.getDescriptor());
+            cv.visitMethodInsn(
+                    INVOKEVIRTUAL, 
+                    FIELD_RTTI_IMPL_CLASS_NAME, 
+                    SET_FIELD_VALUE_METHOD_NAME,
+                    SET_FIELD_VALUE_METHOD_SIGNATURE
+            );
         }
-        cv.visitMethodInsn(
-                INVOKEVIRTUAL, 
-                FIELD_RTTI_IMPL_CLASS_NAME, 
-                SET_FIELD_VALUE_METHOD_NAME,
-                SET_FIELD_VALUE_METHOD_SIGNATURE
-        );
 
         cv.visitInsn(ARETURN);
         cv.visitMaxs(0, 0);
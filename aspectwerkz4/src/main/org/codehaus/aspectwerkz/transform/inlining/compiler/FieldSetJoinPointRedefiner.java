@@ -19,9 +19,9 @@ import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
  */
 public class FieldSetJoinPointRedefiner extends FieldSetJoinPointCompiler {
     /**
-     * The redefined model.
+     * The class name of the redefined join point.
      */
-    private final CompilationInfo.Model m_redefinedModel;
+    private final String m_redefinedJoinPointClassName;
 
     /**
      * Creates a new join point compiler instance.
@@ -30,7 +30,7 @@ public class FieldSetJoinPointRedefiner extends FieldSetJoinPointCompiler {
      */
     FieldSetJoinPointRedefiner(final CompilationInfo model) {
         super(model.getInitialModel());
-        m_redefinedModel = model.getRedefinedModel();
+        m_redefinedJoinPointClassName = model.getRedefinedJoinPointClassName();
     }
 
     /**
@@ -48,7 +48,7 @@ public class FieldSetJoinPointRedefiner extends FieldSetJoinPointCompiler {
                 }
         );
         AsmHelper.loadArgumentTypes(cv, Type.getArgumentTypes(invokeDesc), true);
-        cv.visitMethodInsn(INVOKESTATIC, m_redefinedModel.getJoinPointClassName(), INVOKE_METHOD_NAME, invokeDesc);
+        cv.visitMethodInsn(INVOKESTATIC, m_redefinedJoinPointClassName, INVOKE_METHOD_NAME, invokeDesc);
         AsmHelper.addReturnStatement(cv, Type.getReturnType(invokeDesc));
         cv.visitMaxs(0, 0);
     }
@@ -7,6 +7,8 @@
  **************************************************************************************/
 package org.codehaus.aspectwerkz.transform.inlining.compiler;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.util.Map;
 import java.util.Iterator;
 import java.util.WeakHashMap;
@@ -20,6 +22,9 @@ import org.codehaus.aspectwerkz.expression.ExpressionInfo;
 import org.codehaus.aspectwerkz.reflect.MethodInfo;
 import org.codehaus.aspectwerkz.reflect.ClassInfo;
 import org.codehaus.aspectwerkz.reflect.impl.asm.AsmClassInfo;
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
+import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.transform.TransformationUtil;
 import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
 import org.codehaus.aspectwerkz.transform.inlining.EmittedJoinPoint;
 
@@ -64,16 +69,59 @@ public class JoinPointFactory {
         return AsmHelper.defineClass(loader, bytecode, joinpointClassName);
     }
 
+    /**
+     * Loads a join point class, one specific class for each distinct join point, thru a lookup on its caller class
+     * when the runtime supports it (see AsmHelper.defineClass).
+     *
+     * @param joinpointClassName
+     * @param loader the class loader that the compiled join point should live in
+     * @param bytecode of the joinpoint
+     * @param callerClass the class that declares the join point
+     * @return the compiled join point class
+     */
+    public static Class attachToClassLoader(final String joinpointClassName,
+                                            final ClassLoader loader,
+                                            final byte[] bytecode,
+                                            final Class callerClass) {
+        return AsmHelper.defineClass(loader, bytecode, joinpointClassName, callerClass);
+    }
+
     /**
      * Adds or updates a compilation info. The class key is always the first compiled join point class.
+     * <p/>
+     * Nothing is kept when the join points are not redefinable (see -Daspectwerkz.transform.redefinejp), nor for
+     * the join point classes shared by several call sites (see -Daspectwerkz.transform.sharedjp), which can not be
+     * redefined for some of their call sites only. They are only weaved when the join points are not redefinable,
+     * but may be loaded by a VM that redefines them.
      *
      * @param clazz
      * @param compilationInfo
      */
     public static void addCompilationInfo(final Class clazz, final CompilationInfo compilationInfo) {
+        if (!AspectWerkzPreProcessor.REDEFINEJP) {
+            return;
+        }
+        final EmittedJoinPoint emittedJoinPoint = compilationInfo.getEmittedJoinPoint();
+        if (TransformationUtil.isSharedJoinPointClassName(
+                emittedJoinPoint.getJoinPointClassName(),
+                emittedJoinPoint.getCallerClassName(),
+                emittedJoinPoint.getJoinPointType()
+        )) {
+            return;
+        }
         COMPILATION_INFO_REPOSITORY.put(clazz, compilationInfo);
     }
 
+    /**
+     * Returns the compilation info for a specific joinpoint class.
+     *
+     * @param clazz
+     * @return the compilation info, or null if the joinpoint class is not registered
+     */
+    public static CompilationInfo getCompilationInfo(final Class clazz) {
+        return (CompilationInfo) COMPILATION_INFO_REPOSITORY.get(clazz);
+    }
+
     /**
      * Compiles a join point class, one specific class for each distinct join point.
      *
@@ -81,23 +129,33 @@ public class JoinPointFactory {
      * @return the compiled join point bytecode
      */
     public static byte[] compileJoinPoint(final CompilationInfo.Model model) {
+        return newJoinPointCompiler(model).compile();
+    }
+
+    /**
+     * Creates the compiler for a join point class.
+     *
+     * @param model the model for the compilation
+     * @return the join point compiler
+     */
+    private static AbstractJoinPointCompiler newJoinPointCompiler(final CompilationInfo.Model model) {
         switch (model.getEmittedJoinPoint().getJoinPointType()) {
             case JoinPointType.METHOD_EXECUTION_INT:
-                return new MethodExecutionJoinPointCompiler(model).compile();
+                return new MethodExecutionJoinPointCompiler(model);
             case JoinPointType.METHOD_CALL_INT:
-                return new MethodCallJoinPointCompiler(model).compile();
+                return new MethodCallJoinPointCompiler(model);
             case JoinPointType.CONSTRUCTOR_EXECUTION_INT:
-                return new ConstructorExecutionJoinPointCompiler(model).compile();
+                return new ConstructorExecutionJoinPointCompiler(model);
             case JoinPointType.CONSTRUCTOR_CALL_INT:
-                return new ConstructorCallJoinPointCompiler(model).compile();
+                return new ConstructorCallJoinPointCompiler(model);
             case JoinPointType.FIELD_SET_INT:
-                return new FieldSetJoinPointCompiler(model).compile();
+                return new FieldSetJoinPointCompiler(model);
             case JoinPointType.FIELD_GET_INT:
-                return new FieldGetJoinPointCompiler(model).compile();
+                return new FieldGetJoinPointCompiler(model);
             case JoinPointType.HANDLER_INT:
-                return new HandlerJoinPointCompiler(model).compile();
+                return new HandlerJoinPointCompiler(model);
             case JoinPointType.STATIC_INITIALIZATION_INT:
-                return new StaticInitializationJoinPointCompiler(model).compile();
+                return new StaticInitializationJoinPointCompiler(model);
             default:
                 throw new UnsupportedOperationException(
                         "join point type is not supported: " + model.getEmittedJoinPoint().getJoinPointType()
@@ -112,7 +170,7 @@ public class JoinPointFactory {
      * @return the compiled join point bytecode
      */
     public static byte[] redefineJoinPoint(final CompilationInfo compilationInfo) {
-        switch (compilationInfo.getInitialModel().getEmittedJoinPoint().getJoinPointType()) {
+        switch (compilationInfo.getEmittedJoinPoint().getJoinPointType()) {
             case JoinPointType.METHOD_EXECUTION_INT:
                 return new MethodExecutionJoinPointRedefiner(compilationInfo).compile();
             case JoinPointType.METHOD_CALL_INT:
@@ -130,11 +188,65 @@ public class JoinPointFactory {
             default:
                 throw new UnsupportedOperationException(
                         "join point type is not supported: " +
-                        compilationInfo.getInitialModel().getEmittedJoinPoint().getJoinPointType()
+                        compilationInfo.getEmittedJoinPoint().getJoinPointType()
                 );
         }
     }
 
+    /**
+     * Defines the relink target interface of a join point in the given class loader, unless it is already there.
+     * The interface must be defined before the redefined join point class which implements it.
+     *
+     * @param initialModel the model of the initial join point
+     * @param loader       the class loader of the join point
+     */
+    public static void defineRelinkTargetInterface(final CompilationInfo.Model initialModel, final ClassLoader loader) {
+        final String interfaceName = initialModel.getEmittedJoinPoint().getJoinPointClassName() +
+                                     TransformationConstants.RELINK_TARGET_INTERFACE_SUFFIX;
+        try {
+            Class.forName(interfaceName.replace('/', '.'), false, loader);
+        } catch (ClassNotFoundException e) {
+            attachToClassLoader(interfaceName, loader, newJoinPointCompiler(initialModel).compileRelinkTargetInterface());
+        }
+    }
+
+    /**
+     * Relinks the initial (weaved in) join point to the redefined join point, so that the initial join point
+     * delegates to it without being redefined itself.
+     *
+     * @param joinPointClass  the initial join point class
+     * @param compilationInfo the compilation info holding the redefined model
+     * @return false if the initial join point class is not relinkable, see -Daspectwerkz.transform.relinkjp
+     */
+    public static boolean relinkJoinPoint(final Class joinPointClass, final CompilationInfo compilationInfo) {
+        final Field relinkTargetField;
+        try {
+            relinkTargetField = joinPointClass.getDeclaredField(TransformationConstants.RELINK_TARGET_FIELD_NAME);
+        } catch (NoSuchFieldException e) {
+            return false;
+        }
+        final String redefinedClassName = compilationInfo.getRedefinedJoinPointClassName().replace('/', '.');
+        try {
+            final Class redefinedClass = Class.forName(redefinedClassName, false, joinPointClass.getClassLoader());
+            final Class relinkTargetInterface = Class.forName(
+                    joinPointClass.getName() + TransformationConstants.RELINK_TARGET_INTERFACE_SUFFIX,
+                    false,
+                    joinPointClass.getClassLoader()
+            );
+            if (!relinkTargetInterface.isAssignableFrom(redefinedClass)) {
+                return false;
+            }
+            final Constructor constructor = redefinedClass.getDeclaredConstructor(new Class[0]);
+            constructor.setAccessible(true);
+            final Object relinkTarget = constructor.newInstance(new Object[0]);
+            relinkTargetField.setAccessible(true);
+            relinkTargetField.set(null, relinkTarget);
+            return true;
+        } catch (Exception e) {
+            throw new RuntimeException("could not relink join point " + joinPointClass.getName() + ": " + e.toString());
+        }
+    }
+
     /**
      * Returns a list with all the join point compilers that matches a specific pointcut expression.
      * <p/>
@@ -151,72 +263,10 @@ public class JoinPointFactory {
 
             final Class clazz = (Class) entry.getKey();
             final CompilationInfo compilationInfo = (CompilationInfo) entry.getValue();
-            final EmittedJoinPoint joinPoint = (EmittedJoinPoint) compilationInfo.
-                    getInitialModel().getEmittedJoinPoint();
+            final EmittedJoinPoint joinPoint = compilationInfo.getEmittedJoinPoint();
             final ClassLoader loader = clazz.getClassLoader();
 
-            final ClassInfo calleeClassInfo = AsmClassInfo.getClassInfo(joinPoint.getCalleeClassName(), loader);
-            final ClassInfo callerClassInfo = AsmClassInfo.getClassInfo(joinPoint.getCallerClassName(), loader);
-            final MethodInfo callerMethodInfo = getCallerMethodInfo(callerClassInfo, joinPoint);
-
-            ExpressionContext ctx = null;
-            switch (joinPoint.getJoinPointType()) {
-                case JoinPointType.METHOD_EXECUTION_INT:
-                    ctx = new ExpressionContext(
-                            PointcutType.EXECUTION,
-                            calleeClassInfo.getMethod(joinPoint.getJoinPointHash()),
-                            callerMethodInfo
-                    );
-                    break;
-                case JoinPointType.METHOD_CALL_INT:
-                    ctx = new ExpressionContext(
-                            PointcutType.CALL,
-                            calleeClassInfo.getMethod(joinPoint.getJoinPointHash()),
-                            callerMethodInfo
-                    );
-                    break;
-                case JoinPointType.CONSTRUCTOR_EXECUTION_INT:
-                    ctx = new ExpressionContext(
-                            PointcutType.EXECUTION,
-                            calleeClassInfo.getConstructor(joinPoint.getJoinPointHash()),
-                            callerMethodInfo
-                    );
-                    break;
-                case JoinPointType.CONSTRUCTOR_CALL_INT:
-                    ctx = new ExpressionContext(
-                            PointcutType.CALL,
-                            calleeClassInfo.getConstructor(joinPoint.getJoinPointHash()),
-                            callerMethodInfo
-                    );
-                    break;
-                case JoinPointType.FIELD_SET_INT:
-                    ctx = new ExpressionContext(
-                            PointcutType.SET,
-                            calleeClassInfo.getField(joinPoint.getJoinPointHash()),
-                            callerMethodInfo
-                    );
-                    break;
-                case JoinPointType.FIELD_GET_INT:
-                    ctx = new ExpressionContext(
-                            PointcutType.GET,
-                            calleeClassInfo.getField(joinPoint.getJoinPointHash()),
-                            callerMethodInfo
-                    );
-                    break;
-                case JoinPointType.HANDLER_INT:
-                    ctx = new ExpressionContext(
-                            PointcutType.HANDLER,
-                            AsmClassInfo.getClassInfo(joinPoint.getCalleeClassName(), loader),
-                            callerMethodInfo
-                    );
-                    break;
-                case JoinPointType.STATIC_INITIALIZATION_INT:
-                	ctx = new ExpressionContext(
-                	        PointcutType.STATIC_INITIALIZATION,
-                	        calleeClassInfo.staticInitializer(),
-                	        calleeClassInfo
-                	);
-            }
+            final ExpressionContext ctx = getExpressionContext(joinPoint, loader);
             if (expression.getExpression().match(ctx)) {
                 matchingJoinPointInfos.add(new MatchingJoinPointInfo(clazz, compilationInfo, ctx));
             }
@@ -224,6 +274,79 @@ public class JoinPointFactory {
         return matchingJoinPointInfos;
     }
 
+    /**
+     * Creates the expression context of an emitted join point, to match it against pointcut expressions.
+     *
+     * @param joinPoint the emitted join point
+     * @param loader    the class loader of the join point
+     * @return the expression context
+     */
+    public static ExpressionContext getExpressionContext(final EmittedJoinPoint joinPoint, final ClassLoader loader) {
+        final ClassInfo calleeClassInfo = AsmClassInfo.getClassInfo(joinPoint.getCalleeClassName(), loader);
+        final ClassInfo callerClassInfo = AsmClassInfo.getClassInfo(joinPoint.getCallerClassName(), loader);
+        final MethodInfo callerMethodInfo = getCallerMethodInfo(callerClassInfo, joinPoint);
+
+        ExpressionContext ctx = null;
+        switch (joinPoint.getJoinPointType()) {
+            case JoinPointType.METHOD_EXECUTION_INT:
+                ctx = new ExpressionContext(
+                        PointcutType.EXECUTION,
+                        calleeClassInfo.getMethod(joinPoint.getJoinPointHash()),
+                        callerMethodInfo
+                );
+                break;
+            case JoinPointType.METHOD_CALL_INT:
+                ctx = new ExpressionContext(
+                        PointcutType.CALL,
+                        calleeClassInfo.getMethod(joinPoint.getJoinPointHash()),
+                        callerMethodInfo
+                );
+                break;
+            case JoinPointType.CONSTRUCTOR_EXECUTION_INT:
+                ctx = new ExpressionContext(
+                        PointcutType.EXECUTION,
+                        calleeClassInfo.getConstructor(joinPoint.getJoinPointHash()),
+                        callerMethodInfo
+                );
+                break;
+            case JoinPointType.CONSTRUCTOR_CALL_INT:
+                ctx = new ExpressionContext(
+                        PointcutType.CALL,
+                        calleeClassInfo.getConstructor(joinPoint.getJoinPointHash()),
+                        callerMethodInfo
+                );
+                break;
+            case JoinPointType.FIELD_SET_INT:
+                ctx = new ExpressionContext(
+                        PointcutType.SET,
+                        calleeClassInfo.getField(joinPoint.getJoinPointHash()),
+                        callerMethodInfo
+                );
+                break;
+            case JoinPointType.FIELD_GET_INT:
+                ctx = new ExpressionContext(
+                        PointcutType.GET,
+                        calleeClassInfo.getField(joinPoint.getJoinPointHash()),
+                        callerMethodInfo
+                );
+                break;
+            case JoinPointType.HANDLER_INT:
+                ctx = new ExpressionContext(
+                        PointcutType.HANDLER,
+                        AsmClassInfo.getClassInfo(joinPoint.getCalleeClassName(), loader),
+                        callerMethodInfo
+                );
+                break;
+            case JoinPointType.STATIC_INITIALIZATION_INT:
+            	ctx = new ExpressionContext(
+            	        PointcutType.STATIC_INITIALIZATION,
+            	        calleeClassInfo.staticInitializer(),
+            	        calleeClassInfo
+            	);
+        }
+        return ctx;
+    }
+
     /**
      * Returns the emitted join point structure for a specific JIT generated join point class.
      *
@@ -231,7 +354,8 @@ public class JoinPointFactory {
      * @return the emitted join point structure
      */
     public static EmittedJoinPoint getEmittedJoinPoint(final Class clazz) {
-        return (EmittedJoinPoint) COMPILATION_INFO_REPOSITORY.get(clazz);
+        final CompilationInfo compilationInfo = (CompilationInfo) COMPILATION_INFO_REPOSITORY.get(clazz);
+        return compilationInfo == null ? null : compilationInfo.getEmittedJoinPoint();
     }
 
     /**
@@ -178,34 +178,25 @@ public class MethodExecutionJoinPointCompiler extends AbstractJoinPointCompiler
         );
 
         // set the arguments
-        cv.visitInsn(DUP);
-        createArgumentArrayAt(cv, 1);
-        cv.visitVarInsn(ALOAD, 1);
-        cv.visitMethodInsn(
-                INVOKEVIRTUAL, METHOD_RTTI_IMPL_CLASS_NAME, SET_PARAMETER_VALUES_METHOD_NAME,
-                SET_PARAMETER_VALUES_METHOD_SIGNATURE
-        );
+        createSetParameterValues(cv, METHOD_RTTI_IMPL_CLASS_NAME);
 
         // set the Returned instance
         if (m_returnType.getSort() != Type.VOID) {
             cv.visitInsn(DUP);
+            cv.visitVarInsn(ALOAD, 0);
+            cv.visitFieldInsn(
+                    GETFIELD, m_joinPointClassName, RETURN_VALUE_FIELD_NAME, m_returnType.getDescriptor()
+            );
             if (AsmHelper.isPrimitive(m_returnType)) {
-                AsmHelper.prepareWrappingOfPrimitiveType(cv, m_returnType);
-                cv.visitVarInsn(ALOAD, 0);
-                cv.visitFieldInsn(
-                        GETFIELD, m_joinPointClassName, RETURN_VALUE_FIELD_NAME, m_returnType.getDescriptor()
+                createSetPrimitiveValue(
+                        cv, m_returnType, METHOD_RTTI_IMPL_CLASS_NAME, SET_PRIMITIVE_RETURN_VALUE_METHOD_NAME
                 );
-                AsmHelper.wrapPrimitiveType(cv, m_returnType);
             } else {
-                cv.visitVarInsn(ALOAD, 0);
-                cv.visitFieldInsn(
-                        GETFIELD, m_joinPointClassName, RETURN_VALUE_FIELD_NAME, m_returnType.getDescriptor()
+                cv.visitMethodInsn(
+                        INVOKEVIRTUAL, METHOD_RTTI_IMPL_CLASS_NAME, SET_RETURN_VALUE_METHOD_NAME,
+                        SET_RETURN_VALUE_METHOD_SIGNATURE
                 );
             }
-            cv.visitMethodInsn(
-                    INVOKEVIRTUAL, METHOD_RTTI_IMPL_CLASS_NAME, SET_RETURN_VALUE_METHOD_NAME,
-                    SET_RETURN_VALUE_METHOD_SIGNATURE
-            );
         }
 
         cv.visitInsn(ARETURN);
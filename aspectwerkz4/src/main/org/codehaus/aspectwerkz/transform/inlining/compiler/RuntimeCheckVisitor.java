@@ -36,6 +36,7 @@ import org.codehaus.aspectwerkz.transform.inlining.compiler.AbstractJoinPointCom
 import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
 import org.codehaus.aspectwerkz.transform.TransformationConstants;
 import org.codehaus.aspectwerkz.cflow.CflowCompiler;
+import org.codehaus.aspectwerkz.cflow.CflowBinding;
 import org.codehaus.aspectwerkz.aspect.AdviceInfo;
 import org.codehaus.aspectwerkz.aspect.container.AspectFactoryManager;
 import org.objectweb.asm.MethodVisitor;
@@ -45,6 +46,9 @@ import org.objectweb.asm.Opcodes;
  * Visit an expression and push on the bytecode stack the boolean expression that corresponds to the residual
  * part for the target(CALLEE) filtering and cflow / cflowbelow runtime checks
  * <p/>
+ * The cflow / cflowbelow checks read the CflowState of the current thread, from the local variable where the join
+ * point stored it when the compiler input provides its index.
+ * <p/>
  * TODO: for now OR / AND / NOT are turned in IAND etc, ie "&" and not "&&" that is more efficient but is using labels.
  * <p/>
  * Note: we have to override here (and maintain) every visit Method that visit a node that appears in an expression
@@ -198,27 +202,45 @@ public class RuntimeCheckVisitor extends ExpressionVisitor implements Opcodes {
 
     public Object visit(ASTCflow node, Object data) {
         // runtime check
-        String cflowClassName = CflowCompiler.getCflowAspectClassName(node.hashCode());
-        cv.visitMethodInsn(
-                INVOKESTATIC,
-                cflowClassName,
-                TransformationConstants.IS_IN_CFLOW_METOD_NAME,
-                TransformationConstants.IS_IN_CFLOW_METOD_SIGNATURE
-        );
+        pushInCflow(CflowBinding.getCflowID(node, m_namespace, false));
         return (Boolean) super.visit(node, data);
     }
 
     public Object visit(ASTCflowBelow node, Object data) {
         // runtime check
         //TODO: cflowbelow ID will differ from cflow one.. => not optimized
-        String cflowClassName = CflowCompiler.getCflowAspectClassName(node.hashCode());
+        pushInCflow(CflowBinding.getCflowID(node, m_namespace, true));
+        return (Boolean) super.visit(node, data);
+    }
+
+    /**
+     * Push on the stack whether the current thread is in the cflow of the given id
+     *
+     * @param cflowID
+     */
+    private void pushInCflow(int cflowID) {
+        if (m_input.cflowStateIndex != TransformationConstants.INDEX_NOTAVAILABLE) {
+            cv.visitVarInsn(ALOAD, m_input.cflowStateIndex);
+        } else {
+            cv.visitMethodInsn(
+                    INVOKESTATIC,
+                    TransformationConstants.CFLOW_STATE_CLASS_NAME,
+                    TransformationConstants.GET_CFLOW_STATE_METHOD_NAME,
+                    TransformationConstants.GET_CFLOW_STATE_METHOD_SIGNATURE
+            );
+        }
+        cv.visitFieldInsn(
+                GETSTATIC,
+                CflowCompiler.getCflowAspectClassName(cflowID),
+                TransformationConstants.CFLOW_INDEX_FIELD_NAME,
+                "I"
+        );
         cv.visitMethodInsn(
-                INVOKESTATIC,
-                cflowClassName,
+                INVOKEVIRTUAL,
+                TransformationConstants.CFLOW_STATE_CLASS_NAME,
                 TransformationConstants.IS_IN_CFLOW_METOD_NAME,
-                TransformationConstants.IS_IN_CFLOW_METOD_SIGNATURE
+                TransformationConstants.IS_IN_CFLOW_INDEX_METOD_SIGNATURE
         );
-        return (Boolean) super.visit(node, data);
     }
 
     public Object visit(ASTArgs node, Object data) {
@@ -22,16 +22,21 @@ import org.codehaus.aspectwerkz.definition.DeploymentScope;
 import org.codehaus.aspectwerkz.definition.XmlParser;
 import org.codehaus.aspectwerkz.definition.DocumentParser;
 import org.codehaus.aspectwerkz.joinpoint.management.AdviceInfoContainer;
+import org.codehaus.aspectwerkz.joinpoint.management.AdviceSampler;
+import org.codehaus.aspectwerkz.joinpoint.management.AsyncAdviceDispatcher;
 import org.codehaus.aspectwerkz.joinpoint.management.JoinPointManager;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointStatistics;
 import org.codehaus.aspectwerkz.annotation.AspectAnnotationParser;
 import org.codehaus.aspectwerkz.reflect.impl.asm.AsmClassInfo;
 import org.codehaus.aspectwerkz.reflect.impl.java.JavaClassInfo;
 import org.codehaus.aspectwerkz.reflect.ClassInfo;
 import org.codehaus.aspectwerkz.exception.DefinitionException;
+import org.codehaus.aspectwerkz.transform.inlining.compiler.AdviceInliner;
 import org.codehaus.aspectwerkz.transform.inlining.compiler.MatchingJoinPointInfo;
 import org.codehaus.aspectwerkz.transform.inlining.compiler.JoinPointFactory;
 import org.codehaus.aspectwerkz.transform.inlining.compiler.CompilationInfo;
 import org.codehaus.aspectwerkz.transform.inlining.AspectModelManager;
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
 import org.codehaus.aspectwerkz.DeploymentModel;
 import org.objectweb.asm.ClassReader;
 import org.dom4j.Document;
@@ -182,6 +187,7 @@ public class Deployer {
                                                        final DeploymentScope deploymentScope,
                                                        final ClassLoader deployLoader) {
         logDeployment(className, deployLoader);
+        JoinPointManager.registerIndexedJoinPoints(deployLoader);
 
         Class aspectClass = null;
         try {
@@ -203,7 +209,7 @@ public class Deployer {
                 aspectClass, newAspectDef, systemDef, deploymentScope, deploymentHandle
         );
 
-        redefine(newExpressions);
+        redefine(newExpressions, deployLoader);
         return deploymentHandle;
     }
 
@@ -293,6 +299,7 @@ public class Deployer {
         }
         final String className = aspect.getName();
         logDeployment(className, deployLoader);
+        JoinPointManager.registerIndexedJoinPoints(deployLoader);
 
         final DeploymentHandle deploymentHandle = new DeploymentHandle(aspect, deployLoader);
 
@@ -304,7 +311,7 @@ public class Deployer {
                     aspect, newAspectDef, systemDef, deploymentScope, deploymentHandle
             );
 
-            redefine(newExpressions);
+            redefine(newExpressions, deployLoader);
         } catch (DocumentException e) {
             throw new DefinitionException("XML definition for aspect is not well-formed: " + xmlDef);
         }
@@ -344,6 +351,7 @@ public class Deployer {
      */
     public static void undeploy(final String className, final ClassLoader loader) {
         logUndeployment(className, loader);
+        JoinPointManager.registerIndexedJoinPoints(loader);
 
         //TODO: this one should acquire lock or something
 
@@ -366,7 +374,10 @@ public class Deployer {
                     adviceDef.setExpressionInfo(null);
                     newExpressions.add(oldExpression);
                 }
-                redefine(newExpressions);
+                redefine(newExpressions, loader);
+
+                // the redefined join points do not dispatch the asynchronous advices of the aspect anymore
+                AsyncAdviceDispatcher.shutdown(aspectDef.getQualifiedName());
             }
         }
     }
@@ -391,12 +402,60 @@ public class Deployer {
         undeploy(aspectClass);
     }
 
+    /**
+     * Turns the join point statistics on or off for the join points matching the given pointcut (see
+     * JoinPointStatistics) and recompiles them so that they start or stop gathering them. The matching join points
+     * compiled afterwards follow the new setting, the other join points are not affected.
+     * <p/>
+     * The statistics gathered before the statistics are turned off are kept.
+     *
+     * @param enabled  true to gather the statistics
+     * @param pointcut the pointcut that picks out the join points to recompile, without pointcut references
+     * @param loader   the class loader of the join points
+     */
+    public static void setJoinPointStatistics(final boolean enabled, final String pointcut, final ClassLoader loader) {
+        if (pointcut == null) {
+            throw new IllegalArgumentException("pointcut can not be null");
+        }
+        JoinPointStatistics.setEnabled(pointcut, enabled);
+        final Set expressions = new HashSet();
+        expressions.add(new ExpressionInfo(pointcut, JoinPointStatistics.class.getName()));
+        redefine(expressions, loader);
+    }
+
+    /**
+     * Sets the sampling rate of a sampled advice, or of all the sampled advices of an aspect (see AdviceSampler). The
+     * join points use the new rate at their next invocation, they are not redefined.
+     *
+     * @param aspectQualifiedName the qualified name of the aspect
+     * @param adviceName          the advice method name, or null for all the sampled advices of the aspect
+     * @param rate                1 to run the advice at each invocation, N to run it once every N invocations, 0 to
+     *                            never run it
+     */
+    public static void setSamplingRate(final String aspectQualifiedName, final String adviceName, final int rate) {
+        AdviceSampler.setRate(aspectQualifiedName, adviceName, rate);
+    }
+
     /**
      * Redefines all join points that are affected by the system redefinition.
      *
      * @param expressions the expressions that will pick out the join points that are affected
+     * @param loader      the class loader in which the deployment occurs
      */
-    private static void redefine(final Set expressions) {
+    private static void redefine(final Set expressions, final ClassLoader loader) {
+        // the classes weaved ahead of their loading with the previous definitions can not be used anymore
+        SystemDefinitionContainer.definitionsChanged();
+
+        // the aspect classes that can be inlined depend on the definitions, see AdviceInliner
+        AdviceInliner.definitionsChanged();
+
+        // the join points generated ahead of time by the offline compiler are only known from their index,
+        // deploy and undeploy register them before changing the definitions
+        JoinPointManager.registerIndexedJoinPoints(loader);
+
+        // the dormant join points have no join point class yet, they will be compiled when first reached
+        JoinPointManager.activateDormantJoinPoints(expressions);
+
         final Set allMatchingJoinPoints = new HashSet();
         for (Iterator itExpr = expressions.iterator(); itExpr.hasNext();) {
             ExpressionInfo expression = (ExpressionInfo) itExpr.next();
@@ -442,12 +501,16 @@ public class Deployer {
                 joinPointInfo.getExpressionContext(),
                 loader
         );
+        final CompilationInfo.Model initialModel = compilationInfo.getInitialModel();
         final CompilationInfo.Model redefinedModel = new CompilationInfo.Model(
-                compilationInfo.getInitialModel().getEmittedJoinPoint(), // copy the reference since it is the same
+                compilationInfo.getEmittedJoinPoint(), // copy the reference since it is the same
                 newAdviceContainer,
                 compilationInfo.getRedefinitionCounter(),
-                compilationInfo.getInitialModel().getThisClassInfo()
+                initialModel.getThisClassInfo()
         );
+        if (AspectWerkzPreProcessor.RELINKJP) {
+            JoinPointFactory.defineRelinkTargetInterface(initialModel, loader);
+        }
         JoinPointFactory.compileJoinPointAndAttachToClassLoader(redefinedModel, loader);
 
         compilationInfo.setRedefinedModel(redefinedModel);
@@ -457,12 +520,27 @@ public class Deployer {
     /**
      * Redefines the intial (weaved in) join point to delegate to the newly compiled "real" join point which is
      * based on the new redefined model.
+     * <p/>
+     * Relinkable join points (see -Daspectwerkz.transform.relinkjp) are switched to the new join point without
+     * redefinition, the remaining ones are redefined with HotSwap.
      *
      * @param changeSet the change set
      */
     private static void redefineInitialJoinPoints(final ChangeSet changeSet) {
+        final ChangeSet redefinitionChangeSet = new ChangeSet();
+        for (Iterator it = changeSet.getElements().iterator(); it.hasNext();) {
+            final ChangeSet.Element element = (ChangeSet.Element) it.next();
+            if (!JoinPointFactory.relinkJoinPoint(
+                    element.getJoinPointInfo().getJoinPointClass(), element.getCompilationInfo()
+            )) {
+                redefinitionChangeSet.addElement(element);
+            }
+        }
+        if (redefinitionChangeSet.getElements().isEmpty()) {
+            return;
+        }
         // TODO type should be pluggable
-        RedefinerFactory.newRedefiner(RedefinerFactory.Type.HOTSWAP).redefine(changeSet);
+        RedefinerFactory.newRedefiner(RedefinerFactory.Type.HOTSWAP).redefine(redefinitionChangeSet);
     }
 
     /**
@@ -0,0 +1,79 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.transform.inlining.weaver;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.codehaus.aspectwerkz.definition.DefinitionFingerprint;
+import org.codehaus.aspectwerkz.transform.Context;
+import org.codehaus.aspectwerkz.transform.inlining.ContextImpl;
+import org.codehaus.aspectwerkz.transform.inlining.EmittedJoinPoint;
+import org.codehaus.aspectwerkz.transform.inlining.WovenClassAttribute;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassAdapter;
+import org.objectweb.asm.ClassVisitor;
+
+/**
+ * Adds the WovenClassAttribute to the weaved class, with the fingerprint of the current definitions and the join
+ * points weaved now and by the previous weavings of the class.
+ * <p/>
+ * The class must be read with a WovenClassAttribute prototype so that the attribute of a previous weaving is read and
+ * replaced.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public class AddWovenClassAttributeVisitor extends ClassAdapter {
+
+    private final ContextImpl m_ctx;
+
+    private final Set m_joinPointClassNames = new HashSet();
+
+    /**
+     * Creates a new class adapter.
+     *
+     * @param cv
+     * @param ctx
+     */
+    public AddWovenClassAttributeVisitor(final ClassVisitor cv, final Context ctx) {
+        super(cv);
+        m_ctx = (ContextImpl) ctx;
+    }
+
+    /**
+     * Drops the attribute of a previous weaving, keeping its join points.
+     *
+     * @param attribute
+     */
+    public void visitAttribute(final Attribute attribute) {
+        if (attribute instanceof WovenClassAttribute) {
+            m_joinPointClassNames.addAll(((WovenClassAttribute) attribute).getJoinPointClassNames());
+            return;
+        }
+        super.visitAttribute(attribute);
+    }
+
+    /**
+     * Adds the attribute.
+     */
+    public void visitEnd() {
+        for (Iterator it = m_ctx.getEmittedJoinPoints().iterator(); it.hasNext();) {
+            final String joinPointClassName = ((EmittedJoinPoint) it.next()).getJoinPointClassName();
+            if (joinPointClassName != null) {
+                m_joinPointClassNames.add(joinPointClassName);
+            }
+        }
+        super.visitAttribute(
+                new WovenClassAttribute(
+                        DefinitionFingerprint.getFingerprintFor(m_ctx.getLoader()), m_joinPointClassNames
+                )
+        );
+        super.visitEnd();
+    }
+}
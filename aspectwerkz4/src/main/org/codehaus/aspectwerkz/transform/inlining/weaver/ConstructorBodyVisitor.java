@@ -168,6 +168,7 @@ public class ConstructorBodyVisitor extends ClassAdapter implements Transformati
                 joinPointHash
         );
 
+        JoinPointInitVisitor.addLinkJoinPointCall(ctorProxy, m_ctx, m_declaringTypeName, joinPointClassName);
         ctorProxy.visitMethodInsn(
                 INVOKESTATIC,
                 joinPointClassName,
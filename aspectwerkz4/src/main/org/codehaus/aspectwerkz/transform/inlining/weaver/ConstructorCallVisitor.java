@@ -271,6 +271,15 @@ public class ConstructorCallVisitor extends ClassAdapter implements Transformati
                     // keep track of the ConstructorInfo so that we don't compute it again in visitMethodInsn <init>
                     newInvocationStruct.constructorInfo = calleeConstructorInfo;
                     newInvocationStruct.joinPointHash = joinPointHash;
+                    newInvocationStruct.joinPointClassName = m_ctx.getJoinPointClassName(
+                            ctx,
+                            m_callerClassInfo,
+                            m_callerMethodName,
+                            m_callerMethodDesc,
+                            calleeClassName,
+                            JoinPointType.CONSTRUCTOR_CALL_INT,
+                            joinPointHash
+                    );
                     m_newInvocationStructStack.push(newInvocationStruct);
                     // skip NEW instr and flag to skip next DUP
                     m_skipNextDup = true;
@@ -337,14 +346,7 @@ public class ConstructorCallVisitor extends ClassAdapter implements Transformati
             } else {
                 m_ctx.markAsAdvised();
 
-                String joinPointClassName = TransformationUtil.getJoinPointClassName(
-                        m_callerClassName,
-                        m_callerMethodName,
-                        m_callerMethodDesc,
-                        calleeClassName,
-                        JoinPointType.CONSTRUCTOR_CALL_INT,
-                        struct.joinPointHash
-                );
+                String joinPointClassName = struct.joinPointClassName;
 
                 // load the caller instance (this), or null if in a static context
                 // note that callee instance [mandatory since ctor] and args are already on the stack
@@ -355,6 +357,7 @@ public class ConstructorCallVisitor extends ClassAdapter implements Transformati
                 }
 
                 // add the call to the join point
+                JoinPointInitVisitor.addLinkJoinPointCall(mv, m_ctx, m_callerClassName, joinPointClassName);
                 super.visitMethodInsn(
                         INVOKESTATIC,
                         joinPointClassName,
@@ -518,6 +521,7 @@ public class ConstructorCallVisitor extends ClassAdapter implements Transformati
         public String ctorDesc;
         public ConstructorInfo constructorInfo = null;
         public int joinPointHash = -1;
+        public String joinPointClassName = null;
     }
 
 }
\ No newline at end of file
@@ -236,8 +236,9 @@ public class FieldSetFieldGetVisitor extends ClassAdapter implements Transformat
             } else {
                 m_ctx.markAsAdvised();
 
-                String joinPointClassName = TransformationUtil.getJoinPointClassName(
-                        m_callerClassName,
+                String joinPointClassName = m_ctx.getJoinPointClassName(
+                        ctx,
+                        m_callerClassInfo,
                         m_callerMethodName,
                         m_callerMethodDesc,
                         className,
@@ -256,6 +257,7 @@ public class FieldSetFieldGetVisitor extends ClassAdapter implements Transformat
                 }
 
                 // add the call to the join point
+                JoinPointInitVisitor.addLinkJoinPointCall(mv, m_ctx, m_callerClassName, joinPointClassName);
                 super.visitMethodInsn(
                         INVOKESTATIC,
                         joinPointClassName,
@@ -313,8 +315,9 @@ public class FieldSetFieldGetVisitor extends ClassAdapter implements Transformat
             } else {
                 m_ctx.markAsAdvised();
 
-                String joinPointClassName = TransformationUtil.getJoinPointClassName(
-                        m_callerClassName,
+                String joinPointClassName = m_ctx.getJoinPointClassName(
+                        ctx,
+                        m_callerClassInfo,
                         m_callerMethodName,
                         m_callerMethodDesc,
                         className,
@@ -331,6 +334,7 @@ public class FieldSetFieldGetVisitor extends ClassAdapter implements Transformat
                 }
 
                 // add the call to the join point
+                JoinPointInitVisitor.addLinkJoinPointCall(mv, m_ctx, m_callerClassName, joinPointClassName);
                 super.visitMethodInsn(
                         INVOKESTATIC,
                         joinPointClassName,
@@ -243,6 +243,11 @@ public class HandlerVisitor extends ClassAdapter implements TransformationConsta
         }
 
         public void visitLabel(Label label) {
+            if (label instanceof JoinPointInitVisitor.DormantLabel) {
+                // added by the weaver, not indexed by the lookahead
+                super.visitLabel(label);
+                return;
+            }
             m_lastLabelForLineNumber = label;
             super.visitLabel(label);
 
@@ -287,6 +292,7 @@ public class HandlerVisitor extends ClassAdapter implements TransformationConsta
             }
             //TODO for now we pass the exception as both CALLEE and ARG0 - may be callee must be NULL
             //? check in AJ RTTI
+            JoinPointInitVisitor.addLinkJoinPointCall(mv, m_ctx, callerTypeName, joinPointClassName);
             mv.visitMethodInsn(
                     INVOKESTATIC, joinPointClassName, INVOKE_METHOD_NAME,
                     TransformationUtil.getInvokeSignatureForHandlerJoinPoints(callerTypeName, exceptionTypeName)
@@ -9,11 +9,16 @@ package org.codehaus.aspectwerkz.transform.inlining.weaver;
 
 import org.objectweb.asm.*;
 import org.codehaus.aspectwerkz.transform.Context;
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
 import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.transform.TransformationUtil;
 import org.codehaus.aspectwerkz.transform.inlining.ContextImpl;
 import org.codehaus.aspectwerkz.transform.inlining.EmittedJoinPoint;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointType;
 
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 
 /**
  * A ClassAdapter that take care of all weaved class and add the glue between the class and its JIT dependencies.
@@ -22,6 +27,21 @@ import java.util.Iterator;
  * and patches the 'clinit' method.
  * <p/>
  * If the class has been made advisable, we also add a ___AW_$_AW_$emittedJoinPoints fields that gets populated.
+ * <p/>
+ * When lazy join point linking is turned on (<code>-Daspectwerkz.transform.lazyjp=true</code>), the code join points
+ * are not loaded from the 'clinit' method. Instead a 'private static volatile boolean aw$linked$_AW_$[jp]' field and a
+ * 'private static void aw$link$_AW_$[jp]()' method are added for each of them, and the weaved call sites invoke
+ * this method just before the join point invocation so that the join point class gets compiled and defined the
+ * first time the join point is actually reached.
+ * <p/>
+ * The dormant join points (<code>-Daspectwerkz.transform.dormantjp=true</code>) are linked the same way, but the
+ * weaved code only invokes them once their 'private static volatile boolean aw$active$_AW_$[jp]' field is set, and
+ * runs the original code until then. They are registered from the 'clinit' method with
+ * JoinPointManager.registerDormantJoinPoint(..) so that a deployment can activate them.
+ * <p/>
+ * When the classes are weaved ahead of time by the offline compiler (<code>-aotjp</code>), the join point classes are
+ * generated along with the weaved class hence the 'clinit' method does not load them, unless the class is made
+ * advisable.
  *
  *
  * @author <a href="mailto:alex@gnilux.com">Alexandre Vasseur </a>
@@ -36,6 +56,8 @@ public class JoinPointInitVisitor extends ClassAdapter implements Transformation
     private boolean m_hasInitJoinPointsMethod = false;
     private boolean m_hasClassField = false;
     private boolean m_hasEmittedJoinPointsField = false;
+    private final Set m_linkMethods = new HashSet();
+    private final Set m_activeFields = new HashSet();
 
     /**
      * Creates a new instance.
@@ -78,6 +100,10 @@ public class JoinPointInitVisitor extends ClassAdapter implements Transformation
             );
             ca.visitMaxs(0, 0);
             return ca;
+        } else if (name.startsWith(LINK_JOIN_POINT_METHOD_PREFIX)) {
+            // lazy linking from a previous weaving
+            m_linkMethods.add(name);
+            return super.visitMethod(access, name, desc, signature, exceptions);
         } else {
             return super.visitMethod(access, name, desc, signature, exceptions);
         }
@@ -97,6 +123,9 @@ public class JoinPointInitVisitor extends ClassAdapter implements Transformation
             m_hasClassField = true;
         } else if (EMITTED_JOINPOINTS_FIELD_NAME.equals(name)) {
             m_hasEmittedJoinPointsField = true;
+        } else if (name.startsWith(ACTIVE_JOIN_POINT_FIELD_PREFIX)) {
+            // dormant join point from a previous weaving
+            m_activeFields.add(name);
         }
         return super.visitField(access, name, desc, signature, value);
     }
@@ -163,9 +192,229 @@ public class JoinPointInitVisitor extends ClassAdapter implements Transformation
             mv.visitMaxs(0, 0);
         }
 
+        for (Iterator iterator = m_ctx.getEmittedJoinPoints().iterator(); iterator.hasNext();) {
+            EmittedJoinPoint jp = (EmittedJoinPoint) iterator.next();
+            if (isLazy(jp)) {
+                addLinkJoinPointMethod(jp);
+            }
+            if (jp.isDormant()) {
+                addActiveField(jp);
+            }
+        }
+
         cv.visitEnd();
     }
 
+    /**
+     * Adds the 'aw$linked$_AW_$[jp]' field and the 'aw$link$_AW_$[jp]()' method for the given join point, unless
+     * already there (several call sites can share the same join point, and multi-weaving).
+     * <pre>
+     *      private static volatile boolean aw$linked$_AW_$[jp];
+     *      private static void aw$link$_AW_$[jp]() {
+     *          if (!aw$linked$_AW_$[jp]) {
+     *              JoinPointManager.linkJoinPoint(...);
+     *          }
+     *      }
+     * </pre>
+     * The flag is checked again and set by JoinPointManager.linkJoinPoint, under the lock of the join point.
+     *
+     * @param jp
+     */
+    private void addLinkJoinPointMethod(final EmittedJoinPoint jp) {
+        final String linkMethodName = TransformationUtil.getJoinPointLinkMethodName(jp.getJoinPointClassName());
+        if (!m_linkMethods.add(linkMethodName)) {
+            return;
+        }
+        final String linkedFieldName = TransformationUtil.getJoinPointLinkedFieldName(jp.getJoinPointClassName());
+        cv.visitField(
+                ACC_PRIVATE + ACC_STATIC + ACC_VOLATILE + ACC_SYNTHETIC,
+                linkedFieldName,
+                "Z",
+                null,
+                null
+        );
+
+        MethodVisitor mv = cv.visitMethod(
+                ACC_PRIVATE + ACC_STATIC + ACC_SYNTHETIC,
+                linkMethodName,
+                NO_PARAM_RETURN_VOID_SIGNATURE,
+                null,
+                null
+        );
+        Label linked = new Label();
+        mv.visitFieldInsn(GETSTATIC, m_ctx.getClassName(), linkedFieldName, "Z");
+        mv.visitJumpInsn(IFNE, linked);
+        loadJoinPointArguments(mv, jp);
+        mv.visitMethodInsn(
+                INVOKESTATIC,
+                JOIN_POINT_MANAGER_CLASS_NAME,
+                LINK_JOIN_POINT_METHOD_NAME,
+                LOAD_JOIN_POINT_METHOD_SIGNATURE
+        );
+        mv.visitLabel(linked);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+    }
+
+    /**
+     * Adds the 'private static volatile boolean aw$active$_AW_$[jp]' field for the given dormant join point, unless
+     * already there.
+     *
+     * @param jp
+     */
+    private void addActiveField(final EmittedJoinPoint jp) {
+        final String activeFieldName = TransformationUtil.getJoinPointActiveFieldName(jp.getJoinPointClassName());
+        if (!m_activeFields.add(activeFieldName)) {
+            return;
+        }
+        cv.visitField(
+                ACC_PRIVATE + ACC_STATIC + ACC_VOLATILE + ACC_SYNTHETIC,
+                activeFieldName,
+                "Z",
+                null,
+                null
+        );
+    }
+
+    /**
+     * Loads the JoinPointManager.loadJoinPoint(...) / linkJoinPoint(...) arguments for the given join point.
+     *
+     * @param mv
+     * @param jp
+     */
+    private void loadJoinPointArguments(final MethodVisitor mv, final EmittedJoinPoint jp) {
+        mv.visitLdcInsn(new Integer(jp.getJoinPointType()));
+
+        mv.visitFieldInsn(GETSTATIC, m_ctx.getClassName(), TARGET_CLASS_FIELD_NAME, CLASS_CLASS_SIGNATURE);
+        mv.visitLdcInsn(jp.getCallerMethodName());
+        mv.visitLdcInsn(jp.getCallerMethodDesc());
+        mv.visitLdcInsn(new Integer(jp.getCallerMethodModifiers()));
+
+        mv.visitLdcInsn(jp.getCalleeClassName());
+        mv.visitLdcInsn(jp.getCalleeMemberName());
+        mv.visitLdcInsn(jp.getCalleeMemberDesc());
+        mv.visitLdcInsn(new Integer(jp.getCalleeMemberModifiers()));
+
+        mv.visitLdcInsn(new Integer(jp.getJoinPointHash()));
+        mv.visitLdcInsn(jp.getJoinPointClassName());
+    }
+
+    /**
+     * Adds a call to JoinPointManager.beginLoadJoinPoints(aw$clazz) or endLoadJoinPoints(aw$clazz).
+     *
+     * @param mv
+     * @param methodName
+     */
+    private void loadJoinPointsBatch(final MethodVisitor mv, final String methodName) {
+        mv.visitFieldInsn(GETSTATIC, m_ctx.getClassName(), TARGET_CLASS_FIELD_NAME, CLASS_CLASS_SIGNATURE);
+        mv.visitMethodInsn(
+                INVOKESTATIC,
+                JOIN_POINT_MANAGER_CLASS_NAME,
+                methodName,
+                LOAD_JOIN_POINTS_METHOD_SIGNATURE
+        );
+    }
+
+    /**
+     * Checks if the given join point is linked lazily. Static initialization join points are always loaded from
+     * the 'clinit' method since they are reached exactly once, right there.
+     *
+     * @param jp
+     * @return true if lazy
+     */
+    private boolean isLazy(final EmittedJoinPoint jp) {
+        return (m_ctx.isLinkedLazily() && jp.getJoinPointType() != JoinPointType.STATIC_INITIALIZATION_INT)
+               || jp.isDormant();
+    }
+
+    /**
+     * Checks if the join points of the weaved class are generated ahead of time, in which case they are not loaded
+     * from the 'clinit' method.
+     *
+     * @return true if ahead of time
+     */
+    private boolean isAheadOfTime() {
+        return m_ctx.isAheadOfTime() && !m_ctx.isMadeAdvisable();
+    }
+
+    /**
+     * Adds the call to the 'aw$link$_AW_$[jp]()' method right before the join point invocation when lazy join point
+     * linking is used. Does nothing otherwise.
+     * <p/>
+     * The call does not change the stack so it can be inserted once the join point arguments are loaded.
+     *
+     * @param mv
+     * @param ctx
+     * @param callerClassName
+     * @param joinPointClassName
+     */
+    public static void addLinkJoinPointCall(final MethodVisitor mv,
+                                            final ContextImpl ctx,
+                                            final String callerClassName,
+                                            final String joinPointClassName) {
+        addLinkJoinPointCall(mv, ctx, callerClassName, joinPointClassName, false);
+    }
+
+    /**
+     * Adds the call to the 'aw$link$_AW_$[jp]()' method right before the join point invocation when lazy join point
+     * linking is used or when the join point is dormant. Does nothing otherwise.
+     *
+     * @param mv
+     * @param ctx
+     * @param callerClassName
+     * @param joinPointClassName
+     * @param isDormant
+     */
+    public static void addLinkJoinPointCall(final MethodVisitor mv,
+                                            final ContextImpl ctx,
+                                            final String callerClassName,
+                                            final String joinPointClassName,
+                                            final boolean isDormant) {
+        if (isDormant || ctx.isLinkedLazily()) {
+            mv.visitMethodInsn(
+                    INVOKESTATIC,
+                    callerClassName,
+                    TransformationUtil.getJoinPointLinkMethodName(joinPointClassName),
+                    NO_PARAM_RETURN_VOID_SIGNATURE
+            );
+        }
+    }
+
+    /**
+     * Adds the check of the 'aw$active$_AW_$[jp]' field of a dormant join point: jumps to the given label if the
+     * join point is active (IFNE) or if it is not (IFEQ).
+     * <p/>
+     * The check does not change the stack.
+     *
+     * @param mv
+     * @param callerClassName
+     * @param joinPointClassName
+     * @param opcode             IFNE or IFEQ
+     * @param label
+     */
+    public static void addActiveJoinPointCheck(final MethodVisitor mv,
+                                               final String callerClassName,
+                                               final String joinPointClassName,
+                                               final int opcode,
+                                               final Label label) {
+        mv.visitFieldInsn(
+                GETSTATIC,
+                callerClassName,
+                TransformationUtil.getJoinPointActiveFieldName(joinPointClassName),
+                "Z"
+        );
+        mv.visitJumpInsn(opcode, label);
+    }
+
+    /**
+     * A label added by the weaver around the dormant join points, that is not part of the original code. The
+     * visitors that index the labels of the original code skip them.
+     *
+     * @author <a href="mailto:alex@gnilux.com">Alexandre Vasseur </a>
+     */
+    public static class DormantLabel extends Label {
+    }
+
     /**
      * Handles the method body of the <clinit>method.
      *
@@ -210,30 +459,40 @@ public class JoinPointInitVisitor extends ClassAdapter implements Transformation
             super(ca);
 
             // loop over emitted jp and insert call to "JoinPointManager.loadJoinPoint(...)"
+            // unless linked lazily or generated ahead of time, once per join point class since call sites can share it
+            // the dormant join points are registered with "JoinPointManager.registerDormantJoinPoint(...)" instead
+            // the calls are enclosed in JoinPointManager.begin/endLoadJoinPoints(aw$clazz) so that the
+            // join points are compiled and defined in one batch, the batch being aborted if a call fails
             // add calls to aw$emittedJoinPoints.put(.. new EmittedJoinPoint) if needed.
+            final Label batchStart = new Label();
+            Set loadedJoinPoints = new HashSet();
+            Set dormantJoinPoints = new HashSet();
+            final boolean aheadOfTime = isAheadOfTime();
             for (Iterator iterator = m_ctx.getEmittedJoinPoints().iterator(); iterator.hasNext();) {
 
                 EmittedJoinPoint jp = (EmittedJoinPoint) iterator.next();
-                mv.visitLdcInsn(new Integer(jp.getJoinPointType()));
-
-                mv.visitFieldInsn(GETSTATIC, m_ctx.getClassName(), TARGET_CLASS_FIELD_NAME, CLASS_CLASS_SIGNATURE);
-                mv.visitLdcInsn(jp.getCallerMethodName());
-                mv.visitLdcInsn(jp.getCallerMethodDesc());
-                mv.visitLdcInsn(new Integer(jp.getCallerMethodModifiers()));
-
-                mv.visitLdcInsn(jp.getCalleeClassName());
-                mv.visitLdcInsn(jp.getCalleeMemberName());
-                mv.visitLdcInsn(jp.getCalleeMemberDesc());
-                mv.visitLdcInsn(new Integer(jp.getCalleeMemberModifiers()));
-
-                mv.visitLdcInsn(new Integer(jp.getJoinPointHash()));
-                mv.visitLdcInsn(jp.getJoinPointClassName());
-                mv.visitMethodInsn(
-                        INVOKESTATIC,
-                        JOIN_POINT_MANAGER_CLASS_NAME,
-                        LOAD_JOIN_POINT_METHOD_NAME,
-                        LOAD_JOIN_POINT_METHOD_SIGNATURE
-                );
+                if (jp.isDormant() && dormantJoinPoints.add(jp.getJoinPointClassName())) {
+                    loadJoinPointArguments(mv, jp);
+                    mv.visitMethodInsn(
+                            INVOKESTATIC,
+                            JOIN_POINT_MANAGER_CLASS_NAME,
+                            REGISTER_DORMANT_JOIN_POINT_METHOD_NAME,
+                            LOAD_JOIN_POINT_METHOD_SIGNATURE
+                    );
+                }
+                if (!aheadOfTime && !isLazy(jp) && loadedJoinPoints.add(jp.getJoinPointClassName())) {
+                    if (loadedJoinPoints.size() == 1) {
+                        loadJoinPointsBatch(mv, BEGIN_LOAD_JOIN_POINTS_METHOD_NAME);
+                        mv.visitLabel(batchStart);
+                    }
+                    loadJoinPointArguments(mv, jp);
+                    mv.visitMethodInsn(
+                            INVOKESTATIC,
+                            JOIN_POINT_MANAGER_CLASS_NAME,
+                            LOAD_JOIN_POINT_METHOD_NAME,
+                            LOAD_JOIN_POINT_METHOD_SIGNATURE
+                    );
+                }
 
                 if (m_ctx.isMadeAdvisable()) {
                     // trove map
@@ -271,6 +530,22 @@ public class JoinPointInitVisitor extends ClassAdapter implements Transformation
                     );
                 }
             }
+            if (!loadedJoinPoints.isEmpty()) {
+                // try { ... } catch (Throwable t) { JoinPointManager.abortLoadJoinPoints(aw$clazz); throw t; }
+                // JoinPointManager.endLoadJoinPoints(aw$clazz);
+                // the abort call never throws, so that it does not hide the failure of the 'clinit' method
+                final Label batchEnd = new Label();
+                final Label batchHandler = new Label();
+                final Label batchEnded = new Label();
+                mv.visitLabel(batchEnd);
+                loadJoinPointsBatch(mv, END_LOAD_JOIN_POINTS_METHOD_NAME);
+                mv.visitJumpInsn(GOTO, batchEnded);
+                mv.visitLabel(batchHandler);
+                loadJoinPointsBatch(mv, ABORT_LOAD_JOIN_POINTS_METHOD_NAME);
+                mv.visitInsn(ATHROW);
+                mv.visitTryCatchBlock(batchStart, batchEnd, batchHandler, null);
+                mv.visitLabel(batchEnded);
+            }
         }
     }
 
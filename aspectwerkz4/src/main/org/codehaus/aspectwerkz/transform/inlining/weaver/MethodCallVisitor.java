@@ -192,6 +192,7 @@ public class MethodCallVisitor extends ClassAdapter implements TransformationCon
             if (INIT_METHOD_NAME.equals(calleeMethodName) ||
                 CLINIT_METHOD_NAME.equals(calleeMethodName) ||
                 calleeMethodName.startsWith(ASPECTWERKZ_PREFIX)
+                || calleeMethodName.startsWith(LINK_JOIN_POINT_METHOD_PREFIX)
                 || calleeClassName.endsWith(JOIN_POINT_CLASS_SUFFIX)
                 //calleeClassName.startsWith("org/aopalliance/")) { // FIXME make generic fix by invoking all AspectModels (same problem in other visitors as well)
                     ){super.visitMethodInsn(opcode, calleeClassName, calleeMethodName, calleeMethodDesc);
@@ -238,8 +239,9 @@ public class MethodCallVisitor extends ClassAdapter implements TransformationCon
             } else {
                 m_ctx.markAsAdvised();
 
-                String joinPointClassName = TransformationUtil.getJoinPointClassName(
-                        m_callerClassName,
+                String joinPointClassName = m_ctx.getJoinPointClassName(
+                        ctx,
+                        m_callerClassInfo,
                         m_callerMethodName,
                         m_callerMethodDesc,
                         calleeClassName,
@@ -247,6 +249,17 @@ public class MethodCallVisitor extends ClassAdapter implements TransformationCon
                         joinPointHash
                 );
 
+                // dormant join point: if (aw$active$_AW_$[jp]) { invoke the join point } else { original call }
+                // the labels are not part of the original code, see HandlerVisitor
+                final boolean isDormant = m_ctx.isDormant(ctx, m_callerClassInfo);
+                Label dormant = null;
+                if (isDormant) {
+                    dormant = new JoinPointInitVisitor.DormantLabel();
+                    JoinPointInitVisitor.addActiveJoinPointCheck(
+                            mv, m_callerClassName, joinPointClassName, IFEQ, dormant
+                    );
+                }
+
                 // load the caller instance (this), or null if in a static context
                 // note that callee instance [optional] and args are already on the stack
                 if (Modifier.isStatic(m_callerMemberInfo.getModifiers())) {
@@ -256,6 +269,7 @@ public class MethodCallVisitor extends ClassAdapter implements TransformationCon
                 }
 
                 // add the call to the join point
+                JoinPointInitVisitor.addLinkJoinPointCall(mv, m_ctx, m_callerClassName, joinPointClassName, isDormant);
                 super.visitMethodInsn(
                         INVOKESTATIC,
                         joinPointClassName,
@@ -266,28 +280,36 @@ public class MethodCallVisitor extends ClassAdapter implements TransformationCon
                         )
                 );
 
+                if (isDormant) {
+                    Label end = new JoinPointInitVisitor.DormantLabel();
+                    super.visitJumpInsn(GOTO, end);
+                    super.visitLabel(dormant);
+                    super.visitMethodInsn(opcode, calleeClassName, calleeMethodName, calleeMethodDesc);
+                    super.visitLabel(end);
+                }
+
                 // emit the joinpoint
                 //See AW-253 - we remember if we had an INVOKE INTERFACE opcode
                 int modifiers = calleeMethodInfo.getModifiers();
                 if (opcode == INVOKEINTERFACE) {
                     modifiers = modifiers | MODIFIER_INVOKEINTERFACE;
                 }
-                m_ctx.addEmittedJoinPoint(
-                        new EmittedJoinPoint(
-                                JoinPointType.METHOD_CALL_INT,
-                                m_callerClassName,
-                                m_callerMethodName,
-                                m_callerMethodDesc,
-                                m_callerMemberInfo.getModifiers(),
-                                calleeClassName,
-                                calleeMethodName,
-                                calleeMethodDesc,
-                                modifiers,
-                                joinPointHash,
-                                joinPointClassName,
-                                m_lastLabelForLineNumber
-                        )
+                EmittedJoinPoint emittedJoinPoint = new EmittedJoinPoint(
+                        JoinPointType.METHOD_CALL_INT,
+                        m_callerClassName,
+                        m_callerMethodName,
+                        m_callerMethodDesc,
+                        m_callerMemberInfo.getModifiers(),
+                        calleeClassName,
+                        calleeMethodName,
+                        calleeMethodDesc,
+                        modifiers,
+                        joinPointHash,
+                        joinPointClassName,
+                        m_lastLabelForLineNumber
                 );
+                emittedJoinPoint.setDormant(isDormant);
+                m_ctx.addEmittedJoinPoint(emittedJoinPoint);
             }
         }
 
@@ -138,7 +138,9 @@ public class MethodExecutionVisitor extends ClassAdapter implements Transformati
             m_ctx.markAsAdvised();
 
             // create the proxy for the original method
-            final MethodVisitor proxyMethod = createProxyMethod(access, name, desc, signature, exceptions, methodInfo);
+            final MethodVisitor proxyMethod = createProxyMethod(
+                    access, name, desc, signature, exceptions, methodInfo, m_ctx.isDormant(ctx, m_classInfo)
+            );
 
             int modifiers = ACC_SYNTHETIC;
             if (Modifier.isStatic(access)) {
@@ -179,6 +181,8 @@ public class MethodExecutionVisitor extends ClassAdapter implements Transformati
      * @param signature
      * @param exceptions
      * @param methodInfo
+     * @param isDormant   true if the join point is dormant, in which case the proxy invokes the original method as
+     *                    long as the join point is not active
      * @return the method visitor
      */
     private MethodVisitor createProxyMethod(final int access,
@@ -186,9 +190,38 @@ public class MethodExecutionVisitor extends ClassAdapter implements Transformati
                                    final String desc,
                                    final String signature,
                                    final String[] exceptions,
-                                   final MethodInfo methodInfo) {
+                                   final MethodInfo methodInfo,
+                                   final boolean isDormant) {
         MethodVisitor mv = cv.visitMethod(access, name, desc, signature, exceptions);
 
+        int joinPointHash = AsmHelper.calculateMethodHash(name, desc);
+        String joinPointClassName = TransformationUtil.getJoinPointClassName(
+                m_declaringTypeName,
+                name,
+                desc,
+                m_declaringTypeName,
+                JoinPointType.METHOD_EXECUTION_INT,
+                joinPointHash
+        );
+
+        if (isDormant) {
+            // if (!aw$active$_AW_$[jp]) return prefixedOriginalName(args..);
+            Label active = new Label();
+            JoinPointInitVisitor.addActiveJoinPointCheck(mv, m_declaringTypeName, joinPointClassName, IFNE, active);
+            if (!Modifier.isStatic(access)) {
+                mv.visitVarInsn(ALOAD, 0);
+            }
+            AsmHelper.loadArgumentTypes(mv, Type.getArgumentTypes(desc), Modifier.isStatic(access));
+            mv.visitMethodInsn(
+                    Modifier.isStatic(access) ? INVOKESTATIC : INVOKEVIRTUAL,
+                    m_declaringTypeName,
+                    TransformationUtil.getPrefixedOriginalMethodName(name, m_declaringTypeName),
+                    desc
+            );
+            AsmHelper.addReturnStatement(mv, Type.getReturnType(desc));
+            mv.visitLabel(active);
+        }
+
         // load "this" ie callee if target method is not static
         if (!Modifier.isStatic(access)) {
             mv.visitVarInsn(ALOAD, 0);
@@ -202,19 +235,10 @@ public class MethodExecutionVisitor extends ClassAdapter implements Transformati
             mv.visitVarInsn(ALOAD, 0);
         }
 
-        int joinPointHash = AsmHelper.calculateMethodHash(name, desc);
-        String joinPointClassName = TransformationUtil.getJoinPointClassName(
-                m_declaringTypeName,
-                name,
-                desc,
-                m_declaringTypeName,
-                JoinPointType.METHOD_EXECUTION_INT,
-                joinPointHash
-        );
-
         // TODO: should we provide some sort of option to do JITgen when weaving instead of when loading ?
         // use case: offline full packaging and alike
 
+        JoinPointInitVisitor.addLinkJoinPointCall(mv, m_ctx, m_declaringTypeName, joinPointClassName, isDormant);
         mv.visitMethodInsn(
                 INVOKESTATIC,
                 joinPointClassName,
@@ -228,22 +252,22 @@ public class MethodExecutionVisitor extends ClassAdapter implements Transformati
         mv.visitMaxs(0, 0);
 
         // emit the joinpoint
-        m_ctx.addEmittedJoinPoint(
-                new EmittedJoinPoint(
-                        JoinPointType.METHOD_EXECUTION_INT,
-                        m_declaringTypeName,
-                        name,
-                        desc,
-                        access,
-                        m_declaringTypeName,
-                        name,
-                        desc,
-                        access,
-                        joinPointHash,
-                        joinPointClassName,
-                        EmittedJoinPoint.NO_LINE_NUMBER
-                )
+        EmittedJoinPoint emittedJoinPoint = new EmittedJoinPoint(
+                JoinPointType.METHOD_EXECUTION_INT,
+                m_declaringTypeName,
+                name,
+                desc,
+                access,
+                m_declaringTypeName,
+                name,
+                desc,
+                access,
+                joinPointHash,
+                joinPointClassName,
+                EmittedJoinPoint.NO_LINE_NUMBER
         );
+        emittedJoinPoint.setDormant(isDormant);
+        m_ctx.addEmittedJoinPoint(emittedJoinPoint);
 
         return mv;
     }
@@ -7,6 +7,8 @@
  **************************************************************************************/
 package org.codehaus.aspectwerkz.util;
 
+import java.lang.reflect.Method;
+
 /**
  * Detects Java JVM vendor and Java version
  * Usage: -jvm | -java
@@ -59,9 +61,59 @@ public class EnvironmentDetect {
         return System.getProperty("java.version").toUpperCase();
     }
 
+    /**
+     * Checks if classes can be defined thru java.lang.invoke.MethodHandles.Lookup.defineClass (Java 9)
+     *
+     * @return true if available
+     */
+    public static boolean detectLookupDefineClass() {
+        return hasLookupMethod("defineClass");
+    }
+
+    /**
+     * Checks if hidden classes can be defined thru java.lang.invoke.MethodHandles.Lookup.defineHiddenClass (Java 15)
+     *
+     * @return true if available
+     */
+    public static boolean detectHiddenClass() {
+        return hasLookupMethod("defineHiddenClass");
+    }
+
+    /**
+     * Checks if the VM has the Java 5 memory model (JSR-133), which gives final fields their initialization safety
+     * and volatile fields their ordering, by checking for a Java 5 class
+     *
+     * @return true if so
+     */
+    public static boolean detectJava5MemoryModel() {
+        try {
+            Class.forName("java.lang.annotation.Annotation");
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    private static boolean hasLookupMethod(String methodName) {
+        try {
+            Method[] methods = Class.forName("java.lang.invoke.MethodHandles$Lookup").getMethods();
+            for (int i = 0; i < methods.length; i++) {
+                if (methods[i].getName().equals(methodName)) {
+                    return true;
+                }
+            }
+        } catch (Throwable t) {
+            ;// not available
+        }
+        return false;
+    }
+
     public static void show() {
         System.out.println(detectJVM());
         System.out.println(detectJava());
+        System.out.println("Lookup.defineClass: " + detectLookupDefineClass());
+        System.out.println("Lookup.defineHiddenClass: " + detectHiddenClass());
+        System.out.println("Java 5 memory model: " + detectJava5MemoryModel());
     }
 
     public static void usage() {
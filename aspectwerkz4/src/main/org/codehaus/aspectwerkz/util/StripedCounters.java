@@ -0,0 +1,98 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.util;
+
+/**
+ * A fixed set of long counters striped by thread, for counters updated on hot paths without locking.
+ * <p/>
+ * Each thread updates the stripe its identity hash code falls in, and the value of a counter is the sum of its
+ * stripes. The stripes are padded to whole cache lines so that the threads updating two stripes do not contend on the
+ * same cache line. The counters are neither synchronized nor volatile: the updates of threads sharing a stripe can be
+ * lost and a sum can miss the latest updates, hence the values are approximate.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public final class StripedCounters {
+
+    private static final int STRIPE_COUNT = 8;
+
+    /**
+     * The number of longs of a cache line
+     */
+    private static final int CACHE_LINE = 8;
+
+    /**
+     * The number of longs of a stripe, a multiple of the cache line
+     */
+    private final int m_stride;
+
+    private final long[] m_counters;
+
+    /**
+     * @param counterCount the number of counters, indexed from 0
+     */
+    public StripedCounters(final int counterCount) {
+        m_stride = ((counterCount + CACHE_LINE - 1) / CACHE_LINE) * CACHE_LINE;
+        m_counters = new long[STRIPE_COUNT * m_stride];
+    }
+
+    /**
+     * Returns the stripe of the current thread, to update several counters with.
+     *
+     * @return the stripe
+     */
+    public int getStripe() {
+        final int hash = System.identityHashCode(Thread.currentThread());
+        return ((hash ^ (hash >>> 8)) & (STRIPE_COUNT - 1)) * m_stride;
+    }
+
+    /**
+     * Increments a counter in the given stripe.
+     *
+     * @param stripe  the stripe of the current thread
+     * @param counter
+     * @return the value of the counter in the stripe
+     */
+    public long increment(final int stripe, final int counter) {
+        return ++m_counters[stripe + counter];
+    }
+
+    /**
+     * Adds a value to a counter in the given stripe.
+     *
+     * @param stripe  the stripe of the current thread
+     * @param counter
+     * @param value
+     */
+    public void add(final int stripe, final int counter, final long value) {
+        m_counters[stripe + counter] += value;
+    }
+
+    /**
+     * Returns the value of a counter, summed over the stripes.
+     *
+     * @param counter
+     * @return the value
+     */
+    public long sum(final int counter) {
+        long sum = 0;
+        for (int i = counter; i < m_counters.length; i += m_stride) {
+            sum += m_counters[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Resets all the counters.
+     */
+    public void reset() {
+        for (int i = 0; i < m_counters.length; i++) {
+            m_counters[i] = 0;
+        }
+    }
+}
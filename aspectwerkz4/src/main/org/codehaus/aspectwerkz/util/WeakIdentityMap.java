@@ -0,0 +1,172 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package org.codehaus.aspectwerkz.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * A map with weak keys compared by identity, where the lookups of existing keys do not lock.
+ * <p/>
+ * The entries are immutable and chained per bucket, and the updates are synchronized and replace the chain of the
+ * bucket. A lookup that does not find its key (which can be due to a concurrent update) retries under the lock.
+ * The entries whose key has been garbage collected are expunged on updates.
+ * <p/>
+ * The lookups without lock rely on the Java 5 memory model (JSR-133) to see the final fields of an entry initialized
+ * and the volatile table to publish a new table. On older VMs, where a lookup without lock could see a partially
+ * constructed entry, all the lookups lock.
+ *
+ * @author <a href="mailto:alex AT gnilux DOT com">Alexandre Vasseur</a>
+ */
+public class WeakIdentityMap {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * True if the lookups of existing keys can go without lock, see the class comment
+     */
+    private static final boolean LOCK_FREE_READS = EnvironmentDetect.detectJava5MemoryModel();
+
+    private final ReferenceQueue m_queue = new ReferenceQueue();
+
+    private volatile Entry[] m_table = new Entry[INITIAL_CAPACITY];
+
+    private int m_size = 0;
+
+    /**
+     * Returns the value for the given key.
+     *
+     * @param key
+     * @return the value or null if not found
+     */
+    public Object get(final Object key) {
+        final int hash = System.identityHashCode(key);
+        if (LOCK_FREE_READS) {
+            final Entry[] table = m_table;
+            for (Entry entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next) {
+                if (entry.hash == hash && entry.get() == key) {
+                    return entry.value;
+                }
+            }
+        }
+        synchronized (this) {
+            return getLocked(key, hash);
+        }
+    }
+
+    /**
+     * Puts the value for the given key if the key is not in the map yet.
+     *
+     * @param key
+     * @param value
+     * @return the value now in the map for the key, the given one or the one of a concurrent put
+     */
+    public synchronized Object putIfAbsent(final Object key, final Object value) {
+        final int hash = System.identityHashCode(key);
+        final Object existing = getLocked(key, hash);
+        if (existing != null) {
+            return existing;
+        }
+        expungeStaleEntries();
+        Entry[] table = m_table;
+        if (m_size >= table.length - (table.length >> 2)) {
+            table = resize(table);
+        }
+        final int index = hash & (table.length - 1);
+        table[index] = new Entry(key, hash, value, table[index], m_queue);
+        m_size++;
+        return value;
+    }
+
+    /**
+     * @return the number of entries, including the ones whose key has been collected but not expunged yet
+     */
+    public synchronized int size() {
+        expungeStaleEntries();
+        return m_size;
+    }
+
+    private Object getLocked(final Object key, final int hash) {
+        final Entry[] table = m_table;
+        for (Entry entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next) {
+            if (entry.hash == hash && entry.get() == key) {
+                return entry.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies the live entries in a table twice as large and publishes it.
+     *
+     * @param table
+     * @return the new table
+     */
+    private Entry[] resize(final Entry[] table) {
+        final Entry[] newTable = new Entry[table.length * 2];
+        for (int i = 0; i < table.length; i++) {
+            for (Entry entry = table[i]; entry != null; entry = entry.next) {
+                final Object key = entry.get();
+                if (key != null) {
+                    final int index = entry.hash & (newTable.length - 1);
+                    newTable[index] = new Entry(key, entry.hash, entry.value, newTable[index], m_queue);
+                } else {
+                    m_size--;
+                }
+            }
+        }
+        m_table = newTable;
+        return newTable;
+    }
+
+    /**
+     * Removes the entries whose key has been collected, rebuilding the chain of their bucket.
+     */
+    private void expungeStaleEntries() {
+        Entry stale;
+        while ((stale = (Entry) m_queue.poll()) != null) {
+            final Entry[] table = m_table;
+            final int index = stale.hash & (table.length - 1);
+            Entry chain = null;
+            boolean found = false;
+            int removed = 0;
+            for (Entry entry = table[index]; entry != null; entry = entry.next) {
+                final Object key = entry.get();
+                if (entry == stale) {
+                    found = true;
+                    removed++;
+                } else if (key != null) {
+                    chain = new Entry(key, entry.hash, entry.value, chain, m_queue);
+                } else {
+                    // collected but not enqueued yet, the copies we drop will not be found when polled
+                    removed++;
+                }
+            }
+            if (found) {
+                table[index] = chain;
+                m_size -= removed;
+            }
+        }
+    }
+
+    /**
+     * An immutable entry, weakly referencing its key.
+     */
+    private static final class Entry extends WeakReference {
+        final int hash;
+        final Object value;
+        final Entry next;
+
+        Entry(final Object key, final int hash, final Object value, final Entry next, final ReferenceQueue queue) {
+            super(key, queue);
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
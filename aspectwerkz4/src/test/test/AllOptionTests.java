@@ -0,0 +1,47 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import test.dormantjp.DormantJoinPointTest;
+import test.inlineadvice.InlineAdviceTest;
+import test.inlinecache.InlineCacheTest;
+import test.lazyjp.LazyJoinPointTest;
+import test.jpstats.JoinPointStatisticsOptionTest;
+import test.metrics.WeaverMetricsOptionTest;
+import test.relinkjp.RelinkJoinPointTest;
+import test.sharedjp.SharedJoinPointRedefinitionTest;
+import test.sharedjp.SharedJoinPointTest;
+
+/**
+ * The tests of the weaving options (see AspectWerkzPreProcessor), to run on the test classes weaved with these options
+ * turned on and with the same options (see the test:options target).
+ */
+public class AllOptionTests extends TestCase {
+    public static Test suite() {
+        TestSuite suite = new TestSuite("All option tests");
+
+        suite.addTestSuite(LazyJoinPointTest.class);
+        suite.addTestSuite(SharedJoinPointRedefinitionTest.class);
+        suite.addTestSuite(SharedJoinPointTest.class);
+        suite.addTestSuite(InlineCacheTest.class);
+        suite.addTest(RelinkJoinPointTest.suite());
+        suite.addTestSuite(WeaverMetricsOptionTest.class);
+        suite.addTestSuite(JoinPointStatisticsOptionTest.class);
+        suite.addTestSuite(InlineAdviceTest.class);
+        suite.addTestSuite(DormantJoinPointTest.class);
+
+        return suite;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+}
@@ -23,6 +23,30 @@ import test.withinstaticref.WithinStaticRefTest;
 import test.reflection.ClassInfoHelperTest;
 import test.fieldsetbug.FieldSetTest;
 import test.perx.AssociationScopeTest;
+import test.sharedjp.SharedJoinPointClassNameTest;
+import test.sharedjp.SharedJoinPointTest;
+import test.joinpointbatch.JoinPointBatchTest;
+import test.aotjp.AheadOfTimeWeavingTest;
+import test.aotjp.JoinPointIndexTest;
+import test.inlineadvice.AdviceInlinerTest;
+import test.async.AsyncAdviceDispatcherTest;
+import test.cflowstate.CflowStateTest;
+import test.mixinfactory.MixinFactoryTest;
+import test.weavingprofile.WeavingProfileTest;
+import test.redefinitionrecord.CompilationInfoTest;
+import test.sampling.AdviceSamplerTest;
+import test.typeindex.TypeIndexTest;
+import test.expression.ExpressionBindingsTest;
+import test.wovenattribute.WovenClassAttributeTest;
+import test.mixinfactory.WeakIdentityMapTest;
+import test.inlinecache.RuntimeCheckCacheTest;
+import test.expression.AnnotationIndexTest;
+import test.memberindex.MemberIndexTest;
+import test.snapshot.DefinitionSnapshotTest;
+import test.metrics.WeaverMetricsTest;
+import test.jpstats.JoinPointStatisticsTest;
+import test.primitivertti.PrimitiveRttiTest;
+import test.primitivertti.PrimitiveValuesTest;
 
 /**
  * This tests can be run without online / offline or other post compilation mode. Used to test
@@ -99,6 +123,31 @@ public class AllTests extends TestCase {
         suite.addTestSuite(ClassInfoTest.class);
         suite.addTestSuite(ClassInfoHelperTest.class);
         suite.addTestSuite(AssociationScopeTest.class);
+        suite.addTestSuite(SharedJoinPointClassNameTest.class);
+        suite.addTestSuite(SharedJoinPointTest.class);
+        suite.addTestSuite(JoinPointBatchTest.class);
+        suite.addTestSuite(JoinPointIndexTest.class);
+        suite.addTestSuite(AheadOfTimeWeavingTest.class);
+        suite.addTestSuite(RuntimeCheckCacheTest.class);
+        suite.addTestSuite(AnnotationIndexTest.class);
+        suite.addTestSuite(MemberIndexTest.class);
+        suite.addTestSuite(DefinitionSnapshotTest.class);
+        suite.addTestSuite(WeaverMetricsTest.class);
+        suite.addTestSuite(JoinPointStatisticsTest.class);
+        suite.addTestSuite(PrimitiveValuesTest.class);
+        suite.addTestSuite(PrimitiveRttiTest.class);
+        suite.addTestSuite(AdviceInlinerTest.class);
+        suite.addTestSuite(AsyncAdviceDispatcherTest.class);
+        suite.addTestSuite(CflowStateTest.class);
+        suite.addTestSuite(WeakIdentityMapTest.class);
+        suite.addTestSuite(MixinFactoryTest.class);
+        suite.addTestSuite(WeavingProfileTest.class);
+        suite.addTestSuite(CompilationInfoTest.class);
+        suite.addTestSuite(AdviceSamplerTest.class);
+        suite.addTestSuite(StripedCountersTest.class);
+        suite.addTestSuite(TypeIndexTest.class);
+        suite.addTestSuite(ExpressionBindingsTest.class);
+        suite.addTestSuite(WovenClassAttributeTest.class);
 
         // AW-361, should not throw an NPE
         SystemDefinitionContainer.getDefinitionsFor(null);
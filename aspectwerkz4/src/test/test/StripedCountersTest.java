@@ -0,0 +1,66 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.util.StripedCounters;
+
+/**
+ * The counters striped by thread shared by the samplers, the statistics, the inline cache and the weaver metrics.
+ */
+public class StripedCountersTest extends TestCase {
+
+    public void testCounters() {
+        StripedCounters counters = new StripedCounters(3);
+        int stripe = counters.getStripe();
+        assertEquals(stripe, counters.getStripe());
+        assertEquals(1, counters.increment(stripe, 0));
+        assertEquals(2, counters.increment(stripe, 0));
+        counters.add(stripe, 2, 40);
+        assertEquals(2, counters.sum(0));
+        assertEquals(0, counters.sum(1));
+        assertEquals(40, counters.sum(2));
+        counters.reset();
+        assertEquals(0, counters.sum(0));
+        assertEquals(0, counters.sum(2));
+    }
+
+    public void testStripesAcrossThreads() throws Throwable {
+        final StripedCounters counters = new StripedCounters(9);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    int stripe = counters.getStripe();
+                    for (int j = 0; j < 100; j++) {
+                        counters.increment(stripe, 0);
+                        counters.add(stripe, 8, 2);
+                    }
+                }
+            };
+        }
+        // run one after the other so that the unsynchronized counters are exact
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].start();
+            threads[i].join();
+        }
+        assertEquals(800, counters.sum(0));
+        assertEquals(1600, counters.sum(8));
+        for (int i = 1; i < 8; i++) {
+            assertEquals(0, counters.sum(i));
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(StripedCountersTest.class);
+    }
+}
@@ -0,0 +1,152 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.aotjp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.compiler.AspectWerkzC;
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
+import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
+import org.codehaus.aspectwerkz.transform.inlining.AsmNullAdapter;
+import org.objectweb.asm.ClassAdapter;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodAdapter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The offline compiler -aotjp option applies to its own compilation only: it is not turned on for the weavings that
+ * follow, and it is not ignored when a weaving without it came first.
+ */
+public class AheadOfTimeWeavingTest extends TestCase {
+
+    private static final String CALLER_CLASS_NAME = "test/aotjp/Caller";
+
+    public void testAheadOfTimeOptionNotLeaked() {
+        new AspectWerkzC().setAotJp(true);
+        assertNull(System.getProperty("aspectwerkz.transform.aotjp"));
+    }
+
+    public void testWeavingsWithAndWithoutAheadOfTime() throws Throwable {
+        // the weaver reads the class from its class loader
+        File dir = File.createTempFile("aotjp", "");
+        dir.delete();
+        File file = new File(dir, CALLER_CLASS_NAME + ".class");
+        file.getParentFile().mkdirs();
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(getCallerBytecode());
+            out.close();
+            ClassLoader loader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, getClass().getClassLoader());
+
+            AspectWerkzPreProcessor preProcessor = new AspectWerkzPreProcessor();
+            preProcessor.initialize();
+            // without, with, then without again
+            assertLoadsJoinPoints(true, weave(preProcessor, loader, false));
+            assertLoadsJoinPoints(false, weave(preProcessor, loader, true));
+            assertLoadsJoinPoints(true, weave(preProcessor, loader, false));
+        } finally {
+            for (File f = file; !f.equals(dir.getParentFile()); f = f.getParentFile()) {
+                f.delete();
+            }
+        }
+    }
+
+    private void assertLoadsJoinPoints(final boolean expected, final AspectWerkzPreProcessor.Output output) {
+        assertEquals(1, output.emittedJoinPoints.length);
+        Set calls = getJoinPointManagerCalls(output.bytecode);
+        if (expected && AspectWerkzPreProcessor.LAZYJP) {
+            assertTrue(calls.contains(TransformationConstants.LINK_JOIN_POINT_METHOD_NAME));
+        } else {
+            assertEquals(expected, calls.contains(TransformationConstants.LOAD_JOIN_POINT_METHOD_NAME));
+            assertFalse(calls.contains(TransformationConstants.LINK_JOIN_POINT_METHOD_NAME));
+        }
+    }
+
+    private static AspectWerkzPreProcessor.Output weave(final AspectWerkzPreProcessor preProcessor,
+                                                        final ClassLoader loader,
+                                                        final boolean aheadOfTime) {
+        return preProcessor.preProcessWithOutput(CALLER_CLASS_NAME, getCallerBytecode(), loader, aheadOfTime);
+    }
+
+    /**
+     * Returns the bytecode of a class that is not weaved yet:
+     * <pre>
+     *      public class Caller {
+     *          public static void caller(Callee callee) {
+     *              callee.callee();
+     *          }
+     *      }
+     * </pre>
+     */
+    private static byte[] getCallerBytecode() {
+        ClassWriter cw = AsmHelper.newClassWriter(true);
+        cw.visit(
+                AsmHelper.JAVA_VERSION,
+                Opcodes.ACC_PUBLIC + Opcodes.ACC_SUPER,
+                CALLER_CLASS_NAME,
+                null,
+                "java/lang/Object",
+                null
+        );
+        MethodVisitor ctor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        ctor.visitVarInsn(Opcodes.ALOAD, 0);
+        ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        ctor.visitInsn(Opcodes.RETURN);
+        ctor.visitMaxs(0, 0);
+        MethodVisitor caller = cw.visitMethod(
+                Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "caller", "(Ltest/aotjp/Callee;)V", null, null
+        );
+        caller.visitVarInsn(Opcodes.ALOAD, 0);
+        caller.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "test/aotjp/Callee", "callee", "()V");
+        caller.visitInsn(Opcodes.RETURN);
+        caller.visitMaxs(0, 0);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Returns the names of the JoinPointManager methods called by the weaved class.
+     */
+    private static Set getJoinPointManagerCalls(final byte[] bytecode) {
+        final Set calls = new HashSet();
+        new ClassReader(bytecode).accept(
+                new ClassAdapter(AsmNullAdapter.NullClassAdapter.NULL_CLASS_ADAPTER) {
+                    public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                                     String[] exceptions) {
+                        return new MethodAdapter(super.visitMethod(access, name, desc, signature, exceptions)) {
+                            public void visitMethodInsn(int opcode, String owner, String name2, String desc2) {
+                                if (TransformationConstants.JOIN_POINT_MANAGER_CLASS_NAME.equals(owner)) {
+                                    calls.add(name2);
+                                }
+                                super.visitMethodInsn(opcode, owner, name2, desc2);
+                            }
+                        };
+                    }
+                },
+                true
+        );
+        return calls;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(AheadOfTimeWeavingTest.class);
+    }
+}
@@ -0,0 +1,96 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.aotjp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.joinpoint.management.AdviceInfoContainer;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointIndex;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointType;
+import org.codehaus.aspectwerkz.transform.inlining.EmittedJoinPoint;
+
+/**
+ * The entries of the index of the join points generated ahead of time.
+ */
+public class JoinPointIndexTest extends TestCase {
+
+    private static final String JOIN_POINT_FIELDS =
+            JoinPointType.METHOD_CALL_INT + "\ttest/aotjp/Target\tcaller\t()V\t1\ttest/aotjp/Callee\tcallee\t()V\t1\t42"
+            + "\ttest/aotjp/Target_1_42___AW_JoinPoint";
+
+    public void testEntryWithoutAdvicesList() {
+        JoinPointIndex.Entry entry = JoinPointIndex.fromIndexEntry(JOIN_POINT_FIELDS);
+        assertFalse(entry.hasAdvices());
+        assertEquals("test/aotjp/Target_1_42___AW_JoinPoint", entry.getJoinPoint().getJoinPointClassName());
+        assertEquals(42, entry.getJoinPoint().getJoinPointHash());
+        assertEquals(JOIN_POINT_FIELDS, JoinPointIndex.toIndexEntry(entry));
+    }
+
+    public void testEntryWithoutAdvices() {
+        EmittedJoinPoint joinPoint = JoinPointIndex.fromIndexEntry(JOIN_POINT_FIELDS).getJoinPoint();
+        JoinPointIndex.Entry entry = new JoinPointIndex.Entry(
+                joinPoint,
+                new AdviceInfoContainer(new ArrayList(), new ArrayList(), new ArrayList(), new ArrayList(), new ArrayList())
+        );
+        assertEquals(JOIN_POINT_FIELDS + "\t0", JoinPointIndex.toIndexEntry(entry));
+        JoinPointIndex.Entry read = JoinPointIndex.fromIndexEntry(JoinPointIndex.toIndexEntry(entry));
+        assertTrue(read.hasAdvices());
+        assertEquals(0, read.getAdviceCount());
+    }
+
+    public void testEntryWithAdvices() throws Exception {
+        String line = JOIN_POINT_FIELDS
+                      + "\t2"
+                      + "\ttests/test.aotjp.Aspect\tbefore(JoinPoint jp)\tcall(* test.aotjp.Callee.*(..))"
+                      + "\ttests/test.aotjp.Aspect\tafter\tcall(* test.aotjp.Callee.*(..))\\n\\t&& within(a\\\\b)";
+        JoinPointIndex.Entry entry = JoinPointIndex.fromIndexEntry(line);
+        assertTrue(entry.hasAdvices());
+        assertEquals(2, entry.getAdviceCount());
+        assertEquals("tests/test.aotjp.Aspect", entry.getAspectQualifiedName(0));
+        assertEquals("before(JoinPoint jp)", entry.getAdviceName(0));
+        assertEquals("after", entry.getAdviceName(1));
+        assertEquals("call(* test.aotjp.Callee.*(..))\n\t&& within(a\\b)", entry.getExpression(1));
+        assertEquals(line, JoinPointIndex.toIndexEntry(entry));
+
+        List entries = new ArrayList();
+        entries.add(entry);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JoinPointIndex.writeJoinPoints(entries, out);
+        List read = new ArrayList();
+        JoinPointIndex.addJoinPoints(read, new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(1, read.size());
+        assertEquals(entry.getExpression(1), ((JoinPointIndex.Entry) read.get(0)).getExpression(1));
+    }
+
+    public void testMalformedAdvicesList() {
+        try {
+            JoinPointIndex.fromIndexEntry(JOIN_POINT_FIELDS + "\t1\ttests/test.aotjp.Aspect\tbefore");
+            fail("the advice expression is missing");
+        } catch (IllegalArgumentException e) {
+            ;
+        }
+        try {
+            JoinPointIndex.fromIndexEntry("0\ttest/aotjp/Target");
+            fail("the join point fields are missing");
+        } catch (IllegalArgumentException e) {
+            ;
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(JoinPointIndexTest.class);
+    }
+}
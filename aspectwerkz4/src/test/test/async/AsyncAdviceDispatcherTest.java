@@ -0,0 +1,191 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.async;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.joinpoint.management.AsyncAdvice;
+import org.codehaus.aspectwerkz.joinpoint.management.AsyncAdviceDispatcher;
+
+/**
+ * The dispatcher of the asynchronous advices: counters, failures, shutdown and the block policy on the dispatcher
+ * thread.
+ */
+public class AsyncAdviceDispatcherTest extends TestCase {
+
+    private static final String ASPECT_CLASS_NAME = Aspect.class.getName();
+
+    public void testDispatch() {
+        AsyncAdvice advice = getAdvice("count", "(Ljava/lang/String;)V", 16, AsyncAdviceDispatcher.POLICY_BLOCK);
+        AsyncAdviceDispatcher dispatcher = advice.getDispatcher();
+        Aspect aspect = new Aspect();
+        for (int i = 0; i < 10; i++) {
+            advice.dispatch(aspect, new Object[]{"a"});
+        }
+        assertTrue(dispatcher.flush(5000));
+        assertEquals(10, aspect.getCount());
+        assertEquals(10, dispatcher.getDispatchedCount());
+        assertEquals(10, dispatcher.getExecutedCount());
+        assertEquals(0, dispatcher.getFailedCount());
+        assertSame(dispatcher, getAdvice("count", "(Ljava/lang/String;)V", 16, AsyncAdviceDispatcher.POLICY_BLOCK).getDispatcher());
+    }
+
+    public void testFailedAdvice() {
+        AsyncAdvice advice = getAdvice("fail", "()V", 16, AsyncAdviceDispatcher.POLICY_BLOCK);
+        AsyncAdviceDispatcher dispatcher = advice.getDispatcher();
+        advice.dispatch(new Aspect(), new Object[0]);
+        advice.dispatch(new Aspect(), new Object[0]);
+        assertTrue(dispatcher.flush(5000));
+        assertEquals(2, dispatcher.getExecutedCount());
+        assertEquals(2, dispatcher.getFailedCount());
+        assertFalse(dispatcher.isShutdown());
+    }
+
+    public void testShutdown() throws Exception {
+        AsyncAdvice advice = getAdvice("count", "(Ljava/lang/String;)V", 16, AsyncAdviceDispatcher.POLICY_BLOCK);
+        AsyncAdviceDispatcher dispatcher = advice.getDispatcher();
+        Thread thread = getThread();
+        assertNotNull(thread);
+
+        AsyncAdviceDispatcher.shutdown(getQualifiedName());
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertTrue(dispatcher.isShutdown());
+        assertFalse(AsyncAdviceDispatcher.getDispatchers().contains(dispatcher));
+
+        Aspect aspect = new Aspect();
+        advice.dispatch(aspect, new Object[]{"a"});
+        assertEquals(1, dispatcher.getDroppedCount());
+        assertEquals(0, aspect.getCount());
+
+        AsyncAdvice newAdvice = getAdvice("count", "(Ljava/lang/String;)V", 16, AsyncAdviceDispatcher.POLICY_BLOCK);
+        assertNotSame(dispatcher, newAdvice.getDispatcher());
+        newAdvice.dispatch(aspect, new Object[]{"a"});
+        assertTrue(newAdvice.getDispatcher().flush(5000));
+        assertEquals(1, aspect.getCount());
+    }
+
+    public void testInterrupt() throws Exception {
+        AsyncAdviceDispatcher dispatcher = getAdvice(
+                "count", "(Ljava/lang/String;)V", 16, AsyncAdviceDispatcher.POLICY_BLOCK
+        ).getDispatcher();
+        Thread thread = getThread();
+        thread.interrupt();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertTrue(dispatcher.isShutdown());
+    }
+
+    public void testBlockPolicyOnDispatcherThread() {
+        AsyncAdvice advice = getAdvice("reenter", "(Ljava/lang/Integer;)V", 1, AsyncAdviceDispatcher.POLICY_BLOCK);
+        AsyncAdviceDispatcher dispatcher = advice.getDispatcher();
+        Aspect aspect = new Aspect();
+        aspect.m_advice = advice;
+        advice.dispatch(aspect, new Object[]{new Integer(3)});
+        // each advice dispatches two more advices: the second one does not fit in the queue, and the dispatcher
+        // thread invokes it in place instead of waiting for itself
+        assertTrue(dispatcher.flush(5000));
+        assertEquals(15, aspect.getCount());
+        assertTrue(dispatcher.getCallerInvokedCount() > 0);
+    }
+
+    public void testCollectedLoader() throws Exception {
+        ClassLoader loader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        final ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        // the join point classes are initialized with the application class loader as the context class loader
+        Thread.currentThread().setContextClassLoader(loader);
+        final AsyncAdvice advice;
+        try {
+            advice = AsyncAdviceDispatcher.getAsyncAdvice(
+                    getQualifiedName(), ASPECT_CLASS_NAME, "count", "(Ljava/lang/String;)V", 16, 1,
+                    AsyncAdviceDispatcher.POLICY_BLOCK, loader
+            );
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextLoader);
+        }
+        Thread thread = getThread();
+        assertNotSame(loader, thread.getContextClassLoader());
+
+        WeakReference loaderRef = new WeakReference(loader);
+        loader = null;
+        for (int i = 0; i < 50 && loaderRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull("the dispatcher must not keep the class loader alive", loaderRef.get());
+
+        // wakes the idle dispatcher thread up, which then finds the class loader collected
+        Aspect aspect = new Aspect();
+        advice.dispatch(aspect, new Object[]{"a"});
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertTrue(advice.getDispatcher().isShutdown());
+    }
+
+    protected void tearDown() {
+        AsyncAdviceDispatcher.shutdown(getQualifiedName());
+    }
+
+    private AsyncAdvice getAdvice(String name, String desc, int queueSize, String policy) {
+        return AsyncAdviceDispatcher.getAsyncAdvice(
+                getQualifiedName(), ASPECT_CLASS_NAME, name, desc, queueSize, 1, policy, getClass().getClassLoader()
+        );
+    }
+
+    private String getQualifiedName() {
+        return "async/" + getName();
+    }
+
+    private Thread getThread() {
+        Thread[] threads = new Thread[Thread.activeCount() + 16];
+        int count = Thread.enumerate(threads);
+        for (int i = 0; i < count; i++) {
+            if (threads[i].getName().equals("AspectWerkz async advices of " + getQualifiedName())) {
+                return threads[i];
+            }
+        }
+        return null;
+    }
+
+    public static class Aspect {
+        private int m_count = 0;
+
+        AsyncAdvice m_advice;
+
+        public synchronized int getCount() {
+            return m_count;
+        }
+
+        public synchronized void count(String s) {
+            m_count++;
+        }
+
+        public void fail() {
+            throw new RuntimeException("failed on purpose");
+        }
+
+        public void reenter(Integer depth) {
+            count(null);
+            if (depth.intValue() > 0) {
+                m_advice.dispatch(this, new Object[]{new Integer(depth.intValue() - 1)});
+                m_advice.dispatch(this, new Object[]{new Integer(depth.intValue() - 1)});
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(AsyncAdviceDispatcherTest.class);
+    }
+}
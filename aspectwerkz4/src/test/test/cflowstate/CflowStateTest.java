@@ -0,0 +1,89 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.cflowstate;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.cflow.CflowState;
+
+/**
+ * The per thread cflow state shared by the cflow aspects.
+ */
+public class CflowStateTest extends TestCase {
+
+    public void testIndexPerClass() throws Exception {
+        int index = CflowState.getIndex(Cflow.class);
+        assertEquals(index, CflowState.getIndex(Cflow.class));
+        assertTrue(index != CflowState.getIndex(OtherCflow.class));
+    }
+
+    public void testIndexPerClassLoader() throws Exception {
+        URL location = Cflow.class.getProtectionDomain().getCodeSource().getLocation();
+        Class cflow1 = new URLClassLoader(new URL[]{location}, null).loadClass(Cflow.class.getName());
+        Class cflow2 = new URLClassLoader(new URL[]{location}, null).loadClass(Cflow.class.getName());
+        assertNotSame(cflow1, cflow2);
+
+        int index1 = CflowState.getIndex(cflow1);
+        int index2 = CflowState.getIndex(cflow2);
+        assertTrue("same name, different class loaders", index1 != index2);
+        assertTrue(index1 != CflowState.getIndex(Cflow.class));
+
+        CflowState state = CflowState.getState();
+        state.enter(index1);
+        try {
+            assertTrue(state.isInCflow(index1));
+            assertFalse(state.isInCflow(index2));
+        } finally {
+            state.exit(index1);
+        }
+        assertFalse(state.isInCflow(index1));
+    }
+
+    public void testStatePerThread() throws Exception {
+        final int index = CflowState.getIndex(OtherCflow.class);
+        CflowState.getState().enter(index);
+        try {
+            final boolean[] inCflow = new boolean[]{true};
+            Thread thread = new Thread() {
+                public void run() {
+                    inCflow[0] = CflowState.getState().isInCflow(index);
+                }
+            };
+            thread.start();
+            thread.join();
+            assertFalse(inCflow[0]);
+            assertTrue(CflowState.getState().isInCflow(index));
+
+            // nested entries
+            CflowState.getState().enter(index);
+            CflowState.getState().exit(index);
+            assertTrue(CflowState.getState().isInCflow(index));
+        } finally {
+            CflowState.getState().exit(index);
+        }
+        assertFalse(CflowState.getState().isInCflow(index));
+        CflowState.getState().exit(index);
+        assertFalse(CflowState.getState().isInCflow(index));
+    }
+
+    public static class Cflow {
+    }
+
+    public static class OtherCflow {
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(CflowStateTest.class);
+    }
+}
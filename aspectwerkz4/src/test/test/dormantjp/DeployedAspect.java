@@ -0,0 +1,19 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.dormantjp;
+
+public class DeployedAspect {
+
+    public void beforeCall() {
+        Target.s_log += "call ";
+    }
+
+    public void beforeExecution() {
+        Target.s_log += "execution ";
+    }
+}
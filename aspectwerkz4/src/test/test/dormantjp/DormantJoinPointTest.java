@@ -0,0 +1,124 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.dormantjp;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.definition.DeploymentScope;
+import org.codehaus.aspectwerkz.definition.SystemDefinitionContainer;
+import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.transform.inlining.deployer.Deployer;
+
+/**
+ * Dormant join points (-Daspectwerkz.transform.dormantjp=true): the join points only matched by a deployment scope run
+ * the original code behind an inactive flag, until a deployment activates them.
+ */
+public class DormantJoinPointTest extends TestCase {
+
+    private static final String ASPECT_XML_DEF =
+            "<aspect class=\"test.dormantjp.DeployedAspect\">" +
+            "<advice name=\"beforeCall\" type=\"before\" bind-to=\"call(void test.dormantjp.Target.callee()) " +
+            "AND within(test.dormantjp.Target)\"/>" +
+            "<advice name=\"beforeExecution\" type=\"before\" " +
+            "bind-to=\"execution(void test.dormantjp.Target.callee())\"/>" +
+            "</aspect>";
+
+    private static final String LATE_ASPECT_XML_DEF =
+            "<aspect class=\"test.dormantjp.DeployedAspect\">" +
+            "<advice name=\"beforeExecution\" type=\"before\" " +
+            "bind-to=\"execution(void test.dormantjp.LateTarget.callee())\"/>" +
+            "</aspect>";
+
+    /**
+     * A single test for Target, since the join points stay active once deployed.
+     */
+    public void testActivatedOnDeployment() throws Exception {
+        Target target = new Target();
+        Target.s_log = "";
+        target.caller();
+        assertEquals("callee ", Target.s_log);
+
+        List flags = getActiveFlags();
+        assertEquals("a flag per dormant join point", 2, flags.size());
+        for (int i = 0; i < flags.size(); i++) {
+            Field flag = (Field) flags.get(i);
+            assertTrue(Modifier.isVolatile(flag.getModifiers()));
+            assertFalse(flag.getBoolean(null));
+        }
+
+        DeploymentScope scope = SystemDefinitionContainer.getDefinitionFor(
+                getClass().getClassLoader(), "tests"
+        ).getDeploymentScope("dormantjp");
+        Deployer.deploy(DeployedAspect.class, ASPECT_XML_DEF, scope);
+        try {
+            flags = getActiveFlags();
+            for (int i = 0; i < flags.size(); i++) {
+                assertTrue(((Field) flags.get(i)).getBoolean(null));
+            }
+            Target.s_log = "";
+            target.caller();
+            assertEquals("call execution callee ", Target.s_log);
+        } finally {
+            Deployer.undeploy(DeployedAspect.class);
+        }
+
+        Target.s_log = "";
+        target.caller();
+        assertEquals("callee ", Target.s_log);
+    }
+
+    public void testActivatedOnInitialization() throws Exception {
+        DeploymentScope scope = SystemDefinitionContainer.getDefinitionFor(
+                getClass().getClassLoader(), "tests"
+        ).getDeploymentScope("latedormantjp");
+        Deployer.deploy(DeployedAspect.class, LATE_ASPECT_XML_DEF, scope);
+        try {
+            // first use of LateTarget, weaved as a dormant join point before the deployment
+            LateTarget target = new LateTarget();
+            List flags = getActiveFlags(LateTarget.class);
+            assertEquals(1, flags.size());
+            assertTrue(
+                    "a join point matched by a deployed advice is active from its initialization",
+                    ((Field) flags.get(0)).getBoolean(null)
+            );
+            Target.s_log = "";
+            target.callee();
+            assertEquals("execution late ", Target.s_log);
+        } finally {
+            Deployer.undeploy(DeployedAspect.class);
+        }
+    }
+
+    private static List getActiveFlags() {
+        return getActiveFlags(Target.class);
+    }
+
+    private static List getActiveFlags(final Class klass) {
+        List flags = new ArrayList();
+        Field[] fields = klass.getDeclaredFields();
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].getName().startsWith(TransformationConstants.ACTIVE_JOIN_POINT_FIELD_PREFIX)) {
+                fields[i].setAccessible(true);
+                flags.add(fields[i]);
+            }
+        }
+        return flags;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(DormantJoinPointTest.class);
+    }
+}
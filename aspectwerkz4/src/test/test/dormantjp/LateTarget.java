@@ -0,0 +1,18 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.dormantjp;
+
+/**
+ * Its join point is only matched by the latedormantjp deployment scope, and it is initialized after the deployment.
+ */
+public class LateTarget {
+
+    public void callee() {
+        Target.s_log += "late ";
+    }
+}
@@ -0,0 +1,106 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.expression;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.expression.ExpressionContext;
+import org.codehaus.aspectwerkz.expression.ExpressionInfo;
+import org.codehaus.aspectwerkz.expression.PointcutType;
+import org.codehaus.aspectwerkz.reflect.AnnotationIndex;
+import org.codehaus.aspectwerkz.reflect.ClassInfo;
+import org.codehaus.aspectwerkz.reflect.ConstructorInfo;
+import org.codehaus.aspectwerkz.reflect.MethodInfo;
+import org.codehaus.aspectwerkz.reflect.ReflectHelper;
+import org.codehaus.aspectwerkz.reflect.ReflectionInfo;
+import org.codehaus.aspectwerkz.reflect.impl.asm.AsmClassInfo;
+
+/**
+ * Annotation matching through the annotation bitmaps of the ASM based infos.
+ */
+public class AnnotationIndexTest extends TestCase {
+
+    private static final String NAMESPACE = "TESTING";
+
+    public void testIds() {
+        int id = AnnotationIndex.getId("test.expression.IService");
+        assertEquals(id, AnnotationIndex.getId("test.expression.IService"));
+        assertTrue(id != AnnotationIndex.getId("test.expression.IConstructor"));
+    }
+
+    public void testHasAnnotation() {
+        assertFalse(AnnotationIndex.hasAnnotation(AnnotationIndex.NO_ANNOTATION_BITS, 0));
+        long[] bits = new long[]{1L << 3, 1L << 63};
+        assertTrue(AnnotationIndex.hasAnnotation(bits, 3));
+        assertTrue(AnnotationIndex.hasAnnotation(bits, 127));
+        assertFalse(AnnotationIndex.hasAnnotation(bits, 4));
+        assertFalse(AnnotationIndex.hasAnnotation(bits, 64));
+        assertFalse("ids beyond the bitmap are not there", AnnotationIndex.hasAnnotation(bits, 200));
+    }
+
+    public void testClassBits() {
+        ClassInfo classInfo = getClassInfo(AnnotationTarget.ClassLevelAnnotation.class);
+        assertTrue(classInfo instanceof AnnotationIndex.Indexed);
+        long[] bits = ((AnnotationIndex.Indexed) classInfo).getAnnotationBits();
+        assertTrue(AnnotationIndex.hasAnnotation(bits, AnnotationIndex.getId("test.expression.IService")));
+        assertFalse(AnnotationIndex.hasAnnotation(bits, AnnotationIndex.getId("test.expression.IConstructor")));
+        assertSame("the bitmap is built once", bits, ((AnnotationIndex.Indexed) classInfo).getAnnotationBits());
+    }
+
+    public void testMatchMembers() throws Exception {
+        ClassInfo declaringType = getClassInfo(AnnotationTarget.class);
+        ClassInfo innerType = getClassInfo(AnnotationTarget.ClassLevelAnnotation.class);
+        MethodInfo method = declaringType.getMethod(
+                ReflectHelper.calculateHash(AnnotationTarget.class.getMethod("methodOneAsynch", new Class[0]))
+        );
+        ConstructorInfo innerConstructor = innerType.getConstructor(
+                ReflectHelper.calculateHash(
+                        AnnotationTarget.ClassLevelAnnotation.class.getConstructor(new Class[0])
+                )
+        );
+        assertTrue(method instanceof AnnotationIndex.Indexed);
+
+        assertTrue(match("execution(@test.expression.IAsynchronous)", PointcutType.EXECUTION, method, declaringType));
+        assertFalse(match("execution(@test.expression.IConstructor)", PointcutType.EXECUTION, method, declaringType));
+        assertTrue(
+                match(
+                        "within(@test.expression.IService) && execution(@test.expression.IConstructor)",
+                        PointcutType.EXECUTION, innerConstructor, innerType
+                )
+        );
+        assertFalse(
+                match(
+                        "!within(@test.expression.IService) && execution(@test.expression.IConstructor)",
+                        PointcutType.EXECUTION, innerConstructor, innerType
+                )
+        );
+        assertTrue(
+                match(
+                        "!within(@test.expression.IService) && execution(@test.expression.IAsynchronous)",
+                        PointcutType.EXECUTION, method, declaringType
+                )
+        );
+    }
+
+    private static boolean match(String expression, PointcutType type, ReflectionInfo info, ClassInfo within) {
+        return new ExpressionInfo(expression, NAMESPACE).getExpression().match(
+                new ExpressionContext(type, info, within)
+        );
+    }
+
+    private static ClassInfo getClassInfo(Class klass) {
+        return AsmClassInfo.getClassInfo(klass.getName(), klass.getClassLoader());
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(AnnotationIndexTest.class);
+    }
+}
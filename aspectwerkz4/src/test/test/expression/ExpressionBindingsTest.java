@@ -0,0 +1,157 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.expression;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.expression.ArgsIndexVisitor;
+import org.codehaus.aspectwerkz.expression.ExpressionBindings;
+import org.codehaus.aspectwerkz.expression.ExpressionContext;
+import org.codehaus.aspectwerkz.expression.ExpressionInfo;
+import org.codehaus.aspectwerkz.expression.PointcutType;
+import org.codehaus.aspectwerkz.reflect.ClassInfo;
+import org.codehaus.aspectwerkz.reflect.MethodInfo;
+import org.codehaus.aspectwerkz.reflect.impl.java.JavaClassInfo;
+import org.codehaus.aspectwerkz.reflect.impl.java.JavaMethodInfo;
+
+/**
+ * The this(..), target(..) and args(..) bindings, computed apart from the immutable expression context, so that one
+ * context is shared by several expressions and threads.
+ */
+public class ExpressionBindingsTest extends TestCase {
+
+    private static final String NAMESPACE = "TESTING_BINDINGS";
+
+    private static final String CALL = "call(void test.expression.Target.parameters2(..))";
+
+    private static ClassInfo s_declaringType = JavaClassInfo.getClassInfo(Target.class);
+
+    private static MethodInfo s_parameters2;
+
+    static {
+        try {
+            s_parameters2 = JavaMethodInfo.getMethodInfo(
+                    Target.class.getDeclaredMethod("parameters2", new Class[]{int.class, float.class, byte.class})
+            );
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e.toString());
+        }
+    }
+
+    public void testArgsBindings() {
+        ExpressionInfo info = newExpressionInfo(
+                CALL + " && args(i, f, b)", new String[]{"i", "int", "f", "float", "b", "byte"}
+        );
+        ExpressionBindings bindings = getBindings(info, newContext());
+        assertTrue(bindings.hasTargetArgIndex("i"));
+        assertEquals(0, bindings.getTargetArgIndex("i"));
+        assertEquals(1, bindings.getTargetArgIndex("f"));
+        assertEquals(2, bindings.getTargetArgIndex("b"));
+        assertNull(bindings.getThisBoundedName());
+        assertNull(bindings.getTargetBoundedName());
+    }
+
+    public void testNoBindings() {
+        ExpressionInfo info = newExpressionInfo(CALL + " && args(int, float, byte)", new String[0]);
+        ExpressionBindings bindings = getBindings(info, newContext());
+        assertFalse(bindings.hasTargetArgIndex("i"));
+        assertEquals(0, bindings.getTargetArgIndex("i"));
+        assertNull(bindings.getThisBoundedName());
+        assertNull(bindings.getTargetBoundedName());
+        assertFalse(bindings.isTargetWithRuntimeCheck());
+    }
+
+    public void testThisAndTargetBindings() {
+        ExpressionInfo info = newExpressionInfo(
+                CALL + " && this(caller) && target(callee)",
+                new String[]{"caller", Target.class.getName(), "callee", Target.class.getName()}
+        );
+        ExpressionBindings bindings = getBindings(info, newContext());
+        assertEquals("caller", bindings.getThisBoundedName());
+        assertEquals("callee", bindings.getTargetBoundedName());
+        assertFalse(bindings.hasTargetArgIndex("caller"));
+    }
+
+    public void testSharedContext() {
+        ExpressionContext context = newContext();
+        ExpressionInfo first = newExpressionInfo(CALL + " && args(i, ..)", new String[]{"i", "int"});
+        ExpressionInfo last = newExpressionInfo(CALL + " && args(.., b)", new String[]{"b", "byte"});
+        assertTrue(first.getExpression().match(context));
+        assertTrue(last.getExpression().match(context));
+
+        ExpressionBindings firstBindings = getBindings(first, context);
+        ExpressionBindings lastBindings = getBindings(last, context);
+        assertEquals(0, firstBindings.getTargetArgIndex("i"));
+        assertFalse(firstBindings.hasTargetArgIndex("b"));
+        assertEquals(2, lastBindings.getTargetArgIndex("b"));
+        assertFalse(lastBindings.hasTargetArgIndex("i"));
+        assertNotSame(firstBindings, getBindings(first, context));
+
+        // the context is a match key
+        assertEquals(context, newContext());
+        assertEquals(context.hashCode(), newContext().hashCode());
+    }
+
+    public void testConcurrentBindings() throws Exception {
+        final ExpressionContext context = newContext();
+        final ExpressionInfo first = newExpressionInfo(CALL + " && args(i, ..)", new String[]{"i", "int"});
+        final ExpressionInfo last = newExpressionInfo(CALL + " && args(.., b)", new String[]{"b", "byte"});
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            ExpressionBindings firstBindings = getBindings(first, context);
+                            ExpressionBindings lastBindings = getBindings(last, context);
+                            assertEquals(0, firstBindings.getTargetArgIndex("i"));
+                            assertFalse(firstBindings.hasTargetArgIndex("b"));
+                            assertEquals(2, lastBindings.getTargetArgIndex("b"));
+                            assertFalse(lastBindings.hasTargetArgIndex("i"));
+                        }
+                    } catch (Throwable t) {
+                        synchronized (failure) {
+                            failure[0] = t;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        if (failure[0] != null) {
+            fail(failure[0].toString());
+        }
+    }
+
+    private static ExpressionContext newContext() {
+        return new ExpressionContext(PointcutType.CALL, s_parameters2, s_declaringType);
+    }
+
+    private ExpressionInfo newExpressionInfo(final String expression, final String[] arguments) {
+        ExpressionInfo info = new ExpressionInfo(expression, NAMESPACE);
+        for (int i = 0; i < arguments.length; i += 2) {
+            info.addArgument(arguments[i], arguments[i + 1], getClass().getClassLoader());
+        }
+        return info;
+    }
+
+    private ExpressionBindings getBindings(final ExpressionInfo info, final ExpressionContext context) {
+        return ArgsIndexVisitor.getBindings(info, context, getClass().getClassLoader());
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(ExpressionBindingsTest.class);
+    }
+}
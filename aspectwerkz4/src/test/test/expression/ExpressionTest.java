@@ -2095,6 +2095,20 @@ public class ExpressionTest extends TestCase {
         );
     }
 
+    public void testHasMethodAndHasFieldFilterAndFullMatchingOnSameExpression() throws Exception {
+        ClassInfo klass = JavaClassInfo.getClassInfo(Target.class);
+        ExpressionContext ctx = new ExpressionContext(PointcutType.EXECUTION, klass, klass);
+        // the class filtering result must not be reused by the full matching, nor the other way round
+        ExpressionInfo hasMethod = new ExpressionInfo("hasmethod(* getClass())", NAMESPACE);
+        assertTrue(hasMethod.getAdvisedClassFilterExpression().match(ctx));
+        assertFalse(hasMethod.getExpression().match(ctx));
+        assertTrue(hasMethod.getAdvisedClassFilterExpression().match(ctx));
+        ExpressionInfo hasField = new ExpressionInfo("hasfield(* value)", NAMESPACE);
+        assertFalse(hasField.getExpression().match(ctx));
+        assertTrue(hasField.getAdvisedClassFilterExpression().match(ctx));
+        assertFalse(hasField.getExpression().match(ctx));
+    }
+
     // ============ within type tests =============
     public void testWithinType1() throws Exception {
         ClassInfo otherType = JavaClassInfo.getClassInfo(String.class);
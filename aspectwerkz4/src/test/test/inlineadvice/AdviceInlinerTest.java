@@ -0,0 +1,184 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.inlineadvice;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.reflect.impl.java.JavaClassInfo;
+import org.codehaus.aspectwerkz.transform.inlining.InliningWeavingStrategy;
+import org.codehaus.aspectwerkz.transform.inlining.compiler.AdviceInliner;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Checks and verification of the advice bodies before they are inlined, on generated method bodies.
+ */
+public class AdviceInlinerTest extends TestCase implements Opcodes {
+
+    private static final String CLASS_NAME = "test/inlineadvice/Generated";
+
+    private ClassWriter m_writer;
+
+    public void testStraightBody() {
+        MethodVisitor mv = newMethod();
+        mv.visitInsn(ICONST_0);
+        mv.visitInsn(POP);
+        mv.visitInsn(RETURN);
+        assertTrue(isInlinable(mv, 1, 1));
+    }
+
+    public void testBranches() {
+        MethodVisitor mv = newMethod();
+        Label label = new Label();
+        mv.visitInsn(ICONST_0);
+        mv.visitJumpInsn(IFEQ, label);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(POP);
+        mv.visitLabel(label);
+        mv.visitInsn(RETURN);
+        assertTrue(isInlinable(mv, 1, 1));
+    }
+
+    public void testStackNotEmptyOnReturn() {
+        MethodVisitor mv = newMethod();
+        mv.visitInsn(ICONST_0);
+        mv.visitInsn(RETURN);
+        assertFalse(isInlinable(mv, 1, 1));
+    }
+
+    public void testStackUnderflow() {
+        MethodVisitor mv = newMethod();
+        mv.visitInsn(POP);
+        mv.visitInsn(RETURN);
+        assertFalse(isInlinable(mv, 1, 1));
+    }
+
+    public void testDifferentStackHeights() {
+        MethodVisitor mv = newMethod();
+        Label label = new Label();
+        mv.visitInsn(ICONST_0);
+        mv.visitInsn(ICONST_0);
+        mv.visitJumpInsn(IFEQ, label);
+        mv.visitInsn(POP);
+        mv.visitLabel(label);
+        mv.visitInsn(POP);
+        mv.visitInsn(RETURN);
+        assertFalse(isInlinable(mv, 2, 1));
+    }
+
+    public void testFallsOffTheEnd() {
+        MethodVisitor mv = newMethod();
+        mv.visitInsn(ICONST_0);
+        mv.visitInsn(POP);
+        assertFalse(isInlinable(mv, 1, 1));
+    }
+
+    public void testUndeclaredLocal() {
+        MethodVisitor mv = newMethod();
+        mv.visitVarInsn(LLOAD, 1);
+        mv.visitInsn(POP2);
+        mv.visitInsn(RETURN);
+        assertFalse(isInlinable(mv, 2, 2));
+        mv = newMethod();
+        mv.visitVarInsn(LLOAD, 1);
+        mv.visitInsn(POP2);
+        mv.visitInsn(RETURN);
+        assertTrue(isInlinable(mv, 2, 3));
+    }
+
+    public void testTryCatch() {
+        MethodVisitor mv = newMethod();
+        Label start = new Label();
+        Label end = new Label();
+        mv.visitTryCatchBlock(start, end, end, "java/lang/Exception");
+        mv.visitLabel(start);
+        mv.visitInsn(NOP);
+        mv.visitLabel(end);
+        mv.visitInsn(RETURN);
+        assertFalse(isInlinable(mv, 1, 1));
+    }
+
+    public void testTooLarge() {
+        MethodVisitor mv = newMethod();
+        for (int i = 0; i < AdviceInliner.MAX_SIZE; i++) {
+            mv.visitInsn(NOP);
+        }
+        mv.visitInsn(RETURN);
+        assertFalse(isInlinable(mv, 0, 1));
+    }
+
+    public void testOtherClass() {
+        MethodVisitor mv = newMethod();
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 1);
+        mv.visitEnd();
+        assertFalse(
+                AdviceInliner.isInlinableMethod(
+                        m_writer.toByteArray(), "test/inlineadvice/Other", "advice", "()V", getClass().getClassLoader()
+                )
+        );
+    }
+
+    public void testCompiledAdvices() throws Exception {
+        byte[] bytecode = readClass(TestAspect.class);
+        ClassLoader loader = getClass().getClassLoader();
+        String className = "test/inlineadvice/TestAspect";
+        assertTrue(AdviceInliner.isInlinableMethod(bytecode, className, "inlinable", "(I)V", loader));
+        assertFalse(AdviceInliner.isInlinableMethod(bytecode, className, "notInlinable", "()V", loader));
+    }
+
+    public void testWeavableClasses() {
+        ClassLoader loader = getClass().getClassLoader();
+        assertTrue(InliningWeavingStrategy.isWeavable(JavaClassInfo.getClassInfo(Target.class), loader));
+        assertFalse(InliningWeavingStrategy.isWeavable(JavaClassInfo.getClassInfo(TestAspect.class), loader));
+        assertFalse(InliningWeavingStrategy.isWeavable(JavaClassInfo.getClassInfo(Runnable.class), loader));
+    }
+
+    private MethodVisitor newMethod() {
+        m_writer = new ClassWriter(false);
+        m_writer.visit(V1_3, ACC_PUBLIC + ACC_SUPER, CLASS_NAME, null, "java/lang/Object", null);
+        MethodVisitor mv = m_writer.visitMethod(ACC_PUBLIC, "advice", "()V", null, null);
+        mv.visitCode();
+        return mv;
+    }
+
+    private boolean isInlinable(MethodVisitor mv, int maxStack, int maxLocals) {
+        mv.visitMaxs(maxStack, maxLocals);
+        mv.visitEnd();
+        m_writer.visitEnd();
+        return AdviceInliner.isInlinableMethod(
+                m_writer.toByteArray(), CLASS_NAME, "advice", "()V", getClass().getClassLoader()
+        );
+    }
+
+    private static byte[] readClass(Class klass) throws Exception {
+        InputStream in = klass.getClassLoader().getResourceAsStream(klass.getName().replace('.', '/') + ".class");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(AdviceInlinerTest.class);
+    }
+}
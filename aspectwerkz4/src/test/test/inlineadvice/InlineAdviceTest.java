@@ -0,0 +1,39 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.inlineadvice;
+
+import junit.framework.TestCase;
+
+/**
+ * Inlined advice bodies (-Daspectwerkz.transform.inlineadvice=true): the small advices are copied in the invoke method
+ * of the join point class, the others are invoked as usual.
+ */
+public class InlineAdviceTest extends TestCase {
+
+    public void testInlined() {
+        Target.s_argument = 0;
+        Target.s_inlinedFrame = null;
+        new Target().inlined(3);
+        assertEquals(3, Target.s_argument);
+        assertTrue(Target.s_inlinedFrame.startsWith(Target.class.getName()));
+    }
+
+    public void testNotInlined() {
+        Target.s_invokedFrame = null;
+        new Target().invoked();
+        assertEquals(TestAspect.class.getName(), Target.s_invokedFrame);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(InlineAdviceTest.class);
+    }
+}
@@ -0,0 +1,27 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.inlineadvice;
+
+/**
+ * The target of the inlined advices. The advices record the class in which they run, to tell whether they have been
+ * inlined in the join point class.
+ */
+public class Target {
+
+    public static int s_argument;
+
+    public static String s_inlinedFrame;
+
+    public static String s_invokedFrame;
+
+    public void inlined(int i) {
+    }
+
+    public void invoked() {
+    }
+}
@@ -0,0 +1,30 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.inlineadvice;
+
+public class TestAspect {
+
+    private static String s_privateFrame;
+
+    /**
+     * @Before execution(void test.inlineadvice.Target.inlined(int)) && args(i)
+     */
+    public void inlinable(int i) {
+        Target.s_argument = i;
+        Target.s_inlinedFrame = new Throwable().getStackTrace()[0].getClassName();
+    }
+
+    /**
+     * @Before execution(void test.inlineadvice.Target.invoked())
+     */
+    public void notInlinable() {
+        // refers to a private member, thus can not be copied in the join point class
+        s_privateFrame = new Throwable().getStackTrace()[0].getClassName();
+        Target.s_invokedFrame = s_privateFrame;
+    }
+}
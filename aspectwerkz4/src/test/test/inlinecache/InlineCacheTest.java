@@ -0,0 +1,55 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.inlinecache;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.joinpoint.management.RuntimeCheckCache;
+
+/**
+ * Inline cache of the advice runtime checks (-Daspectwerkz.transform.inlinecache=true): the target(..) checks of the
+ * advices of an interface call site are evaluated once per target class and then read from the advice mask.
+ */
+public class InlineCacheTest extends TestCase {
+
+    public void testAdvicesPerTargetClass() {
+        assertEquals("A ", run(new SubA()));
+        assertEquals("B ", run(new SubB()));
+        assertEquals("Marker ", run(new SubC()));
+        assertEquals("A ", run(new SubA()));
+        assertEquals("B ", run(new SubB()));
+        assertEquals("Marker ", run(new SubC()));
+        assertEquals("", run(new Other()));
+    }
+
+    public void testOneLookupPerInvocation() {
+        run(new SubA());
+        RuntimeCheckCache cache = RuntimeCheckCache.getCache(Caller.s_joinPointClass);
+        assertNotNull("the join point class has a cache", cache);
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        for (int i = 0; i < 10; i++) {
+            run(new SubA());
+        }
+        assertEquals(hits + 10, cache.getHits());
+        assertEquals(misses, cache.getMisses());
+    }
+
+    private static String run(Service target) {
+        Caller.s_log = "";
+        Caller.call(target);
+        return Caller.s_log;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(InlineCacheTest.class);
+    }
+}
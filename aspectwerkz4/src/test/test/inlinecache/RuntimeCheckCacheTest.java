@@ -0,0 +1,146 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.inlinecache;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.joinpoint.management.RuntimeCheckCache;
+import org.codehaus.aspectwerkz.transform.inlining.AsmHelper;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The bimorphic advice mask cache of the inline cache option.
+ */
+public class RuntimeCheckCacheTest extends TestCase {
+
+    public void testMissUntilUpdated() {
+        RuntimeCheckCache cache = new RuntimeCheckCache();
+        assertEquals(RuntimeCheckCache.NOT_CACHED, cache.lookup(new SubA()));
+        cache.update(new SubA(), 5);
+        assertEquals(5, cache.lookup(new SubA()));
+    }
+
+    public void testBimorphic() {
+        RuntimeCheckCache cache = new RuntimeCheckCache();
+        cache.update(new SubA(), 1);
+        cache.update(new SubB(), 2);
+        cache.update(new SubC(), 4);
+        assertEquals(1, cache.lookup(new SubA()));
+        assertEquals(2, cache.lookup(new SubB()));
+        assertEquals("only the first two target classes are memoized", RuntimeCheckCache.NOT_CACHED, cache.lookup(new SubC()));
+    }
+
+    public void testFirstMaskKept() {
+        RuntimeCheckCache cache = new RuntimeCheckCache();
+        cache.update(new SubA(), 1);
+        cache.update(new SubA(), 3);
+        assertEquals(1, cache.lookup(new SubA()));
+        assertEquals(RuntimeCheckCache.NOT_CACHED, cache.lookup(new SubB()));
+    }
+
+    public void testNullTarget() {
+        RuntimeCheckCache cache = new RuntimeCheckCache();
+        cache.update(null, 1);
+        assertEquals(RuntimeCheckCache.NOT_CACHED, cache.lookup(null));
+        cache.update(new SubA(), 0);
+        assertEquals(0, cache.lookup(new SubA()));
+    }
+
+    public void testCollectedTargetClass() throws Exception {
+        RuntimeCheckCache cache = new RuntimeCheckCache();
+        ClassLoader loader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        Class collected = AsmHelper.defineClass(loader, getCollectedBytecode(), COLLECTED_CLASS_NAME);
+        cache.update(collected.newInstance(), 1);
+        cache.update(new SubA(), 2);
+        assertEquals(1, cache.lookup(collected.newInstance()));
+
+        WeakReference loaderRef = new WeakReference(loader);
+        loader = null;
+        collected = null;
+        for (int i = 0; i < 50 && loaderRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull("the cache must not keep the target class loader alive", loaderRef.get());
+
+        cache.update(new SubB(), 4);
+        assertEquals("the entry of the collected target class is reused", 4, cache.lookup(new SubB()));
+        assertEquals(2, cache.lookup(new SubA()));
+    }
+
+    public void testCounters() {
+        RuntimeCheckCache cache = new RuntimeCheckCache();
+        cache.lookup(new SubA());
+        cache.update(new SubA(), 1);
+        cache.lookup(new SubA());
+        cache.lookup(new SubA());
+        cache.lookup(null);
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testCountersAcrossThreads() throws Throwable {
+        final RuntimeCheckCache cache = new RuntimeCheckCache();
+        cache.update(new SubA(), 1);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    SubA target = new SubA();
+                    for (int j = 0; j < 100; j++) {
+                        cache.lookup(target);
+                    }
+                }
+            };
+        }
+        // run one after the other so that the unsynchronized counters are exact
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].start();
+            threads[i].join();
+        }
+        assertEquals(400, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    private static final String COLLECTED_CLASS_NAME = "test/inlinecache/Collected";
+
+    /**
+     * @return an empty class with a default constructor, to define in a class loader of its own
+     */
+    private static byte[] getCollectedBytecode() {
+        ClassWriter cw = AsmHelper.newClassWriter(true);
+        cw.visit(
+                AsmHelper.JAVA_VERSION,
+                Opcodes.ACC_PUBLIC + Opcodes.ACC_SUPER,
+                COLLECTED_CLASS_NAME,
+                null,
+                "java/lang/Object",
+                null
+        );
+        MethodVisitor ctor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        ctor.visitVarInsn(Opcodes.ALOAD, 0);
+        ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        ctor.visitInsn(Opcodes.RETURN);
+        ctor.visitMaxs(0, 0);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(RuntimeCheckCacheTest.class);
+    }
+}
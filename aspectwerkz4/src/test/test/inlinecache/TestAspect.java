@@ -0,0 +1,37 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.inlinecache;
+
+import org.codehaus.aspectwerkz.joinpoint.StaticJoinPoint;
+
+public class TestAspect {
+
+    /**
+     * @Before call(void test.inlinecache.Service.m()) && within(test.inlinecache.Caller) && target(test.inlinecache.SubA)
+     */
+    public void beforeA(StaticJoinPoint jp) {
+        Caller.s_joinPointClass = jp.getClass();
+        Caller.s_log += "A ";
+    }
+
+    /**
+     * @Before call(void test.inlinecache.Service.m()) && within(test.inlinecache.Caller) && target(test.inlinecache.SubB)
+     */
+    public void beforeB(StaticJoinPoint jp) {
+        Caller.s_joinPointClass = jp.getClass();
+        Caller.s_log += "B ";
+    }
+
+    /**
+     * @Before call(void test.inlinecache.Service.m()) && within(test.inlinecache.Caller) && target(test.inlinecache.Marker)
+     */
+    public void beforeMarker(StaticJoinPoint jp) {
+        Caller.s_joinPointClass = jp.getClass();
+        Caller.s_log += "Marker ";
+    }
+}
@@ -0,0 +1,143 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.joinpointbatch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointManager;
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
+import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.transform.inlining.AsmNullAdapter;
+import org.objectweb.asm.ClassAdapter;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodAdapter;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * The join points of a weaved class are loaded in one batch from its 'clinit' method (see
+ * JoinPointManager.beginLoadJoinPoints).
+ */
+public class JoinPointBatchTest extends TestCase {
+
+    public void testBatchLoadedJoinPoints() {
+        Target.s_log = "";
+        new Target().caller();
+        assertEquals("before callee ", Target.s_log);
+        JoinPointManager.LoadStatistics statistics = JoinPointManager.getLoadStatistics(Target.class);
+        if (statistics != null) {
+            // not there when the join points are linked lazily
+            assertEquals(1, statistics.joinPointCount);
+        }
+    }
+
+    public void testBatchAbortedOnFailure() throws Throwable {
+        ClassLoader classLoader = getClass().getClassLoader();
+        InputStream is = classLoader.getResourceAsStream("test/joinpointbatch/Target.class");
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        for (int b = is.read(); b != -1; b = is.read()) {
+            os.write(b);
+        }
+        is.close();
+        // weaved already when weaved offline with the same definitions, returned as is in that case
+        AspectWerkzPreProcessor awpp = new AspectWerkzPreProcessor();
+        awpp.initialize();
+        byte[] weaved = awpp.preProcess("test.joinpointbatch.Target", os.toByteArray(), classLoader);
+
+        final int[] finallyBlocks = new int[1];
+        final int[] endCalls = new int[1];
+        final int[] abortCalls = new int[1];
+        new ClassReader(weaved).accept(
+                new ClassAdapter(AsmNullAdapter.NullClassAdapter.NULL_CLASS_ADAPTER) {
+                    public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                                     String[] exceptions) {
+                        MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
+                        if (!TransformationConstants.INIT_JOIN_POINTS_METHOD_NAME.equals(name)) {
+                            return mv;
+                        }
+                        return new MethodAdapter(mv) {
+                            public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+                                if (type == null) {
+                                    finallyBlocks[0]++;
+                                }
+                                super.visitTryCatchBlock(start, end, handler, type);
+                            }
+
+                            public void visitMethodInsn(int opcode, String owner, String name, String desc) {
+                                if (TransformationConstants.END_LOAD_JOIN_POINTS_METHOD_NAME.equals(name)) {
+                                    endCalls[0]++;
+                                } else if (TransformationConstants.ABORT_LOAD_JOIN_POINTS_METHOD_NAME.equals(name)) {
+                                    abortCalls[0]++;
+                                }
+                                super.visitMethodInsn(opcode, owner, name, desc);
+                            }
+                        };
+                    }
+                },
+                true
+        );
+        if (endCalls[0] == 0) {
+            // the join points are linked lazily
+            return;
+        }
+        assertEquals(1, finallyBlocks[0]);
+        assertEquals("end call in the normal path", 1, endCalls[0]);
+        assertEquals("abort call in the exceptional path", 1, abortCalls[0]);
+    }
+
+    public void testAbortNeverThrows() {
+        // no batch started
+        JoinPointManager.abortLoadJoinPoints(JoinPointBatchTest.class);
+
+        JoinPointManager.beginLoadJoinPoints(JoinPointBatchTest.class);
+        try {
+            // the batch of another class is left started
+            JoinPointManager.abortLoadJoinPoints(String.class);
+        } finally {
+            JoinPointManager.endLoadJoinPoints(JoinPointBatchTest.class);
+        }
+
+        JoinPointManager.beginLoadJoinPoints(JoinPointBatchTest.class);
+        JoinPointManager.abortLoadJoinPoints(JoinPointBatchTest.class);
+        try {
+            JoinPointManager.endLoadJoinPoints(JoinPointBatchTest.class);
+            fail("should fail once the batch is aborted");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    public void testEndWithoutBegin() {
+        try {
+            JoinPointManager.endLoadJoinPoints(JoinPointBatchTest.class);
+            fail("should fail when no batch is started");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    public void testEndOfAnotherClass() {
+        JoinPointManager.beginLoadJoinPoints(JoinPointBatchTest.class);
+        try {
+            JoinPointManager.endLoadJoinPoints(String.class);
+            fail("should fail when the batch of another class is started");
+        } catch (IllegalStateException e) {
+        } finally {
+            JoinPointManager.endLoadJoinPoints(JoinPointBatchTest.class);
+        }
+        assertEquals(0, JoinPointManager.getLoadStatistics(JoinPointBatchTest.class).joinPointCount);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(JoinPointBatchTest.class);
+    }
+}
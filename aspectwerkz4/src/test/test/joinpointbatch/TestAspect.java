@@ -0,0 +1,18 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.joinpointbatch;
+
+public class TestAspect {
+
+    /**
+     * @Before call(void test.joinpointbatch.Target.callee()) && within(test.joinpointbatch.Target)
+     */
+    public void before() {
+        Target.s_log += "before ";
+    }
+}
@@ -0,0 +1,64 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.jpstats;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointStatistics;
+import org.codehaus.aspectwerkz.transform.inlining.deployer.Deployer;
+
+/**
+ * Turning the join point statistics off and on at runtime for the join points of a pointcut, run with
+ * -Daspectwerkz.transform.jpstats=true and -Daspectwerkz.transform.relinkjp=true.
+ */
+public class JoinPointStatisticsOptionTest extends TestCase {
+
+    private static final String POINTCUT_A = "call(void test.jpstats.Target.calleeA()) && within(test.jpstats.Target)";
+
+    protected void tearDown() {
+        JoinPointStatistics.clearPointcutSettings();
+    }
+
+    public void testStatisticsScopedToPointcut() {
+        Target target = new Target();
+        target.siteA();
+        target.siteB();
+        final Class initialA = Target.s_joinPointClassA;
+        final Class initialB = Target.s_joinPointClassB;
+        assertNotNull(JoinPointStatistics.getStatistics(initialA));
+        assertNotNull(JoinPointStatistics.getStatistics(initialB));
+
+        Deployer.setJoinPointStatistics(false, POINTCUT_A, Target.class.getClassLoader());
+        JoinPointStatistics.resetAll();
+        Target.s_log = "";
+        target.siteA();
+        target.siteB();
+        assertEquals("beforeA calleeA beforeB calleeB ", Target.s_log);
+        assertTrue("the join point of the pointcut is redefined", Target.s_joinPointClassA != initialA);
+        assertNull(
+                "the redefined join point does not gather statistics",
+                JoinPointStatistics.getStatistics(Target.s_joinPointClassA)
+        );
+        assertEquals(0, JoinPointStatistics.getStatistics(initialA).getInvocationCount());
+        assertSame("the other join points are not redefined", initialB, Target.s_joinPointClassB);
+        assertEquals(1, JoinPointStatistics.getStatistics(initialB).getInvocationCount());
+
+        Deployer.setJoinPointStatistics(true, POINTCUT_A, Target.class.getClassLoader());
+        target.siteA();
+        JoinPointStatistics statistics = JoinPointStatistics.getStatistics(Target.s_joinPointClassA);
+        assertNotNull(statistics);
+        assertEquals(1, statistics.getInvocationCount());
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(JoinPointStatisticsOptionTest.class);
+    }
+}
@@ -0,0 +1,145 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.jpstats;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.expression.ExpressionContext;
+import org.codehaus.aspectwerkz.expression.PointcutType;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointStatistics;
+import org.codehaus.aspectwerkz.reflect.ClassInfo;
+import org.codehaus.aspectwerkz.reflect.MethodInfo;
+import org.codehaus.aspectwerkz.reflect.ReflectHelper;
+import org.codehaus.aspectwerkz.reflect.impl.java.JavaClassInfo;
+
+/**
+ * The join point statistics accounting and their pointcut settings.
+ */
+public class JoinPointStatisticsTest extends TestCase {
+
+    private static final String POINTCUT_A = "call(void test.jpstats.Target.calleeA()) && within(test.jpstats.Target)";
+
+    private static final String POINTCUT_B = "call(void test.jpstats.Target.calleeB()) && within(test.jpstats.Target)";
+
+    protected void tearDown() {
+        JoinPointStatistics.clearPointcutSettings();
+    }
+
+    public void testPointcutSettings() throws Exception {
+        ExpressionContext contextA = getCallContext("calleeA");
+        ExpressionContext contextB = getCallContext("calleeB");
+        boolean enabled = JoinPointStatistics.isEnabled();
+        assertFalse(JoinPointStatistics.hasPointcutSettings());
+        assertEquals(enabled, JoinPointStatistics.isEnabled(contextA));
+
+        JoinPointStatistics.setEnabled(POINTCUT_A, !enabled);
+        assertTrue(JoinPointStatistics.hasPointcutSettings());
+        assertEquals(!enabled, JoinPointStatistics.isEnabled(contextA));
+        assertEquals("the other join points are not affected", enabled, JoinPointStatistics.isEnabled(contextB));
+        assertEquals("the global setting is not changed", enabled, JoinPointStatistics.isEnabled());
+
+        JoinPointStatistics.setEnabled("call(void test.jpstats.Target.callee*()) && within(test.jpstats.Target)", true);
+        JoinPointStatistics.setEnabled(POINTCUT_B, false);
+        assertTrue("the last matching setting wins", JoinPointStatistics.isEnabled(contextA));
+        assertFalse(JoinPointStatistics.isEnabled(contextB));
+
+        JoinPointStatistics.setEnabled(POINTCUT_B, true);
+        assertTrue("a pointcut set again is moved last", JoinPointStatistics.isEnabled(contextB));
+
+        JoinPointStatistics.clearPointcutSettings();
+        assertFalse(JoinPointStatistics.hasPointcutSettings());
+        assertEquals(enabled, JoinPointStatistics.isEnabled(contextA));
+    }
+
+    public void testRecord() {
+        JoinPointStatistics statistics = JoinPointStatistics.register(
+                "test/jpstats/JoinPointStatisticsTest$Fake", new String[]{POINTCUT_A}, getClass().getClassLoader()
+        );
+        long start = JoinPointStatistics.now();
+        statistics.exit(start);
+        statistics.exit(start);
+        statistics.exception(start);
+        assertEquals(3, statistics.getInvocationCount());
+        assertEquals(1, statistics.getExceptionCount());
+        long[] histogram = statistics.getHistogram();
+        long count = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            count += histogram[i];
+        }
+        assertEquals(3, count);
+
+        List selected = JoinPointStatistics.getStatistics(null, POINTCUT_A);
+        assertTrue(selected.contains(statistics));
+        assertSame(statistics, JoinPointStatistics.getStatistics("test.jpstats.JoinPointStatisticsTest$Fake"));
+        String csv = JoinPointStatistics.getCsvSnapshot("test.jpstats.JoinPointStatisticsTest$Fake", null);
+        assertTrue(csv.startsWith("joinPointClassName,pointcuts,invocations,exceptions,totalTimeNanos,bucket0"));
+        assertTrue(csv.indexOf("\ntest.jpstats.JoinPointStatisticsTest$Fake,") > 0);
+        String json = JoinPointStatistics.getJsonSnapshot("test.jpstats.JoinPointStatisticsTest$Fake", null);
+        assertTrue(json.indexOf("\"invocations\":3,\"exceptions\":1") > 0);
+
+        statistics.reset();
+        assertEquals(0, statistics.getInvocationCount());
+    }
+
+    public void testStatisticsPerClassLoader() throws Exception {
+        final String name = "test.jpstats.JoinPointStatisticsTest$PerLoader";
+        JoinPointStatistics statistics = JoinPointStatistics.register(
+                name, new String[]{POINTCUT_B}, getClass().getClassLoader()
+        );
+        ClassLoader loader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        JoinPointStatistics other = JoinPointStatistics.register(name, new String[]{POINTCUT_B}, loader);
+        assertNotSame(statistics, other);
+        statistics.exit(JoinPointStatistics.now());
+        assertEquals(1, statistics.getInvocationCount());
+        assertEquals("the statistics of another class loader are apart", 0, other.getInvocationCount());
+        assertEquals(2, JoinPointStatistics.getStatistics(name, null).size());
+
+        WeakReference loaderRef = new WeakReference(loader);
+        loader = null;
+        other = null;
+        for (int i = 0; i < 50 && loaderRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull("the statistics must not keep the class loader alive", loaderRef.get());
+        List remaining = JoinPointStatistics.getStatistics(name, null);
+        assertEquals(1, remaining.size());
+        assertSame(statistics, remaining.get(0));
+    }
+
+    public void testBuckets() {
+        assertEquals(0, JoinPointStatistics.getBucket(0));
+        assertEquals(0, JoinPointStatistics.getBucket(1023));
+        assertEquals(1, JoinPointStatistics.getBucket(1024));
+        assertEquals(2, JoinPointStatistics.getBucket(2048));
+        assertEquals(JoinPointStatistics.BUCKET_COUNT - 1, JoinPointStatistics.getBucket(Long.MAX_VALUE));
+    }
+
+    private static ExpressionContext getCallContext(String calleeName) throws Exception {
+        ClassInfo target = JavaClassInfo.getClassInfo(Target.class);
+        MethodInfo callee = target.getMethod(
+                ReflectHelper.calculateHash(Target.class.getMethod(calleeName, new Class[0]))
+        );
+        MethodInfo caller = target.getMethod(
+                ReflectHelper.calculateHash(Target.class.getMethod("siteA", new Class[0]))
+        );
+        return new ExpressionContext(PointcutType.CALL, callee, caller);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(JoinPointStatisticsTest.class);
+    }
+}
@@ -0,0 +1,33 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.jpstats;
+
+public class Target {
+
+    public static String s_log = "";
+
+    public static Class s_joinPointClassA;
+
+    public static Class s_joinPointClassB;
+
+    public void siteA() {
+        calleeA();
+    }
+
+    public void siteB() {
+        calleeB();
+    }
+
+    public void calleeA() {
+        s_log += "calleeA ";
+    }
+
+    public void calleeB() {
+        s_log += "calleeB ";
+    }
+}
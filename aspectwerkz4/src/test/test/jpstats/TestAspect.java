@@ -0,0 +1,29 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.jpstats;
+
+import org.codehaus.aspectwerkz.joinpoint.StaticJoinPoint;
+
+public class TestAspect {
+
+    /**
+     * @Before call(void test.jpstats.Target.calleeA()) && within(test.jpstats.Target)
+     */
+    public void beforeA(StaticJoinPoint jp) {
+        Target.s_joinPointClassA = jp.getClass();
+        Target.s_log += "beforeA ";
+    }
+
+    /**
+     * @Before call(void test.jpstats.Target.calleeB()) && within(test.jpstats.Target)
+     */
+    public void beforeB(StaticJoinPoint jp) {
+        Target.s_joinPointClassB = jp.getClass();
+        Target.s_log += "beforeB ";
+    }
+}
@@ -0,0 +1,21 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.lazyjp;
+
+/**
+ * Holds a call site reached concurrently by several threads the first time.
+ */
+public class ConcurrentTarget {
+
+    public void callOnce() {
+        callee();
+    }
+
+    public void callee() {
+    }
+}
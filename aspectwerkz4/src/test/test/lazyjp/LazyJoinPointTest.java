@@ -0,0 +1,119 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.lazyjp;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointManager;
+import org.codehaus.aspectwerkz.transform.TransformationConstants;
+
+/**
+ * Lazy join point linking (-Daspectwerkz.transform.lazyjp=true): the join points of a class are linked the first
+ * time they are reached, and compiled only once even when several threads reach them concurrently.
+ */
+public class LazyJoinPointTest extends TestCase {
+
+    private static final int THREAD_COUNT = 8;
+
+    public void testLinkedOnFirstInvocation() throws Throwable {
+        Target.load();
+        assertEquals("one linked flag per join point", 1, getLinkedFlags(Target.class).length);
+        assertEquals("no join point linked at class initialization", 0, getLinkedCount(Target.class));
+        assertNull(JoinPointManager.getLoadStatistics(Target.class));
+
+        Target.s_log = "";
+        Target target = new Target();
+        target.callOnce();
+        assertEquals(1, getLinkedCount(Target.class));
+        target.callOnce();
+        assertEquals(1, getLinkedCount(Target.class));
+        assertEquals("callee callee ", Target.s_log);
+        assertEquals(1, JoinPointManager.getLoadStatistics(Target.class).joinPointCount);
+    }
+
+    public void testLinkedOnceWhenReachedConcurrently() throws Throwable {
+        Target.s_log = "";
+        final ConcurrentTarget target = new ConcurrentTarget();
+        final boolean[] start = new boolean[1];
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[THREAD_COUNT];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        synchronized (start) {
+                            while (!start[0]) {
+                                start.wait();
+                            }
+                        }
+                        target.callOnce();
+                    } catch (Throwable t) {
+                        failure[0] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        // let the threads reach the join point at the same time
+        Thread.sleep(200);
+        synchronized (start) {
+            start[0] = true;
+            start.notifyAll();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        assertEquals(1, getLinkedCount(ConcurrentTarget.class));
+        assertEquals(
+                "compiled once by the first thread", 1,
+                JoinPointManager.getLoadStatistics(ConcurrentTarget.class).joinPointCount
+        );
+        assertEquals("the advice runs at each call", THREAD_COUNT * "callee ".length(), Target.s_log.length());
+    }
+
+    private static Field[] getLinkedFlags(Class klass) {
+        Field[] fields = klass.getDeclaredFields();
+        int count = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].getName().startsWith(TransformationConstants.LINKED_JOIN_POINT_FIELD_PREFIX)) {
+                assertTrue(Modifier.isStatic(fields[i].getModifiers()));
+                assertTrue(Modifier.isVolatile(fields[i].getModifiers()));
+                fields[count++] = fields[i];
+            }
+        }
+        Field[] flags = new Field[count];
+        System.arraycopy(fields, 0, flags, 0, count);
+        return flags;
+    }
+
+    private static int getLinkedCount(Class klass) throws Exception {
+        Field[] flags = getLinkedFlags(klass);
+        int linked = 0;
+        for (int i = 0; i < flags.length; i++) {
+            flags[i].setAccessible(true);
+            if (flags[i].getBoolean(null)) {
+                linked++;
+            }
+        }
+        return linked;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(LazyJoinPointTest.class);
+    }
+}
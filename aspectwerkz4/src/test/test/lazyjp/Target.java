@@ -0,0 +1,26 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.lazyjp;
+
+/**
+ * Holds a call site linked lazily, the join point being in the caller class.
+ */
+public class Target {
+
+    public static String s_log = "";
+
+    public static void load() {
+    }
+
+    public void callOnce() {
+        callee();
+    }
+
+    public void callee() {
+    }
+}
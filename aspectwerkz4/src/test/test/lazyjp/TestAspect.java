@@ -0,0 +1,22 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.lazyjp;
+
+import org.codehaus.aspectwerkz.joinpoint.StaticJoinPoint;
+
+public class TestAspect {
+
+    /**
+     * @Before call(void test.lazyjp.*Target.callee()) && within(test.lazyjp.*Target)
+     */
+    public void before(StaticJoinPoint jp) {
+        synchronized (Target.class) {
+            Target.s_log += jp.getSignature().getName() + " ";
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.memberindex;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.reflect.MemberIndex;
+import org.codehaus.aspectwerkz.reflect.ReflectHelper;
+
+/**
+ * The member index used to look up the reflective members by hash.
+ */
+public class MemberIndexTest extends TestCase {
+
+    private static final int THREAD_COUNT = 8;
+
+    public void testDeclaredMembers() throws Exception {
+        MemberIndex index = MemberIndex.getMemberIndex(Sub.class);
+        assertSame(Sub.class, index.getIndexedClass());
+        Method method = Sub.class.getDeclaredMethod("overridden", new Class[0]);
+        assertEquals(method, index.getMethod(ReflectHelper.calculateHash(method)));
+        Constructor constructor = Sub.class.getDeclaredConstructor(new Class[0]);
+        assertEquals(constructor, index.getConstructor(ReflectHelper.calculateHash(constructor)));
+        Field field = Sub.class.getDeclaredField("m_subField");
+        assertEquals(field, index.getField(ReflectHelper.calculateHash(field)));
+        assertEquals(Sub.class.getDeclaredMethods().length, index.getDeclaredMethodHashes().length);
+    }
+
+    public void testInheritedMembers() throws Exception {
+        MemberIndex index = MemberIndex.getMemberIndex(Sub.class);
+        Method inherited = Super.class.getDeclaredMethod("inherited", new Class[0]);
+        assertEquals(inherited, index.getMethod(ReflectHelper.calculateHash(inherited)));
+        Method fromInterface = Api.class.getDeclaredMethod("api", new Class[0]);
+        assertEquals(fromInterface, index.getMethod(ReflectHelper.calculateHash(fromInterface)));
+        Field superField = Super.class.getDeclaredField("m_superField");
+        assertEquals(superField, index.getField(ReflectHelper.calculateHash(superField)));
+
+        // the declared member wins over the inherited one with the same hash
+        Method overridden = Super.class.getDeclaredMethod("overridden", new Class[0]);
+        assertEquals(
+                Sub.class.getDeclaredMethod("overridden", new Class[0]),
+                index.getMethod(ReflectHelper.calculateHash(overridden))
+        );
+        assertNull(index.getMethod(0));
+    }
+
+    public void testOneIndexPerClass() {
+        assertSame(MemberIndex.getMemberIndex(Super.class), MemberIndex.getMemberIndex(Super.class));
+    }
+
+    public void testOneIndexPublishedWhenBuiltConcurrently() throws Throwable {
+        final MemberIndex[] indexes = new MemberIndex[THREAD_COUNT];
+        final boolean[] start = new boolean[1];
+        Thread[] threads = new Thread[THREAD_COUNT];
+        for (int i = 0; i < threads.length; i++) {
+            final int slot = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    synchronized (start) {
+                        while (!start[0]) {
+                            try {
+                                start.wait();
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                        }
+                    }
+                    indexes[slot] = MemberIndex.getMemberIndex(Concurrent.class);
+                }
+            };
+            threads[i].start();
+        }
+        Thread.sleep(200);
+        synchronized (start) {
+            start[0] = true;
+            start.notifyAll();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        MemberIndex index = MemberIndex.getMemberIndex(Concurrent.class);
+        for (int i = 0; i < indexes.length; i++) {
+            assertSame("all threads get the published index", index, indexes[i]);
+        }
+    }
+
+    public static interface Api {
+        void api();
+    }
+
+    public static abstract class Super implements Api {
+        protected int m_superField;
+
+        public void inherited() {
+        }
+
+        public void overridden() {
+        }
+    }
+
+    public static abstract class Sub extends Super {
+        private int m_subField;
+
+        public Sub() {
+        }
+
+        public void overridden() {
+        }
+    }
+
+    public static class Concurrent {
+        public void m() {
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(MemberIndexTest.class);
+    }
+}
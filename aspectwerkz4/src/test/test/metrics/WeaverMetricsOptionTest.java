@@ -0,0 +1,49 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.metrics;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.expression.ExpressionContext;
+import org.codehaus.aspectwerkz.expression.ExpressionInfo;
+import org.codehaus.aspectwerkz.expression.PointcutType;
+import org.codehaus.aspectwerkz.reflect.ClassInfo;
+import org.codehaus.aspectwerkz.reflect.MethodInfo;
+import org.codehaus.aspectwerkz.reflect.ReflectHelper;
+import org.codehaus.aspectwerkz.reflect.impl.java.JavaClassInfo;
+import org.codehaus.aspectwerkz.transform.WeaverMetrics;
+
+/**
+ * The weaver metrics (-Daspectwerkz.transform.metrics=true): each expression evaluation is counted.
+ */
+public class WeaverMetricsOptionTest extends TestCase {
+
+    public void testExpressionEvaluationsCounted() throws Exception {
+        assertTrue(WeaverMetrics.ENABLED);
+        String expression = "execution(* test.metrics.WeaverMetricsOptionTest.*(..))";
+        ExpressionInfo info = new ExpressionInfo(expression, "TESTING");
+        ClassInfo classInfo = JavaClassInfo.getClassInfo(WeaverMetricsOptionTest.class);
+        MethodInfo method = classInfo.getMethod(
+                ReflectHelper.calculateHash(
+                        WeaverMetricsOptionTest.class.getMethod("testExpressionEvaluationsCounted", new Class[0])
+                )
+        );
+        WeaverMetrics.ExpressionCounter counter = WeaverMetrics.getExpressionCounter(expression);
+        long count = counter.getCount();
+        assertTrue(info.getExpression().match(new ExpressionContext(PointcutType.EXECUTION, method, classInfo)));
+        assertTrue(info.getExpression().match(new ExpressionContext(PointcutType.EXECUTION, method, classInfo)));
+        assertEquals(count + 2, counter.getCount());
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(WeaverMetricsOptionTest.class);
+    }
+}
@@ -0,0 +1,97 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.metrics;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.transform.WeaverMetrics;
+import org.codehaus.aspectwerkz.transform.inlining.ContextImpl;
+
+/**
+ * The weaver metrics accounting.
+ */
+public class WeaverMetricsTest extends TestCase {
+
+    private static final int THREAD_COUNT = 4;
+
+    private static final String EXPRESSION = "execution(* test.metrics.*.*(..))";
+
+    protected void setUp() {
+        WeaverMetrics.reset();
+    }
+
+    protected void tearDown() {
+        WeaverMetrics.reset();
+    }
+
+    public void testWeavedAndFilteredClasses() {
+        WeaverMetrics.startClass("test.metrics.Weaved").end(newContext("test.metrics.Weaved"));
+        WeaverMetrics.Sample filtered = WeaverMetrics.startClass("test.metrics.Filtered");
+        filtered.filtered();
+        filtered.end(newContext("test.metrics.Filtered"));
+
+        assertEquals(1, WeaverMetrics.getWeavedClassCount());
+        assertEquals(1, WeaverMetrics.getFilteredClassCount());
+        assertEquals(0, WeaverMetrics.getFailedClassCount());
+        assertEquals(2, WeaverMetrics.getSlowestClasses().length);
+    }
+
+    public void testFailedClassNotCountedAsWeaved() {
+        WeaverMetrics.Sample sample = WeaverMetrics.startClass("test.metrics.Failed");
+        sample.endPhase(WeaverMetrics.CLASS_INFO);
+        sample.failed();
+        sample.end(newContext("test.metrics.Failed"));
+
+        assertEquals(0, WeaverMetrics.getWeavedClassCount());
+        assertEquals(1, WeaverMetrics.getFailedClassCount());
+        assertEquals(0, WeaverMetrics.getSlowestClasses().length);
+        assertTrue(WeaverMetrics.getReport().indexOf("failed: 1") >= 0);
+    }
+
+    public void testExpressionCounter() throws Exception {
+        final WeaverMetrics.ExpressionCounter counter = WeaverMetrics.getExpressionCounter(EXPRESSION);
+        assertSame(counter, WeaverMetrics.getExpressionCounter(EXPRESSION));
+        Thread[] threads = new Thread[THREAD_COUNT];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 10; j++) {
+                        counter.evaluated(1000000L);
+                    }
+                }
+            };
+        }
+        // one after the other so that the unsynchronized counters are exact
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].start();
+            threads[i].join();
+        }
+        assertEquals(40, counter.getCount());
+        assertEquals(40000000L, counter.getTime());
+        String[] expressions = WeaverMetrics.getSlowestExpressions();
+        assertEquals(1, expressions.length);
+        assertEquals(EXPRESSION + "=40.000/40", expressions[0]);
+
+        WeaverMetrics.reset();
+        assertEquals(0, counter.getCount());
+        assertEquals("unevaluated expressions are not reported", 0, WeaverMetrics.getSlowestExpressions().length);
+        counter.evaluated(1000L);
+        assertEquals("the counter is still in use after a reset", 1, WeaverMetrics.getSlowestExpressions().length);
+    }
+
+    private static ContextImpl newContext(String className) {
+        return new ContextImpl(className, new byte[0], WeaverMetricsTest.class.getClassLoader());
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(WeaverMetricsTest.class);
+    }
+}
@@ -0,0 +1,165 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.mixinfactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.DeploymentModel;
+import org.codehaus.aspectwerkz.aspect.DefaultMixinFactory;
+import org.codehaus.aspectwerkz.aspect.MixinFactory;
+import org.codehaus.aspectwerkz.aspect.container.MixinFactoryCompiler;
+import org.codehaus.aspectwerkz.exception.DefinitionException;
+
+/**
+ * The mixin factories generated for the mixins that use the default factory.
+ */
+public class MixinFactoryTest extends TestCase {
+
+    public void testGeneratedFactory() {
+        MixinFactory factory = MixinFactoryCompiler.newMixinFactory(PerInstanceMixin.class, DeploymentModel.PER_INSTANCE);
+        assertNotNull(factory);
+        assertTrue(factory instanceof DefaultMixinFactory);
+        assertTrue(
+                factory.getClass().getName().startsWith(
+                        MixinFactoryCompiler.getMixinFactoryClassName(PerInstanceMixin.class.getName()).replace('/', '.')
+                )
+        );
+        assertSame(PerInstanceMixin.class.getClassLoader(), factory.getClass().getClassLoader());
+    }
+
+    public void testPerInstance() {
+        MixinFactory factory = MixinFactoryCompiler.newMixinFactory(PerInstanceMixin.class, DeploymentModel.PER_INSTANCE);
+        Target target1 = new Target();
+        Target target2 = new Target();
+        PerInstanceMixin mixin1 = (PerInstanceMixin) factory.mixinOf(target1);
+        assertSame(target1, mixin1.m_target);
+        assertSame(mixin1, factory.mixinOf(target1));
+        PerInstanceMixin mixin2 = (PerInstanceMixin) factory.mixinOf(target2);
+        assertNotSame("the targets are equal but not the same", mixin1, mixin2);
+        assertSame(target2, mixin2.m_target);
+        try {
+            factory.mixinOf();
+            fail("perJVM lookup of a perInstance mixin");
+        } catch (DefinitionException e) {
+            // expected
+        }
+    }
+
+    public void testPerClass() {
+        MixinFactory factory = MixinFactoryCompiler.newMixinFactory(PerClassMixin.class, DeploymentModel.PER_CLASS);
+        PerClassMixin mixin = (PerClassMixin) factory.mixinOf(Target.class);
+        assertSame(Target.class, mixin.m_targetClass);
+        assertSame(mixin, factory.mixinOf(Target.class));
+        assertNotSame(mixin, factory.mixinOf(String.class));
+    }
+
+    public void testPerJVM() {
+        MixinFactory factory = MixinFactoryCompiler.newMixinFactory(PerJVMMixin.class, DeploymentModel.PER_JVM);
+        Object mixin = factory.mixinOf();
+        assertTrue(mixin instanceof PerJVMMixin);
+        assertSame(mixin, factory.mixinOf());
+    }
+
+    public void testNonPublicMixin() {
+        // the factory could not call the constructor, the reflective default factory is used instead
+        assertNull(MixinFactoryCompiler.newMixinFactory(NonPublicMixin.class, DeploymentModel.PER_JVM));
+    }
+
+    public void testFailureLogged() {
+        PrintStream err = System.err;
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(log, true));
+        try {
+            assertNull(MixinFactoryCompiler.newMixinFactory(BrokenMixin.class, DeploymentModel.PER_JVM));
+        } finally {
+            System.setErr(err);
+        }
+        assertTrue(log.toString().indexOf(BrokenMixin.class.getName()) >= 0);
+    }
+
+    public void testConcurrentLookups() throws Exception {
+        final MixinFactory factory = MixinFactoryCompiler.newMixinFactory(
+                PerInstanceMixin.class, DeploymentModel.PER_INSTANCE
+        );
+        final Target target = new Target();
+        final Object[] mixins = new Object[8];
+        Thread[] threads = new Thread[mixins.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    mixins[index] = factory.mixinOf(target);
+                }
+            };
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        for (int i = 1; i < mixins.length; i++) {
+            assertSame("a single mixin is kept", mixins[0], mixins[i]);
+        }
+    }
+
+    /**
+     * All the instances are equal.
+     */
+    public static class Target {
+        public boolean equals(Object o) {
+            return o instanceof Target;
+        }
+
+        public int hashCode() {
+            return 0;
+        }
+    }
+
+    public static class PerInstanceMixin {
+        final Object m_target;
+
+        public PerInstanceMixin(Object target) {
+            m_target = target;
+        }
+    }
+
+    public static class PerClassMixin {
+        final Class m_targetClass;
+
+        public PerClassMixin(Class targetClass) {
+            m_targetClass = targetClass;
+        }
+    }
+
+    public static class PerJVMMixin {
+    }
+
+    /**
+     * The name of its generated factory is taken by a class that is not a factory.
+     */
+    public static class BrokenMixin {
+        public static class AWMixinFactory {
+        }
+    }
+
+    static class NonPublicMixin {
+        public NonPublicMixin() {
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(MixinFactoryTest.class);
+    }
+}
@@ -0,0 +1,115 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.mixinfactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.util.WeakIdentityMap;
+
+/**
+ * The weak identity map of the mixin factories.
+ */
+public class WeakIdentityMapTest extends TestCase {
+
+    public void testIdentity() {
+        WeakIdentityMap map = new WeakIdentityMap();
+        String key1 = new String("key");
+        String key2 = new String("key");
+        assertSame("1", map.putIfAbsent(key1, "1"));
+        assertNull(map.get(key2));
+        assertSame("2", map.putIfAbsent(key2, "2"));
+        assertSame("1", map.get(key1));
+        assertSame("2", map.get(key2));
+        assertEquals(2, map.size());
+    }
+
+    public void testPutIfAbsent() {
+        WeakIdentityMap map = new WeakIdentityMap();
+        Object key = new Object();
+        assertSame("1", map.putIfAbsent(key, "1"));
+        assertSame("the first value is kept", "1", map.putIfAbsent(key, "2"));
+        assertSame("1", map.get(key));
+        assertEquals(1, map.size());
+    }
+
+    public void testResize() {
+        WeakIdentityMap map = new WeakIdentityMap();
+        List keys = new ArrayList();
+        for (int i = 0; i < 1000; i++) {
+            Object key = new Object();
+            keys.add(key);
+            map.putIfAbsent(key, new Integer(i));
+        }
+        assertEquals(1000, map.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(new Integer(i), map.get(keys.get(i)));
+        }
+    }
+
+    public void testCollectedKeys() {
+        WeakIdentityMap map = new WeakIdentityMap();
+        Object kept = new Object();
+        map.putIfAbsent(kept, "kept");
+        for (int i = 0; i < 100; i++) {
+            map.putIfAbsent(new Object(), "collected");
+        }
+        for (int i = 0; i < 20 && map.size() > 1; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        assertEquals(1, map.size());
+        assertSame("kept", map.get(kept));
+    }
+
+    public void testConcurrentReads() throws Exception {
+        final WeakIdentityMap map = new WeakIdentityMap();
+        final Object[] keys = new Object[200];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new Object();
+        }
+        final boolean[] failed = new boolean[1];
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread() {
+                public void run() {
+                    for (int round = 0; round < 50; round++) {
+                        for (int i = 0; i < keys.length; i++) {
+                            Object value = map.get(keys[i]);
+                            if (value == null) {
+                                value = map.putIfAbsent(keys[i], new Integer(i));
+                            }
+                            if (!new Integer(i).equals(value)) {
+                                failed[0] = true;
+                            }
+                        }
+                    }
+                }
+            };
+            readers[t].start();
+        }
+        for (int t = 0; t < readers.length; t++) {
+            readers[t].join();
+        }
+        assertFalse(failed[0]);
+        assertEquals(keys.length, map.size());
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(WeakIdentityMapTest.class);
+    }
+}
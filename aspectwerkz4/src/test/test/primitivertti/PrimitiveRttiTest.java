@@ -0,0 +1,42 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.primitivertti;
+
+import junit.framework.TestCase;
+
+/**
+ * The primitive values of the RTTI, kept unboxed until asked for as objects.
+ */
+public class PrimitiveRttiTest extends TestCase {
+
+    public void testParameterAndReturnValues() {
+        Target.s_log = "";
+        int result = new Target().compute(-3, 1L << 40, 2.5d, true, 1.5f, 'x', "s");
+        assertEquals(-4, result);
+        assertEquals(
+                "before -3 1099511627776 2.5 true 1.5 120 -3 -3 1099511627776 2.5 true 1.5 x s after -4 -4.0 -4 ",
+                Target.s_log
+        );
+    }
+
+    public void testFieldSetValue() {
+        Target.s_log = "";
+        Target target = new Target();
+        target.setInt(42);
+        assertEquals("the value being assigned", "set 42 42 ", Target.s_log);
+        assertEquals(42, target.getInt());
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(PrimitiveRttiTest.class);
+    }
+}
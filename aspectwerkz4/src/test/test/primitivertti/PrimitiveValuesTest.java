@@ -0,0 +1,88 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.primitivertti;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.joinpoint.impl.PrimitiveValues;
+
+/**
+ * The conversions of the primitive values kept as long bits by the RTTI.
+ */
+public class PrimitiveValuesTest extends TestCase {
+
+    public void testBox() {
+        assertEquals(new Integer(-3), PrimitiveValues.box(int.class, -3L));
+        assertEquals(new Long(Long.MIN_VALUE), PrimitiveValues.box(long.class, Long.MIN_VALUE));
+        assertEquals(Boolean.TRUE, PrimitiveValues.box(boolean.class, 1L));
+        assertEquals(Boolean.FALSE, PrimitiveValues.box(boolean.class, 0L));
+        assertEquals(new Double(-0.25d), PrimitiveValues.box(double.class, Double.doubleToRawLongBits(-0.25d)));
+        assertEquals(new Float(1.5f), PrimitiveValues.box(float.class, Float.floatToRawIntBits(1.5f)));
+        assertEquals(new Short((short) -7), PrimitiveValues.box(short.class, -7L));
+        assertEquals(new Byte((byte) 100), PrimitiveValues.box(byte.class, 100L));
+        assertEquals(new Character('x'), PrimitiveValues.box(char.class, 'x'));
+        try {
+            PrimitiveValues.box(String.class, 0L);
+            fail("not a primitive type");
+        } catch (IllegalArgumentException e) {
+            ;
+        }
+    }
+
+    public void testBoxArray() {
+        Class[] types = new Class[]{int.class, String.class, double.class};
+        Object[] values = new Object[]{null, "s", null};
+        long[] bits = new long[]{5L, 0L, Double.doubleToRawLongBits(2.5d)};
+        PrimitiveValues.box(types, values, bits);
+        assertEquals(new Integer(5), values[0]);
+        assertEquals("s", values[1]);
+        assertEquals(new Double(2.5d), values[2]);
+    }
+
+    public void testWidening() {
+        assertEquals(120, PrimitiveValues.getInt(char.class, 'x'));
+        assertEquals(-3L, PrimitiveValues.getLong(int.class, -3L));
+        assertEquals(1.5d, PrimitiveValues.getDouble(float.class, Float.floatToRawIntBits(1.5f)), 0d);
+        assertEquals(7d, PrimitiveValues.getDouble(long.class, 7L), 0d);
+        assertTrue(PrimitiveValues.getBoolean(boolean.class, 1L));
+        try {
+            PrimitiveValues.getInt(long.class, 1L);
+            fail("long does not narrow to int");
+        } catch (IllegalArgumentException e) {
+            ;
+        }
+        try {
+            PrimitiveValues.getBoolean(int.class, 1L);
+            fail("int does not convert to boolean");
+        } catch (IllegalArgumentException e) {
+            ;
+        }
+    }
+
+    public void testWrappers() {
+        assertEquals(-3, PrimitiveValues.getInt(new Integer(-3)));
+        assertEquals(-3L, PrimitiveValues.getLong(new Short((short) -3)));
+        assertEquals(2.5d, PrimitiveValues.getDouble(new Double(2.5d)), 0d);
+        assertEquals(1.5d, PrimitiveValues.getDouble(new Float(1.5f)), 0d);
+        assertEquals(120, PrimitiveValues.getInt(new Character('x')));
+        assertFalse(PrimitiveValues.getBoolean(Boolean.FALSE));
+        try {
+            PrimitiveValues.getInt("s");
+            fail("not a primitive value");
+        } catch (IllegalArgumentException e) {
+            ;
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(PrimitiveValuesTest.class);
+    }
+}
@@ -0,0 +1,27 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.primitivertti;
+
+public class Target {
+
+    public static String s_log = "";
+
+    private int m_int;
+
+    public int compute(int i, long l, double d, boolean b, float f, char c, String s) {
+        return i - 1;
+    }
+
+    public void setInt(int i) {
+        m_int = i;
+    }
+
+    public int getInt() {
+        return m_int;
+    }
+}
@@ -0,0 +1,51 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.primitivertti;
+
+import org.codehaus.aspectwerkz.joinpoint.FieldRtti;
+import org.codehaus.aspectwerkz.joinpoint.JoinPoint;
+import org.codehaus.aspectwerkz.joinpoint.MethodRtti;
+
+public class TestAspect {
+
+    /**
+     * @Before execution(int test.primitivertti.Target.compute(..))
+     */
+    public void beforeCompute(JoinPoint jp) {
+        MethodRtti rtti = (MethodRtti) jp.getRtti();
+        Target.s_log += "before " + rtti.getIntParameterValue(0)
+                        + " " + rtti.getLongParameterValue(1)
+                        + " " + rtti.getDoubleParameterValue(2)
+                        + " " + rtti.getBooleanParameterValue(3)
+                        + " " + rtti.getDoubleParameterValue(4)
+                        + " " + rtti.getIntParameterValue(5)
+                        + " " + rtti.getLongParameterValue(0) + " ";
+        Object[] values = rtti.getParameterValues();
+        for (int i = 0; i < values.length; i++) {
+            Target.s_log += values[i] + " ";
+        }
+    }
+
+    /**
+     * @AfterReturning execution(int test.primitivertti.Target.compute(..))
+     */
+    public void afterCompute(JoinPoint jp) {
+        MethodRtti rtti = (MethodRtti) jp.getRtti();
+        Target.s_log += "after " + rtti.getIntReturnValue()
+                        + " " + rtti.getDoubleReturnValue()
+                        + " " + rtti.getReturnValue() + " ";
+    }
+
+    /**
+     * @Before set(int test.primitivertti.Target.m_int) && within(test.primitivertti.Target)
+     */
+    public void beforeSet(JoinPoint jp) {
+        FieldRtti rtti = (FieldRtti) jp.getRtti();
+        Target.s_log += "set " + rtti.getIntFieldValue() + " " + rtti.getFieldValue() + " ";
+    }
+}
@@ -0,0 +1,83 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.redefinitionrecord;
+
+import java.lang.ref.WeakReference;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.aspect.AdviceInfo;
+import org.codehaus.aspectwerkz.definition.AdviceDefinition;
+import org.codehaus.aspectwerkz.expression.ExpressionInfo;
+import org.codehaus.aspectwerkz.transform.inlining.EmittedJoinPoint;
+import org.codehaus.aspectwerkz.transform.inlining.compiler.CompilationInfo;
+import org.codehaus.aspectwerkz.transform.inlining.compiler.JoinPointFactory;
+
+/**
+ * The redefinition record kept per join point class: the initial model is only held weakly, and is rebuilt from
+ * the emitted join point and the advices it was compiled with.
+ */
+public class CompilationInfoTest extends TestCase {
+
+    public void testRecord() {
+        Class joinPointClass = getJoinPointClass();
+        CompilationInfo compilationInfo = JoinPointFactory.getCompilationInfo(joinPointClass);
+        assertNotNull(compilationInfo);
+        assertSame(compilationInfo.getEmittedJoinPoint(), JoinPointFactory.getEmittedJoinPoint(joinPointClass));
+        assertEquals(
+                joinPointClass.getName().replace('.', '/'),
+                compilationInfo.getEmittedJoinPoint().getJoinPointClassName()
+        );
+        assertNull(compilationInfo.getRedefinedJoinPointClassName());
+    }
+
+    public void testRebuiltModel() {
+        CompilationInfo compilationInfo = JoinPointFactory.getCompilationInfo(getJoinPointClass());
+        CompilationInfo.Model model = compilationInfo.getInitialModel();
+        EmittedJoinPoint emittedJoinPoint = model.getEmittedJoinPoint();
+        AdviceInfo[] adviceInfos = model.getAdviceInfoContainer().getAllAdviceInfos();
+        assertEquals(1, adviceInfos.length);
+        AdviceDefinition adviceDefinition = adviceInfos[0].getAdviceDefinition();
+        ExpressionInfo expressionInfo = adviceInfos[0].getExpressionInfo();
+        assertEquals(TestAspect.class.getName(), adviceInfos[0].getAspectClassName());
+
+        WeakReference modelRef = new WeakReference(model);
+        model = null;
+        adviceInfos = null;
+        for (int i = 0; i < 50 && modelRef.get() != null; i++) {
+            System.gc();
+        }
+        assertNull("the initial model is only held weakly", modelRef.get());
+
+        CompilationInfo.Model rebuiltModel = compilationInfo.getInitialModel();
+        assertSame(emittedJoinPoint, rebuiltModel.getEmittedJoinPoint());
+        assertEquals(Target.class.getName(), rebuiltModel.getThisClassInfo().getName());
+        assertEquals(emittedJoinPoint.getJoinPointClassName(), rebuiltModel.getJoinPointClassName());
+        AdviceInfo[] rebuiltAdviceInfos = rebuiltModel.getAdviceInfoContainer().getAllAdviceInfos();
+        assertEquals(1, rebuiltAdviceInfos.length);
+        assertSame(adviceDefinition, rebuiltAdviceInfos[0].getAdviceDefinition());
+        assertSame(expressionInfo, rebuiltAdviceInfos[0].getExpressionInfo());
+        assertEquals(1, rebuiltModel.getAdviceInfoContainer().getBeforeAdviceInfos().length);
+
+        assertSame("the rebuilt model is kept while in use", rebuiltModel, compilationInfo.getInitialModel());
+    }
+
+    private static Class getJoinPointClass() {
+        Target.s_log = "";
+        new Target().caller();
+        assertEquals("before callee ", Target.s_log);
+        return Target.s_joinPointClass;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(CompilationInfoTest.class);
+    }
+}
@@ -0,0 +1,88 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.relinkjp;
+
+import java.lang.reflect.Field;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.transform.inlining.deployer.Deployer;
+
+/**
+ * Relinking of join points (-Daspectwerkz.transform.relinkjp=true): a redefined join point is reached through the
+ * relink target of the initial join point class, which is not redefined itself.
+ */
+public class RelinkJoinPointTest extends TestCase {
+
+    public RelinkJoinPointTest(String name) {
+        super(name);
+    }
+
+    public void testReflectionBeforeRelink() throws Throwable {
+        Target.s_log = "";
+        new Target().caller();
+        assertEquals("before callee ", Target.s_log);
+
+        // the relink target interface does not exist yet, the fields must still resolve
+        Field relinkTarget = getRelinkTargetField(Target.s_joinPointClass);
+        assertNull(relinkTarget.get(null));
+    }
+
+    public void testRelinkOnDeployment() throws Throwable {
+        Target target = new Target();
+        Target.s_log = "";
+        target.caller();
+        final Class initialJoinPointClass = Target.s_joinPointClass;
+
+        String aspectXmlDef =
+                "<aspect class=\"test.relinkjp.DeployedAspect\">" +
+                "<pointcut name=\"callee\" expression=\"call(void test.relinkjp.Target.callee()) " +
+                "AND within(test.relinkjp.Target)\"/>" +
+                "<advice name=\"deployed\" type=\"before\" bind-to=\"callee\"/>" +
+                "</aspect>";
+        Deployer.deploy(DeployedAspect.class, aspectXmlDef);
+        try {
+            Target.s_log = "";
+            target.caller();
+            assertEquals("before deployed callee ", Target.s_log);
+            Object relinked = getRelinkTargetField(initialJoinPointClass).get(null);
+            assertNotNull("the initial join point is relinked", relinked);
+            assertTrue(
+                    Class.forName(
+                            initialJoinPointClass.getName() + TransformationConstants.RELINK_TARGET_INTERFACE_SUFFIX,
+                            false,
+                            initialJoinPointClass.getClassLoader()
+                    ).isInstance(relinked)
+            );
+        } finally {
+            Deployer.undeploy(DeployedAspect.class);
+        }
+
+        Target.s_log = "";
+        target.caller();
+        assertEquals("before callee ", Target.s_log);
+    }
+
+    private static Field getRelinkTargetField(Class joinPointClass) throws NoSuchFieldException {
+        Field field = joinPointClass.getDeclaredField(TransformationConstants.RELINK_TARGET_FIELD_NAME);
+        field.setAccessible(true);
+        return field;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        // the initial join point stays relinked after the deployment test, hence the order
+        junit.framework.TestSuite suite = new junit.framework.TestSuite(RelinkJoinPointTest.class.getName());
+        suite.addTest(new RelinkJoinPointTest("testReflectionBeforeRelink"));
+        suite.addTest(new RelinkJoinPointTest("testRelinkOnDeployment"));
+        return suite;
+    }
+}
@@ -0,0 +1,23 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.relinkjp;
+
+public class Target {
+
+    public static String s_log = "";
+
+    public static Class s_joinPointClass;
+
+    public void caller() {
+        callee();
+    }
+
+    public void callee() {
+        s_log += "callee ";
+    }
+}
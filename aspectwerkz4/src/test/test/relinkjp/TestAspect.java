@@ -0,0 +1,21 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.relinkjp;
+
+import org.codehaus.aspectwerkz.joinpoint.StaticJoinPoint;
+
+public class TestAspect {
+
+    /**
+     * @Before call(void test.relinkjp.Target.callee()) && within(test.relinkjp.Target)
+     */
+    public void before(StaticJoinPoint jp) {
+        Target.s_joinPointClass = jp.getClass();
+        Target.s_log += "before ";
+    }
+}
@@ -0,0 +1,120 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.sampling;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.joinpoint.management.AdviceSampler;
+import org.codehaus.aspectwerkz.transform.inlining.deployer.Deployer;
+
+/**
+ * The sampling of the advices: one sampling decision per aspect and invocation for all its advices, the samplers per
+ * class loader and the rates from the aspect definition applied to the existing samplers.
+ */
+public class AdviceSamplerTest extends TestCase {
+
+    private static final String ASPECT_QUALIFIED_NAME = "tests/" + SampledAspect.class.getName();
+
+    private static final String FULL_LOG = "before around sampled after ";
+
+    public void testAspectSampledOncePerInvocation() {
+        Target target = new Target();
+        int full = 0;
+        for (int i = 0; i < 10; i++) {
+            Target.s_log = "";
+            target.sampled();
+            if (Target.s_log.equals(FULL_LOG)) {
+                full++;
+            } else {
+                assertEquals("sampled ", Target.s_log);
+            }
+        }
+        assertEquals(5, full);
+    }
+
+    public void testRuntimeRates() {
+        Target target = new Target();
+        try {
+            Deployer.setSamplingRate(ASPECT_QUALIFIED_NAME, null, 1);
+            for (int i = 0; i < 3; i++) {
+                Target.s_log = "";
+                target.sampled();
+                assertEquals(FULL_LOG, Target.s_log);
+            }
+
+            Deployer.setSamplingRate(ASPECT_QUALIFIED_NAME, "before", 0);
+            Target.s_log = "";
+            target.sampled();
+            assertEquals("around sampled after ", Target.s_log);
+
+            Deployer.setSamplingRate(ASPECT_QUALIFIED_NAME, null, 0);
+            Target.s_log = "";
+            target.sampled();
+            assertEquals("sampled ", Target.s_log);
+        } finally {
+            Deployer.setSamplingRate(ASPECT_QUALIFIED_NAME, null, 2);
+        }
+    }
+
+    public void testSamplerPerClassLoader() {
+        ClassLoader loader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        AdviceSampler sampler = AdviceSampler.getSampler("test/PerLoader", "advice", 1, loader);
+        assertSame(sampler, AdviceSampler.getSampler("test/PerLoader", "advice", 1, loader));
+        assertNotSame(sampler, AdviceSampler.getSampler("test/PerLoader", "advice", 1, getClass().getClassLoader()));
+        assertNotSame(sampler, AdviceSampler.getSampler("test/PerLoader", "advice", 1, null));
+
+        // the samplers of an aspect share its invocation count in a class loader, not across class loaders
+        AdviceSampler other = AdviceSampler.getSampler("test/PerLoader", "other", 1, loader);
+        long invocation = sampler.nextInvocation();
+        assertEquals(invocation + 1, other.nextInvocation());
+        AdviceSampler otherLoader = AdviceSampler.getSampler("test/PerLoader", "other", 1, null);
+        assertEquals(1, otherLoader.nextInvocation());
+    }
+
+    public void testSameInvocationSameDecision() {
+        AdviceSampler every2 = AdviceSampler.getSampler("test/Decision", "every2", 2, null);
+        AdviceSampler alsoEvery2 = AdviceSampler.getSampler("test/Decision", "alsoEvery2", 2, null);
+        AdviceSampler every4 = AdviceSampler.getSampler("test/Decision", "every4", 4, null);
+        for (int i = 0; i < 16; i++) {
+            long invocation = every2.nextInvocation();
+            boolean sampled = every2.isSampled(invocation);
+            assertEquals(sampled, alsoEvery2.isSampled(invocation));
+            if (every4.isSampled(invocation)) {
+                assertTrue("an advice at a multiple rate only runs with the others", sampled);
+            }
+        }
+        assertEquals(8, every2.getSampledCount());
+        assertEquals(8, alsoEvery2.getSampledCount());
+        assertEquals(4, every4.getSampledCount());
+        assertEquals(16, every4.getInvocationCount());
+    }
+
+    public void testDefinedRateChange() {
+        AdviceSampler sampler = AdviceSampler.getSampler("test/Defined", "advice", 3, null);
+        assertEquals(3, sampler.getRate());
+        assertSame(sampler, AdviceSampler.getSampler("test/Defined", "advice", 5, null));
+        assertEquals("the new rate of the definition is applied", 5, sampler.getRate());
+
+        AdviceSampler.setRate("test/Defined", "advice", 7);
+        assertEquals(7, sampler.getRate());
+        AdviceSampler.getSampler("test/Defined", "advice", 5, null);
+        assertEquals("an unchanged definition keeps the runtime rate", 7, sampler.getRate());
+        AdviceSampler.getSampler("test/Defined", "advice", 10, null);
+        assertEquals("the latest change wins", 10, sampler.getRate());
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(AdviceSamplerTest.class);
+    }
+}
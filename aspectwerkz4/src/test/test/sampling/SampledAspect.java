@@ -0,0 +1,36 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.sampling;
+
+import org.codehaus.aspectwerkz.joinpoint.JoinPoint;
+import org.codehaus.aspectwerkz.joinpoint.StaticJoinPoint;
+
+public class SampledAspect {
+
+    /**
+     * @Before execution(void test.sampling.Target.sampled())
+     */
+    public void before(StaticJoinPoint jp) {
+        Target.s_log += "before ";
+    }
+
+    /**
+     * @Around execution(void test.sampling.Target.sampled())
+     */
+    public Object around(JoinPoint jp) throws Throwable {
+        Target.s_log += "around ";
+        return jp.proceed();
+    }
+
+    /**
+     * @After execution(void test.sampling.Target.sampled())
+     */
+    public void after(StaticJoinPoint jp) {
+        Target.s_log += "after ";
+    }
+}
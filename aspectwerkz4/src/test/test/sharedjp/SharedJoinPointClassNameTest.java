@@ -0,0 +1,66 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.sharedjp;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.joinpoint.management.JoinPointType;
+import org.codehaus.aspectwerkz.transform.TransformationUtil;
+
+/**
+ * The names of the join point classes shared by several call sites of a class.
+ */
+public class SharedJoinPointClassNameTest extends TestCase {
+
+    private static final String CALLER = "test/sharedjp/Target";
+
+    private static final String CALLEE = "test/sharedjp/Callee";
+
+    public void testAdviceChainsWithSameHashHaveDistinctNames() {
+        // "Aa" and "BB" have the same hash code
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        String first = TransformationUtil.getSharedJoinPointClassName(
+                CALLER, CALLEE, JoinPointType.METHOD_CALL_INT, 42, 0, "Aa"
+        );
+        String second = TransformationUtil.getSharedJoinPointClassName(
+                CALLER, CALLEE, JoinPointType.METHOD_CALL_INT, 42, 1, "BB"
+        );
+        assertFalse(first.equals(second));
+    }
+
+    public void testSharedName() {
+        String shared = TransformationUtil.getSharedJoinPointClassName(
+                CALLER, CALLEE, JoinPointType.FIELD_GET_INT, -42, 0, "aspect/advice;"
+        );
+        assertTrue(shared.startsWith(CALLER + '_'));
+        assertTrue(
+                TransformationUtil.isSharedJoinPointClassName(
+                        shared, CALLER.replace('/', '.'), JoinPointType.FIELD_GET_INT
+                )
+        );
+        assertFalse(
+                TransformationUtil.isSharedJoinPointClassName(
+                        shared, CALLER, JoinPointType.FIELD_SET_INT
+                )
+        );
+    }
+
+    public void testPerCallerMemberName() {
+        String name = TransformationUtil.getJoinPointClassName(
+                CALLER, "siteA", "()V", CALLEE, JoinPointType.METHOD_CALL_INT, -42
+        );
+        assertFalse(TransformationUtil.isSharedJoinPointClassName(name, CALLER, JoinPointType.METHOD_CALL_INT));
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(SharedJoinPointClassNameTest.class);
+    }
+}
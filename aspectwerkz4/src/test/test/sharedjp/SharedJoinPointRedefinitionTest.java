@@ -0,0 +1,57 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.sharedjp;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.transform.inlining.deployer.Deployer;
+
+/**
+ * A deployment scoped to one call site must not change the other call sites of the same member with the same
+ * advices, even when join point sharing is turned on (-Daspectwerkz.transform.sharedjp=true).
+ */
+public class SharedJoinPointRedefinitionTest extends TestCase {
+
+    public void testDeploymentScopedToOneCallSite() {
+        Target target = new Target();
+        Target.s_log = "";
+        target.siteA();
+        target.siteB();
+        assertEquals("before callee before callee ", Target.s_log);
+
+        String aspectXmlDef =
+                "<aspect class=\"test.sharedjp.DeployedAspect\">" +
+                "<pointcut name=\"siteA\" expression=\"call(void test.sharedjp.Target.callee()) " +
+                "AND withincode(void test.sharedjp.Target.siteA())\"/>" +
+                "<advice name=\"deployed\" type=\"before\" bind-to=\"siteA\"/>" +
+                "</aspect>";
+        Deployer.deploy(DeployedAspect.class, aspectXmlDef);
+        try {
+            Target.s_log = "";
+            target.siteA();
+            assertEquals("before deployed callee ", Target.s_log);
+            Target.s_log = "";
+            target.siteB();
+            assertEquals("before callee ", Target.s_log);
+        } finally {
+            Deployer.undeploy(DeployedAspect.class);
+        }
+
+        Target.s_log = "";
+        target.siteA();
+        target.siteB();
+        assertEquals("before callee before callee ", Target.s_log);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(SharedJoinPointRedefinitionTest.class);
+    }
+}
@@ -0,0 +1,92 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.sharedjp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
+import org.codehaus.aspectwerkz.transform.TransformationConstants;
+import org.codehaus.aspectwerkz.transform.inlining.AsmNullAdapter;
+import org.objectweb.asm.ClassAdapter;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.MethodAdapter;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * The call sites sharing a join point class (-Daspectwerkz.transform.sharedjp=true with
+ * -Daspectwerkz.transform.redefinejp=false, see the test:options target): the call sites of the same member with the
+ * same advices share it, but not the static and the instance callers since the advices that need the caller instance
+ * are skipped for a static caller.
+ */
+public class SharedJoinPointTest extends TestCase {
+
+    public void testStaticAndInstanceCallers() {
+        Target target = new Target();
+        Target.s_log = "";
+        target.instanceSite();
+        assertEquals("perInstance shared ", Target.s_log);
+        Target.s_log = "";
+        Target.staticSite(target);
+        assertEquals("shared ", Target.s_log);
+        Target.s_log = "";
+        target.instanceSite();
+        assertEquals("perInstance shared ", Target.s_log);
+    }
+
+    public void testSharedJoinPointClasses() throws Throwable {
+        Map joinPointClassNames = getJoinPointClassNames();
+        assertNotNull(joinPointClassNames.get("siteA"));
+        assertNotNull(joinPointClassNames.get("instanceSite"));
+        assertNotNull(joinPointClassNames.get("staticSite"));
+        boolean shared = AspectWerkzPreProcessor.SHAREDJP && !AspectWerkzPreProcessor.REDEFINEJP;
+        assertEquals(shared, joinPointClassNames.get("siteA").equals(joinPointClassNames.get("siteB")));
+        assertFalse(joinPointClassNames.get("instanceSite").equals(joinPointClassNames.get("staticSite")));
+    }
+
+    /**
+     * Returns the join point class invoked by each method of the weaved Target class.
+     */
+    private static Map getJoinPointClassNames() throws Throwable {
+        InputStream is = Target.class.getClassLoader().getResourceAsStream("test/sharedjp/Target.class");
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        for (int b = is.read(); b != -1; b = is.read()) {
+            os.write(b);
+        }
+        is.close();
+        final Map joinPointClassNames = new HashMap();
+        new ClassReader(os.toByteArray()).accept(
+                new ClassAdapter(AsmNullAdapter.NullClassAdapter.NULL_CLASS_ADAPTER) {
+                    public MethodVisitor visitMethod(int access, final String name, String desc, String signature,
+                                                     String[] exceptions) {
+                        return new MethodAdapter(super.visitMethod(access, name, desc, signature, exceptions)) {
+                            public void visitMethodInsn(int opcode, String owner, String name2, String desc2) {
+                                if (owner.endsWith(TransformationConstants.JOIN_POINT_CLASS_SUFFIX)) {
+                                    joinPointClassNames.put(name, owner);
+                                }
+                                super.visitMethodInsn(opcode, owner, name2, desc2);
+                            }
+                        };
+                    }
+                },
+                true
+        );
+        return joinPointClassNames;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(SharedJoinPointTest.class);
+    }
+}
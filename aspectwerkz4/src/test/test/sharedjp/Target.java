@@ -0,0 +1,41 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.sharedjp;
+
+/**
+ * Holds two call sites of the same member with the same advices, and the call sites of another member from an
+ * instance and a static caller.
+ */
+public class Target {
+
+    public static String s_log = "";
+
+    public void siteA() {
+        callee();
+    }
+
+    public void siteB() {
+        callee();
+    }
+
+    public void callee() {
+        s_log += "callee ";
+    }
+
+    public void instanceSite() {
+        shared();
+    }
+
+    public static void staticSite(Target target) {
+        target.shared();
+    }
+
+    public void shared() {
+        s_log += "shared ";
+    }
+}
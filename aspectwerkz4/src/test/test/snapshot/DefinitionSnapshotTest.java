@@ -0,0 +1,159 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.compiler.AspectWerkzC;
+import org.codehaus.aspectwerkz.definition.DefinitionSnapshot;
+import org.codehaus.aspectwerkz.definition.SystemDefinition;
+import org.codehaus.aspectwerkz.definition.XmlParser;
+import org.dom4j.Attribute;
+import org.dom4j.Document;
+import org.dom4j.Element;
+
+/**
+ * The binary snapshots of the XML definitions written by the offline compiler (-snapshot).
+ */
+public class DefinitionSnapshotTest extends TestCase {
+
+    private static final String DEFINITION =
+            "<!DOCTYPE aspectwerkz PUBLIC \"-//AspectWerkz//DTD//EN\" " +
+            "\"http://aspectwerkz.codehaus.org/dtd/aspectwerkz2.dtd\">\n" +
+            "<aspectwerkz>\n" +
+            "    <!-- not in the snapshot -->\n" +
+            "    <system id=\"snapshot\">\n" +
+            "        <aspect class=\"test.snapshot.Aspect\" deployment-model=\"perJVM\">\n" +
+            "            <pointcut name=\"pc\"><![CDATA[execution(* test.snapshot.*.*(..)) && within(test.snapshot.*)]]></pointcut>\n" +
+            "            <advice name=\"before\" type=\"before\" bind-to=\"pc\"/>\n" +
+            "        </aspect>\n" +
+            "    </system>\n" +
+            "</aspectwerkz>\n";
+
+    private File m_dir;
+
+    protected void setUp() throws Exception {
+        m_dir = File.createTempFile("snapshot", "");
+        m_dir.delete();
+        m_dir.mkdirs();
+    }
+
+    protected void tearDown() {
+        File[] files = m_dir.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        m_dir.delete();
+    }
+
+    public void testSameDocument() throws Exception {
+        URL url = write("aop.xml", DEFINITION);
+        writeSnapshot("aop.xml", DEFINITION.getBytes("UTF-8"));
+
+        Document snapshot = DefinitionSnapshot.readSnapshot(url, DEFINITION.getBytes("UTF-8"));
+        assertNotNull(snapshot);
+        // the comment is dropped, everything else, DTD default attributes included, is kept
+        assertSameElement(XmlParser.createDocument(url).getRootElement(), snapshot.getRootElement());
+    }
+
+    public void testNoSnapshot() throws Exception {
+        URL url = write("aop.xml", DEFINITION);
+        assertNull(DefinitionSnapshot.readSnapshot(url, DEFINITION.getBytes("UTF-8")));
+    }
+
+    public void testStaleSnapshot() throws Exception {
+        writeSnapshot("aop.xml", DEFINITION.getBytes("UTF-8"));
+        String changed = DEFINITION.replaceAll("perJVM", "perClass");
+        URL url = write("aop.xml", changed);
+        assertNull("the digest does not match", DefinitionSnapshot.readSnapshot(url, changed.getBytes("UTF-8")));
+    }
+
+    public void testCorruptedSnapshot() throws Exception {
+        URL url = write("aop.xml", DEFINITION);
+        write("aop.xml" + DefinitionSnapshot.SNAPSHOT_SUFFIX, "not a snapshot");
+        assertNull(DefinitionSnapshot.readSnapshot(url, DEFINITION.getBytes("UTF-8")));
+    }
+
+    public void testParseUsesSnapshot() throws Exception {
+        // a snapshot of another definition, with the digest of this one, must be the one parsed
+        String other = DEFINITION.replaceAll("id=\"snapshot\"", "id=\"fromsnapshot\"");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DefinitionSnapshot.writeSnapshot(other.getBytes("UTF-8"), out);
+        byte[] snapshot = out.toByteArray();
+        byte[] digest = MessageDigest.getInstance("MD5").digest(DEFINITION.getBytes("UTF-8"));
+        // magic, version and digest length precede the digest
+        System.arraycopy(digest, 0, snapshot, 12, digest.length);
+        URL url = write("aop.xml", DEFINITION);
+        write("aop.xml" + DefinitionSnapshot.SNAPSHOT_SUFFIX, snapshot);
+
+        Set definitions = XmlParser.parseNoCache(getClass().getClassLoader(), url);
+        assertEquals(1, definitions.size());
+        assertEquals("fromsnapshot", ((SystemDefinition) definitions.iterator().next()).getUuid());
+    }
+
+    public void testCompileDefinition() throws Exception {
+        URL url = write("aop.xml", DEFINITION);
+        new AspectWerkzC().compileDefinition(new File(m_dir, "aop.xml"));
+        assertTrue(new File(m_dir, "aop.xml" + DefinitionSnapshot.SNAPSHOT_SUFFIX).exists());
+        assertNotNull(DefinitionSnapshot.readSnapshot(url, DEFINITION.getBytes("UTF-8")));
+    }
+
+    private static void assertSameElement(Element expected, Element actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.attributeCount(), actual.attributeCount());
+        for (Iterator it = expected.attributeIterator(); it.hasNext();) {
+            Attribute attribute = (Attribute) it.next();
+            assertEquals(attribute.getValue(), actual.attributeValue(attribute.getName()));
+        }
+        assertEquals(expected.getText(), actual.getText());
+        List expectedElements = expected.elements();
+        List actualElements = actual.elements();
+        assertEquals(expectedElements.size(), actualElements.size());
+        for (int i = 0; i < expectedElements.size(); i++) {
+            assertSameElement((Element) expectedElements.get(i), (Element) actualElements.get(i));
+        }
+    }
+
+    private void writeSnapshot(String name, byte[] xml) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DefinitionSnapshot.writeSnapshot(xml, out);
+        write(name + DefinitionSnapshot.SNAPSHOT_SUFFIX, out.toByteArray());
+    }
+
+    private URL write(String name, String content) throws IOException {
+        return write(name, content.getBytes("UTF-8"));
+    }
+
+    private URL write(String name, byte[] content) throws IOException {
+        File file = new File(m_dir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file.toURI().toURL();
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(DefinitionSnapshotTest.class);
+    }
+}
@@ -0,0 +1,111 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.typeindex;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.expression.SubtypePatternType;
+import org.codehaus.aspectwerkz.expression.regexp.Pattern;
+import org.codehaus.aspectwerkz.expression.regexp.TypePattern;
+import org.codehaus.aspectwerkz.reflect.ClassInfo;
+import org.codehaus.aspectwerkz.reflect.TypeIndex;
+import org.codehaus.aspectwerkz.reflect.impl.asm.AsmClassInfo;
+import org.codehaus.aspectwerkz.reflect.impl.java.JavaClassInfo;
+
+/**
+ * The type ids and the supertype id sets used by the subtype patterns, on an interface diamond:
+ * Child extends Parent implements Right, Parent implements Left, Left and Right extend Base.
+ */
+public class TypeIndexTest extends TestCase {
+
+    public void testTypeIds() {
+        int id = TypeIndex.getId("test.typeindex.Child");
+        assertEquals(id, TypeIndex.getId("test.typeindex.Child"));
+        assertEquals("test.typeindex.Child", TypeIndex.getName(id));
+        assertTrue(id != TypeIndex.getId("test.typeindex.Parent"));
+        assertEquals(id, TypeIndex.getTypeId(JavaClassInfo.getClassInfo(Child.class)));
+    }
+
+    public void testSupertypeIds() {
+        int[] ids = TypeIndex.getSupertypeIds(JavaClassInfo.getClassInfo(Child.class));
+        assertSupertypes(
+                new String[]{
+                    "test.typeindex.Child",
+                    "test.typeindex.Parent",
+                    "test.typeindex.Left",
+                    "test.typeindex.Right",
+                    "test.typeindex.Base",
+                    "java.lang.Object"
+                },
+                ids
+        );
+        assertSame(
+                "the set is kept by the class info",
+                ids,
+                TypeIndex.getSupertypeIds(JavaClassInfo.getClassInfo(Child.class))
+        );
+        assertSupertypes(
+                new String[]{"test.typeindex.Base"}, TypeIndex.getSupertypeIds(JavaClassInfo.getClassInfo(Base.class))
+        );
+    }
+
+    public void testAsmClassInfoSupertypeIds() {
+        ClassInfo asmClassInfo = AsmClassInfo.getClassInfo("test.typeindex.Child", getClass().getClassLoader());
+        int[] asmIds = TypeIndex.getSupertypeIds(asmClassInfo);
+        int[] javaIds = TypeIndex.getSupertypeIds(JavaClassInfo.getClassInfo(Child.class));
+        assertEquals(javaIds.length, asmIds.length);
+        for (int i = 0; i < javaIds.length; i++) {
+            assertEquals(javaIds[i], asmIds[i]);
+        }
+    }
+
+    public void testSubtypePattern() {
+        ClassInfo child = JavaClassInfo.getClassInfo(Child.class);
+        ClassInfo parent = JavaClassInfo.getClassInfo(Parent.class);
+        TypePattern base = Pattern.compileTypePattern("test.typeindex.Base+", SubtypePatternType.MATCH_ON_ALL_METHODS);
+        TypePattern right = Pattern.compileTypePattern("test.typeindex.Right+", SubtypePatternType.MATCH_ON_ALL_METHODS);
+        TypePattern any = Pattern.compileTypePattern("test.typeindex.*+", SubtypePatternType.MATCH_ON_ALL_METHODS);
+        TypePattern other = Pattern.compileTypePattern("test.other.*+", SubtypePatternType.MATCH_ON_ALL_METHODS);
+        // twice, the second time from the match states of the patterns
+        for (int i = 0; i < 2; i++) {
+            assertTrue(base.matchType(child));
+            assertTrue(base.matchType(parent));
+            assertTrue(right.matchType(child));
+            assertFalse(right.matchType(parent));
+            assertTrue(any.matchType(parent));
+            assertFalse(other.matchType(child));
+            assertTrue(
+                    Pattern.compileTypePattern("java.lang.Object+", SubtypePatternType.MATCH_ON_ALL_METHODS)
+                            .matchType(child)
+            );
+        }
+        assertFalse(base.matchType(JavaClassInfo.getClassInfo(String.class)));
+    }
+
+    private static void assertSupertypes(final String[] names, final int[] ids) {
+        assertEquals(names.length, ids.length);
+        for (int i = 1; i < ids.length; i++) {
+            assertTrue("the ids are sorted without duplicates", ids[i - 1] < ids[i]);
+        }
+        for (int i = 0; i < names.length; i++) {
+            int id = TypeIndex.getId(names[i]);
+            boolean found = false;
+            for (int j = 0; j < ids.length; j++) {
+                found |= ids[j] == id;
+            }
+            assertTrue(names[i], found);
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(TypeIndexTest.class);
+    }
+}
@@ -0,0 +1,186 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.weavingprofile;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
+import org.codehaus.aspectwerkz.transform.WeavingProfile;
+
+/**
+ * The weaving profile: the bound and the timeout of the classes weaved ahead, the class loaders collected before the
+ * profile is written and the bootstrap class loader.
+ */
+public class WeavingProfileTest extends TestCase {
+
+    private static final String LOADER_KEY = ProfiledClassLoader.class.getName() + "#0";
+
+    private File m_file;
+
+    public void testNullLoader() throws Exception {
+        WeavingProfile profile = newWeavingProfile(new String[0], 1, 60000);
+        profile.classWeaved(First.class.getName(), null, true);
+        assertNull(profile.getPreparedBytecode(First.class.getName(), new byte[0], null));
+        profile.writeProfile();
+        assertEquals(0, readProfile().size());
+    }
+
+    public void testBound() throws Exception {
+        WeavingProfile profile = newWeavingProfile(
+                new String[]{First.class.getName(), Second.class.getName(), Third.class.getName(), Fourth.class.getName()},
+                2,
+                60000
+        );
+        ClassLoader loader = new ProfiledClassLoader();
+        profile.classWeaved(First.class.getName(), loader, true);
+        assertTrue(waitForPreparedClassCount(profile, 2));
+        Thread.sleep(100);
+        assertEquals(2, profile.getPreparedClassCount());
+
+        assertNotNull(profile.getPreparedBytecode(Second.class.getName(), getBytecode(Second.class), loader));
+        assertTrue(waitForPreparedClassCount(profile, 2));
+        assertNotNull(profile.getPreparedBytecode(Third.class.getName(), getBytecode(Third.class), loader));
+        assertNotNull(profile.getPreparedBytecode(Fourth.class.getName(), getBytecode(Fourth.class), loader));
+        assertEquals(0, profile.getPreparedClassCount());
+    }
+
+    public void testTimeout() throws Exception {
+        WeavingProfile profile = newWeavingProfile(
+                new String[]{First.class.getName(), Second.class.getName(), Third.class.getName()}, 10, 200
+        );
+        ClassLoader loader = new ProfiledClassLoader();
+        profile.classWeaved(First.class.getName(), loader, true);
+        assertTrue(waitForPreparedClassCount(profile, 2));
+        assertTrue(waitForPreparedClassCount(profile, 0));
+        assertNull(profile.getPreparedBytecode(Second.class.getName(), getBytecode(Second.class), loader));
+        assertNull(profile.getPreparedBytecode(Third.class.getName(), getBytecode(Third.class), loader));
+    }
+
+    public void testCollectedLoader() throws Exception {
+        WeavingProfile profile = newWeavingProfile(new String[0], 1, 60000);
+        ClassLoader loader = new ProfiledClassLoader();
+        profile.classWeaved(First.class.getName(), loader, true);
+        profile.classWeaved(Second.class.getName(), loader, false);
+        WeakReference loaderRef = new WeakReference(loader);
+        loader = null;
+        for (int i = 0; i < 50 && loaderRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(loaderRef.get());
+        profile.writeProfile();
+        List lines = readProfile();
+        assertEquals(1, lines.size());
+        assertEquals(LOADER_KEY + ' ' + First.class.getName(), lines.get(0));
+    }
+
+    protected void setUp() throws Exception {
+        m_file = File.createTempFile("weavingprofile", ".txt");
+    }
+
+    protected void tearDown() {
+        m_file.delete();
+    }
+
+    private WeavingProfile newWeavingProfile(final String[] classNames, final int maxPreparedCount, final long timeout)
+            throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(m_file), "UTF-8");
+        try {
+            for (int i = 0; i < classNames.length; i++) {
+                writer.write(LOADER_KEY + ' ' + classNames[i] + '\n');
+            }
+        } finally {
+            writer.close();
+        }
+        AspectWerkzPreProcessor preProcessor = new AspectWerkzPreProcessor();
+        preProcessor.initialize();
+        return WeavingProfile.newWeavingProfile(preProcessor, m_file, 1, maxPreparedCount, timeout);
+    }
+
+    private List readProfile() throws IOException {
+        List lines = new ArrayList();
+        BufferedReader reader = new BufferedReader(new FileReader(m_file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private static boolean waitForPreparedClassCount(final WeavingProfile profile, final int count)
+            throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            if (profile.getPreparedClassCount() == count) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    private static byte[] getBytecode(final Class klass) throws IOException {
+        InputStream in = klass.getClassLoader().getResourceAsStream(klass.getName().replace('.', '/') + ".class");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class ProfiledClassLoader extends URLClassLoader {
+        private ProfiledClassLoader() {
+            super(new URL[0], WeavingProfileTest.class.getClassLoader());
+        }
+    }
+
+    static class First {
+    }
+
+    static class Second {
+    }
+
+    static class Third {
+    }
+
+    static class Fourth {
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(WeavingProfileTest.class);
+    }
+}
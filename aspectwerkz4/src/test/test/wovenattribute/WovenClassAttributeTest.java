@@ -0,0 +1,164 @@
+/**************************************************************************************
+ * Copyright (c) Jonas Bonr, Alexandre Vasseur. All rights reserved.                 *
+ * http://aspectwerkz.codehaus.org                                                    *
+ * ---------------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the LGPL license      *
+ * a copy of which has been included with this distribution in the license.txt file.  *
+ **************************************************************************************/
+package test.wovenattribute;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import org.codehaus.aspectwerkz.definition.DefinitionFingerprint;
+import org.codehaus.aspectwerkz.transform.AspectWerkzPreProcessor;
+import org.codehaus.aspectwerkz.transform.inlining.AsmNullAdapter;
+import org.codehaus.aspectwerkz.transform.inlining.WovenClassAttribute;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassAdapter;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * The attribute added to the weaved classes: a class weaved with the current definitions is returned as is, and a
+ * class weaved with other definitions is weaved again without weaving its join points twice.
+ * <p/>
+ * The definitions are changed by other tests once the classes have been weaved offline, hence the current fingerprint
+ * is set in the bytecode read.
+ */
+public class WovenClassAttributeTest extends TestCase {
+
+    public void testWeavedOffline() throws Throwable {
+        Target.s_log = "";
+        new Target().caller();
+        assertEquals("before callee ", Target.s_log);
+
+        byte[] bytecode = readBytecode(Target.class);
+        byte[] fingerprint = WovenClassAttribute.getFingerprint(bytecode);
+        assertNotNull(fingerprint);
+        assertEquals(DefinitionFingerprint.getFingerprint(new HashSet()).length, fingerprint.length);
+
+        WovenClassAttribute attribute = readAttribute(bytecode);
+        assertNotNull(attribute);
+        assertTrue(Arrays.equals(fingerprint, attribute.getFingerprint()));
+        assertEquals(1, attribute.getJoinPointClassNames().size());
+    }
+
+    public void testNotWeaved() throws Throwable {
+        byte[] bytecode = readBytecode(TestAspect.class);
+        assertNull(WovenClassAttribute.getFingerprint(bytecode));
+        assertNull(readAttribute(bytecode));
+    }
+
+    public void testFingerprintOfOtherDefinitions() {
+        byte[] fingerprint = DefinitionFingerprint.getFingerprintFor(getClass().getClassLoader());
+        assertTrue(Arrays.equals(fingerprint, DefinitionFingerprint.getFingerprintFor(getClass().getClassLoader())));
+        assertFalse(Arrays.equals(fingerprint, DefinitionFingerprint.getFingerprint(new HashSet())));
+    }
+
+    public void testSkipWeaved() throws Throwable {
+        if (!AspectWerkzPreProcessor.SKIPWOVEN) {
+            return;
+        }
+        byte[] bytecode = readBytecode(Target.class);
+        byte[] fingerprint = DefinitionFingerprint.getFingerprintFor(getClass().getClassLoader());
+        setFingerprint(bytecode, fingerprint);
+        assertTrue(Arrays.equals(fingerprint, WovenClassAttribute.getFingerprint(bytecode)));
+        byte[] weaved = preProcess(bytecode);
+        assertSame(bytecode, weaved);
+    }
+
+    public void testWeavedAgainWithOtherDefinitions() throws Throwable {
+        byte[] bytecode = readBytecode(Target.class);
+        WovenClassAttribute attribute = readAttribute(bytecode);
+
+        // as if weaved with other definitions
+        byte[] otherBytecode = (byte[]) bytecode.clone();
+        byte[] fingerprint = (byte[]) DefinitionFingerprint.getFingerprintFor(getClass().getClassLoader()).clone();
+        fingerprint[0] ^= 1;
+        setFingerprint(otherBytecode, fingerprint);
+        assertTrue(Arrays.equals(fingerprint, WovenClassAttribute.getFingerprint(otherBytecode)));
+
+        byte[] weaved = preProcess(otherBytecode);
+        assertNotSame(otherBytecode, weaved);
+        WovenClassAttribute weavedAttribute = readAttribute(weaved);
+        assertNotNull(weavedAttribute);
+        assertEquals(attribute.getJoinPointClassNames(), weavedAttribute.getJoinPointClassNames());
+        // the join points already there are not weaved again
+        assertEquals(getMethodNames(bytecode), getMethodNames(weaved));
+    }
+
+    private byte[] preProcess(final byte[] bytecode) {
+        AspectWerkzPreProcessor awpp = new AspectWerkzPreProcessor();
+        awpp.initialize();
+        return awpp.preProcess(Target.class.getName(), bytecode, getClass().getClassLoader());
+    }
+
+    private static byte[] readBytecode(final Class klass) throws Throwable {
+        InputStream is = klass.getClassLoader().getResourceAsStream(klass.getName().replace('.', '/') + ".class");
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        for (int b = is.read(); b != -1; b = is.read()) {
+            os.write(b);
+        }
+        is.close();
+        return os.toByteArray();
+    }
+
+    private static WovenClassAttribute readAttribute(final byte[] bytecode) {
+        final WovenClassAttribute[] attribute = new WovenClassAttribute[1];
+        new ClassReader(bytecode).accept(
+                new ClassAdapter(AsmNullAdapter.NullClassAdapter.NULL_CLASS_ADAPTER) {
+                    public void visitAttribute(Attribute attr) {
+                        if (attr instanceof WovenClassAttribute) {
+                            attribute[0] = (WovenClassAttribute) attr;
+                        }
+                    }
+                },
+                new Attribute[]{new WovenClassAttribute()},
+                true
+        );
+        return attribute[0];
+    }
+
+    private static Set getMethodNames(final byte[] bytecode) {
+        final Set methodNames = new HashSet();
+        new ClassReader(bytecode).accept(
+                new ClassAdapter(AsmNullAdapter.NullClassAdapter.NULL_CLASS_ADAPTER) {
+                    public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                                     String[] exceptions) {
+                        methodNames.add(name + desc);
+                        return super.visitMethod(access, name, desc, signature, exceptions);
+                    }
+                },
+                true
+        );
+        return methodNames;
+    }
+
+    private static void setFingerprint(final byte[] bytecode, final byte[] fingerprint) {
+        byte[] previous = WovenClassAttribute.getFingerprint(bytecode);
+        for (int i = 0; i <= bytecode.length - previous.length; i++) {
+            int j = 0;
+            while (j < previous.length && bytecode[i + j] == previous[j]) {
+                j++;
+            }
+            if (j == previous.length) {
+                System.arraycopy(fingerprint, 0, bytecode, i, fingerprint.length);
+                return;
+            }
+        }
+        fail("fingerprint not found");
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.TestSuite(WovenClassAttributeTest.class);
+    }
+}